@@ -22,6 +22,7 @@ package smartrics.rest.fitnesse.fixture;
 
 import smartrics.rest.fitnesse.fixture.support.CellFormatter;
 import smartrics.rest.fitnesse.fixture.support.CellWrapper;
+import smartrics.rest.fitnesse.fixture.support.LargeContentFiles;
 import smartrics.rest.fitnesse.fixture.support.RestDataTypeAdapter;
 import smartrics.rest.fitnesse.fixture.support.Tools;
 import fit.ActionFixture;
@@ -39,8 +40,19 @@ public class FitFormatter implements CellFormatter<Parse> {
     private ActionFixture fixture;
     private boolean displayActual;
     private int minLenForToggle = -1;
+    private final LargeContentFiles largeContentFiles;
 
     public FitFormatter() {
+        this(null);
+    }
+
+    /**
+     * @param largeContentFiles
+     *            if not null, the actual contents too large for a cell are
+     *            written to file and the cell shows a preview and a link.
+     */
+    public FitFormatter(LargeContentFiles largeContentFiles) {
+        this.largeContentFiles = largeContentFiles;
     }
     
     /**
@@ -92,7 +104,7 @@ public class FitFormatter implements CellFormatter<Parse> {
 	@Override
     public void wrong(CellWrapper<Parse> expected, RestDataTypeAdapter typeAdapter) {
         String expectedContent = expected.body();
-        String body = Tools.makeContentForWrongCell(expectedContent, typeAdapter, this, minLenForToggle);
+        String body = Tools.makeContentForWrongCell(expectedContent, typeAdapter, this, minLenForToggle, largeContentFiles);
         expected.body(body);
         fixture.wrong(expected.getWrapped());
 	}
@@ -100,7 +112,7 @@ public class FitFormatter implements CellFormatter<Parse> {
 	@Override
     public void right(CellWrapper<Parse> expected, RestDataTypeAdapter typeAdapter) {
         String expectedContent = expected.body();
-        expected.body(Tools.makeContentForRightCell(expectedContent, typeAdapter, this, minLenForToggle));
+        expected.body(Tools.makeContentForRightCell(expectedContent, typeAdapter, this, minLenForToggle, largeContentFiles));
         fixture.right(expected.getWrapped());
 	}
 
@@ -151,6 +151,20 @@ public class FitRestFixture extends ActionFixture {
 		restFixture.setBody();
 	}
 
+	/**
+	 * delegates to {@link RestFixture#setBodyFromFile()}
+	 */
+	public void setBodyFromFile() {
+		restFixture.setBodyFromFile();
+	}
+
+	/**
+	 * delegates to {@link RestFixture#setGeneratedBody()}
+	 */
+	public void setGeneratedBody() {
+		restFixture.setGeneratedBody();
+	}
+
 	/**
 	 * delegates to {@link RestFixture#setHeader()}
 	 */
@@ -193,6 +207,27 @@ public class FitRestFixture extends ActionFixture {
 		restFixture.POST();
 	}
 
+	/**
+	 * delegates to {@link RestFixture#parallel()}
+	 */
+	public void parallel() {
+		restFixture.parallel();
+	}
+
+	/**
+	 * delegates to {@link RestFixture#load()}
+	 */
+	public void load() {
+		restFixture.load();
+	}
+
+	/**
+	 * delegates to {@link RestFixture#waitFor()}
+	 */
+	public void waitFor() {
+		restFixture.waitFor();
+	}
+
 	/**
 	 * delegates to {@link RestFixture#HEAD()}
 	 */
@@ -235,6 +270,13 @@ public class FitRestFixture extends ActionFixture {
 		restFixture.evalJs();
 	}
 
+	/**
+	 * delegates to {@link RestFixture#validateXml()}
+	 */
+	public void validateXml() {
+		restFixture.validateXml();
+	}
+
 	/**
 	 * delegates to {@link RestFixture#processRow(RowWrapper)}
 	 * 
@@ -254,6 +296,24 @@ public class FitRestFixture extends ActionFixture {
 		return restFixture.getHeaders();
 	}
 
+	/**
+	 * processes the table, then deletes the spilled body of the last response,
+	 * if any.
+	 * 
+	 * @param table
+	 *            the table to process.
+	 */
+	@Override
+	public void doTable(Parse table) {
+		try {
+			super.doTable(table);
+		} finally {
+			if (restFixture != null) {
+				restFixture.discardLastResponse();
+			}
+		}
+	}
+
 	@Override
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public void doCells(Parse parse) {
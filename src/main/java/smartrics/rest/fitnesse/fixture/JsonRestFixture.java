@@ -1,13 +1,19 @@
 package smartrics.rest.fitnesse.fixture;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Scanner;
 import java.util.regex.Pattern;
 
+import javax.xml.transform.stream.StreamSource;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,7 +25,11 @@ import smartrics.rest.fitnesse.fixture.support.JavascriptWrapper;
 import smartrics.rest.fitnesse.fixture.support.StringTypeAdapter;
 import smartrics.rest.fitnesse.fixture.support.TextBodyTypeAdapter;
 import smartrics.rest.fitnesse.fixture.support.Tools;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+import smartrics.rest.fitnesse.fixture.support.tools.JsonSchema;
+import smartrics.rest.fitnesse.fixture.support.tools.JsonSchemaRegistry;
 import smartrics.rest.fitnesse.fixture.support.tools.JsonTools;
+import smartrics.rest.fitnesse.fixture.support.tools.XmlTools;
 
 /**
  * JsonRestFixture is an extension of {@code RestFixture} that focuses on JSON REST response objects
@@ -36,6 +46,9 @@ import smartrics.rest.fitnesse.fixture.support.tools.JsonTools;
  * <li><b>showJsFileContent</b> - present the contents of a textfile.
  * <li><b>jsCompare</b> - compare the contents  of two input fields. The fields must either be either
  * a string with JSON data or the path of a file with JSON data.
+ * <li><b>xmlCompare</b> - compare two XML documents, either strings with XML data or paths of files with
+ * XML data, in a single streaming pass.
+ * <li><b>validateJson</b> - validate the last HttpResponse body, or a JSON string or file, against a JSON schema.
  * </ul>
  * <p/>
  *
@@ -134,7 +147,8 @@ public class JsonRestFixture extends RestFixture {
      * Copy the last HTTP Response result of JSON type to a file, i.e. copy HttpResponseBody from the last
      * GET or POST call to a file.
      * <p/>
-     * Note: The response must be of type "application/json".
+     * Note: The response must be of type "application/json". A body spilled to disk, as larger than
+     * <code>http.client.response.body.memory.limit</code>, is formatted as it's streamed to the file.
      * <p/>
      *
      * <ul>
@@ -179,7 +193,18 @@ public class JsonRestFixture extends RestFixture {
         }
         try {
             Path jsonFile = FileSystems.getDefault().getPath(fileName);
-            Files.write(jsonFile, JsonTools.prettyPrint(getJsonString(getLastResponse())).getBytes());
+            if (getLastResponse() instanceof StreamedRestResponse && ((StreamedRestResponse) getLastResponse()).isBodySpilled()) {
+                InputStream in = ((StreamedRestResponse) getLastResponse()).openBodyStream();
+                OutputStream out = Files.newOutputStream(jsonFile);
+                try {
+                    JsonTools.prettyPrint(in, out);
+                } finally {
+                    in.close();
+                    out.close();
+                }
+            } else {
+                Files.write(jsonFile, JsonTools.prettyPrint(getJsonString(getLastResponse())).getBytes());
+            }
             CellWrapper statusCell = row.getCell(2);
             statusCell.body("pass:" + Tools.wrapInDiv(getFormatter().label("[Requestresponse successfully copied to file.]")));
         } catch (JsonParseException e) {
@@ -458,6 +483,220 @@ public class JsonRestFixture extends RestFixture {
     }
 
 
+    /**
+     * <code> | xmlCompare | xmlCompareMode | actual | expected | result |</code>
+     * <p/>
+     * Compare two XML documents. The two XML parameters must be either a string with XML data or the name of a file
+     * containing a XML document. Both documents are canonicalized and compared in a single streaming pass, so large
+     * files can be compared without loading them in memory.
+     * <p/>
+     *
+     * <ul>
+     * <li/><code>xmlCompareMode</code> One of STRICT, IGNORE_WHITESPACE, IGNORE_ORDER or LENIENT (ignore both whitespace
+     * and order of the sibling elements).
+     * <p/>
+     *
+     * <li/><code>actual</code> String with XML data or the name of a file containing XML data that the webservice being tested has produced.
+     * <p/>
+     *
+     * <li/><code>expected</code> String with XML data or the name of a file containing XML data that the tester requires the actual data to be compared to.
+     * <p/>
+     *
+     * <li/><code>result</code> Empty cell where the comparison result is presented. Any user input will be ignored.
+     * <p/>
+     * </ul>
+     *
+     * Filenames without any path will use current directory, i.e. FitNesseRoot directory.
+     * <p/>
+     *
+     * Example call: <br/>
+     * <code>| xmlCompare | IGNORE_ORDER | ./files/someFile.xml | &lt;foo&gt;bar&lt;/foo&gt; | | </code><br/>
+     *
+     * <p/>
+     * See {@link XmlTools#compare(StreamSource, StreamSource, XmlTools.CompareMode)} for more details.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void xmlCompare() {
+        debugMethodCallStart();
+        if (row.size() != 5) {
+            getFormatter().exception(row.getCell(row.size() - 1), "Not all cells found: | xmlCompare | xmlCompareMode | actual | expected | result |");
+            debugMethodCallEnd();
+            return;
+        }
+        XmlTools.CompareMode compareMode = null;
+        try {
+            compareMode = XmlTools.parseCompareMode(row.getCell(1).text());
+        } catch (IllegalArgumentException e) {
+            getFormatter().exception(row.getCell(1), e.getMessage());
+            debugMethodCallEnd();
+            return;
+        }
+        CellWrapper actualCell = row.getCell(2);
+        CellWrapper expectedCell = row.getCell(3);
+        CellWrapper resultCell = row.getCell(4);
+        StreamSource actual = getXmlSourceFromCellOrFileOrWriteErrorMessageToCell(actualCell, "ActualContent");
+        if (null == actual) {
+            debugMethodCallEnd();
+            return;
+        }
+        StreamSource expected = getXmlSourceFromCellOrFileOrWriteErrorMessageToCell(expectedCell, "ExpectedContent");
+        if (null == expected) {
+            XmlTools.closeQuietly(actual);
+            debugMethodCallEnd();
+            return;
+        }
+        try {
+            String diffMessage = XmlTools.compare(expected, actual, compareMode);
+            LOG.debug("DiffMessage: " + diffMessage);
+            if ("".equals(diffMessage)) {
+                resultCell.body("pass:" + Tools.wrapInDiv(getFormatter().label("[No deviations found.]")));
+            } else {
+                resultCell.body("fail:" + Tools.wrapInDiv(Tools.toHtml(diffMessage)));
+            }
+        } catch (Exception e) {
+            resultCell.body(e.getMessage());
+            getFormatter().wrong(resultCell, new StringTypeAdapter());
+        } finally {
+            XmlTools.closeQuietly(actual);
+            XmlTools.closeQuietly(expected);
+            debugMethodCallEnd();
+        }
+    }
+
+    /**
+     * <code> | validateJson | schema | result |</code> or <code> | validateJson | schema | document | result |</code>
+     * <p/>
+     * Validate a JSON document against a JSON Schema (draft 04, see {@link JsonSchema} for the supported keywords).
+     * <p/>
+     *
+     * <ul>
+     * <li/><code>schema</code> String with a JSON schema or the name of a file containing a JSON schema. Schema files
+     * are compiled once and shared by all tests, they are recompiled only when the file changes.
+     * <p/>
+     *
+     * <li/><code>document</code> Optional. String with JSON data or the name of a file containing JSON data. If the
+     * cell is not present the body of the last HTTP response is validated.
+     * <p/>
+     *
+     * <li/><code>result</code> Empty cell where the validation result is presented. Any user input will be ignored.
+     * <p/>
+     * </ul>
+     *
+     * The document is parsed once into a Jackson tree and validated in a single walk over the tree, without involving
+     * the JavaScript engine.
+     * <p/>
+     *
+     * Example call: <br/>
+     * <code>| validateJson | ./files/order-schema.json | | </code><br/>
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void validateJson() {
+        debugMethodCallStart();
+        if (row.size() != 3 && row.size() != 4) {
+            getFormatter().exception(row.getCell(row.size() - 1), "Not all cells found: | validateJson | schema | [document] | result |");
+            debugMethodCallEnd();
+            return;
+        }
+        CellWrapper schemaCell = row.getCell(1);
+        CellWrapper resultCell = row.getCell(row.size() - 1);
+        try {
+            JsonSchema schema = getJsonSchemaFromCellOrFileOrWriteErrorMessageToCell(schemaCell);
+            if (null == schema) {
+                return;
+            }
+            String document;
+            if (row.size() == 4) {
+                document = getJsonContentFromCellOrFileOrWriteErrorMessageToCell(row.getCell(2), "Document");
+                if (null == document) {
+                    return;
+                }
+            } else if (null == getLastResponse()) {
+                resultCell.body("No HTTPResponse found, is preceeding HTTP GET or POST call missing?");
+                getFormatter().wrong(resultCell, new StringTypeAdapter());
+                return;
+            } else if (StreamedRestResponse.describeSpilledBody(getLastResponse()) != null) {
+                resultCell.body("Unable to validate the " + StreamedRestResponse.describeSpilledBody(getLastResponse()));
+                getFormatter().wrong(resultCell, new StringTypeAdapter());
+                return;
+            } else {
+                document = getLastResponse().getBody();
+            }
+            List<String> errors = schema.validate(JsonTools.readTree(document));
+            if (errors.isEmpty()) {
+                resultCell.body("pass:" + Tools.wrapInDiv(getFormatter().label("[No deviations found.]")));
+            } else {
+                StringBuilder diffMessage = new StringBuilder();
+                for (String error : errors) {
+                    diffMessage.append(error).append("\n");
+                }
+                resultCell.body("fail:" + Tools.wrapInDiv(Tools.toHtml(diffMessage.toString().trim())));
+            }
+        } catch (IOException e) {
+            resultCell.body(e.getMessage());
+            getFormatter().wrong(resultCell, new StringTypeAdapter());
+        } finally {
+            debugMethodCallEnd();
+        }
+    }
+
+    /**
+     * Compile the JSON schema in the cell, or get the compiled schema of the file named in the cell from
+     * {@link JsonSchemaRegistry}. If neither is possible set up cell with error message and return null.
+     *
+     * @param cell schema cell.
+     * @return the compiled schema or null.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private JsonSchema getJsonSchemaFromCellOrFileOrWriteErrorMessageToCell(CellWrapper cell) {
+        String cellBodyStr = GLOBALS.substitute(cell.body().trim());
+        try {
+            if (JsonTools.isJson(cellBodyStr)) {
+                return JsonSchema.compile(JsonTools.readTree(cellBodyStr));
+            }
+            Path path = Paths.get(cellBodyStr);
+            if (Files.isRegularFile(path)) {
+                return JsonSchemaRegistry.getSchema(path);
+            }
+            cell.body("Schema neither JSON String nor name of file with JSON content.");
+        } catch (IOException e) {
+            cell.body("Failed reading JSON schema, error:" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            cell.body("Invalid JSON schema, error:" + e.getMessage());
+        }
+        getFormatter().wrong(cell, new TextBodyTypeAdapter());
+        return null;
+    }
+
+    /**
+     * Verify that cell contains a XML string or the name of a file containing a XML document, returning a
+     * source to stream the content from in both cases. If both verifications fail set up cell with error
+     * message and return null.
+     *
+     * @param cell expected or actual xml content
+     * @param contentName name of content for possible errormessage.
+     * @return source of the XML content or null.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private StreamSource getXmlSourceFromCellOrFileOrWriteErrorMessageToCell(CellWrapper cell, String contentName) {
+        String cellText = getFormatter().fromRaw(cell.text()).trim();
+        if (XmlTools.isXml(cellText)) {
+            return new StreamSource(new StringReader(cellText));
+        }
+        Path path = Paths.get(cellText);
+        if (Files.isRegularFile(path)) {
+            try {
+                return new StreamSource(Files.newInputStream(path), path.toUri().toString());
+            } catch (IOException e) {
+                cell.addToBody("Failed reading file with XML " + contentName + ", error:" + e.getMessage());
+                getFormatter().wrong(cell, new TextBodyTypeAdapter());
+                return null;
+            }
+        }
+        cell.body(contentName + " neither XML String nor name of file with XML content.");
+        getFormatter().wrong(cell, new TextBodyTypeAdapter());
+        return null;
+    }
+
     /**
      * Verify that cell contains a Jsonformatted string or the name of a file containing a
      * Jsonformatted string returning the string in both cases. If both verifications fail set
@@ -503,7 +742,7 @@ public class JsonRestFixture extends RestFixture {
             debugMethodCallEnd();
             throw new IOException("No HTTPResponse found, is preceeding HTTP GET or POST call with expected application/json response missing?");
         }
-        JavascriptWrapper js = new JavascriptWrapper();
+        JavascriptWrapper js = new JavascriptWrapper(GLOBALS);
         try {
             Object result = js.evaluateExpression(lastResponse, RESPONSE_JSONBODY);
             if (null == result) {
@@ -20,14 +20,23 @@
  */
 package smartrics.rest.fitnesse.fixture;
 
-import org.apache.commons.httpclient.HttpClient;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpURL;
 import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.URIException;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
 
 import smartrics.rest.client.RestClient;
 import smartrics.rest.client.RestClientImpl;
+import smartrics.rest.client.RestData.Header;
 import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
 import smartrics.rest.fitnesse.fixture.RestFixture.Runner;
 import smartrics.rest.fitnesse.fixture.support.BodyTypeAdapter;
 import smartrics.rest.fitnesse.fixture.support.BodyTypeAdapterFactory;
@@ -35,6 +44,24 @@ import smartrics.rest.fitnesse.fixture.support.CellFormatter;
 import smartrics.rest.fitnesse.fixture.support.Config;
 import smartrics.rest.fitnesse.fixture.support.ContentType;
 import smartrics.rest.fitnesse.fixture.support.HttpClientBuilder;
+import smartrics.rest.fitnesse.fixture.support.LargeContentFiles;
+import smartrics.rest.fitnesse.fixture.support.Variables;
+import smartrics.rest.fitnesse.fixture.support.http.ArchivingRestClient;
+import smartrics.rest.fitnesse.fixture.support.http.BoundedBodyHttpClient;
+import smartrics.rest.fitnesse.fixture.support.http.CompressedRequestEntity;
+import smartrics.rest.fitnesse.fixture.support.http.ContentCoding;
+import smartrics.rest.fitnesse.fixture.support.http.FileBodyRestRequest;
+import smartrics.rest.fitnesse.fixture.support.http.GeneratedBodyRestRequest;
+import smartrics.rest.fitnesse.fixture.support.http.HttpCache;
+import smartrics.rest.fitnesse.fixture.support.http.JdkRestClient;
+import smartrics.rest.fitnesse.fixture.support.http.JdkRestClientEngine;
+import smartrics.rest.fitnesse.fixture.support.http.MeteredRequestEntity;
+import smartrics.rest.fitnesse.fixture.support.http.RequestTiming;
+import smartrics.rest.fitnesse.fixture.support.http.ResponseBody;
+import smartrics.rest.fitnesse.fixture.support.http.RestClientEngine;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.StreamingRestRequest;
+import smartrics.rest.fitnesse.fixture.support.http.TrafficArchive;
 
 /**
  * Factory of all dependencies the rest fixture needs.
@@ -44,15 +71,136 @@ import smartrics.rest.fitnesse.fixture.support.HttpClientBuilder;
  */
 public class PartsFactory {
     /**
-     * Builds a rest client configured with the given config implementation.
+     * Builds a rest client configured with the given config implementation,
+     * on the transport selected by {@code restfixture.http.engine}, see
+     * {@link RestClientEngine}.
+     * 
+     * If {@code restfixture.http.archive.mode} is {@code record} the client
+     * records the exchanges to the {@link TrafficArchive} at
+     * {@code restfixture.http.archive}; if it's {@code replay} the client
+     * answers from the archive, without network.
      * 
      * @param config
      *            the configuration for the rest client to build
      * @return the rest client
      */
     public RestClient buildRestClient(final Config config) {
-        HttpClient httpClient = new HttpClientBuilder().createHttpClient(config);
+        return buildRestClient(config, false);
+    }
+
+    /**
+     * Builds a rest client as {@link #buildRestClient(Config)}; if
+     * {@code ownConnections} is true the client doesn't lease its connections
+     * from the pool shared by the config, so that many clients executing
+     * concurrently, as in parallel and load rows, aren't throttled by the
+     * size of the pool.
+     * 
+     * @param config
+     *            the configuration for the rest client to build
+     * @param ownConnections
+     *            whether the client opens its own connections
+     * @return the rest client
+     */
+    public RestClient buildRestClient(final Config config, final boolean ownConnections) {
+        String mode = config.get("restfixture.http.archive.mode", "off");
+        if ("off".equals(mode)) {
+            return buildEngineRestClient(config, ownConnections);
+        }
+        if (!"record".equals(mode) && !"replay".equals(mode)) {
+            throw new IllegalArgumentException("Unknown archive mode " + mode + ", use record, replay or off");
+        }
+        String file = config.get("restfixture.http.archive");
+        if (file == null) {
+            throw new IllegalArgumentException("restfixture.http.archive must be set to " + mode + " the traffic");
+        }
+        boolean replay = "replay".equals(mode);
+        TrafficArchive archive;
+        try {
+            archive = TrafficArchive.open(Paths.get(file), replay,
+                    config.get("restfixture.http.archive.ignore.headers", TrafficArchive.DEFAULT_IGNORED_HEADERS));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open the archive " + file + ": " + e.getMessage(), e);
+        }
+        if (replay) {
+            return ArchivingRestClient.replaying(archive);
+        }
+        return ArchivingRestClient.recording(buildEngineRestClient(config, ownConnections), archive);
+    }
+
+    private RestClient buildEngineRestClient(final Config config, final boolean ownConnections) {
+        String engine = config.get("restfixture.http.engine", "commons");
+        if ("commons".equals(engine)) {
+            return buildCommonsRestClient(config, ownConnections);
+        }
+        if ("jdk".equals(engine)) {
+            return new JdkRestClientEngine().createRestClient(config);
+        }
+        return buildRestClientEngine(engine).createRestClient(config);
+    }
+
+    private RestClientEngine buildRestClientEngine(String className) {
+        try {
+            return (RestClientEngine) Class.forName(className).newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown http engine " + className);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException(className + " is not a " + RestClientEngine.class.getName());
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Unable to instantiate the http engine " + className);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable access ctor to instantiate the http engine " + className);
+        }
+    }
+
+    private RestClient buildCommonsRestClient(final Config config, final boolean ownConnections) {
+        final boolean decompress = config.getAsBoolean("http.client.response.decompress", true);
+        final BoundedBodyHttpClient httpClient = new BoundedBodyHttpClient(
+                new HttpClientBuilder().createHttpClient(config, ownConnections),
+                config.getAsLong("http.client.response.body.memory.limit", JdkRestClient.DEFAULT_BODY_MEMORY_LIMIT),
+                config.getAsLong("http.client.response.body.size.limit", -1L), decompress);
+        final String acceptEncoding = config.get("http.client.accept.encoding");
+        final String requestCoding = ContentCoding.requestCoding(config);
+        final long compressionThreshold = config.getAsLong("http.client.request.compression.threshold",
+                (long) ContentCoding.DEFAULT_COMPRESSION_THRESHOLD);
+        final HttpCache cache = HttpCache.getCache(config);
         return new RestClientImpl(httpClient) {
+            @Override
+            public RestResponse execute(String hostAddr, RestRequest request) {
+                RequestTiming timing = RequestTiming.start();
+                RestResponse response;
+                try {
+                    if (cache == null) {
+                        response = executeAndDecode(hostAddr, request);
+                    } else {
+                        response = cache.execute(hostAddr, request, new HttpCache.Transport() {
+                            @Override
+                            public RestResponse execute(String hostAddr, RestRequest request) {
+                                return executeAndDecode(hostAddr, request);
+                            }
+                        });
+                    }
+                } finally {
+                    if (timing != null) {
+                        timing.finish();
+                    }
+                }
+                if (timing != null && response instanceof StreamedRestResponse) {
+                    ((StreamedRestResponse) response).setTiming(timing);
+                }
+                return response;
+            }
+
+            // wrapped so that the response can carry its timing; the body
+            // has been read, and decoded, by the http client
+            private RestResponse executeAndDecode(String hostAddr, RestRequest request) {
+                RestResponse response = super.execute(hostAddr, request);
+                ResponseBody body = httpClient.takeBody();
+                if (body != null) {
+                    return StreamedRestResponse.withContent(response, body);
+                }
+                return StreamedRestResponse.wrap(response);
+            }
+
             @Override
             protected URI createUri(String uriString, boolean escaped) throws URIException {
                 boolean useNewHttpUriFactory = config.getAsBoolean("http.client.use.new.http.uri.factory", false);
@@ -70,6 +218,35 @@ public class PartsFactory {
                 }
                 return super.getMethodClassnameFromMethodName(mName);
             }
+
+            @Override
+            protected void configureHttpMethod(HttpMethod m, String hostAddr, RestRequest request) {
+                super.configureHttpMethod(m, hostAddr, request);
+                if (m instanceof EntityEnclosingMethod) {
+                    RequestEntity upload;
+                    try {
+                        upload = StreamingRestRequest.uploadEntityOf(request);
+                    } catch (FileNotFoundException e) {
+                        throw new IllegalArgumentException("Unable to upload " + request.getMultipartFileName(), e);
+                    }
+                    if (upload != null) {
+                        ((EntityEnclosingMethod) m).setRequestEntity(new MeteredRequestEntity(upload));
+                    }
+                }
+                for (Header h : HttpCache.conditionalHeaders()) {
+                    m.setRequestHeader(h.getName(), h.getValue());
+                }
+                if (acceptEncoding != null && m.getRequestHeader("Accept-Encoding") == null) {
+                    m.setRequestHeader("Accept-Encoding", acceptEncoding);
+                }
+                if (requestCoding != null && m instanceof EntityEnclosingMethod && m.getRequestHeader("Content-Encoding") == null) {
+                    RequestEntity entity = ((EntityEnclosingMethod) m).getRequestEntity();
+                    if (entity != null && (entity.getContentLength() < 0 || entity.getContentLength() >= compressionThreshold)) {
+                        ((EntityEnclosingMethod) m).setRequestEntity(new CompressedRequestEntity(entity, requestCoding));
+                        m.setRequestHeader("Content-Encoding", requestCoding);
+                    }
+                }
+            }
         };
     }
 
@@ -82,6 +259,32 @@ public class PartsFactory {
         return new RestRequest();
     }
 
+    /**
+     * Builds a rest request whose body is streamed from a file.
+     * 
+     * @param bodyFile
+     *            the file with the body
+     * @param variables
+     *            the variables to substitute in the body as it's streamed
+     * @return the rest request
+     */
+    public RestRequest buildRestRequest(Path bodyFile, Variables variables) {
+        return new FileBodyRestRequest(bodyFile, variables);
+    }
+
+    /**
+     * Builds a rest request whose body is generated as it's streamed.
+     * 
+     * @param text
+     *            the text repeated in the body
+     * @param length
+     *            the bytes of the body, -1 to send the text once
+     * @return the rest request
+     */
+    public RestRequest buildRestRequest(String text, long length) {
+        return new GeneratedBodyRestRequest(text, length);
+    }
+
     /**
      * Builds the appropriate formatter for a type of runner on this
      * RestFixture.
@@ -91,14 +294,28 @@ public class PartsFactory {
      * @return a formatter instance of CellFormatter
      */
     public CellFormatter<?> buildCellFormatter(Runner runner) {
+        return buildCellFormatter(runner, null);
+    }
+
+    /**
+     * Builds the appropriate formatter for a type of runner on this
+     * RestFixture, writing the actual contents too large for a cell to file.
+     * 
+     * @param runner
+     *            the runner used to execute this RestFixture
+     * @param largeContentFiles
+     *            writes the large contents to file, may be null
+     * @return a formatter instance of CellFormatter
+     */
+    public CellFormatter<?> buildCellFormatter(Runner runner, LargeContentFiles largeContentFiles) {
         if (runner == null) {
             throw new IllegalArgumentException("Runner is null");
         }
         if (Runner.SLIM.equals(runner)) {
-            return new SlimFormatter();
+            return new SlimFormatter(largeContentFiles);
         }
         if (Runner.FIT.equals(runner)) {
-            return new FitFormatter();
+            return new FitFormatter(largeContentFiles);
         }
         throw new IllegalStateException("Runner " + runner.name() + " not supported");
     }
@@ -22,17 +22,31 @@ package smartrics.rest.fitnesse.fixture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 import smartrics.rest.client.RestClient;
 import smartrics.rest.client.RestData.Header;
 import smartrics.rest.client.RestRequest;
 import smartrics.rest.client.RestResponse;
 import smartrics.rest.fitnesse.fixture.support.*;
+import smartrics.rest.fitnesse.fixture.support.http.GeneratedRequestEntity;
+import smartrics.rest.fitnesse.fixture.support.http.RequestTiming;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+import smartrics.rest.fitnesse.fixture.support.tools.XmlSchemaRegistry;
 
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Vector;
 
 /**
@@ -97,6 +111,126 @@ import java.util.Vector;
  * configuration)</i></td>
  * </tr>
  * <tr>
+ * <td>http.client.connection.pool.shared</td>
+ * <td><i>If true the RestClients created with the same config share a pool of
+ * kept alive connections; if false (default) each RestClient has a single
+ * connection of its own. (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.max.connections.per.host</td>
+ * <td><i>max number of pooled connections per host (default 20). The clients
+ * of parallel and load rows open their own connections instead, so that the
+ * pool doesn't cap their concurrency. (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.max.connections</td>
+ * <td><i>max number of pooled connections (default 100). (RestClient
+ * configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.idle.connection.timeout</td>
+ * <td><i>ms after which idle pooled connections are closed (default 30s).
+ * (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.tcp.nodelay</td>
+ * <td><i>If true (default) disables Nagle's algorithm on the pooled
+ * connections. (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.ssl.keystore</td>
+ * <td><i>keystore with the client certificate for mutual TLS, with
+ * {@code http.client.ssl.keystore.password},
+ * {@code http.client.ssl.keystore.type} and
+ * {@code http.client.ssl.key.password}. The TLS context, and its session
+ * cache, is shared by the RestClients created with the same config, see
+ * {@link smartrics.rest.fitnesse.fixture.support.TlsContexts}. (RestClient
+ * configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.ssl.truststore</td>
+ * <td><i>keystore with the trusted certificates (default the JVM one), with
+ * {@code http.client.ssl.truststore.password} and
+ * {@code http.client.ssl.truststore.type}. (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.ssl.protocols</td>
+ * <td><i>comma separated TLS protocols to enable, e.g. TLSv1.2,TLSv1.3
+ * (default the JVM ones). (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.ssl.ciphers</td>
+ * <td><i>comma separated cipher suites to enable (default the JVM ones).
+ * (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.ssl.session.cache.size</td>
+ * <td><i>max number of TLS sessions cached for resumption (default 20480).
+ * (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.ssl.session.timeout</td>
+ * <td><i>seconds a cached TLS session can be resumed for (default a day). The
+ * handshakes and resumed sessions are available to the {@code tls} LET type;
+ * with the commons engine, only those of configs setting a
+ * <code>http.client.ssl.*</code> key are counted. (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.response.body.memory.limit</td>
+ * <td><i>bytes of a response body held in memory (default 8MB); larger
+ * bodies are spilled to a temporary file and never loaded: they're streamed
+ * by <code>copyJsonbodyToFile</code> and <code>validateXml</code>, and
+ * summarised in the body cell, while body expectations and the body LET types
+ * report them as not checkable. The file is deleted when the next response is
+ * received or the table ends.</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.response.body.size.limit</td>
+ * <td><i>bytes after which the reading of a response body is aborted and
+ * the body truncated, which is reported in the body cell (default no limit).
+ * The commons engine still receives the rest of the body, and discards it.</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.accept.encoding</td>
+ * <td><i>value of the Accept-Encoding header sent with requests not setting
+ * one, e.g. <code>gzip, deflate</code> (default not sent). (RestClient
+ * configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.response.decompress</td>
+ * <td><i>If true (default) gzip and deflate response bodies are decoded;
+ * <code>let</code> with <code>encoding</code> gives the coding, the encoded
+ * and decoded lengths and their ratio. (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.request.compression</td>
+ * <td><i><code>gzip</code>, <code>deflate</code> or <code>none</code>
+ * (default): the coding request bodies are compressed with. (RestClient
+ * configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.request.compression.threshold</td>
+ * <td><i>request bodies shorter than this number of bytes are not compressed
+ * (default 1024). (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.cache</td>
+ * <td><i>If true GET responses are cached, honouring Cache-Control, Expires,
+ * ETag and Last-Modified, by a cache shared by the tables with the same
+ * config; <code>let</code> with <code>cache</code> and <code>status</code>
+ * gives <code>hit</code>, <code>revalidated</code> or <code>miss</code>
+ * (default false). (RestClient configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.cache.max.entries</td>
+ * <td><i>max number of cached responses (default 1000). (RestClient
+ * configuration)</i></td>
+ * </tr>
+ * <tr>
+ * <td>http.client.cache.max.bytes</td>
+ * <td><i>max size of the cached responses (default 64MB); the least
+ * recently used are evicted first. (RestClient configuration)</i></td>
+ * </tr>
  * <tr>
  * <td>http.client.use.new.http.uri.factory</td>
  * <td><i>If set to true uses a more relaxed validation rule to validate URIs.
@@ -104,6 +238,31 @@ import java.util.Vector;
  * false.</i></td>
  * </tr>
  * <tr>
+ * <td>restfixture.http.engine</td>
+ * <td><i>the transport executing the requests: <code>commons</code> (default)
+ * for commons-httpclient, <code>jdk</code> for the JDK HttpURLConnection, or
+ * the class name of a
+ * <code>smartrics.rest.fitnesse.fixture.support.http.RestClientEngine</code>
+ * implementation.</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.http.archive.mode</td>
+ * <td><i><code>record</code> to record all the requests and responses to
+ * the archive file, <code>replay</code> to answer the requests from it
+ * without network, or <code>off</code> (default). Replayed requests must
+ * match the recorded ones: method, url, headers and body.</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.http.archive</td>
+ * <td><i>the path of the archive file recorded to or replayed from.</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.http.archive.ignore.headers</td>
+ * <td><i>comma separated request headers ignored when matching requests to
+ * the recorded ones, and not recorded (default
+ * <code>Authorization, Cookie, Date, User-Agent</code>).</i></td>
+ * </tr>
+ * <tr>
  * <td>restfixture.requests.follow.redirects</td>
  * <td><i>If set to true the underlying client is instructed to follow redirects
  * for the requests in the current fixture. This setting is not applied to POST
@@ -152,6 +311,39 @@ import java.util.Vector;
  * ).</i></td>
  * </tr>
  * <tr>
+ * <td>restfixture.display.verbosity</td>
+ * <td><i>how the actual values of cells left empty (with no expectations) are
+ * rendered: FULL renders them in full, SUMMARY only their first 100
+ * characters and their length, NONE doesn't render them. Defaults to
+ * FULL.</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.display.file.for.cells.larger.than</td>
+ * <td><i>the length above which the actual content of a cell is written to a
+ * file under <code><i>FitNesseRoot</i>/files/restfixture</code>, and the cell
+ * only shows the beginning of the content and a link to the file. Defaults
+ * to -1 (content always rendered in the cell).</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.display.file.max.files</td>
+ * <td><i>the number of files written for large cells that are kept, the
+ * oldest are deleted as new ones are written (default 500, -1 to keep all).
+ * Links to deleted files in older test results are broken.</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.display.timing</td>
+ * <td><i>boolean value. if true, the timing of each request (see
+ * {@link smartrics.rest.fitnesse.fixture.support.http.RequestTiming}) is
+ * shown next to the url. The timing is also available to the {@code timing}
+ * LET type and to javascript as {@code response.timing}. Defaults to
+ * false.</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.fitnesse.root</td>
+ * <td><i>the FitNesse root directory, relative to the working directory of
+ * the fixture. Defaults to FitNesseRoot.</i></td>
+ * </tr>
+ * <tr>
  * <td>restfixture.null.value.representation</td>
  * <td><i>This string is used in replacement of the default string substituted
  * when a null value is set for a symbol. Because now the RestFixture labels
@@ -161,6 +353,35 @@ import java.util.Vector;
  * set for this config key. This value can also be the empty string to replace
  * null with empty.</i></td>
  * </tr>
+ * <tr>
+ * <td>restfixture.body.evaluation.threads</td>
+ * <td><i>the max number of threads used to evaluate the expectations of a XML
+ * or JSON body cell. If greater than 1 the response body is parsed once and
+ * each line in the cell is evaluated concurrently; errors are still reported
+ * in the order of the lines in the cell. Defaults to 1 (sequential
+ * evaluation).</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.load.max.concurrency</td>
+ * <td><i>the max number of requests in flight during a <code>load</code>;
+ * requests due when the limit is reached wait for a request to complete.
+ * Defaults to 100.</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.variables.scope</td>
+ * <td><i>the scope of the labels set by this fixture, TABLE (visible only to
+ * the table) or SUITE (visible to all). Labels are looked up from the
+ * narrowest scope. Defaults to SUITE.</i></td>
+ * </tr>
+ * <tr>
+ * <td>restfixture.variables.mirror.fit.symbols</td>
+ * <td><i>boolean value. if true SUITE scoped labels are set as FitNesse
+ * symbols and FitNesse symbols are visible as labels, as in previous
+ * versions; labels of narrower scopes are never mirrored. The FitNesse
+ * symbols map is global and not thread safe: set to false to run pages
+ * setting SUITE labels concurrently in the same JVM. Defaults to
+ * true.</i></td>
+ * </tr>
  *
  * </table>
  *
@@ -211,6 +432,12 @@ public class RestFixture {
 
 	protected String requestBody;
 
+	protected String requestBodyFile;
+
+	protected String generatedBodyText;
+
+	protected long generatedBodyLength = -1;
+
 	protected boolean resourceUrisAreEscaped = false;
 
 	protected Map<String, String> requestHeaders;
@@ -221,6 +448,10 @@ public class RestFixture {
 
 	private boolean displayActualOnRight;
 
+	private boolean displayTiming;
+
+	private DisplayVerbosity displayVerbosity = DisplayVerbosity.FULL;
+
 	private boolean debugMethodCall = false;
 
 	/**
@@ -245,6 +476,10 @@ public class RestFixture {
 
 	private boolean followRedirects = true;
 
+	private int bodyEvaluationThreads = 1;
+
+	private int loadMaxConcurrency = 100;
+
 	/**
 	 * Constructor for Fit runner.
 	 */
@@ -361,6 +596,7 @@ public class RestFixture {
 		for (List<String> r : rows) {
 			processSlimRow(res, r);
 		}
+		discardLastResponse();
 		return res;
 	}
 
@@ -486,10 +722,81 @@ public class RestFixture {
 		} else {
 			String text = getFormatter().fromRaw(cell.text());
 			requestBody = GLOBALS.substitute(text);
+			requestBodyFile = null;
+			generatedBodyText = null;
 			renderReplacement(cell, requestBody);
 		}
 	}
 
+	/**
+	 * <code>| setBodyFromFile | path of the file with the body |</code>
+	 * <p/>
+	 * the body of the following PUTs and POSTs is streamed from the file,
+	 * substituting labels as it is read, so that the body is never held in
+	 * memory as a whole. The file is read in the charset of the request
+	 * <code>Content-Type</code> header, or in the default charset. As its
+	 * length isn't known in advance, the body is sent with chunked transfer
+	 * encoding.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void setBodyFromFile() {
+		CellWrapper cell = row.getCell(1);
+		if (cell == null) {
+			getFormatter().exception(row.getCell(0), "You must pass a file name to set the body from");
+		} else {
+			requestBodyFile = GLOBALS.substitute(cell.text());
+			requestBody = null;
+			generatedBodyText = null;
+			renderReplacement(cell, requestBodyFile);
+		}
+	}
+
+	/**
+	 * <code>| setGeneratedBody | ?length | ?text |</code>
+	 * <p/>
+	 * the body of the following PUTs and POSTs is generated as it is sent,
+	 * and never held in memory as a whole: the text, with labels substituted,
+	 * repeated up to length bytes (e.g. <code>2GB</code>), or sent once if the
+	 * length is left empty, e.g. to upload the value of a label. The text
+	 * defaults to <code>x</code>. The body is sent with chunked transfer
+	 * encoding.
+	 * <p/>
+	 * the size, duration and rate of the upload of generated bodies, body
+	 * files and files are shown next to the url of the request.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void setGeneratedBody() {
+		CellWrapper lengthCell = row.getCell(1);
+		if (lengthCell == null) {
+			getFormatter().exception(row.getCell(0), "You must pass the length of the body to generate");
+			return;
+		}
+		String length = GLOBALS.substitute(lengthCell.text()).trim();
+		CellWrapper textCell = row.getCell(2);
+		String text = textCell == null ? "x" : GLOBALS.substitute(getFormatter().fromRaw(textCell.text()));
+		try {
+			generatedBodyLength = length.isEmpty() ? -1 : GeneratedRequestEntity.parseLength(length);
+		} catch (IllegalArgumentException e) {
+			getFormatter().exception(lengthCell, e.getMessage());
+			return;
+		}
+		if (generatedBodyLength > 0 && text.isEmpty()) {
+			getFormatter().exception(textCell, "You must pass a text to generate the body from");
+			return;
+		}
+		generatedBodyText = text;
+		requestBody = null;
+		requestBodyFile = null;
+		renderReplacement(lengthCell, length);
+	}
+
+	/**
+	 * @return the name of the file the body is streamed from
+	 */
+	public String getRequestBodyFile() {
+		return requestBodyFile;
+	}
+
 	/**
 	 * <code>| setHeader | http headers go here as nvp |</code>
 	 * <p/>
@@ -519,7 +826,7 @@ public class RestFixture {
 	}
 
 	/**
-	 * <code> | PUT | URL | ?ret | ?headers | ?body |</code>
+	 * <code> | PUT | URL | ?ret | ?headers | ?body | ?budget |</code>
 	 * <p/>
 	 * executes a PUT on the URL and checks the return (a string representation
 	 * the operation return code), the HTTP response headers and the HTTP
@@ -539,12 +846,16 @@ public class RestFixture {
 	}
 
 	/**
-	 * <code> | GET | uri | ?ret | ?headers | ?body |</code>
+	 * <code> | GET | uri | ?ret | ?headers | ?body | ?budget |</code>
 	 * <p/>
 	 * executes a GET on the uri and checks the return (a string repr the
 	 * operation return code), the http response headers and the http response
 	 * body
 	 *
+	 * the optional budget cell holds limits on the time and size of the
+	 * response, e.g. <code>time&lt;150ms; size&lt;64KB; headers&lt;40</code>,
+	 * see {@link ResponseBudgetTypeAdapter}; all the http verbs rows accept it.
+	 *
 	 * uri is resolved by replacing vars previously defined with
 	 * <code>let()</code>
 	 *
@@ -579,7 +890,7 @@ public class RestFixture {
 	}
 
 	/**
-	 * <code> | OPTIONS | uri | ?ret | ?headers | ?body |</code>
+	 * <code> | OPTIONS | uri | ?ret | ?headers | ?body | ?budget |</code>
 	 * <p/>
 	 * executes a OPTIONS on the uri and checks the return (a string repr the
 	 * operation return code), the http response headers, the http response body
@@ -598,7 +909,7 @@ public class RestFixture {
 	}
 
 	/**
-	 * <code> | DELETE | uri | ?ret | ?headers | ?body |</code>
+	 * <code> | DELETE | uri | ?ret | ?headers | ?body | ?budget |</code>
 	 * <p/>
 	 * executes a DELETE on the uri and checks the return (a string repr the
 	 * operation return code), the http response headers and the http response
@@ -618,7 +929,7 @@ public class RestFixture {
 	}
 
 	/**
-	 * <code> | TRACE | uri | ?ret | ?headers | ?body |</code>
+	 * <code> | TRACE | uri | ?ret | ?headers | ?body | ?budget |</code>
 	 */
 	public void TRACE() {
 		debugMethodCallStart();
@@ -627,7 +938,7 @@ public class RestFixture {
 	}
 
 	/**
-	 * <code> | POST | uri | ?ret | ?headers | ?body |</code>
+	 * <code> | POST | uri | ?ret | ?headers | ?body | ?budget |</code>
 	 * <p/>
 	 * executes a POST on the uri and checks the return (a string repr the
 	 * operation return code), the http response headers and the http response
@@ -636,7 +947,8 @@ public class RestFixture {
 	 * uri is resolved by replacing vars previously defined with
 	 * <code>let()</code>
 	 *
-	 * post requires a body that can be set via <code>setBody()</code>.
+	 * post requires a body that can be set via <code>setBody()</code> or
+	 * <code>setBodyFromFile()</code>.
 	 *
 	 * the http request headers can be set via <code>setHeaders()</code>. If not
 	 * set, the list of default headers will be set. See
@@ -648,6 +960,383 @@ public class RestFixture {
 		debugMethodCallEnd();
 	}
 
+	/**
+	 * <code>| parallel | n | method | uri | ?ret | ?headers | ?body |</code>
+	 * <p/>
+	 * executes <code>n</code> identical requests concurrently, each on its own
+	 * connection, to test the behaviour of a resource under concurrent access
+	 * (optimistic locking, rate limiting...). <code>method</code> is one of
+	 * the HTTP verbs of this fixture; requests are built as per that verb,
+	 * with the headers and the body currently set.
+	 * <p/>
+	 * The return code, headers and body of every response are checked. The
+	 * <code>n</code> cell reports the number of passed and failed requests and
+	 * the min, median and max latencies; the expectation cells are rendered
+	 * against the first failed response, or the last response if all passed,
+	 * which also becomes the last response for the following rows.
+	 * <p/>
+	 * Example: <br/>
+	 * <code>| parallel | 50 | PUT | /orders/%id% | 409 | | |</code>
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void parallel() {
+		debugMethodCallStart();
+		try {
+			if (row.size() != 7) {
+				getFormatter().exception(row.getCell(row.size() - 1),
+						"Not all cells found: | parallel | n | method | uri | ?ret | ?headers | ?body |");
+				return;
+			}
+			CellWrapper countCell = row.getCell(1);
+			int count;
+			try {
+				count = Integer.parseInt(GLOBALS.substitute(countCell.text().trim()));
+			} catch (NumberFormatException e) {
+				count = 0;
+			}
+			if (count < 1) {
+				getFormatter().exception(countCell, "The number of requests must be a positive integer");
+				return;
+			}
+			String method = methodName(row.getCell(2));
+			if (method == null) {
+				return;
+			}
+			String url = deHtmlify(stripTag(row.getCell(3).text()));
+			String[] uri = GLOBALS.substitute(url).split("\\?");
+			String[] thisRequestUrlParts = buildThisRequestUrl(uri[0]);
+			String query = uri.length == 2 ? uri[1] : null;
+			Map<String, String> rHeaders = substitute(getHeaders());
+			String rBody = GLOBALS.substitute(emptifyBody(requestBody));
+			List<RestRequest> requests = new ArrayList<RestRequest>(count);
+			for (int i = 0; i < count; i++) {
+				requests.add(buildRequest(method, thisRequestUrlParts[1], query, rHeaders, rBody));
+			}
+			List<ParallelRequests.Outcome> outcomes = new ParallelRequests(new ParallelRequests.ClientFactory() {
+				@Override
+				public RestClient create() {
+					return partsFactory.buildRestClient(getConfig(), true);
+				}
+			}).execute(thisRequestUrlParts[0], requests);
+			completeParallelExecution(thisRequestUrlParts[0], requests, outcomes);
+		} catch (RuntimeException e) {
+			getFormatter().exception(row.getCell(0),
+					"Execution of parallel caused exception '" + e.getMessage() + "'");
+			LOG.error("Exception occurred when processing parallel", e);
+		} finally {
+			debugMethodCallEnd();
+		}
+	}
+
+	/**
+	 * <code>| load | method | uri | rate | duration | ?budget |</code>
+	 * <p/>
+	 * sends requests at a constant rate for the given duration, whatever the
+	 * response times (open model), and reports the latency percentiles, the
+	 * throughput and the errors in the budget cell. Requests are built as per
+	 * <code>method</code>, one of the HTTP verbs of this fixture, with the
+	 * headers and body currently set.
+	 * <ul>
+	 * <li/><code>rate</code> is the number of requests per second, as in
+	 * <code>rate=200/s</code>, or per minute, as in <code>rate=600/m</code>
+	 * <li/><code>duration</code> as in <code>duration=60s</code>,
+	 * <code>500ms</code> or <code>2m</code>
+	 * <li/><code>budget</code> the limits deciding if the row passes, see
+	 * {@link PerformanceBudget}: for example <code>p99&lt;250ms, errors&lt;1%</code>.
+	 * If empty, the results are just displayed.
+	 * </ul>
+	 * Latencies are measured from the time each request was scheduled, so
+	 * that requests delayed by a slow server are accounted for (see
+	 * {@link LoadGenerator}). Requests failing or answered with a status code
+	 * of 400 or above are errors. At most
+	 * <code>restfixture.load.max.concurrency</code> requests are in flight at
+	 * any time.
+	 * <p/>
+	 * Example: <br/>
+	 * <code>| load | GET | /search?q=x | rate=200/s | duration=60s | p99&lt;250ms |</code>
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void load() {
+		debugMethodCallStart();
+		try {
+			if (row.size() != 6) {
+				getFormatter().exception(row.getCell(row.size() - 1),
+						"Not all cells found: | load | method | uri | rate | duration | ?budget |");
+				return;
+			}
+			String method = methodName(row.getCell(1));
+			if (method == null) {
+				return;
+			}
+			double rate;
+			long duration;
+			PerformanceBudget budget;
+			try {
+				rate = LoadGenerator.parseRate(GLOBALS.substitute(row.getCell(3).text()));
+			} catch (IllegalArgumentException e) {
+				getFormatter().exception(row.getCell(3), e.getMessage());
+				return;
+			}
+			try {
+				duration = LoadGenerator.parseDuration(GLOBALS.substitute(row.getCell(4).text()));
+			} catch (IllegalArgumentException e) {
+				getFormatter().exception(row.getCell(4), e.getMessage());
+				return;
+			}
+			CellWrapper budgetCell = row.getCell(5);
+			try {
+				budget = PerformanceBudget.parse(GLOBALS.substitute(Tools.fromHtml(budgetCell.text())));
+			} catch (IllegalArgumentException e) {
+				getFormatter().exception(budgetCell, e.getMessage());
+				return;
+			}
+			String url = deHtmlify(stripTag(row.getCell(2).text()));
+			String[] uri = GLOBALS.substitute(url).split("\\?");
+			final String[] thisRequestUrlParts = buildThisRequestUrl(uri[0]);
+			final String query = uri.length == 2 ? uri[1] : null;
+			final String finalMethod = method;
+			final Map<String, String> rHeaders = substitute(getHeaders());
+			final String rBody = GLOBALS.substitute(emptifyBody(requestBody));
+			LoadGenerator.Result result = new LoadGenerator(new ParallelRequests.ClientFactory() {
+				@Override
+				public RestClient create() {
+					return partsFactory.buildRestClient(getConfig(), true);
+				}
+			}, loadMaxConcurrency).run(thisRequestUrlParts[0], new LoadGenerator.RequestFactory() {
+				@Override
+				public RestRequest create() {
+					return buildRequest(finalMethod, thisRequestUrlParts[1], query, rHeaders, rBody);
+				}
+			}, rate, duration);
+			String link = thisRequestUrlParts[1] + (query == null ? "" : "?" + query);
+			getFormatter().asLink(row.getCell(2), thisRequestUrlParts[0] + link, link);
+			StringTypeAdapter summary = new StringTypeAdapter();
+			if (budget.isEmpty()) {
+				budgetCell.body(getFormatter().gray(result.toString()));
+				return;
+			}
+			List<String> exceeded = budget.check(result.getHistogram(), result.getErrors());
+			if (exceeded.isEmpty()) {
+				summary.set(result.toString());
+				getFormatter().right(budgetCell, summary);
+			} else {
+				summary.set("exceeded " + exceeded + "; " + result);
+				getFormatter().wrong(budgetCell, summary);
+			}
+		} catch (RuntimeException e) {
+			getFormatter().exception(row.getCell(0),
+					"Execution of load caused exception '" + e.getMessage() + "'");
+			LOG.error("Exception occurred when processing load", e);
+		} finally {
+			debugMethodCallEnd();
+		}
+	}
+
+	/**
+	 * <code>| waitFor | method | uri | condition | ?options |</code>
+	 * <p/>
+	 * polls a resource until a condition holds on the response, e.g. for
+	 * APIs completing asynchronously. Requests are built as per
+	 * <code>method</code>, one of the HTTP verbs of this fixture, with the
+	 * headers and body currently set; they are repeated with exponential
+	 * backoff and jitter (see {@link Poller}) until the condition holds or
+	 * the timeout expires.
+	 * <ul>
+	 * <li/><code>condition</code> a javascript expression evaluated on each
+	 * response, as in <code>evalJs</code>; the json body is available as
+	 * <code>jsonbody</code> and the response as <code>response</code>.
+	 * Responses on which it can't be evaluated, e.g. not json yet, and
+	 * requests that fail, e.g. as the server isn't listening yet, don't
+	 * satisfy it; the last error, if any, is reported.
+	 * <li/><code>options</code> <code>timeout</code>, 30s by default;
+	 * <code>interval</code>, the first delay between requests, 100ms by
+	 * default; <code>max</code>, the max delay, 5s by default. For example
+	 * <code>timeout=2m, interval=1s</code>.
+	 * </ul>
+	 * The condition cell reports the number of attempts and the time spent;
+	 * the last response becomes the last response for the following rows.
+	 * <p/>
+	 * Example: <br/>
+	 * <code>| waitFor | GET | /jobs/%id% | jsonbody.state=='DONE' | timeout=30s |</code>
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void waitFor() {
+		debugMethodCallStart();
+		try {
+			if (row.size() != 4 && row.size() != 5) {
+				getFormatter().exception(row.getCell(row.size() - 1),
+						"Not all cells found: | waitFor | method | uri | condition | ?options |");
+				return;
+			}
+			final String method = methodName(row.getCell(1));
+			if (method == null) {
+				return;
+			}
+			CellWrapper conditionCell = row.getCell(3);
+			final String condition = GLOBALS.substitute(Tools.fromHtml(conditionCell.text())).trim();
+			if (condition.isEmpty()) {
+				getFormatter().exception(conditionCell, "You must pass a condition to wait for");
+				return;
+			}
+			long timeout = Poller.DEFAULT_TIMEOUT;
+			long interval = Poller.DEFAULT_INITIAL_DELAY;
+			long max = Poller.DEFAULT_MAX_DELAY;
+			CellWrapper optionsCell = row.getCell(4);
+			try {
+				String options = optionsCell == null ? "" : GLOBALS.substitute(optionsCell.text());
+				for (String option : options.split("[,;]")) {
+					if (option.trim().isEmpty()) {
+						continue;
+					}
+					String[] kv = option.split("=", 2);
+					String key = kv[0].trim();
+					if (kv.length != 2) {
+						throw new IllegalArgumentException("Invalid option '" + option.trim()
+								+ "', expected e.g. timeout=30s");
+					}
+					long value = LoadGenerator.parseDuration(kv[1]);
+					if ("timeout".equals(key)) {
+						timeout = value;
+					} else if ("interval".equals(key)) {
+						interval = value;
+					} else if ("max".equals(key)) {
+						max = value;
+					} else {
+						throw new IllegalArgumentException("Unknown option '" + key
+								+ "', use timeout, interval or max");
+					}
+				}
+				max = Math.max(max, interval);
+			} catch (IllegalArgumentException e) {
+				getFormatter().exception(optionsCell, e.getMessage());
+				return;
+			}
+			String url = deHtmlify(stripTag(row.getCell(2).text()));
+			String[] uri = GLOBALS.substitute(url).split("\\?");
+			final String[] thisRequestUrlParts = buildThisRequestUrl(uri[0]);
+			final String query = uri.length == 2 ? uri[1] : null;
+			final Map<String, String> rHeaders = substitute(getHeaders());
+			final String rBody = GLOBALS.substitute(emptifyBody(requestBody));
+			final JavascriptWrapper wrapper = new JavascriptWrapper(GLOBALS);
+			final String[] lastError = new String[1];
+			restClient.setBaseUrl(thisRequestUrlParts[0]);
+			Poller.Result result = new Poller(interval, max, new Random()).poll(new Poller.Attempt() {
+				@Override
+				public boolean run() {
+					setLastRequest(buildRequest(method, thisRequestUrlParts[1], query, rHeaders, rBody));
+					RestResponse response;
+					try {
+						response = restClient.execute(getLastRequest());
+					} catch (RuntimeException e) {
+						lastError[0] = "request failed: " + e.getMessage();
+						LOG.debug("waitFor attempt failed", e);
+						return false;
+					}
+					replaceLastResponse(response);
+					try {
+						Object value = wrapper.evaluateExpression(response, condition);
+						lastError[0] = null;
+						return value != null && Boolean.parseBoolean(value.toString());
+					} catch (JavascriptException e) {
+						lastError[0] = e.getMessage();
+						return false;
+					}
+				}
+			}, timeout);
+			String link = thisRequestUrlParts[1] + (query == null ? "" : "?" + query);
+			getFormatter().asLink(row.getCell(2), thisRequestUrlParts[0] + link, link);
+			StringTypeAdapter summary = new StringTypeAdapter();
+			summary.set(result + (lastError[0] == null ? "" : "; " + lastError[0]));
+			if (result.isSatisfied()) {
+				getFormatter().right(conditionCell, summary);
+			} else {
+				getFormatter().wrong(conditionCell, summary);
+			}
+		} catch (RuntimeException e) {
+			getFormatter().exception(row.getCell(0),
+					"Execution of waitFor caused exception '" + e.getMessage() + "'");
+			LOG.error("Exception occurred when processing waitFor", e);
+		} finally {
+			debugMethodCallEnd();
+		}
+	}
+
+	// the name of the RestRequest.Method for an HTTP verb, as in GET -> Get;
+	// null if unknown, in which case the cell is marked
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private String methodName(CellWrapper verbCell) {
+		String verb = verbCell.text().trim();
+		String method = verb.isEmpty() ? verb : verb.substring(0, 1).toUpperCase() + verb.substring(1).toLowerCase();
+		try {
+			RestRequest.Method.valueOf(method);
+			return method;
+		} catch (IllegalArgumentException e) {
+			getFormatter().exception(verbCell, "Unknown method '" + verb + "'");
+			return null;
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void completeParallelExecution(String baseUrl, List<RestRequest> requests,
+			List<ParallelRequests.Outcome> outcomes) {
+		CellWrapper statusCell = row.getCell(4);
+		CellWrapper headersCell = row.getCell(5);
+		CellWrapper bodyCell = row.getCell(6);
+		bodyCell.body(GLOBALS.substitute(bodyCell.body()));
+		discardLastResponse();
+		long[] latencies = new long[outcomes.size()];
+		int passed = 0;
+		int firstFailed = -1;
+		for (int i = 0; i < outcomes.size(); i++) {
+			ParallelRequests.Outcome outcome = outcomes.get(i);
+			latencies[i] = outcome.getLatency();
+			RestResponse response = outcome.getResponse();
+			boolean pass = false;
+			if (response != null) {
+				setLastResponse(response);
+				pass = matches(statusCell, response.getStatusCode().toString(), new StatusCodeTypeAdapter())
+						&& matches(headersCell, response.getHeaders(), new HeadersTypeAdapter())
+						&& matchesBody(bodyCell, response);
+			}
+			if (pass) {
+				passed++;
+			} else if (firstFailed < 0) {
+				firstFailed = i;
+			}
+		}
+		int shown = firstFailed < 0 ? outcomes.size() - 1 : firstFailed;
+		StringTypeAdapter summary = new StringTypeAdapter();
+		summary.set(passed + " passed, " + (outcomes.size() - passed) + " failed; latency "
+				+ new Latencies(latencies));
+		if (passed == outcomes.size()) {
+			getFormatter().right(row.getCell(1), summary);
+		} else {
+			getFormatter().wrong(row.getCell(1), summary);
+		}
+		for (int i = 0; i < outcomes.size(); i++) {
+			if (i != shown) {
+				discardBody(outcomes.get(i).getResponse());
+			}
+		}
+		setLastRequest(requests.get(shown));
+		ParallelRequests.Outcome outcome = outcomes.get(shown);
+		if (outcome.getError() != null) {
+			setLastResponse(null);
+			getFormatter().exception(row.getCell(3), outcome.getError().getMessage());
+			return;
+		}
+		setLastResponse(outcome.getResponse());
+		String uri = getLastResponse().getResource();
+		String query = getLastRequest().getQuery();
+		if (query != null && !"".equals(query.trim())) {
+			uri = uri + "?" + query;
+		}
+		getFormatter().asLink(row.getCell(3), baseUrl + uri, uri);
+		process(statusCell, getLastResponse().getStatusCode().toString(), new StatusCodeTypeAdapter());
+		process(headersCell, getLastResponse().getHeaders(), new HeadersTypeAdapter());
+		processBody(bodyCell, createBodyTypeAdapter());
+	}
+
 	/**
 	 * <code> | let | label | type | loc | expr |</code>
 	 * <p/>
@@ -685,6 +1374,11 @@ public class RestFixture {
 	 * In order to be resolved a label must be between <code>%</code>, e.g.
 	 * <code>%id%</code>.
 	 * <p/>
+	 * Labels set with <code>js</code> expressions evaluating to JavaScript
+	 * objects or arrays keep the object itself: it is rendered as JSON only
+	 * when the label is resolved, and other <code>js</code> expressions can
+	 * access it directly with <code>symbols.getValue('label')</code>.
+	 * <p/>
 	 * The test row must have an empy cell at the end that will display the
 	 * value extracted and assigned to the label.
 	 * <p/>
@@ -698,6 +1392,11 @@ public class RestFixture {
 	 * <code>| POST | /services | 201 | | |</code><br/>
 	 * <code>| let  | id | header | /services/([.]+) | |</code><br/>
 	 * <code>| GET  | /services/%id% | 200 | | |</code>
+	 * <p/>
+	 * or, to check the compression of the body
+	 * <p/>
+	 * <code>| GET | /services | 200 | | |</code><br/>
+	 * <code>| let | ratio | encoding | ratio | |</code>
 	 */
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void let() {
@@ -717,19 +1416,27 @@ public class RestFixture {
 			String valueCellText = valueCell.body();
 			String valueCellTextReplaced = GLOBALS.substitute(valueCellText);
 			valueCell.body(valueCellTextReplaced);
-			String sValue = null;
-			LetHandler letHandler = LetHandlerFactory.getHandlerFor(loc);
+			LetHandler letHandler = LetHandlerFactory.getHandlerFor(loc, GLOBALS);
 			if (letHandler != null) {
 				StringTypeAdapter adapter = new StringTypeAdapter();
+				Object value = null;
 				try {
-					sValue = letHandler.handle(getLastResponse(), namespaceContext, expr);
+					if (letHandler instanceof TypedLetHandler) {
+						value = ((TypedLetHandler) letHandler).handleValue(getLastResponse(), namespaceContext, expr);
+					} else {
+						value = letHandler.handle(getLastResponse(), namespaceContext, expr);
+					}
 					exprCell.body(getFormatter().gray(exprCell.body()));
 				} catch (RuntimeException e) {
 					getFormatter().exception(exprCell, e.getMessage());
 					LOG.error("Exception occurred when processing cell=" + exprCell, e);
 				}
-				GLOBALS.put(label, sValue);
-				adapter.set(sValue);
+				if (value != null && !(value instanceof String)) {
+					value = new TypedValue(value);
+				}
+				GLOBALS.putValue(label, value);
+				// a typed value is rendered only if the cell shows or checks it
+				adapter.set(value);
 				getFormatter().check(valueCell, adapter);
 			} else {
 				getFormatter().exception(
@@ -777,7 +1484,7 @@ public class RestFixture {
 					"Missing string to evaluate)");
 			return;
 		}
-		JavascriptWrapper wrapper = new JavascriptWrapper();
+		JavascriptWrapper wrapper = new JavascriptWrapper(GLOBALS);
 		Object result = null;
 		try {
 			result = wrapper.evaluateExpression(lastResponse, jsCell.body());
@@ -794,6 +1501,81 @@ public class RestFixture {
 		getFormatter().right(row.getCell(1), adapter);
 	}
 
+	/**
+	 * <code>| validateXml | schema | result |</code>
+	 * <p/>
+	 * Validates the body of the last response against a XML schema. The
+	 * schema cell contains the name of the XSD file, labels are resolved.
+	 * Filenames without any path will use current directory, i.e. FitNesseRoot
+	 * directory.
+	 * <p/>
+	 * Compiled schemas are shared by all fixtures and recompiled only when the
+	 * XSD file changes (see {@link XmlSchemaRegistry}); the response body is
+	 * streamed through the validator without building a DOM.
+	 * <p/>
+	 * Example: <br/>
+	 * <code>| GET | /services | 200 | | |</code><br/>
+	 * <code>| validateXml | ./files/services.xsd | |</code>
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void validateXml() {
+		debugMethodCallStart();
+		if (row.size() != 3) {
+			getFormatter().exception(row.getCell(row.size() - 1), "Not all cells found: | validateXml | schema | result |");
+			debugMethodCallEnd();
+			return;
+		}
+		CellWrapper schemaCell = row.getCell(1);
+		CellWrapper resultCell = row.getCell(2);
+		try {
+			if (getLastResponse() == null || !hasBody(getLastResponse())) {
+				getFormatter().exception(resultCell, "No response body to validate, is a preceding HTTP call missing?");
+				return;
+			}
+			String schemaFile = GLOBALS.substitute(schemaCell.text().trim());
+			Schema schema;
+			try {
+				schema = XmlSchemaRegistry.getSchema(Paths.get(schemaFile));
+			} catch (IOException e) {
+				getFormatter().exception(schemaCell, "Cannot read schema file '" + schemaFile + "': " + e.getMessage());
+				return;
+			} catch (SAXException e) {
+				getFormatter().exception(schemaCell, "Invalid schema '" + schemaFile + "': " + e.getMessage());
+				return;
+			}
+			List<String> errors;
+			if (getLastResponse() instanceof StreamedRestResponse) {
+				// validated as it's read, so that a spilled body isn't loaded
+				InputStream body = ((StreamedRestResponse) getLastResponse()).openBodyStream();
+				try {
+					errors = XmlSchemaRegistry.validate(schema, new StreamSource(body));
+				} finally {
+					body.close();
+				}
+			} else {
+				errors = XmlSchemaRegistry.validate(schema, new StreamSource(new StringReader(getLastResponse().getBody())));
+			}
+			StringTypeAdapter adapter = new StringTypeAdapter();
+			if (errors.isEmpty()) {
+				adapter.set("[No deviations found.]");
+				getFormatter().right(resultCell, adapter);
+			} else {
+				StringBuilder sb = new StringBuilder();
+				for (String error : errors) {
+					sb.append(error).append(LINE_SEPARATOR);
+				}
+				adapter.set(sb.toString().trim());
+				getFormatter().wrong(resultCell, adapter);
+			}
+		} catch (IOException e) {
+			getFormatter().exception(resultCell, e.getMessage());
+		} catch (SAXException e) {
+			getFormatter().exception(resultCell, "Response body is not well formed XML: " + e.getMessage());
+		} finally {
+			debugMethodCallEnd();
+		}
+	}
+
 	/**
 	 * Process the row in input. Abstracts the test runner via the wrapper
 	 * interfaces.
@@ -908,31 +1690,45 @@ public class RestFixture {
 
 	protected void doMethod(String method, String resUrl,
 			Map<String, String> headers, String rBody) {
-		setLastRequest(partsFactory.buildRestRequest());
-		getLastRequest().setMethod(RestRequest.Method.valueOf(method));
-		getLastRequest().addHeaders(headers);
-		getLastRequest().setFollowRedirect(followRedirects);
-		getLastRequest().setResourceUriEscaped(resourceUrisAreEscaped);
+		String[] uri = resUrl.split("\\?");
+		String[] thisRequestUrlParts = buildThisRequestUrl(uri[0]);
+		setLastRequest(buildRequest(method, thisRequestUrlParts[1],
+				uri.length == 2 ? uri[1] : null, headers, rBody));
+		restClient.setBaseUrl(thisRequestUrlParts[0]);
+		RestResponse response = restClient.execute(getLastRequest());
+		replaceLastResponse(response);
+	}
+
+	private RestRequest buildRequest(String method, String resource,
+			String query, Map<String, String> headers, String rBody) {
+		boolean hasBody = "Post".equals(method) || "Put".equals(method);
+		RestRequest request;
+		if (hasBody && requestBodyFile != null) {
+			request = partsFactory.buildRestRequest(Paths.get(requestBodyFile), GLOBALS);
+		} else if (hasBody && generatedBodyText != null) {
+			request = partsFactory.buildRestRequest(generatedBodyText, generatedBodyLength);
+		} else {
+			request = partsFactory.buildRestRequest();
+		}
+		request.setMethod(RestRequest.Method.valueOf(method));
+		request.addHeaders(headers);
+		request.setFollowRedirect(followRedirects);
+		request.setResourceUriEscaped(resourceUrisAreEscaped);
 		if (fileName != null) {
-			getLastRequest().setFileName(fileName);
+			request.setFileName(fileName);
 		}
 		if (multipartFileName != null) {
-			getLastRequest().setMultipartFileName(multipartFileName);
+			request.setMultipartFileName(multipartFileName);
 		}
-		getLastRequest().setMultipartFileParameterName(
-				multipartFileParameterName);
-		String[] uri = resUrl.split("\\?");
-		String[] thisRequestUrlParts = buildThisRequestUrl(uri[0]);
-		getLastRequest().setResource(thisRequestUrlParts[1]);
-		if (uri.length == 2) {
-			getLastRequest().setQuery(uri[1]);
+		request.setMultipartFileParameterName(multipartFileParameterName);
+		request.setResource(resource);
+		if (query != null) {
+			request.setQuery(query);
 		}
-		if ("Post".equals(method) || "Put".equals(method)) {
-			getLastRequest().setBody(rBody);
+		if (hasBody && requestBodyFile == null && generatedBodyText == null) {
+			request.setBody(rBody);
 		}
-		restClient.setBaseUrl(thisRequestUrlParts[0]);
-		RestResponse response = restClient.execute(getLastRequest());
-		setLastResponse(response);
+		return request;
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
@@ -946,6 +1742,14 @@ public class RestFixture {
 		String u = clientBaseUri + uri;
 		CellWrapper uriCell = row.getCell(1);
 		getFormatter().asLink(uriCell, u, uri);
+		RequestTiming timing = getLastResponse() instanceof StreamedRestResponse
+				? ((StreamedRestResponse) getLastResponse()).getTiming() : null;
+		if (timing != null && timing.describeUpload() != null) {
+			uriCell.addToBody(getFormatter().gray(" [" + timing.describeUpload() + "]"));
+		}
+		if (displayTiming && timing != null) {
+			uriCell.addToBody(getFormatter().gray(" [" + timing + "]"));
+		}
 		CellWrapper cellStatusCode = row.getCell(2);
 		if (cellStatusCode == null) {
 			throw new IllegalStateException(
@@ -962,7 +1766,16 @@ public class RestFixture {
 		}
 		bodyCell.body(GLOBALS.substitute(bodyCell.body()));
 		BodyTypeAdapter bodyTypeAdapter = createBodyTypeAdapter();
-		process(bodyCell, getLastResponse().getBody(), bodyTypeAdapter);
+		processBody(bodyCell, bodyTypeAdapter);
+		if (getLastResponse() instanceof StreamedRestResponse
+				&& ((StreamedRestResponse) getLastResponse()).isBodyTruncated()) {
+			long length = ((StreamedRestResponse) getLastResponse()).getContent().getLength();
+			bodyCell.addToBody(getFormatter().gray("[body truncated at " + length + " bytes]"));
+		}
+		CellWrapper budgetCell = row.getCell(5);
+		if (budgetCell != null) {
+			process(budgetCell, getLastResponse(), new ResponseBudgetTypeAdapter());
+		}
 	}
 
 	// Split out of completeHttpMethodExecution so RestScriptFixture can call
@@ -979,9 +1792,59 @@ public class RestFixture {
 		BodyTypeAdapter bodyTypeAdapter = partsFactory.buildBodyTypeAdapter(ct,
 				charset);
 		bodyTypeAdapter.setContext(namespaceContext);
+		bodyTypeAdapter.setVariables(GLOBALS);
+		if (bodyTypeAdapter instanceof XPathBodyTypeAdapter) {
+			((XPathBodyTypeAdapter) bodyTypeAdapter)
+					.setEvaluationThreads(bodyEvaluationThreads);
+		}
 		return bodyTypeAdapter;
 	}
 
+	private static boolean hasBody(RestResponse response) {
+		if (response instanceof StreamedRestResponse && ((StreamedRestResponse) response).getContent() != null) {
+			return true;
+		}
+		return response.getBody() != null;
+	}
+
+	// a spilled body is summarised, or its expectations reported as not
+	// checkable, rather than loaded in memory
+	@SuppressWarnings("rawtypes")
+	private void processBody(CellWrapper bodyCell, BodyTypeAdapter bodyTypeAdapter) {
+		String spilled = StreamedRestResponse.describeSpilledBody(getLastResponse());
+		if (spilled == null) {
+			process(bodyCell, getLastResponse().getBody(), bodyTypeAdapter);
+		} else if ("".equals(bodyCell.text().trim())) {
+			bodyCell.addToBody(getFormatter().gray("[" + spilled + "]"));
+		} else {
+			getFormatter().exception(bodyCell, "Unable to check the " + spilled);
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	private boolean matchesBody(CellWrapper bodyCell, RestResponse response) {
+		if (StreamedRestResponse.describeSpilledBody(response) != null) {
+			return "".equals(bodyCell.text().trim());
+		}
+		return matches(bodyCell, response.getBody(), createBodyTypeAdapter());
+	}
+
+	// like process() but only checks, without rendering the result
+	private boolean matches(CellWrapper<?> expected, Object actual,
+			RestDataTypeAdapter ta) {
+		if ("".equals(expected.text().trim())) {
+			return true;
+		}
+		try {
+			ta.set(actual);
+			Object parse = ta.parse(GLOBALS.substitute(Tools.fromHtml(expected
+					.text())));
+			return ta.equals(parse, actual);
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private void process(CellWrapper expected, Object actual,
 			RestDataTypeAdapter ta) {
@@ -991,8 +1854,8 @@ public class RestFixture {
 		ta.set(actual);
 		boolean ignore = "".equals(expected.text().trim());
 		if (ignore) {
-			String actualString = ta.toString();
-			if (!"".equals(actualString)) {
+			String actualString = Tools.makeContentForIgnoredCell(ta, displayVerbosity);
+			if (actualString != null) {
 				expected.addToBody(getFormatter().gray(actualString));
 			}
 		} else {
@@ -1069,6 +1932,30 @@ public class RestFixture {
 		this.lastResponse = lastResponse;
 	}
 
+	// a body spilled to disk is deleted as soon as its response is replaced,
+	// so that a long lived JVM doesn't accumulate temporary files
+	private void replaceLastResponse(RestResponse response) {
+		RestResponse previous = getLastResponse();
+		setLastResponse(response);
+		if (previous != response) {
+			discardBody(previous);
+		}
+	}
+
+	/**
+	 * deletes the spilled body of the last response, if any. Called at the end
+	 * of the table, once no more cells can refer to the response.
+	 */
+	void discardLastResponse() {
+		discardBody(getLastResponse());
+	}
+
+	private static void discardBody(RestResponse response) {
+		if (response instanceof StreamedRestResponse) {
+			((StreamedRestResponse) response).discardContent();
+		}
+	}
+
 	private void setLastRequest(RestRequest lastRequest) {
 		this.lastRequest = lastRequest;
 	}
@@ -1086,7 +1973,12 @@ public class RestFixture {
 	}
 
 	private void configFormatter(Runner runner) {
-		formatter = partsFactory.buildCellFormatter(runner);
+		LargeContentFiles largeContentFiles = new LargeContentFiles(config.getAsInteger(
+				"restfixture.display.file.for.cells.larger.than", -1),
+				config.get("restfixture.fitnesse.root", "FitNesseRoot"),
+				config.getAsInteger("restfixture.display.file.max.files",
+						LargeContentFiles.DEFAULT_MAX_FILES));
+		formatter = partsFactory.buildCellFormatter(runner, largeContentFiles);
 	}
 
 	/**
@@ -1099,6 +1991,12 @@ public class RestFixture {
 		displayActualOnRight = config.getAsBoolean(
 				"restfixture.display.actual.on.right", displayActualOnRight);
 
+		displayTiming = config.getAsBoolean("restfixture.display.timing",
+				displayTiming);
+
+		displayVerbosity = DisplayVerbosity.parse(
+				config.get("restfixture.display.verbosity"), DisplayVerbosity.FULL);
+
 		resourceUrisAreEscaped = config
 				.getAsBoolean("restfixture.resource.uris.are.escaped",
 						resourceUrisAreEscaped);
@@ -1110,6 +2008,12 @@ public class RestFixture {
 				"restfixture.display.toggle.for.cells.larger.than",
 				minLenForCollapseToggle);
 
+		bodyEvaluationThreads = config.getAsInteger(
+				"restfixture.body.evaluation.threads", bodyEvaluationThreads);
+
+		loadMaxConcurrency = config.getAsInteger(
+				"restfixture.load.max.concurrency", loadMaxConcurrency);
+
 		String str = config.get("restfixture.default.headers", "");
 		defaultHeaders = parseHeaders(str);
 
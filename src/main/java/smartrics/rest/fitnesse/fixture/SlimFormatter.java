@@ -22,6 +22,7 @@ package smartrics.rest.fitnesse.fixture;
 
 import smartrics.rest.fitnesse.fixture.support.CellFormatter;
 import smartrics.rest.fitnesse.fixture.support.CellWrapper;
+import smartrics.rest.fitnesse.fixture.support.LargeContentFiles;
 import smartrics.rest.fitnesse.fixture.support.RestDataTypeAdapter;
 import smartrics.rest.fitnesse.fixture.support.Tools;
 
@@ -37,9 +38,20 @@ import java.io.PrintStream;
 public class SlimFormatter implements CellFormatter<String> {
 
     private int minLenForToggle = -1;
+    private final LargeContentFiles largeContentFiles;
     private boolean displayActual;
 
     public SlimFormatter() {
+        this(null);
+    }
+
+    /**
+     * @param largeContentFiles
+     *            if not null, the actual contents too large for a cell are
+     *            written to file and the cell shows a preview and a link.
+     */
+    public SlimFormatter(LargeContentFiles largeContentFiles) {
+        this.largeContentFiles = largeContentFiles;
     }
     
     @Override
@@ -98,13 +110,13 @@ public class SlimFormatter implements CellFormatter<String> {
     @Override
     public void wrong(CellWrapper<String> expected, RestDataTypeAdapter ta) {
         String expectedContent = expected.body();
-        expected.body(Tools.makeContentForWrongCell(expectedContent, ta, this, minLenForToggle));
+        expected.body(Tools.makeContentForWrongCell(expectedContent, ta, this, minLenForToggle, largeContentFiles));
         expected.body("fail:" + Tools.wrapInDiv(expected.body()));
     }
 
     @Override
     public void right(CellWrapper<String> expected, RestDataTypeAdapter typeAdapter) {
-        expected.body("pass:" + Tools.wrapInDiv(Tools.makeContentForRightCell(expected.body(), typeAdapter, this, minLenForToggle)));
+        expected.body("pass:" + Tools.wrapInDiv(Tools.makeContentForRightCell(expected.body(), typeAdapter, this, minLenForToggle, largeContentFiles)));
     }
 
     @Override
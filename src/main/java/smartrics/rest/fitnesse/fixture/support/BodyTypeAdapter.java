@@ -52,6 +52,16 @@ public abstract class BodyTypeAdapter extends RestDataTypeAdapter {
 		return charset;
 	}
 
+	/**
+	 * passes the variables of the fixture to adapters whose expressions can
+	 * refer to them. Ignored by default.
+	 * 
+	 * @param variables
+	 *            the variables
+	 */
+	public void setVariables(Variables variables) {
+	}
+
 	/**
 	 * Checks if body of a cell is "no-body" meaning empty in the context of a
 	 * REST call.
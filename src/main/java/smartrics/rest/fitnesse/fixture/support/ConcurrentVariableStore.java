@@ -0,0 +1,74 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link VariableStore} backed by concurrent maps.
+ * 
+ * <ul>
+ * <li>the suite scope is shared by all the stores in the JVM.
+ * <li>the table scope is private to the store instance, each fixture creates
+ * its own.
+ * </ul>
+ */
+public class ConcurrentVariableStore implements VariableStore {
+
+	private static final ConcurrentMap<String, Object> SUITE = new ConcurrentHashMap<String, Object>();
+
+	private final ConcurrentMap<String, Object> table = new ConcurrentHashMap<String, Object>();
+
+	@Override
+	public void put(Scope scope, String name, Object value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null value for variable '" + name + "'");
+		}
+		map(scope).put(name, value);
+	}
+
+	@Override
+	public Object get(String name) {
+		Object value = table.get(name);
+		if (value == null) {
+			value = SUITE.get(name);
+		}
+		return value;
+	}
+
+	@Override
+	public Object get(Scope scope, String name) {
+		return map(scope).get(name);
+	}
+
+	@Override
+	public void clear(Scope scope) {
+		map(scope).clear();
+	}
+
+	private ConcurrentMap<String, Object> map(Scope scope) {
+		if (scope == Scope.TABLE) {
+			return table;
+		}
+		return SUITE;
+	}
+}
@@ -0,0 +1,65 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+/**
+ * How the actual values of cells with no expectations are rendered, as set
+ * with {@code restfixture.display.verbosity}.
+ */
+public enum DisplayVerbosity {
+	/**
+	 * the actual value is rendered in full.
+	 */
+	FULL,
+	/**
+	 * only the beginning of the actual value is rendered, followed by its
+	 * length, if longer than {@link #SUMMARY_LENGTH}.
+	 */
+	SUMMARY,
+	/**
+	 * the actual value is not rendered.
+	 */
+	NONE;
+
+	/**
+	 * the length of actual values rendered in summary.
+	 */
+	public static final int SUMMARY_LENGTH = 100;
+
+	/**
+	 * @param value
+	 *            the verbosity name, case insensitive
+	 * @param def
+	 *            the verbosity if value is null or empty
+	 * @return the verbosity
+	 */
+	public static DisplayVerbosity parse(String value, DisplayVerbosity def) {
+		if (value == null || "".equals(value.trim())) {
+			return def;
+		}
+		try {
+			return valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown display verbosity '" + value
+					+ "', must be one of FULL, SUMMARY or NONE");
+		}
+	}
+}
@@ -20,19 +20,39 @@
  */
 package smartrics.rest.fitnesse.fixture.support;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLSocketFactory;
+
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
 import org.apache.commons.httpclient.params.HostParams;
 import org.apache.commons.httpclient.params.HttpClientParams;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory;
 
 
 /**
  * Helper builder class for an apache {@link HttpClient} that uses data in the
  * {@link Config} to configure the object.
  * 
+ * If {@code http.client.connection.pool.shared} is true, the clients built
+ * with the same config share the connections pool managed by
+ * {@link HttpConnectionPools}; otherwise each has a connection of its own.
+ * If the config sets any {@code http.client.ssl.*} key, https connections are
+ * opened with the TLS context of the config, see {@link TlsContexts};
+ * otherwise with the https protocol registered in the process, as usual.
+ * 
  * @author smartrics
  * 
  */
@@ -51,7 +71,18 @@ public class HttpClientBuilder {
      * @return an instance of an {@link HttpClient}.
      */
     public HttpClient createHttpClient(final Config config) {
-        HttpClient client = createConfiguredClient(config);
+        return createHttpClient(config, false);
+    }
+
+    /**
+     * @param config the {@link Config} containing the client configuration paramteres.
+     * @param ownConnections if true the client opens its own connections even
+     *            if the config shares the pool, so that clients used
+     *            concurrently aren't capped by the size of the pool.
+     * @return an instance of an {@link HttpClient}.
+     */
+    public HttpClient createHttpClient(final Config config, final boolean ownConnections) {
+        HttpClient client = createConfiguredClient(config, ownConnections);
         if (config != null) {
             configureHost(config, client);
             configureCredentials(config, client);
@@ -59,18 +90,26 @@ public class HttpClientBuilder {
         return client;
     }
 
-    private HttpClient createConfiguredClient(final Config config) {
+    private HttpClient createConfiguredClient(final Config config, final boolean ownConnections) {
         HttpClientParams params = new HttpClientParams();
         params.setSoTimeout(DEFAULT_SO_TO);
         if (config != null) {
             params.setSoTimeout(config.getAsInteger("http.client.connection.timeout", DEFAULT_SO_TO));
         }
+        if (config != null && !ownConnections && config.getAsBoolean("http.client.connection.pool.shared", false)) {
+            return new HttpClient(params, HttpConnectionPools.getConnectionManager(config));
+        }
         HttpClient client = new HttpClient(params);
         return client;
     }
 
     private void configureHost(final Config config, HttpClient client) {
         HostConfiguration hostConfiguration = client.getHostConfiguration();
+        if (TlsContexts.hasSettings(config)) {
+            hostConfiguration = new TlsHostConfiguration(new Protocol("https",
+                    (ProtocolSocketFactory) new TlsProtocolSocketFactory(TlsContexts.getSocketFactory(config)), 443));
+            client.setHostConfiguration(hostConfiguration);
+        }
         String proxyHost = config.get("http.proxy.host");
         if (proxyHost != null) {
             int proxyPort = config.getAsInteger("http.proxy.port", DEFAULT_PROXY_PORT);
@@ -88,4 +127,82 @@ public class HttpClientBuilder {
             client.getState().setCredentials(AuthScope.ANY, defaultcreds);
         }
     }
+
+    /**
+     * HttpClient sets the host of each request from its absolute uri, looking
+     * up the protocol in the process-wide registry; this uses the protocol of
+     * the config for https instead. HttpClient clones the configuration, which
+     * preserves the subclass.
+     */
+    private static final class TlsHostConfiguration extends HostConfiguration {
+        private final Protocol https;
+
+        private TlsHostConfiguration(Protocol https) {
+            this.https = https;
+        }
+
+        @Override
+        public synchronized void setHost(URI uri) {
+            if (!"https".equalsIgnoreCase(uri.getScheme())) {
+                super.setHost(uri);
+                return;
+            }
+            try {
+                setHost(uri.getHost(), uri.getPort(), https);
+            } catch (URIException e) {
+                throw new IllegalArgumentException(e.toString());
+            }
+        }
+    }
+
+    /**
+     * Adapts the {@link SSLSocketFactory} of a TLS context. Factories of the
+     * same context are equal, so that the pooled connections of clients built
+     * with the same config are reused.
+     */
+    private static final class TlsProtocolSocketFactory implements SecureProtocolSocketFactory {
+        private final SSLSocketFactory factory;
+
+        private TlsProtocolSocketFactory(SSLSocketFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return factory.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localAddress, int localPort) throws IOException {
+            return factory.createSocket(host, port, localAddress, localPort);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localAddress, int localPort,
+                HttpConnectionParams params) throws IOException {
+            int timeout = params == null ? 0 : params.getConnectionTimeout();
+            if (timeout == 0) {
+                return createSocket(host, port, localAddress, localPort);
+            }
+            Socket socket = factory.createSocket();
+            socket.bind(new InetSocketAddress(localAddress, localPort));
+            socket.connect(new InetSocketAddress(host, port), timeout);
+            return socket;
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return factory.createSocket(socket, host, port, autoClose);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TlsProtocolSocketFactory && ((TlsProtocolSocketFactory) obj).factory == factory;
+        }
+
+        @Override
+        public int hashCode() {
+            return factory.hashCode();
+        }
+    }
 }
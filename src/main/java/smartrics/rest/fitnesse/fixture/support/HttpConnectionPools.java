@@ -0,0 +1,239 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+import smartrics.rest.fitnesse.fixture.support.http.RequestTiming;
+
+/**
+ * Process-wide pools of HTTP connections, one per {@link Config} name.
+ * 
+ * If {@code http.client.connection.pool.shared} is true, the clients built for
+ * the tables using the same config share the pool, so that connections (and
+ * TLS sessions) are kept alive across tables rather than opened by each table. Pools are configured with:
+ * <ul>
+ * <li>{@code http.client.max.connections.per.host}, default
+ * {@link #DEFAULT_MAX_CONNECTIONS_PER_HOST}
+ * <li>{@code http.client.max.connections}, the total, default
+ * {@link #DEFAULT_MAX_CONNECTIONS}
+ * <li>{@code http.client.idle.connection.timeout}, the ms after which idle
+ * connections are closed, default {@link #DEFAULT_IDLE_TIMEOUT}
+ * <li>{@code http.client.tcp.nodelay}, default true
+ * </ul>
+ * The settings are read each time a client is built, so changes to the
+ * config apply to the existing pool.
+ */
+public final class HttpConnectionPools {
+
+	/**
+	 * default max number of connections per host: 20.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+	/**
+	 * default max number of connections: 100.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 100;
+
+	/**
+	 * default idle time after which connections are closed: 30000ms.
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+	private static final long EVICTION_INTERVAL = 5000;
+
+	private static final ConcurrentMap<String, PooledConnectionManager> POOLS = new ConcurrentHashMap<String, PooledConnectionManager>();
+
+	private static IdleConnectionTimeoutThread evictor;
+
+	private HttpConnectionPools() {
+	}
+
+	/**
+	 * @param config
+	 *            the config
+	 * @return the connection manager pooling the connections of the clients
+	 *         built with the config, configured as per the config.
+	 */
+	public static MultiThreadedHttpConnectionManager getConnectionManager(Config config) {
+		PooledConnectionManager manager = POOLS.get(config.getName());
+		if (manager == null) {
+			PooledConnectionManager created = new PooledConnectionManager();
+			manager = POOLS.putIfAbsent(config.getName(), created);
+			if (manager == null) {
+				manager = created;
+				evictIdleConnections(manager);
+			}
+		}
+		configure(manager, config);
+		return manager;
+	}
+
+	/**
+	 * @param configName
+	 *            the config name
+	 * @return the statistics of the pool for the config, or null if no client
+	 *         has been built with that config.
+	 */
+	public static ConnectionPoolStats getStats(String configName) {
+		PooledConnectionManager manager = POOLS.get(configName);
+		if (manager == null) {
+			return null;
+		}
+		return manager.stats();
+	}
+
+	/**
+	 * closes all the connections and removes all the pools.
+	 */
+	public static synchronized void shutdown() {
+		for (PooledConnectionManager manager : POOLS.values()) {
+			manager.shutdown();
+		}
+		POOLS.clear();
+		if (evictor != null) {
+			evictor.shutdown();
+			evictor = null;
+		}
+	}
+
+	private static void configure(PooledConnectionManager manager, Config config) {
+		HttpConnectionManagerParams params = manager.getParams();
+		params.setDefaultMaxConnectionsPerHost(config.getAsInteger("http.client.max.connections.per.host",
+				DEFAULT_MAX_CONNECTIONS_PER_HOST));
+		params.setMaxTotalConnections(config.getAsInteger("http.client.max.connections", DEFAULT_MAX_CONNECTIONS));
+		params.setTcpNoDelay(config.getAsBoolean("http.client.tcp.nodelay", true));
+		params.setSoTimeout(config.getAsInteger("http.client.connection.timeout", HttpClientBuilder.DEFAULT_SO_TO));
+		manager.idleTimeout = config.getAsLong("http.client.idle.connection.timeout", DEFAULT_IDLE_TIMEOUT);
+	}
+
+	private static synchronized void evictIdleConnections(PooledConnectionManager manager) {
+		if (evictor == null) {
+			evictor = new IdleConnectionTimeoutThread() {
+				@Override
+				protected void handleCloseIdleConnections(
+						org.apache.commons.httpclient.HttpConnectionManager connectionManager) {
+					PooledConnectionManager m = (PooledConnectionManager) connectionManager;
+					m.closeIdleConnections(m.idleTimeout);
+				}
+			};
+			evictor.setName("RestFixture idle connections evictor");
+			evictor.setTimeoutInterval(EVICTION_INTERVAL);
+			evictor.start();
+		}
+		evictor.addConnectionManager(manager);
+	}
+
+	/**
+	 * Statistics of a connection pool.
+	 */
+	public static final class ConnectionPoolStats {
+		private final int leased;
+		private final int available;
+		private final long leases;
+		private final long reused;
+
+		ConnectionPoolStats(int leased, int available, long leases, long reused) {
+			this.leased = leased;
+			this.available = available;
+			this.leases = leases;
+			this.reused = reused;
+		}
+
+		/**
+		 * @return the number of connections currently in use.
+		 */
+		public int getLeased() {
+			return leased;
+		}
+
+		/**
+		 * @return the number of open connections currently idle in the pool.
+		 */
+		public int getAvailable() {
+			return available;
+		}
+
+		/**
+		 * @return the number of times a connection has been taken from the
+		 *         pool.
+		 */
+		public long getLeases() {
+			return leases;
+		}
+
+		/**
+		 * @return the ratio of leases that got an already open connection.
+		 */
+		public double getReuseRatio() {
+			return leases == 0 ? 0 : (double) reused / leases;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("leased=%d, available=%d, leases=%d, reuse ratio=%.2f", leased, available, leases,
+					getReuseRatio());
+		}
+	}
+
+	private static final class PooledConnectionManager extends MultiThreadedHttpConnectionManager {
+		private final AtomicLong leases = new AtomicLong();
+		private final AtomicLong reused = new AtomicLong();
+		private final AtomicLong released = new AtomicLong();
+		private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+		@Override
+		public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+				throws ConnectionPoolTimeoutException {
+			long start = System.nanoTime();
+			HttpConnection connection = super.getConnectionWithTimeout(hostConfiguration, timeout);
+			RequestTiming.record("acquire", System.nanoTime() - start);
+			leases.incrementAndGet();
+			if (connection.isOpen()) {
+				reused.incrementAndGet();
+			}
+			return connection;
+		}
+
+		@Override
+		public void releaseConnection(HttpConnection conn) {
+			super.releaseConnection(conn);
+			released.incrementAndGet();
+		}
+
+		private ConnectionPoolStats stats() {
+			long l = leases.get();
+			int leased = (int) Math.max(0, l - released.get());
+			int available = Math.max(0, getConnectionsInPool() - leased);
+			return new ConnectionPoolStats(leased, available, l, reused.get());
+		}
+	}
+}
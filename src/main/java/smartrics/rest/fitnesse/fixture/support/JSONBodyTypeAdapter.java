@@ -22,6 +22,8 @@ package smartrics.rest.fitnesse.fixture.support;
 
 import java.util.List;
 
+import org.mozilla.javascript.Scriptable;
+
 /**
  * Type adapted for cells containing JSON content.
  * 
@@ -38,13 +40,37 @@ public class JSONBodyTypeAdapter extends XPathBodyTypeAdapter {
     public JSONBodyTypeAdapter() {
     }
 
+    @Override
+    public void setVariables(Variables variables) {
+        wrapper = new JavascriptWrapper(variables);
+    }
+
     @Override
     protected boolean eval(String expr, String json) {
+        checkIsJs(expr);
+        return isTrue(wrapper.evaluateExpression(json, expr));
+    }
+
+    @Override
+    protected Object prepareForEvaluation(String json) {
+        // the json is parsed once in a scope each expression then inherits
+        return wrapper.parseJson(json);
+    }
+
+    @Override
+    protected boolean evalPrepared(String expr, Object json) {
+        checkIsJs(expr);
+        return isTrue(wrapper.evaluateExpression((Scriptable) json, expr));
+    }
+
+    private void checkIsJs(String expr) {
         // for backward compatibility we should keep for now xpath expectations
         if (!forceJsEvaluation && Tools.isValidXPath(getContext(), expr) && !wrapper.looksLikeAJsExpression(expr)) {
             throw new IllegalArgumentException("XPath expectations in JSON content are not supported anymore. Please use JavaScript expressions.");
         }
-        Object exprResult = wrapper.evaluateExpression(json, expr);
+    }
+
+    private static boolean isTrue(Object exprResult) {
         if (exprResult == null) {
             return false;
         }
@@ -34,6 +34,8 @@ import org.mozilla.javascript.ScriptableObject;
 
 import smartrics.rest.client.RestData.Header;
 import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.RequestTiming;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
 
 /**
  * Wrapper class to all that related to JavaScript.
@@ -56,6 +58,26 @@ public class JavascriptWrapper {
 	 */
 	public static final String JSON_OBJ_NAME = "jsonbody";
 
+	private final Variables symbols;
+
+	/**
+	 * a wrapper exposing as {@code symbols} the variables of the default
+	 * config.
+	 */
+	public JavascriptWrapper() {
+		this(null);
+	}
+
+	/**
+	 * @param symbols
+	 *            the variables exposed as {@code symbols}, typically those of
+	 *            the fixture evaluating the expressions; if null the variables
+	 *            of the default config.
+	 */
+	public JavascriptWrapper(Variables symbols) {
+		this.symbols = symbols;
+	}
+
 	/**
 	 * evaluates a Javascript expression in the given {@link RestResponse}.
 	 * 
@@ -98,6 +120,53 @@ public class JavascriptWrapper {
 		return result;
 	}
 
+	/**
+	 * parses a json object once, for many expressions to be evaluated on it
+	 * with {@link #evaluateExpression(Scriptable, String)}.
+	 * 
+	 * @param json
+	 *            the json object.
+	 * @return the scope holding the json object as {@code jsonbody}. It must
+	 *         not be used by more than one thread at a time.
+	 */
+	public Scriptable parseJson(String json) {
+		Context context = Context.enter();
+		try {
+			ScriptableObject scope = context.initStandardObjects();
+			injectFitNesseSymbolMap(scope);
+			injectJson(context, scope, json);
+			return scope;
+		} finally {
+			Context.exit();
+		}
+	}
+
+	/**
+	 * evaluates an expression on a json object parsed by
+	 * {@link #parseJson(String)}. Each evaluation has its own scope, so the
+	 * variables an expression declares aren't seen by the following ones.
+	 * 
+	 * @param json
+	 *            the parsed json object.
+	 * @param expression
+	 *            the expression.
+	 * @return the result of the evaluation
+	 */
+	public Object evaluateExpression(Scriptable json, String expression) {
+		if (json == null || expression == null) {
+			return null;
+		}
+		Context context = Context.enter();
+		try {
+			Scriptable scope = context.newObject(json);
+			scope.setPrototype(json);
+			scope.setParentScope(null);
+			return evaluateExpression(context, scope, expression);
+		} finally {
+			Context.exit();
+		}
+	}
+
 	/**
 	 * @param json the potential json string. loosely checks if the input string contains {@link JavascriptWrapper#JSON_OBJ_NAME}.
 	 * @return whether it's actually a json object.
@@ -107,7 +176,7 @@ public class JavascriptWrapper {
 	}
 
 	private void injectFitNesseSymbolMap(ScriptableObject scope) {
-		Variables v = new Variables();
+		Variables v = symbols == null ? new Variables() : symbols;
 		Object wrappedVariables = Context.javaToJS(v, scope);
 		ScriptableObject.putProperty(scope, SYMBOLS_OBJ_NAME, wrappedVariables);
 	}
@@ -116,7 +185,7 @@ public class JavascriptWrapper {
 		evaluateExpression(cx, scope, "var " + JSON_OBJ_NAME + "=" + json);
 	}
 
-	private Object evaluateExpression(Context context, ScriptableObject scope,
+	private Object evaluateExpression(Context context, Scriptable scope,
 			String expression) {
 		try {
 			Object result = context.evaluateString(scope, expression, null, 1,
@@ -142,12 +211,16 @@ public class JavascriptWrapper {
 			arg[0] = r;
 			response = cx.newObject(scope, "JsResponse", arg);
 			scope.put(RESPONSE_OBJ_NAME, scope, response);
-			putPropertyOnJsObject(response, "body", r.getBody());
+			// a body spilled to disk isn't loaded: body and jsonbody stay null
+			boolean spilled = StreamedRestResponse.describeSpilledBody(r) != null;
+			putPropertyOnJsObject(response, "body", spilled ? null : r.getBody());
 			putPropertyOnJsObject(response, JSON_OBJ_NAME, null);
-			boolean isJson = isJsonResponse(r);
+			boolean isJson = !spilled && isJsonResponse(r);
 			if (isJson) {
 				evaluateExpression(cx, scope, RESPONSE_OBJ_NAME + "."
 						+ JSON_OBJ_NAME + "=" + r.getBody());
+				// also a global, as in the expectations on json bodies
+				scope.put(JSON_OBJ_NAME, scope, response.get(JSON_OBJ_NAME, response));
 			}
 			putPropertyOnJsObject(response, "resource", r.getResource());
 			putPropertyOnJsObject(response, "statusText", r.getStatusText());
@@ -158,6 +231,7 @@ public class JavascriptWrapper {
 				callMethodOnJsObject(response, "addHeader", h.getName(),
 						h.getValue());
 			}
+			injectTiming(cx, scope, response, r);
 		} catch (IllegalAccessException e) {
 			throw new JavascriptException(e.getMessage());
 		} catch (InstantiationException e) {
@@ -167,6 +241,23 @@ public class JavascriptWrapper {
 		}
 	}
 
+	// response.timing.ttfb and the like, in ms
+	private void injectTiming(Context cx, ScriptableObject scope,
+			Scriptable response, RestResponse r) {
+		if (!(r instanceof StreamedRestResponse)) {
+			return;
+		}
+		RequestTiming t = ((StreamedRestResponse) r).getTiming();
+		if (t == null) {
+			return;
+		}
+		Scriptable timing = cx.newObject(scope);
+		for (Map.Entry<String, Double> e : t.toMillis().entrySet()) {
+			putPropertyOnJsObject(timing, e.getKey(), e.getValue());
+		}
+		putPropertyOnJsObject(response, "timing", timing);
+	}
+
 	private void callMethodOnJsObject(Scriptable o, String mName, Object... arg) {
 		ScriptableObject.callMethod(o, mName, arg);
 	}
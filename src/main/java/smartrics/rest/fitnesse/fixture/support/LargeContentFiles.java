@@ -0,0 +1,174 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the content of cells larger than a given length to files served by
+ * FitNesse, in <code><i>FitNesseRoot</i>/files/restfixture</code>, so that
+ * the cell only contains a preview of the content and a link to the file.
+ * This keeps the size of the test results pages manageable when responses are
+ * large.
+ * 
+ * Only the most recent files are kept, {@link #DEFAULT_MAX_FILES} by default:
+ * the oldest are deleted as new ones are written, so links in old test results
+ * eventually break.
+ */
+public class LargeContentFiles {
+
+	/**
+	 * the directory, relative to <code><i>FitNesseRoot</i>/files</code>, of
+	 * the files written.
+	 */
+	public static final String FILES_DIR = "restfixture";
+
+	/**
+	 * default max number of files kept: 500.
+	 */
+	public static final int DEFAULT_MAX_FILES = 500;
+
+	static final int PREVIEW_LENGTH = 256;
+
+	private static final Logger LOG = LoggerFactory.getLogger(LargeContentFiles.class);
+
+	private static final AtomicLong COUNTER = new AtomicLong();
+
+	private static final Pattern NAME = Pattern.compile("content-(\\d+)-(\\d+)\\.txt");
+
+	// the order in which the files have been written, by time then counter
+	private static final Comparator<File> OLDEST_FIRST = new Comparator<File>() {
+		@Override
+		public int compare(File f1, File f2) {
+			Matcher m1 = NAME.matcher(f1.getName());
+			Matcher m2 = NAME.matcher(f2.getName());
+			m1.matches();
+			m2.matches();
+			int c = Long.valueOf(m1.group(1)).compareTo(Long.valueOf(m2.group(1)));
+			return c != 0 ? c : Long.valueOf(m1.group(2)).compareTo(Long.valueOf(m2.group(2)));
+		}
+	};
+
+	private final int minLength;
+
+	private final File dir;
+
+	private final int maxFiles;
+
+	/**
+	 * @param minLength
+	 *            contents longer than this are written to file; if negative
+	 *            no content is.
+	 * @param fitNesseRoot
+	 *            the FitNesse root directory.
+	 */
+	public LargeContentFiles(int minLength, String fitNesseRoot) {
+		this(minLength, fitNesseRoot, DEFAULT_MAX_FILES);
+	}
+
+	/**
+	 * @param minLength
+	 *            contents longer than this are written to file; if negative
+	 *            no content is.
+	 * @param fitNesseRoot
+	 *            the FitNesse root directory.
+	 * @param maxFiles
+	 *            the max number of files kept, the oldest are deleted; if
+	 *            negative all are kept.
+	 */
+	public LargeContentFiles(int minLength, String fitNesseRoot, int maxFiles) {
+		this.minLength = minLength;
+		this.dir = new File(new File(fitNesseRoot, "files"), FILES_DIR);
+		this.maxFiles = maxFiles;
+	}
+
+	/**
+	 * @param content
+	 *            the content
+	 * @return true if the content should be written to file.
+	 */
+	public boolean isLarge(String content) {
+		return minLength >= 0 && content.length() > minLength;
+	}
+
+	/**
+	 * writes the content to a new file.
+	 * 
+	 * @param content
+	 *            the content
+	 * @return the html for the cell: the beginning of the content and a link to
+	 *         the file with all of it, or null if the file can't be written.
+	 */
+	public String toHtml(String content) {
+		String name = "content-" + System.currentTimeMillis() + "-" + COUNTER.incrementAndGet() + ".txt";
+		try {
+			Files.createDirectories(dir.toPath());
+			try (Writer w = Files.newBufferedWriter(new File(dir, name).toPath(), StandardCharsets.UTF_8)) {
+				w.write(content);
+			}
+		} catch (IOException e) {
+			LOG.warn("Unable to write content to " + new File(dir, name) + ", rendering it in the cell", e);
+			return null;
+		}
+		deleteOldestFiles();
+		StringBuilder sb = new StringBuilder();
+		sb.append(Tools.toHtml(content.substring(0, Math.min(PREVIEW_LENGTH, content.length())) + "...\n"));
+		sb.append(Tools.toHtmlLink("/files/" + FILES_DIR + "/" + name, "full content (" + content.length() + " chars)"));
+		return sb.toString();
+	}
+
+	private void deleteOldestFiles() {
+		if (maxFiles < 0) {
+			return;
+		}
+		File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File d, String name) {
+				return NAME.matcher(name).matches();
+			}
+		});
+		if (files == null || files.length <= maxFiles) {
+			return;
+		}
+		Arrays.sort(files, OLDEST_FIRST);
+		for (int i = 0; i < files.length - maxFiles; i++) {
+			try {
+				// may have just been deleted by another fixture
+				Files.deleteIfExists(files[i].toPath());
+			} catch (IOException e) {
+				LOG.warn("Unable to delete " + files[i], e);
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summary of a set of latencies, measured in nanoseconds.
+ */
+public class Latencies {
+
+	private final long[] sorted;
+
+	/**
+	 * @param nanos
+	 *            the latencies, in ns
+	 */
+	public Latencies(long[] nanos) {
+		sorted = nanos.clone();
+		Arrays.sort(sorted);
+	}
+
+	/**
+	 * @return the number of latencies.
+	 */
+	public int count() {
+		return sorted.length;
+	}
+
+	/**
+	 * @return the min latency in ns, 0 if there are none.
+	 */
+	public long min() {
+		return sorted.length == 0 ? 0 : sorted[0];
+	}
+
+	/**
+	 * @return the max latency in ns, 0 if there are none.
+	 */
+	public long max() {
+		return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+	}
+
+	/**
+	 * @return the median latency in ns, 0 if there are none.
+	 */
+	public long median() {
+		return percentile(50);
+	}
+
+	/**
+	 * @param p
+	 *            the percentile, between 0 and 100
+	 * @return the latency in ns below or at which {@code p}% of the latencies
+	 *         are (nearest rank), 0 if there are none.
+	 */
+	public long percentile(double p) {
+		if (p < 0 || p > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + p);
+		}
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(p / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	/**
+	 * @param nanos
+	 *            a latency in ns
+	 * @return the latency in ms, with a 0.1ms precision, for display.
+	 */
+	public static String toMillis(long nanos) {
+		return String.format("%.1fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	@Override
+	public String toString() {
+		return "min " + toMillis(min()) + ", median " + toMillis(median()) + ", max " + toMillis(max());
+	}
+}
@@ -0,0 +1,124 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of latencies in the style of HdrHistogram: values
+ * are recorded with a microsecond resolution in log-linear buckets, each
+ * bucket spanning less than 1/64 of its values, so that percentiles are
+ * reported with a relative error below 2% in constant memory whatever the
+ * number of values.
+ */
+public class LatencyHistogram {
+
+	// values below LINEAR_BUCKETS us are recorded exactly
+	private static final int LINEAR_BUCKETS = 128;
+
+	private static final int SUB_BUCKETS = 64;
+
+	private static final int SUB_BUCKET_BITS = 6;
+
+	// up to 2^40 us, about 12 days
+	private static final int MAX_SHIFT = 33;
+
+	private static final long MAX_VALUE = (2L * SUB_BUCKETS << MAX_SHIFT) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param nanos
+	 *            the latency, in ns
+	 */
+	public void record(long nanos) {
+		long micros = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+		counts.incrementAndGet(index(micros));
+		count.incrementAndGet();
+		long m = max.get();
+		while (micros > m && !max.compareAndSet(m, micros)) {
+			m = max.get();
+		}
+	}
+
+	/**
+	 * @return the number of recorded latencies.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return the max recorded latency, in ns.
+	 */
+	public long getMax() {
+		return TimeUnit.MICROSECONDS.toNanos(max.get());
+	}
+
+	/**
+	 * @param p
+	 *            the percentile, between 0 and 100
+	 * @return the latency in ns below or at which {@code p}% of the latencies
+	 *         are, 0 if none has been recorded.
+	 */
+	public long getPercentile(double p) {
+		if (p < 0 || p > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + p);
+		}
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return TimeUnit.MICROSECONDS.toNanos(Math.min(highestValue(i), max.get()));
+			}
+		}
+		return getMax();
+	}
+
+	static int index(long micros) {
+		if (micros < LINEAR_BUCKETS) {
+			return (int) micros;
+		}
+		// shift such that micros >> shift is in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+		int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+	}
+
+	static long highestValue(int index) {
+		if (index < LINEAR_BUCKETS) {
+			return index;
+		}
+		int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
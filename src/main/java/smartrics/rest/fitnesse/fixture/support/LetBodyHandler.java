@@ -28,6 +28,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
 
 /**
  * Handles body of the last response on behalf of LET in RestFixture.
@@ -41,6 +42,10 @@ public class LetBodyHandler implements LetHandler {
     public String handle(RestResponse response, Object expressionContext, String expression) {
         @SuppressWarnings("unchecked")
         Map<String, String> namespaceContext = (Map<String, String>) expressionContext;
+        String spilled = StreamedRestResponse.describeSpilledBody(response);
+        if (spilled != null) {
+            throw new IllegalStateException("Unable to evaluate the expression on the " + spilled);
+        }
         String contentTypeString = response.getContentType();
         String charset = response.getCharset();
         ContentType contentType = ContentType.parse(contentTypeString);
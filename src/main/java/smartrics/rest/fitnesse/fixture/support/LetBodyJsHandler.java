@@ -20,6 +20,9 @@
  */
 package smartrics.rest.fitnesse.fixture.support;
 
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+
 import smartrics.rest.client.RestResponse;
 
 /**
@@ -29,15 +32,50 @@ import smartrics.rest.client.RestResponse;
  * @author smartrics
  * 
  */
-public class LetBodyJsHandler implements LetHandler {
+public class LetBodyJsHandler implements TypedLetHandler {
+
+    private final Variables symbols;
+
+    /**
+     * a handler exposing the variables of the default config as
+     * {@code symbols}.
+     */
+    public LetBodyJsHandler() {
+        this(null);
+    }
+
+    /**
+     * @param symbols
+     *            the variables exposed as {@code symbols} to the expressions.
+     */
+    public LetBodyJsHandler(Variables symbols) {
+        this.symbols = symbols;
+    }
 
     @Override
     public String handle(RestResponse response, Object expressionContext, String expression) {
-        JavascriptWrapper js = new JavascriptWrapper();
+        Object result = handleValue(response, expressionContext, expression);
+        if (result == null) {
+            return null;
+        }
+        return result.toString();
+    }
+
+    /**
+     * JavaScript objects and arrays are returned as they are, so that they can
+     * be stored without being serialised and accessed again via
+     * {@code symbols.getValue('label')}; any other result as a string.
+     */
+    @Override
+    public Object handleValue(RestResponse response, Object expressionContext, String expression) {
+        JavascriptWrapper js = new JavascriptWrapper(symbols);
         Object result = js.evaluateExpression(response, expression);
         if (result == null) {
             return null;
         }
+        if (result instanceof NativeObject || result instanceof NativeArray) {
+            return result;
+        }
         return result.toString();
     }
 
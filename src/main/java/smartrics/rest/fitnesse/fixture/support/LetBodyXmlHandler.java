@@ -25,6 +25,7 @@ import java.util.Map;
 import org.w3c.dom.NodeList;
 
 import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
 
 /**
  * Handles let expressions on XML content, returning XML string rather than the
@@ -39,6 +40,10 @@ public class LetBodyXmlHandler implements LetHandler {
     public String handle(RestResponse response, Object expressionContext, String expression) {
         @SuppressWarnings("unchecked")
         Map<String, String> namespaceContext = (Map<String, String>) expressionContext;
+        String spilled = StreamedRestResponse.describeSpilledBody(response);
+        if (spilled != null) {
+            throw new IllegalStateException("Unable to evaluate the expression on the " + spilled);
+        }
         NodeList list = Tools.extractXPath(namespaceContext, expression, response.getBody());
         String val = Tools.xPathResultToXmlString(list);
         int pos = val.indexOf("?>");
@@ -0,0 +1,53 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.CachedRestResponse;
+
+/**
+ * Handles LET on how the last response was served by the http cache.
+ * Expressions are
+ * <ul>
+ * <li/>{@code status}: {@code hit} if served from the cache,
+ * {@code revalidated} if served from the cache after a 304, {@code miss} if
+ * fetched from the server
+ * <li/>{@code age}: the age in seconds of a response served from the cache, 0
+ * otherwise
+ * </ul>
+ */
+public class LetCacheHandler implements LetHandler {
+
+    @Override
+    public String handle(RestResponse response, Object expressionContext, String expression) {
+        if (response == null) {
+            return null;
+        }
+        String e = expression.trim();
+        if ("status".equals(e)) {
+            return CachedRestResponse.cacheStatusOf(response);
+        }
+        if ("age".equals(e)) {
+            return response instanceof CachedRestResponse ? Long.toString(((CachedRestResponse) response).getAge()) : "0";
+        }
+        throw new IllegalArgumentException("Unknown cache expression '" + e + "', use status or age");
+    }
+}
@@ -0,0 +1,64 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.Locale;
+
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+
+/**
+ * Handles LET on the content coding of the last response body. Expressions
+ * are
+ * <ul>
+ * <li/>{@code coding}: the content coding the body was received in, or
+ * {@code identity}
+ * <li/>{@code encoded.length}: the number of bytes received
+ * <li/>{@code decoded.length}: the number of bytes once decoded
+ * <li/>{@code ratio}: the decoded length divided by the encoded length
+ * </ul>
+ */
+public class LetEncodingHandler implements LetHandler {
+
+    @Override
+    public String handle(RestResponse response, Object expressionContext, String expression) {
+        if (!(response instanceof StreamedRestResponse)) {
+            return null;
+        }
+        StreamedRestResponse streamed = (StreamedRestResponse) response;
+        String e = expression.trim();
+        if ("coding".equals(e)) {
+            String coding = streamed.getContentCoding();
+            return coding == null ? "identity" : coding;
+        }
+        if ("encoded.length".equals(e)) {
+            return Long.toString(streamed.getEncodedLength());
+        }
+        if ("decoded.length".equals(e)) {
+            return Long.toString(streamed.getDecodedLength());
+        }
+        if ("ratio".equals(e)) {
+            return String.format(Locale.ENGLISH, "%.2f", streamed.getCompressionRatio());
+        }
+        throw new IllegalArgumentException("Unknown encoding expression '" + e
+                + "', use coding, encoded.length, decoded.length or ratio");
+    }
+}
@@ -43,6 +43,18 @@ import java.util.Map;
  * <tr>
  * <td>{@code const}</td><td>it's actually  a shortcut to allow setting of const labels</td>
  * </tr>
+ * <tr>
+ * <td>{@code encoding}</td><td>the content coding of the body, see {@link LetEncodingHandler}</td>
+ * </tr>
+ * <tr>
+ * <td>{@code cache}</td><td>how the response was served by the http cache, see {@link LetCacheHandler}</td>
+ * </tr>
+ * <tr>
+ * <td>{@code timing}</td><td>where the time of the request went, see {@link LetTimingHandler}</td>
+ * </tr>
+ * <tr>
+ * <td>{@code tls}</td><td>the TLS handshakes and resumed sessions, see {@link LetTlsHandler}</td>
+ * </tr>
  * </table>
  * 
  * @author smartrics
@@ -57,6 +69,10 @@ public class LetHandlerFactory {
         strategies.put("body:xml", new LetBodyXmlHandler());
         strategies.put("js", new LetBodyJsHandler());
         strategies.put("const", new LetBodyConstHandler());
+        strategies.put("encoding", new LetEncodingHandler());
+        strategies.put("cache", new LetCacheHandler());
+        strategies.put("timing", new LetTimingHandler());
+        strategies.put("tls", new LetTlsHandler());
     }
 
     private LetHandlerFactory() {
@@ -70,4 +86,18 @@ public class LetHandlerFactory {
     public static LetHandler getHandlerFor(String part) {
         return strategies.get(part);
     }
+
+    /**
+     * @param part
+     * @param symbols
+     *            the variables of the fixture, exposed to {@code js}
+     *            expressions as {@code symbols}.
+     * @return the handler for the given strategy. null if not found.
+     */
+    public static LetHandler getHandlerFor(String part, Variables symbols) {
+        if ("js".equals(part)) {
+            return new LetBodyJsHandler(symbols);
+        }
+        return getHandlerFor(part);
+    }
 }
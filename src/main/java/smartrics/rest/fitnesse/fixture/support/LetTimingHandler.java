@@ -0,0 +1,51 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.Locale;
+
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.RequestTiming;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+
+/**
+ * Handles LET on the timing of the last request. The expression is one of the
+ * {@link RequestTiming#PHASES}: {@code acquire}, {@code connect}, {@code ttfb},
+ * {@code download} or {@code total}; the value is the duration of the phase in
+ * ms, e.g. {@code 12.345}, or null if the engine didn't measure it.
+ */
+public class LetTimingHandler implements LetHandler {
+
+    @Override
+    public String handle(RestResponse response, Object expressionContext, String expression) {
+        String phase = expression.trim();
+        if (!RequestTiming.PHASES.contains(phase)) {
+            throw new IllegalArgumentException("Unknown timing expression '" + phase + "', use one of "
+                    + RequestTiming.PHASES);
+        }
+        if (!(response instanceof StreamedRestResponse)) {
+            return null;
+        }
+        RequestTiming timing = ((StreamedRestResponse) response).getTiming();
+        Double ms = timing == null ? null : timing.getMillis(phase);
+        return ms == null ? null : String.format(Locale.ENGLISH, "%.3f", ms);
+    }
+}
@@ -0,0 +1,55 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.Locale;
+
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.TlsContexts.TlsStats;
+
+/**
+ * Handles LET on the TLS handshakes done so far by all the clients, see
+ * {@link TlsContexts}. The expression is one of {@code handshakes},
+ * {@code resumed}, {@code full} or {@code resumption.ratio}, e.g.
+ * {@code 0.95}.
+ */
+public class LetTlsHandler implements LetHandler {
+
+    @Override
+    public String handle(RestResponse response, Object expressionContext, String expression) {
+        String name = expression.trim();
+        TlsStats stats = TlsContexts.getStats();
+        if ("handshakes".equals(name)) {
+            return Long.toString(stats.getHandshakes());
+        }
+        if ("resumed".equals(name)) {
+            return Long.toString(stats.getResumed());
+        }
+        if ("full".equals(name)) {
+            return Long.toString(stats.getFull());
+        }
+        if ("resumption.ratio".equals(name)) {
+            return String.format(Locale.ENGLISH, "%.2f", stats.getResumptionRatio());
+        }
+        throw new IllegalArgumentException("Unknown tls expression '" + name
+                + "', use one of handshakes, resumed, full or resumption.ratio");
+    }
+}
@@ -0,0 +1,271 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import smartrics.rest.client.RestClient;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+
+/**
+ * Sends requests at a constant arrival rate (open model) for a given duration,
+ * whatever the response times.
+ * 
+ * The latency of a request is measured from the time it was scheduled to be
+ * sent, not from when it was actually sent: requests delayed because all the
+ * workers are busy are accounted for the time they waited, so that a stalled
+ * server shows in the percentiles (correction for coordinated omission).
+ * Requests failing or answered with a status code of 400 or above are
+ * counted as errors.
+ */
+public class LoadGenerator {
+
+	private static final Pattern RATE = Pattern.compile("(?:rate\\s*=\\s*)?(\\d+(?:\\.\\d+)?)\\s*(?:/\\s*(s|m))?");
+
+	private static final Pattern DURATION = Pattern.compile("(?:duration\\s*=\\s*)?(\\d+)\\s*(ms|s|m)");
+
+	/**
+	 * creates the requests to send.
+	 */
+	public interface RequestFactory {
+		/**
+		 * @return a new request.
+		 */
+		RestRequest create();
+	}
+
+	/**
+	 * the outcome of a run.
+	 */
+	public static final class Result {
+		private final LatencyHistogram histogram;
+		private final long errors;
+		private final Map<String, Integer> errorsByCause;
+		private final long elapsed;
+
+		Result(LatencyHistogram histogram, long errors, Map<String, Integer> errorsByCause, long elapsed) {
+			this.histogram = histogram;
+			this.errors = errors;
+			this.errorsByCause = errorsByCause;
+			this.elapsed = elapsed;
+		}
+
+		/**
+		 * @return the latencies of all the requests.
+		 */
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+
+		/**
+		 * @return the number of failed requests.
+		 */
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return the number of errors by status code or exception name.
+		 */
+		public Map<String, Integer> getErrorsByCause() {
+			return errorsByCause;
+		}
+
+		/**
+		 * @return the number of completed requests per second.
+		 */
+		public double getThroughput() {
+			return elapsed == 0 ? 0 : histogram.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(histogram.getCount()).append(" requests, ").append(String.format("%.1f/s", getThroughput()));
+			sb.append("; p50 ").append(Latencies.toMillis(histogram.getPercentile(50)));
+			sb.append(", p90 ").append(Latencies.toMillis(histogram.getPercentile(90)));
+			sb.append(", p99 ").append(Latencies.toMillis(histogram.getPercentile(99)));
+			sb.append(", p99.9 ").append(Latencies.toMillis(histogram.getPercentile(99.9)));
+			sb.append(", max ").append(Latencies.toMillis(histogram.getMax()));
+			sb.append("; ").append(errors).append(" errors");
+			if (!errorsByCause.isEmpty()) {
+				sb.append(' ').append(errorsByCause);
+			}
+			return sb.toString();
+		}
+	}
+
+	private final ParallelRequests.ClientFactory clientFactory;
+
+	private final int maxConcurrency;
+
+	/**
+	 * @param clientFactory
+	 *            creates the client of each worker
+	 * @param maxConcurrency
+	 *            the max number of requests in flight
+	 */
+	public LoadGenerator(ParallelRequests.ClientFactory clientFactory, int maxConcurrency) {
+		this.clientFactory = clientFactory;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * @param rate
+	 *            as in {@code rate=200/s}, {@code 200/s} or {@code 600/m}
+	 * @return the requests per second.
+	 */
+	public static double parseRate(String rate) {
+		Matcher m = RATE.matcher(rate.trim());
+		if (!m.matches() || Double.parseDouble(m.group(1)) <= 0) {
+			throw new IllegalArgumentException("Invalid rate '" + rate + "', expected e.g. rate=200/s");
+		}
+		double value = Double.parseDouble(m.group(1));
+		return "m".equals(m.group(2)) ? value / 60 : value;
+	}
+
+	/**
+	 * @param duration
+	 *            as in {@code duration=60s}, {@code 500ms} or {@code 2m}
+	 * @return the duration in ns.
+	 */
+	public static long parseDuration(String duration) {
+		Matcher m = DURATION.matcher(duration.trim());
+		if (!m.matches()) {
+			throw new IllegalArgumentException("Invalid duration '" + duration + "', expected e.g. duration=60s");
+		}
+		long value = Long.parseLong(m.group(1));
+		if ("ms".equals(m.group(2))) {
+			return TimeUnit.MILLISECONDS.toNanos(value);
+		}
+		if ("s".equals(m.group(2))) {
+			return TimeUnit.SECONDS.toNanos(value);
+		}
+		return TimeUnit.MINUTES.toNanos(value);
+	}
+
+	/**
+	 * Sends the requests and waits for all of them to complete.
+	 * 
+	 * @param hostAddr
+	 *            the host the requests are sent to
+	 * @param requests
+	 *            creates the requests, on the calling thread
+	 * @param rate
+	 *            the requests per second
+	 * @param duration
+	 *            the duration in ns
+	 * @return the result
+	 */
+	public Result run(final String hostAddr, RequestFactory requests, double rate, long duration) {
+		int total = (int) Math.max(1, Math.min(Integer.MAX_VALUE, rate * duration / TimeUnit.SECONDS.toNanos(1)));
+		final double interval = TimeUnit.SECONDS.toNanos(1) / rate;
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+		final Map<String, Integer> errorsByCause = new TreeMap<String, Integer>();
+		final AtomicLong lastCompletion = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(total);
+		final ThreadLocal<RestClient> clients = new ThreadLocal<RestClient>() {
+			@Override
+			protected RestClient initialValue() {
+				return clientFactory.create();
+			}
+		};
+		ExecutorService workers = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "restfixture-load-" + count.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		final long start = System.nanoTime();
+		lastCompletion.set(start);
+		try {
+			for (int i = 0; i < total; i++) {
+				final long intended = start + (long) (i * interval);
+				long wait = intended - System.nanoTime();
+				if (wait > 0) {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				}
+				final RestRequest request = requests.create();
+				workers.execute(new Runnable() {
+					@Override
+					public void run() {
+						String cause = null;
+						RestResponse response = null;
+						try {
+							response = clients.get().execute(hostAddr, request);
+							if (response.getStatusCode() >= 400) {
+								cause = response.getStatusCode().toString();
+							}
+						} catch (RuntimeException e) {
+							cause = e.getClass().getSimpleName();
+						}
+						long now = System.nanoTime();
+						histogram.record(now - intended);
+						if (response instanceof StreamedRestResponse) {
+							// only the latency is kept: a spilled body must not
+							// wait for the JVM exit to be deleted
+							((StreamedRestResponse) response).discardContent();
+						}
+						if (cause != null) {
+							errors.incrementAndGet();
+							synchronized (errorsByCause) {
+								Integer n = errorsByCause.get(cause);
+								errorsByCause.put(cause, n == null ? 1 : n + 1);
+							}
+						}
+						long last = lastCompletion.get();
+						while (now > last && !lastCompletion.compareAndSet(last, now)) {
+							last = lastCompletion.get();
+						}
+						done.countDown();
+					}
+				});
+			}
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating load", e);
+		} finally {
+			workers.shutdownNow();
+		}
+		synchronized (errorsByCause) {
+			return new Result(histogram, errors.get(), new TreeMap<String, Integer>(errorsByCause), lastCompletion.get()
+					- start);
+		}
+	}
+}
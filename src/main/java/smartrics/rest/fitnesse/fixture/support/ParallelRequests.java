@@ -0,0 +1,156 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import smartrics.rest.client.RestClient;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+
+/**
+ * Executes a set of requests concurrently, each on its own {@link RestClient}
+ * and thread. All requests are released at the same time once every thread is
+ * ready, to maximise their overlap.
+ */
+public class ParallelRequests {
+
+	/**
+	 * creates the clients executing the requests.
+	 */
+	public interface ClientFactory {
+		/**
+		 * @return a new client.
+		 */
+		RestClient create();
+	}
+
+	/**
+	 * the outcome of a request: either a response or an error.
+	 */
+	public static final class Outcome {
+		private final RestResponse response;
+		private final RuntimeException error;
+		private final long latency;
+
+		Outcome(RestResponse response, RuntimeException error, long latency) {
+			this.response = response;
+			this.error = error;
+			this.latency = latency;
+		}
+
+		/**
+		 * @return the response, null if the request failed.
+		 */
+		public RestResponse getResponse() {
+			return response;
+		}
+
+		/**
+		 * @return the error the request failed with, null if it didn't.
+		 */
+		public RuntimeException getError() {
+			return error;
+		}
+
+		/**
+		 * @return the time taken by the request, in ns.
+		 */
+		public long getLatency() {
+			return latency;
+		}
+	}
+
+	private final ClientFactory clientFactory;
+
+	/**
+	 * @param clientFactory
+	 *            creates the client for each request
+	 */
+	public ParallelRequests(ClientFactory clientFactory) {
+		this.clientFactory = clientFactory;
+	}
+
+	/**
+	 * @param hostAddr
+	 *            the host all the requests are sent to
+	 * @param requests
+	 *            the requests
+	 * @return the outcomes, in the order of the requests.
+	 */
+	public List<Outcome> execute(final String hostAddr, List<RestRequest> requests) {
+		final CountDownLatch ready = new CountDownLatch(requests.size());
+		final CountDownLatch go = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(requests.size(), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "restfixture-parallel-" + count.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			List<Future<Outcome>> futures = new ArrayList<Future<Outcome>>(requests.size());
+			for (final RestRequest request : requests) {
+				final RestClient client = clientFactory.create();
+				futures.add(executor.submit(new Callable<Outcome>() {
+					@Override
+					public Outcome call() throws InterruptedException {
+						ready.countDown();
+						go.await();
+						long start = System.nanoTime();
+						try {
+							RestResponse response = client.execute(hostAddr, request);
+							return new Outcome(response, null, System.nanoTime() - start);
+						} catch (RuntimeException e) {
+							return new Outcome(null, e, System.nanoTime() - start);
+						}
+					}
+				}));
+			}
+			ready.await();
+			go.countDown();
+			List<Outcome> outcomes = new ArrayList<Outcome>(futures.size());
+			for (Future<Outcome> f : futures) {
+				outcomes.add(f.get());
+			}
+			return outcomes;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while executing the requests", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Unexpected error executing the requests", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
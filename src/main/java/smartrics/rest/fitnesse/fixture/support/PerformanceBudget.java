@@ -0,0 +1,150 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Limits on latency percentiles and error ratio, as in
+ * {@code p99<250ms, p50<20ms, errors<1%}. Latencies are in {@code us},
+ * {@code ms} or {@code s}.
+ */
+public final class PerformanceBudget {
+
+	private static final Pattern PERCENTILE = Pattern.compile("p(\\d+(?:\\.\\d+)?)\\s*<\\s*(\\d+(?:\\.\\d+)?)\\s*(us|ms|s)");
+
+	private static final Pattern ERRORS = Pattern.compile("errors\\s*<\\s*(\\d+(?:\\.\\d+)?)\\s*%");
+
+	private final List<Limit> limits;
+
+	private PerformanceBudget(List<Limit> limits) {
+		this.limits = limits;
+	}
+
+	/**
+	 * @param text
+	 *            the budget, limits separated by commas; may be empty.
+	 * @return the budget
+	 * @throws IllegalArgumentException
+	 *             if a limit can't be parsed.
+	 */
+	public static PerformanceBudget parse(String text) {
+		List<Limit> limits = new ArrayList<Limit>();
+		for (String s : text.split(",")) {
+			String limit = s.trim();
+			if (limit.isEmpty()) {
+				continue;
+			}
+			Matcher m = PERCENTILE.matcher(limit);
+			if (m.matches()) {
+				double percentile = Double.parseDouble(m.group(1));
+				if (percentile > 100) {
+					throw new IllegalArgumentException("Invalid percentile in '" + limit + "'");
+				}
+				limits.add(new Limit(limit, percentile, toNanos(Double.parseDouble(m.group(2)), m.group(3))));
+				continue;
+			}
+			m = ERRORS.matcher(limit);
+			if (m.matches()) {
+				limits.add(new Limit(limit, -1, Double.parseDouble(m.group(1))));
+				continue;
+			}
+			throw new IllegalArgumentException("Invalid budget '" + limit
+					+ "', expected pNN<latency (e.g. p99<250ms) or errors<N%");
+		}
+		return new PerformanceBudget(Collections.unmodifiableList(limits));
+	}
+
+	/**
+	 * @return true if the budget has no limits.
+	 */
+	public boolean isEmpty() {
+		return limits.isEmpty();
+	}
+
+	/**
+	 * @param histogram
+	 *            the latencies
+	 * @param errors
+	 *            the number of failed requests
+	 * @return the limits exceeded, with the actual value, e.g.
+	 *         {@code p99<250ms (was 312.0ms)}; empty if within budget.
+	 */
+	public List<String> check(LatencyHistogram histogram, long errors) {
+		List<String> exceeded = new ArrayList<String>();
+		for (Limit limit : limits) {
+			if (limit.percentile >= 0) {
+				long actual = histogram.getPercentile(limit.percentile);
+				if (actual >= limit.max) {
+					exceeded.add(limit.text + " (was " + Latencies.toMillis(actual) + ")");
+				}
+			} else {
+				long total = histogram.getCount();
+				double ratio = total == 0 ? 0 : 100.0 * errors / total;
+				if (ratio >= limit.max) {
+					exceeded.add(limit.text + " (was " + String.format("%.1f%%", ratio) + ")");
+				}
+			}
+		}
+		return exceeded;
+	}
+
+	private static double toNanos(double value, String unit) {
+		if ("us".equals(unit)) {
+			return value * TimeUnit.MICROSECONDS.toNanos(1);
+		}
+		if ("ms".equals(unit)) {
+			return value * TimeUnit.MILLISECONDS.toNanos(1);
+		}
+		return value * TimeUnit.SECONDS.toNanos(1);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Limit limit : limits) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(limit.text);
+		}
+		return sb.toString();
+	}
+
+	private static final class Limit {
+		private final String text;
+		// negative for the error ratio
+		private final double percentile;
+		// ns for percentiles, % for the error ratio
+		private final double max;
+
+		private Limit(String text, double percentile, double max) {
+			this.text = text;
+			this.percentile = percentile;
+			this.max = max;
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeats an attempt until it succeeds or a timeout expires, sleeping between
+ * attempts with exponential backoff and jitter: the n-th delay is drawn
+ * between half and all of {@code initial * 2^n}, capped at {@code max}, so
+ * that pollers started together don't stay in step. The last delay is cut
+ * so that the last attempt happens at the timeout.
+ */
+public class Poller {
+
+	/**
+	 * the default timeout, 30s.
+	 */
+	public static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+	/**
+	 * the default initial delay, 100ms.
+	 */
+	public static final long DEFAULT_INITIAL_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * the default max delay, 5s.
+	 */
+	public static final long DEFAULT_MAX_DELAY = TimeUnit.SECONDS.toNanos(5);
+
+	/**
+	 * an attempt.
+	 */
+	public interface Attempt {
+		/**
+		 * @return true if polling can stop.
+		 */
+		boolean run();
+	}
+
+	/**
+	 * the outcome of polling.
+	 */
+	public static final class Result {
+		private final boolean satisfied;
+		private final int attempts;
+		private final long elapsed;
+
+		Result(boolean satisfied, int attempts, long elapsed) {
+			this.satisfied = satisfied;
+			this.attempts = attempts;
+			this.elapsed = elapsed;
+		}
+
+		/**
+		 * @return true if an attempt succeeded before the timeout.
+		 */
+		public boolean isSatisfied() {
+			return satisfied;
+		}
+
+		/**
+		 * @return the number of attempts.
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+
+		/**
+		 * @return the time spent polling, in ns.
+		 */
+		public long getElapsed() {
+			return elapsed;
+		}
+
+		@Override
+		public String toString() {
+			return (satisfied ? "satisfied" : "not satisfied") + " after " + attempts
+					+ (attempts == 1 ? " attempt" : " attempts") + " in " + Latencies.toMillis(elapsed);
+		}
+	}
+
+	private final long initialDelay;
+
+	private final long maxDelay;
+
+	private final Random random;
+
+	/**
+	 * @param initialDelay
+	 *            the delay after the first attempt, in ns
+	 * @param maxDelay
+	 *            the max delay between attempts, in ns
+	 * @param random
+	 *            the source of the jitter
+	 */
+	public Poller(long initialDelay, long maxDelay, Random random) {
+		if (initialDelay <= 0 || maxDelay < initialDelay) {
+			throw new IllegalArgumentException("The delays must be positive, the max not less than the initial");
+		}
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.random = random;
+	}
+
+	/**
+	 * Runs the attempt at least once, then until it succeeds or the timeout
+	 * expires.
+	 * 
+	 * @param attempt
+	 *            the attempt
+	 * @param timeout
+	 *            the timeout in ns
+	 * @return the outcome.
+	 */
+	public Result poll(Attempt attempt, long timeout) {
+		long start = System.nanoTime();
+		int attempts = 0;
+		while (true) {
+			attempts++;
+			if (attempt.run()) {
+				return new Result(true, attempts, System.nanoTime() - start);
+			}
+			long remaining = timeout - (System.nanoTime() - start);
+			if (remaining <= 0) {
+				return new Result(false, attempts, System.nanoTime() - start);
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(Math.min(remaining, delay(attempts - 1)));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return new Result(false, attempts, System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * @param n
+	 *            the number of the delay, from 0
+	 * @return the n-th delay in ns, with jitter.
+	 */
+	long delay(int n) {
+		long cap = n >= 62 || initialDelay > maxDelay >> Math.min(n, 62) ? maxDelay : initialDelay << n;
+		long half = cap / 2;
+		return half + (long) (random.nextDouble() * (cap - half));
+	}
+}
@@ -0,0 +1,215 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.RequestTiming;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+
+import fit.Parse;
+
+/**
+ * Type adapter for the performance budget cell of the http verbs rows: limits
+ * on the last response separated by semicolons, as in
+ * {@code time<150ms; size<64KB; headers<40}. Limits are
+ * <ul>
+ * <li/>{@code time}: the total time of the request, in {@code us}, {@code ms}
+ * or {@code s}; the other {@link RequestTiming#PHASES}, e.g.
+ * {@code ttfb<50ms}, limit the phase
+ * <li/>{@code size}: the bytes of the body as received, in {@code B},
+ * {@code KB} or {@code MB}
+ * <li/>{@code headers}: the number of response headers
+ * </ul>
+ * A limit on a phase the engine doesn't measure fails.
+ */
+public class ResponseBudgetTypeAdapter extends RestDataTypeAdapter {
+
+    private static final Pattern LIMIT = Pattern.compile("([a-z]+)\\s*<\\s*(\\d+(?:\\.\\d+)?)\\s*([a-zA-Z]*)");
+
+    @Override
+    public boolean equals(Object expected, Object actual) {
+        if (expected == null || !(actual instanceof RestResponse)) {
+            return false;
+        }
+        List<?> limits;
+        if (expected instanceof List) {
+            limits = (List<?>) expected;
+        } else if (expected instanceof Parse) {
+            limits = limits(((Parse) expected).text());
+        } else {
+            limits = limits(expected.toString());
+        }
+        RestResponse response = (RestResponse) actual;
+        for (Object o : limits) {
+            Limit limit = (Limit) o;
+            Double value = limit.measure(response);
+            if (value == null) {
+                addError(limit.text + " (not measured)");
+            } else if (value >= limit.max) {
+                addError(limit.text + " (was " + limit.format(value) + ")");
+            }
+        }
+        return getErrors().size() == 0;
+    }
+
+    @Override
+    public Object parse(String s) {
+        return limits(s);
+    }
+
+    private static List<Limit> limits(String s) {
+        List<Limit> limits = new ArrayList<Limit>();
+        if (s == null) {
+            return limits;
+        }
+        for (String l : s.split(";")) {
+            String text = l.trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            Matcher m = LIMIT.matcher(text);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Invalid budget '" + text
+                        + "', expected time<latency (e.g. time<150ms), size<bytes (e.g. size<64KB) or headers<count");
+            }
+            limits.add(new Limit(text, m.group(1), Double.parseDouble(m.group(2)), m.group(3)));
+        }
+        return limits;
+    }
+
+    @Override
+    public String toString(Object obj) {
+        if (!(obj instanceof RestResponse)) {
+            return obj == null ? "null" : obj.toString();
+        }
+        RestResponse response = (RestResponse) obj;
+        StringBuilder sb = new StringBuilder();
+        Double total = millis(response, "total");
+        if (total != null) {
+            sb.append("time=").append(formatMillis(total)).append("; ");
+        }
+        sb.append("size=").append(size(response)).append("B; ");
+        sb.append("headers=").append(response.getHeaders().size());
+        return sb.toString();
+    }
+
+    private static Double millis(RestResponse response, String phase) {
+        if (!(response instanceof StreamedRestResponse)) {
+            return null;
+        }
+        RequestTiming timing = ((StreamedRestResponse) response).getTiming();
+        return timing == null ? null : timing.getMillis(phase);
+    }
+
+    private static long size(RestResponse response) {
+        if (response instanceof StreamedRestResponse) {
+            return ((StreamedRestResponse) response).getEncodedLength();
+        }
+        if (response.getRawBody() != null) {
+            return response.getRawBody().length;
+        }
+        String body = response.getBody();
+        return body == null ? 0 : body.getBytes(Charset.forName(response.getCharset())).length;
+    }
+
+    private static String formatMillis(double ms) {
+        return String.format(Locale.ENGLISH, "%.1fms", ms);
+    }
+
+    private static final class Limit {
+        private final String text;
+        private final String name;
+        // ms for times, bytes for the size
+        private final double max;
+
+        private Limit(String text, String name, double value, String unit) {
+            this.text = text;
+            this.name = "time".equals(name) ? "total" : name;
+            if ("size".equals(name)) {
+                this.max = value * toBytes(unit);
+            } else if ("headers".equals(name)) {
+                if (!unit.isEmpty()) {
+                    throw new IllegalArgumentException("Invalid budget '" + text + "', headers is a count");
+                }
+                this.max = value;
+            } else if (RequestTiming.PHASES.contains(this.name)) {
+                this.max = value * toMillis(unit);
+            } else {
+                throw new IllegalArgumentException("Invalid budget '" + text + "', unknown limit '" + name
+                        + "': use time, size, headers or one of " + RequestTiming.PHASES);
+            }
+        }
+
+        private Double measure(RestResponse response) {
+            if ("size".equals(name)) {
+                return (double) size(response);
+            }
+            if ("headers".equals(name)) {
+                return (double) response.getHeaders().size();
+            }
+            return millis(response, name);
+        }
+
+        private String format(double value) {
+            if ("size".equals(name)) {
+                return (long) value + "B";
+            }
+            if ("headers".equals(name)) {
+                return Long.toString((long) value);
+            }
+            return formatMillis(value);
+        }
+
+        private double toMillis(String unit) {
+            if ("us".equals(unit)) {
+                return 0.001;
+            }
+            if ("ms".equals(unit)) {
+                return 1;
+            }
+            if ("s".equals(unit)) {
+                return 1000;
+            }
+            throw new IllegalArgumentException("Invalid budget '" + text + "', times are in us, ms or s");
+        }
+
+        private double toBytes(String unit) {
+            String u = unit.toUpperCase(Locale.ENGLISH);
+            if (u.isEmpty() || "B".equals(u)) {
+                return 1;
+            }
+            if ("KB".equals(u)) {
+                return 1024;
+            }
+            if ("MB".equals(u)) {
+                return 1024 * 1024;
+            }
+            throw new IllegalArgumentException("Invalid budget '" + text + "', sizes are in B, KB or MB");
+        }
+    }
+}
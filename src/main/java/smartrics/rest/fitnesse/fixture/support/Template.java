@@ -0,0 +1,165 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * A text pre-tokenized in literal parts and variable references (
+ * {@code %name%}, see {@link Variables#VARIABLES_PATTERN}).
+ *
+ * Rendering a template is a single pass over its tokens: values are appended
+ * as they are, so they may safely contain regex meta characters such as
+ * {@code $} or {@code \}, and are not substituted again. Templates are
+ * immutable; the ones parsed from short texts (urls, headers, expectation
+ * cells) are cached, as the same text is typically substituted over and over.
+ */
+public final class Template {
+
+	/**
+	 * resolves the value of a variable.
+	 */
+	public interface Resolver {
+		/**
+		 * @param name
+		 *            the variable name
+		 * @return the value, or null if the variable is not defined, in which
+		 *         case the reference is left in the text as is.
+		 */
+		String resolve(String name);
+	}
+
+	/**
+	 * texts longer than this are tokenized every time: looking them up in
+	 * the cache would cost as much as tokenizing them.
+	 */
+	static final int MAX_CACHED_TEXT_LENGTH = 16 * 1024;
+
+	static final int MAX_CACHED_TEMPLATES = 512;
+
+	private static final Map<String, Template> CACHE = Collections
+			.synchronizedMap(new LinkedHashMap<String, Template>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+					return size() > MAX_CACHED_TEMPLATES;
+				}
+			});
+
+	private final String text;
+
+	// literals[i] precedes names[i]; the last literal follows the last name.
+	private final String[] literals;
+
+	private final String[] names;
+
+	private Template(String text, String[] literals, String[] names) {
+		this.text = text;
+		this.literals = literals;
+		this.names = names;
+	}
+
+	/**
+	 * @param text
+	 *            the text
+	 * @return the template for the text, from the cache if available.
+	 */
+	public static Template parse(String text) {
+		if (text.length() > MAX_CACHED_TEXT_LENGTH) {
+			return tokenize(text);
+		}
+		Template t = CACHE.get(text);
+		if (t == null) {
+			t = tokenize(text);
+			CACHE.put(text, t);
+		}
+		return t;
+	}
+
+	private static Template tokenize(String text) {
+		if (text.indexOf('%') < 0) {
+			return new Template(text, new String[] { text }, new String[0]);
+		}
+		List<String> literals = new ArrayList<String>();
+		List<String> names = new ArrayList<String>();
+		Matcher m = Variables.VARIABLES_PATTERN.matcher(text);
+		int last = 0;
+		while (m.find()) {
+			literals.add(text.substring(last, m.start()));
+			names.add(m.group(1));
+			last = m.end();
+		}
+		literals.add(text.substring(last));
+		return new Template(text, literals.toArray(new String[literals.size()]), names.toArray(new String[names.size()]));
+	}
+
+	/**
+	 * @return true if the template contains variable references.
+	 */
+	public boolean hasVariables() {
+		return names.length > 0;
+	}
+
+	/**
+	 * @param resolver
+	 *            resolves the variables values
+	 * @return the text with the variables references replaced by their values.
+	 */
+	public String render(Resolver resolver) {
+		if (names.length == 0) {
+			return text;
+		}
+		StringBuilder sb = new StringBuilder(text.length() + 16 * names.length);
+		for (int i = 0; i < names.length; i++) {
+			sb.append(literals[i]);
+			String value = resolver.resolve(names[i]);
+			if (value == null) {
+				sb.append('%').append(names[i]).append('%');
+			} else {
+				sb.append(value);
+			}
+		}
+		sb.append(literals[names.length]);
+		return sb.toString();
+	}
+
+	/**
+	 * empties the templates cache.
+	 */
+	static void clearCache() {
+		CACHE.clear();
+	}
+
+	static int cacheSize() {
+		return CACHE.size();
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+}
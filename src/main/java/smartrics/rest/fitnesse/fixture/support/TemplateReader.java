@@ -0,0 +1,140 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A reader substituting variable references ({@code %name%}, see
+ * {@link Variables#VARIABLES_PATTERN}) in the text read from another reader,
+ * as the text is read.
+ *
+ * This is the streaming counterpart of {@link Template}: the text is tokenized
+ * on the fly, one buffer at a time, so it is never held in memory as a whole.
+ * The result is the same as rendering a {@link Template} of the whole text,
+ * except that names longer than {@link #MAX_NAME_LENGTH} characters are not
+ * recognised as variable references.
+ */
+public class TemplateReader extends Reader {
+
+	/**
+	 * the longest variable name recognised, bounding the look ahead.
+	 */
+	public static final int MAX_NAME_LENGTH = 1024;
+
+	private final Reader in;
+
+	private final Template.Resolver resolver;
+
+	private final char[] buffer = new char[8192];
+
+	// substituted text not yet returned to the caller
+	private final StringBuilder pending = new StringBuilder();
+
+	private int pendingPos;
+
+	// the name of the reference being read, if after an opening '%'
+	private final StringBuilder name = new StringBuilder();
+
+	private boolean inName;
+
+	private boolean eof;
+
+	/**
+	 * @param in
+	 *            the text to substitute
+	 * @param resolver
+	 *            resolves the variables values
+	 */
+	public TemplateReader(Reader in, Template.Resolver resolver) {
+		this.in = in;
+		this.resolver = resolver;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (pendingPos == pending.length()) {
+			if (eof) {
+				return -1;
+			}
+			pending.setLength(0);
+			pendingPos = 0;
+			fill();
+		}
+		int n = Math.min(len, pending.length() - pendingPos);
+		pending.getChars(pendingPos, pendingPos + n, cbuf, off);
+		pendingPos += n;
+		return n;
+	}
+
+	private void fill() throws IOException {
+		int n = in.read(buffer);
+		if (n < 0) {
+			eof = true;
+			if (inName) {
+				pending.append('%').append(name);
+			}
+			return;
+		}
+		for (int i = 0; i < n; i++) {
+			char c = buffer[i];
+			if (!inName) {
+				if (c == '%') {
+					inName = true;
+					name.setLength(0);
+				} else {
+					pending.append(c);
+				}
+			} else if (c == '%') {
+				if (name.length() == 0) {
+					// "%%": the first one is text, the second may open a name
+					pending.append('%');
+				} else {
+					String value = resolver.resolve(name.toString());
+					if (value == null) {
+						pending.append('%').append(name).append('%');
+					} else {
+						pending.append(value);
+					}
+					inName = false;
+				}
+			} else if (isNameChar(c) && name.length() < MAX_NAME_LENGTH) {
+				name.append(c);
+			} else {
+				pending.append('%').append(name).append(c);
+				inName = false;
+			}
+		}
+	}
+
+	private static boolean isNameChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
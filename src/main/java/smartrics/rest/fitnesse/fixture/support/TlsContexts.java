@@ -0,0 +1,397 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Process-wide TLS contexts, one per {@link Config} name.
+ * 
+ * The clients built for the tables using the same config share the
+ * {@link SSLContext}, hence its client session cache: a connection opened by
+ * a table to a host a previous table (or fixture) already talked to resumes
+ * the TLS session rather than doing a full handshake. Contexts are configured
+ * with:
+ * <ul>
+ * <li>{@code http.client.ssl.keystore}, the keystore file with the client
+ * certificate and key, for mutual TLS. Without it no client certificate is
+ * sent
+ * <li>{@code http.client.ssl.keystore.password},
+ * {@code http.client.ssl.keystore.type} (default PKCS12 for .p12 and .pfx
+ * files, the JVM default otherwise) and {@code http.client.ssl.key.password}
+ * (default the keystore password)
+ * <li>{@code http.client.ssl.truststore}, the keystore file with the trusted
+ * certificates, with {@code http.client.ssl.truststore.password} and
+ * {@code http.client.ssl.truststore.type}. Without it the JVM trust store is
+ * used
+ * <li>{@code http.client.ssl.protocols}, the comma separated protocols to
+ * enable, e.g. {@code TLSv1.2,TLSv1.3}
+ * <li>{@code http.client.ssl.ciphers}, the comma separated cipher suites to
+ * enable
+ * <li>{@code http.client.ssl.session.cache.size}, the max number of sessions
+ * cached, default {@link #DEFAULT_SESSION_CACHE_SIZE}
+ * <li>{@code http.client.ssl.session.timeout}, the seconds after which a
+ * cached session can't be resumed, default {@link #DEFAULT_SESSION_TIMEOUT}
+ * </ul>
+ * If none is set the JVM default context is used, as configured by the
+ * {@code javax.net.ssl.*} system properties. A context is rebuilt, and its
+ * sessions lost, only when its settings change.
+ * 
+ * The handshakes done on the sockets of a context are counted, see
+ * {@link #getStats(String)}.
+ */
+public final class TlsContexts {
+
+	/**
+	 * default max number of cached sessions: 20480.
+	 */
+	public static final int DEFAULT_SESSION_CACHE_SIZE = 20480;
+
+	/**
+	 * default seconds a session can be resumed for: 86400 (a day).
+	 */
+	public static final int DEFAULT_SESSION_TIMEOUT = 86400;
+
+	private static final List<String> KEYS = Arrays.asList("http.client.ssl.keystore",
+			"http.client.ssl.keystore.password", "http.client.ssl.keystore.type", "http.client.ssl.key.password",
+			"http.client.ssl.truststore", "http.client.ssl.truststore.password", "http.client.ssl.truststore.type",
+			"http.client.ssl.protocols", "http.client.ssl.ciphers", "http.client.ssl.session.cache.size",
+			"http.client.ssl.session.timeout");
+
+	private static final ConcurrentMap<String, TlsSocketFactory> FACTORIES = new ConcurrentHashMap<String, TlsSocketFactory>();
+
+	private static final ConcurrentMap<String, Handshakes> HANDSHAKES = new ConcurrentHashMap<String, Handshakes>();
+
+	private TlsContexts() {
+	}
+
+	/**
+	 * @param config
+	 *            the config
+	 * @return the factory of the sockets of the TLS context for the config,
+	 *         the same instance for as long as the TLS settings don't change,
+	 *         so that connection pools keyed on it keep working.
+	 * @throws IllegalArgumentException
+	 *             if the key or trust store can't be loaded.
+	 */
+	public static SSLSocketFactory getSocketFactory(Config config) {
+		String settings = settingsOf(config);
+		TlsSocketFactory factory = FACTORIES.get(config.getName());
+		if (factory != null && factory.settings.equals(settings)) {
+			return factory;
+		}
+		synchronized (TlsContexts.class) {
+			factory = FACTORIES.get(config.getName());
+			if (factory == null || !factory.settings.equals(settings)) {
+				factory = new TlsSocketFactory(settings, createContext(config, settings).getSocketFactory(),
+						split(config.get("http.client.ssl.protocols")), split(config.get("http.client.ssl.ciphers")),
+						handshakesOf(config.getName()));
+				FACTORIES.put(config.getName(), factory);
+			}
+			return factory;
+		}
+	}
+
+	/**
+	 * @param config
+	 *            the config
+	 * @return true if the config sets any of the TLS settings, false if its
+	 *         context is the JVM default one.
+	 */
+	public static boolean hasSettings(Config config) {
+		return !settingsOf(config).isEmpty();
+	}
+
+	/**
+	 * @param configName
+	 *            the config name
+	 * @return the handshakes statistics of the TLS context for the config, or
+	 *         null if no client has been built with that config.
+	 */
+	public static TlsStats getStats(String configName) {
+		Handshakes handshakes = HANDSHAKES.get(configName);
+		if (handshakes == null) {
+			return null;
+		}
+		return new TlsStats(handshakes.total.get(), handshakes.resumed.get());
+	}
+
+	/**
+	 * @return the handshakes statistics of all the TLS contexts.
+	 */
+	public static TlsStats getStats() {
+		long total = 0;
+		long resumed = 0;
+		for (Handshakes handshakes : HANDSHAKES.values()) {
+			total += handshakes.total.get();
+			resumed += handshakes.resumed.get();
+		}
+		return new TlsStats(total, resumed);
+	}
+
+	/**
+	 * discards all the contexts, with their sessions, and statistics.
+	 */
+	public static synchronized void clear() {
+		FACTORIES.clear();
+		HANDSHAKES.clear();
+	}
+
+	private static String settingsOf(Config config) {
+		StringBuilder sb = new StringBuilder();
+		for (String key : KEYS) {
+			String value = config.get(key);
+			if (value != null) {
+				sb.append(key).append('=').append(value).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	private static Handshakes handshakesOf(String configName) {
+		Handshakes handshakes = HANDSHAKES.get(configName);
+		if (handshakes == null) {
+			handshakes = new Handshakes();
+			HANDSHAKES.put(configName, handshakes);
+		}
+		return handshakes;
+	}
+
+	private static SSLContext createContext(Config config, String settings) {
+		try {
+			if (settings.isEmpty()) {
+				return SSLContext.getDefault();
+			}
+			KeyManager[] keyManagers = null;
+			String keystore = config.get("http.client.ssl.keystore");
+			if (keystore != null) {
+				String password = config.get("http.client.ssl.keystore.password");
+				KeyStore ks = load(keystore, config.get("http.client.ssl.keystore.type"), password);
+				KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+				kmf.init(ks, toChars(config.get("http.client.ssl.key.password", password)));
+				keyManagers = kmf.getKeyManagers();
+			}
+			TrustManager[] trustManagers = null;
+			String truststore = config.get("http.client.ssl.truststore");
+			if (truststore != null) {
+				KeyStore ts = load(truststore, config.get("http.client.ssl.truststore.type"),
+						config.get("http.client.ssl.truststore.password"));
+				TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+				tmf.init(ts);
+				trustManagers = tmf.getTrustManagers();
+			}
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(keyManagers, trustManagers, null);
+			SSLSessionContext sessions = context.getClientSessionContext();
+			sessions.setSessionCacheSize(config.getAsInteger("http.client.ssl.session.cache.size",
+					DEFAULT_SESSION_CACHE_SIZE));
+			sessions.setSessionTimeout(config.getAsInteger("http.client.ssl.session.timeout", DEFAULT_SESSION_TIMEOUT));
+			return context;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalArgumentException("Unable to create the TLS context of config " + config.getName() + ": "
+					+ e.getMessage(), e);
+		}
+	}
+
+	private static KeyStore load(String file, String type, String password) throws GeneralSecurityException {
+		if (type == null) {
+			String name = file.toLowerCase(Locale.ENGLISH);
+			type = name.endsWith(".p12") || name.endsWith(".pfx") ? "PKCS12" : KeyStore.getDefaultType();
+		}
+		KeyStore ks = KeyStore.getInstance(type);
+		try (InputStream is = new FileInputStream(file)) {
+			ks.load(is, toChars(password));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Unable to load the keystore " + file + ": " + e.getMessage(), e);
+		}
+		return ks;
+	}
+
+	private static char[] toChars(String password) {
+		return password == null ? null : password.toCharArray();
+	}
+
+	private static String[] split(String list) {
+		if (list == null || list.trim().isEmpty()) {
+			return null;
+		}
+		return list.trim().split("\\s*,\\s*");
+	}
+
+	/**
+	 * Statistics of the handshakes of a TLS context.
+	 */
+	public static final class TlsStats {
+		private final long handshakes;
+		private final long resumed;
+
+		TlsStats(long handshakes, long resumed) {
+			this.handshakes = handshakes;
+			this.resumed = resumed;
+		}
+
+		/**
+		 * @return the number of handshakes, full or abbreviated.
+		 */
+		public long getHandshakes() {
+			return handshakes;
+		}
+
+		/**
+		 * @return the number of handshakes that resumed a cached session.
+		 */
+		public long getResumed() {
+			return resumed;
+		}
+
+		/**
+		 * @return the number of full handshakes.
+		 */
+		public long getFull() {
+			return handshakes - resumed;
+		}
+
+		/**
+		 * @return the ratio of handshakes that resumed a cached session.
+		 */
+		public double getResumptionRatio() {
+			return handshakes == 0 ? 0 : (double) resumed / handshakes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ENGLISH, "handshakes=%d, resumed=%d, resumption ratio=%.2f", handshakes,
+					resumed, getResumptionRatio());
+		}
+	}
+
+	private static final class Handshakes {
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong resumed = new AtomicLong();
+	}
+
+	/**
+	 * Applies the enabled protocols and ciphers to the sockets it creates, and
+	 * counts their handshakes. A handshake resumed a session if the session
+	 * was created before the socket.
+	 */
+	private static final class TlsSocketFactory extends SSLSocketFactory {
+		private final String settings;
+		private final SSLSocketFactory delegate;
+		private final String[] protocols;
+		private final String[] ciphers;
+		private final Handshakes handshakes;
+
+		private TlsSocketFactory(String settings, SSLSocketFactory delegate, String[] protocols, String[] ciphers,
+				Handshakes handshakes) {
+			this.settings = settings;
+			this.delegate = delegate;
+			this.protocols = protocols;
+			this.ciphers = ciphers;
+			this.handshakes = handshakes;
+		}
+
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return ciphers == null ? delegate.getDefaultCipherSuites() : ciphers.clone();
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return delegate.getSupportedCipherSuites();
+		}
+
+		@Override
+		public Socket createSocket() throws IOException {
+			return watch(delegate.createSocket());
+		}
+
+		@Override
+		public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+			return watch(delegate.createSocket(s, host, port, autoClose));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return watch(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			return watch(delegate.createSocket(host, port, localHost, localPort));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			return watch(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+				throws IOException {
+			return watch(delegate.createSocket(address, port, localAddress, localPort));
+		}
+
+		private Socket watch(Socket socket) {
+			SSLSocket ssl = (SSLSocket) socket;
+			if (protocols != null) {
+				ssl.setEnabledProtocols(protocols);
+			}
+			if (ciphers != null) {
+				ssl.setEnabledCipherSuites(ciphers);
+			}
+			final long created = System.currentTimeMillis();
+			ssl.addHandshakeCompletedListener(new HandshakeCompletedListener() {
+				@Override
+				public void handshakeCompleted(HandshakeCompletedEvent event) {
+					handshakes.total.incrementAndGet();
+					if (event.getSession().getCreationTime() < created) {
+						handshakes.resumed.incrementAndGet();
+					}
+				}
+			});
+			return ssl;
+		}
+	}
+}
@@ -59,6 +59,8 @@ import java.util.regex.PatternSyntaxException;
  */
 public final class Tools {
 
+	private static final String DEFER_NODE_EXPANSION_FEATURE = "http://apache.org/xml/features/dom/defer-node-expansion";
+
 	private Tools() {
 
 	}
@@ -155,6 +157,24 @@ public final class Tools {
 			ch = Charset.defaultCharset().name();
 		}
 		Document doc = toDocument(content, charset);
+		return extractXPath(ns, xpathExpression, doc, returnType);
+	}
+
+	/**
+	 * extract the XPath from an already parsed document. See
+	 * {@link Tools#parseDocument(String, String)}.
+	 * 
+	 * @param ns
+	 * @param xpathExpression
+	 * @param doc
+	 * @param returnType
+	 * @return the result
+	 */
+	public static Object extractXPath(Map<String, String> ns,
+			String xpathExpression, Document doc, QName returnType) {
+		if (null == ns) {
+			ns = new HashMap<String, String>();
+		}
 		XPathExpression expr = toExpression(ns, xpathExpression);
 		try {
 			Object o = expr.evaluate(doc, returnType);
@@ -263,13 +283,41 @@ public final class Tools {
 		return ctx;
 	}
 
+	/**
+	 * parses the content in a fully expanded DOM, rather than one lazily built
+	 * as it's navigated. The DOM isn't safe for concurrent use all the same,
+	 * not even for reads: the implementations cache node lists and other
+	 * state on access.
+	 * 
+	 * @param content
+	 *            the xml content
+	 * @param charset
+	 *            the charset of the content, the default charset if null
+	 * @return the parsed document
+	 */
+	public static Document parseDocument(String content, String charset) {
+		return toDocument(content, charset, false);
+	}
+
 	private static Document toDocument(String content, String charset) {
+		return toDocument(content, charset, true);
+	}
+
+	private static Document toDocument(String content, String charset,
+			boolean deferNodeExpansion) {
 		String ch = charset;
 		if (ch == null) {
 			ch = Charset.defaultCharset().name();
 		}
 		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 		factory.setNamespaceAware(true);
+		if (!deferNodeExpansion) {
+			try {
+				factory.setFeature(DEFER_NODE_EXPANSION_FEATURE, false);
+			} catch (ParserConfigurationException e) {
+				// parser doesn't defer node expansion
+			}
+		}
 		try {
 			DocumentBuilder builder = factory.newDocumentBuilder();
 			Document doc = builder.parse(getInputStreamFromString(content, ch));
@@ -541,10 +589,76 @@ public final class Tools {
 	 * @return the html.
 	 */
 	public static String toHtml(String text) {
-        return text.replaceAll("<pre>", "").replaceAll("</pre>", "")
-                .replaceAll("<", "&lt;").replaceAll(">", "&gt;")
-                .replaceAll("\n", "<br/>").replaceAll("\t", "    ")
-                .replaceAll(" ", "&nbsp;").replaceAll("-----", "<hr/>");
+		// removing the tags first may join hyphens in a run of 5
+		String s = removeAll(removeAll(text, "<pre>"), "</pre>");
+		int n = s.length();
+		int i = 0;
+		while (i < n && !isHtmlSpecial(s.charAt(i))) {
+			i++;
+		}
+		if (i == n) {
+			return s;
+		}
+		StringBuilder sb = new StringBuilder(n + n / 8 + 16);
+		sb.append(s, 0, i);
+		while (i < n) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '\n':
+				sb.append("<br/>");
+				break;
+			case '\t':
+				sb.append("&nbsp;&nbsp;&nbsp;&nbsp;");
+				break;
+			case ' ':
+				sb.append("&nbsp;");
+				break;
+			case '-':
+				int run = i;
+				while (run < n && s.charAt(run) == '-') {
+					run++;
+				}
+				int hyphens = run - i;
+				for (int k = 0; k < hyphens / 5; k++) {
+					sb.append("<hr/>");
+				}
+				for (int k = 0; k < hyphens % 5; k++) {
+					sb.append('-');
+				}
+				i = run;
+				continue;
+			default:
+				sb.append(c);
+			}
+			i++;
+		}
+		return sb.toString();
+	}
+
+	private static boolean isHtmlSpecial(char c) {
+		return c == '<' || c == '>' || c == '\n' || c == '\t' || c == ' ' || c == '-';
+	}
+
+	private static String removeAll(String text, String s) {
+		int pos = text.indexOf(s);
+		if (pos < 0) {
+			return text;
+		}
+		StringBuilder sb = new StringBuilder(text.length());
+		int last = 0;
+		while (pos >= 0) {
+			sb.append(text, last, pos);
+			last = pos + s.length();
+			pos = text.indexOf(s, last);
+		}
+		sb.append(text, last, text.length());
+		return sb.toString();
 	}
 
 	/**
@@ -572,13 +686,141 @@ public final class Tools {
 	 * 
 	 */
 	public static String fromHtml(String text) {
-		String ls = "\n";
-		return text.replaceAll("<br[\\s]*/>", ls).replaceAll("<BR[\\s]*/>", ls)
-				.replaceAll("<span[^>]*>", "").replaceAll("</span>", "")
-				.replaceAll("<pre>", "").replaceAll("</pre>", "")
-				.replaceAll("&nbsp;", " ").replaceAll("&gt;", ">")
-				.replaceAll("&amp;", "&").replaceAll("&lt;", "<")
-				.replaceAll("&nbsp;", " ");
+		String s = text;
+		if (s.indexOf('<') >= 0) {
+			String stripped = removeTags(s);
+			s = stripped == null ? removeTagsOneByOne(s) : stripped;
+		}
+		if (s.indexOf('&') >= 0) {
+			s = unescapeEntities(s);
+		}
+		return s;
+	}
+
+	private static final Pattern[] TAGS_TO_REMOVE = { Pattern.compile("<br[\\s]*/>"), Pattern.compile("<BR[\\s]*/>"),
+			Pattern.compile("<span[^>]*>"), Pattern.compile("</span>"), Pattern.compile("<pre>"), Pattern.compile("</pre>") };
+
+	private static final String[] TAGS_REPLACEMENTS = { "\n", "\n", "", "", "", "" };
+
+	/*
+	 * removes, in one pass, the tags fromHtml removes one kind after the
+	 * other. Returns null where this could give a different result: when a tag
+	 * follows an unclosed '<', as removing it could join a new tag, and when a
+	 * span tag contains a '<', as it could overlap other tags.
+	 */
+	private static String removeTags(String s) {
+		int n = s.length();
+		StringBuilder sb = new StringBuilder(n);
+		boolean unclosed = false;
+		int i = 0;
+		while (i < n) {
+			char c = s.charAt(i);
+			if (c == '<') {
+				int end = endOfTagToRemove(s, i);
+				if (end == -2) {
+					return null;
+				}
+				if (end > 0) {
+					if (unclosed) {
+						return null;
+					}
+					char t = s.charAt(i + 1);
+					if (t == 'b' || t == 'B') {
+						sb.append('\n');
+					}
+					i = end;
+					continue;
+				}
+				unclosed = true;
+			} else if (c == '>') {
+				unclosed = false;
+			}
+			sb.append(c);
+			i++;
+		}
+		return sb.toString();
+	}
+
+	// the end of the tag starting at i if to be removed, -1 if not, -2 if undecided
+	private static int endOfTagToRemove(String s, int i) {
+		if (s.startsWith("<br", i) || s.startsWith("<BR", i)) {
+			int j = i + 3;
+			while (j < s.length() && isRegexSpace(s.charAt(j))) {
+				j++;
+			}
+			return s.startsWith("/>", j) ? j + 2 : -1;
+		}
+		if (s.startsWith("<span", i)) {
+			int end = s.indexOf('>', i + 5);
+			if (end < 0) {
+				return -1;
+			}
+			return s.lastIndexOf('<', end) == i ? end + 1 : -2;
+		}
+		if (s.startsWith("</span>", i)) {
+			return i + 7;
+		}
+		if (s.startsWith("<pre>", i)) {
+			return i + 5;
+		}
+		if (s.startsWith("</pre>", i)) {
+			return i + 6;
+		}
+		return -1;
+	}
+
+	private static boolean isRegexSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static String removeTagsOneByOne(String s) {
+		String r = s;
+		for (int i = 0; i < TAGS_TO_REMOVE.length; i++) {
+			r = TAGS_TO_REMOVE[i].matcher(r).replaceAll(TAGS_REPLACEMENTS[i]);
+		}
+		return r;
+	}
+
+	/*
+	 * replaces &nbsp; &gt; &amp; and &lt; in one pass. As fromHtml replaced
+	 * them in that order, and &nbsp; once more at the end, the '&' of an
+	 * &amp; followed by lt; or nbsp; is itself unescaped.
+	 */
+	private static String unescapeEntities(String s) {
+		int n = s.length();
+		StringBuilder sb = new StringBuilder(n);
+		int i = 0;
+		while (i < n) {
+			char c = s.charAt(i);
+			if (c != '&') {
+				sb.append(c);
+				i++;
+			} else if (s.startsWith("&nbsp;", i)) {
+				sb.append(' ');
+				i += 6;
+			} else if (s.startsWith("&gt;", i)) {
+				sb.append('>');
+				i += 4;
+			} else if (s.startsWith("&lt;", i)) {
+				sb.append('<');
+				i += 4;
+			} else if (s.startsWith("&amp;", i)) {
+				i += 5;
+				if (s.startsWith("lt;", i)) {
+					sb.append('<');
+					i += 3;
+				} else if (s.startsWith("nbsp;", i)) {
+					sb.append(' ');
+					i += 5;
+				} else {
+					sb.append('&');
+				}
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return sb.toString();
 	}
 
 	/**
@@ -615,6 +857,27 @@ public final class Tools {
 	public static String makeContentForWrongCell(String expected,
 			RestDataTypeAdapter typeAdapter, CellFormatter<?> formatter,
 			int minLenForToggle) {
+		return makeContentForWrongCell(expected, typeAdapter, formatter, minLenForToggle, null);
+	}
+
+	/**
+	 * @param expected
+	 *            the expected value
+	 * @param typeAdapter
+	 *            the body adapter for the cell
+	 * @param formatter
+	 *            the formatter
+	 * @param minLenForToggle
+	 *            the value determining whether the content should be rendered
+	 *            as a collapseable section.
+	 * @param largeContentFiles
+	 *            writes the actual content to file if too large to be
+	 *            rendered in the cell, may be null
+	 * @return the formatted content for a cell with a wrong expectation
+	 */
+	public static String makeContentForWrongCell(String expected,
+			RestDataTypeAdapter typeAdapter, CellFormatter<?> formatter,
+			int minLenForToggle, LargeContentFiles largeContentFiles) {
 		StringBuffer sb = new StringBuffer();
 		sb.append(Tools.toHtml(expected));
 		if (formatter.isDisplayActual()) {
@@ -623,11 +886,7 @@ public final class Tools {
 			String actual = typeAdapter.toString();
 			sb.append(toHtml("-----"));
 			sb.append(toHtml("\n"));
-			if (minLenForToggle >= 0 && actual.length() > minLenForToggle) {
-				sb.append(makeToggleCollapseable("toggle actual", toHtml(actual)));
-			} else {
-				sb.append(toHtml(actual));
-			}
+			sb.append(makeContentForActual(actual, minLenForToggle, largeContentFiles));
 			sb.append(toHtml("\n"));
 			sb.append(formatter.label("actual"));
 		}
@@ -658,25 +917,80 @@ public final class Tools {
 	public static String makeContentForRightCell(String expected,
 			RestDataTypeAdapter typeAdapter, CellFormatter<?> formatter,
 			int minLenForToggle) {
+		return makeContentForRightCell(expected, typeAdapter, formatter, minLenForToggle, null);
+	}
+
+	/**
+	 * @param expected the expected value
+	 * @param typeAdapter the body type adaptor
+	 * @param formatter the formatter
+	 * @param minLenForToggle 
+	 *            the value determining whether the content should be rendered
+	 *            as a collapseable section.
+	 * @param largeContentFiles
+	 *            writes the actual content to file if too large to be
+	 *            rendered in the cell, may be null
+	 * @return the formatted content for a cell with a right expectation
+	 */
+	public static String makeContentForRightCell(String expected,
+			RestDataTypeAdapter typeAdapter, CellFormatter<?> formatter,
+			int minLenForToggle, LargeContentFiles largeContentFiles) {
 		StringBuffer sb = new StringBuffer();
 		sb.append(toHtml(expected));
+		if (!formatter.isDisplayActual()) {
+			// not rendered, no need to stringify the actual value
+			return sb.toString();
+		}
 		String actual = typeAdapter.toString();
-        if (formatter.isDisplayActual() && !expected.equals(actual)) {
+		if (!expected.equals(actual)) {
 			sb.append(toHtml("\n"));
 			sb.append(formatter.label("expected"));
 			sb.append(toHtml("-----"));
 			sb.append(toHtml("\n"));
-			if (minLenForToggle >= 0 && actual.length() > minLenForToggle) {
-				sb.append(makeToggleCollapseable("toggle actual", toHtml(actual)));
-			} else {
-				sb.append(toHtml(actual));
-			}
+			sb.append(makeContentForActual(actual, minLenForToggle, largeContentFiles));
 			sb.append(toHtml("\n"));
 			sb.append(formatter.label("actual"));
 		}
 		return sb.toString();
 	}
 
+	/**
+	 * @param typeAdapter
+	 *            the type adapter holding the actual value of a cell with no
+	 *            expectations
+	 * @param verbosity
+	 *            how to render the actual value
+	 * @return the actual value as it should be rendered, or null if it
+	 *         shouldn't. The actual value is stringified only if rendered.
+	 */
+	public static String makeContentForIgnoredCell(RestDataTypeAdapter typeAdapter, DisplayVerbosity verbosity) {
+		if (verbosity == DisplayVerbosity.NONE) {
+			return null;
+		}
+		String actual = typeAdapter.toString();
+		if ("".equals(actual)) {
+			return null;
+		}
+		if (verbosity == DisplayVerbosity.SUMMARY && actual.length() > DisplayVerbosity.SUMMARY_LENGTH) {
+			return actual.substring(0, DisplayVerbosity.SUMMARY_LENGTH) + "... (" + actual.length() + " chars)";
+		}
+		return actual;
+	}
+
+	private static String makeContentForActual(String actual, int minLenForToggle,
+			LargeContentFiles largeContentFiles) {
+		if (largeContentFiles != null && largeContentFiles.isLarge(actual)) {
+			String html = largeContentFiles.toHtml(actual);
+			if (html != null) {
+				return html;
+			}
+		}
+		if (minLenForToggle >= 0 && actual.length() > minLenForToggle) {
+			return makeToggleCollapseable("toggle actual", toHtml(actual));
+		}
+		return toHtml(actual);
+	}
+
 	private static String removeCloseEscape(String str) {
 		return trimStartEnd("-!", str);
 	}
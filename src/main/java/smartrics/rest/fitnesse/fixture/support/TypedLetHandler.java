@@ -0,0 +1,46 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import smartrics.rest.client.RestResponse;
+
+/**
+ * A {@link LetHandler} that can return the value of the expression in its
+ * original form, e.g. a JavaScript object, rather than as a string. Such
+ * values are stored with {@link Variables#putValue(String, Object)}.
+ */
+public interface TypedLetHandler extends LetHandler {
+
+	/**
+	 * 
+	 * @param response
+	 *            the http response
+	 * @param expressionContext
+	 *            the expression context
+	 * @param expression
+	 *            the expression
+	 * @return the value of the expression applied to the response within the
+	 *         given context.
+	 */
+	Object handleValue(RestResponse response, Object expressionContext,
+			String expression);
+
+}
@@ -0,0 +1,87 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.nio.charset.StandardCharsets;
+
+import org.mozilla.javascript.Scriptable;
+
+import smartrics.rest.fitnesse.fixture.support.tools.JsonTools;
+
+/**
+ * A variable value kept in its original form (a JavaScript object, a parsed
+ * JSON node, a byte array...) and rendered as text only when needed, for
+ * example when interpolated in a request body. The text is computed once and
+ * cached.
+ * <ul>
+ * <li>JavaScript objects and arrays are rendered as JSON.
+ * <li>byte arrays are decoded as UTF-8.
+ * <li>any other object, e.g. a Jackson {@code JsonNode}, is rendered with its
+ * {@code toString()}.
+ * </ul>
+ */
+public final class TypedValue {
+
+	private final Object value;
+
+	private volatile String text;
+
+	/**
+	 * @param value
+	 *            the value, not null
+	 */
+	public TypedValue(Object value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null typed value");
+		}
+		this.value = value;
+	}
+
+	/**
+	 * @return the value in its original form.
+	 */
+	public Object get() {
+		return value;
+	}
+
+	/**
+	 * @return the value rendered as text.
+	 */
+	@Override
+	public String toString() {
+		String t = text;
+		if (t == null) {
+			t = render(value);
+			text = t;
+		}
+		return t;
+	}
+
+	private static String render(Object value) {
+		if (value instanceof byte[]) {
+			return new String((byte[]) value, StandardCharsets.UTF_8);
+		}
+		if (value instanceof Scriptable) {
+			return JsonTools.toJSONString(value);
+		}
+		return value.toString();
+	}
+}
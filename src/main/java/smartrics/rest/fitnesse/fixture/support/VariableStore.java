@@ -0,0 +1,105 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+/**
+ * A store of variables (labels) organised in nested scopes.
+ * 
+ * Lookups start from the narrowest scope ({@link Scope#TABLE}) and fall back
+ * to the wider one, so a variable set in a table shadows a variable with the
+ * same name set for the suite. There is no page scope: fixtures aren't told
+ * when a page ends, so page variables would outlive their page on runners
+ * reusing threads. Implementations must be safe for use by fixtures running
+ * concurrently.
+ */
+public interface VariableStore {
+
+	/**
+	 * the scopes of a variable, from the narrowest to the widest.
+	 */
+	enum Scope {
+		/**
+		 * visible to the table (fixture instance) that set it.
+		 */
+		TABLE,
+		/**
+		 * visible to all tables of all pages.
+		 */
+		SUITE;
+
+		/**
+		 * @param s
+		 *            the scope name, case insensitive
+		 * @param def
+		 *            the scope returned if s is null or empty
+		 * @return the scope
+		 * @throws IllegalArgumentException
+		 *             if s is not the name of a scope
+		 */
+		public static Scope parse(String s, Scope def) {
+			if (s == null || s.trim().isEmpty()) {
+				return def;
+			}
+			try {
+				return valueOf(s.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown variables scope '" + s + "', must be one of TABLE or SUITE");
+			}
+		}
+	}
+
+	/**
+	 * sets a variable.
+	 * 
+	 * @param scope
+	 *            the scope
+	 * @param name
+	 *            the variable name
+	 * @param value
+	 *            the value, not null: a string or a {@link TypedValue}
+	 */
+	void put(Scope scope, String name, Object value);
+
+	/**
+	 * @param name
+	 *            the variable name
+	 * @return the value in the narrowest scope where the variable is set, or
+	 *         null if not set in any scope.
+	 */
+	Object get(String name);
+
+	/**
+	 * @param scope
+	 *            the scope
+	 * @param name
+	 *            the variable name
+	 * @return the value of the variable in the given scope only, or null.
+	 */
+	Object get(Scope scope, String name);
+
+	/**
+	 * removes all variables in a scope.
+	 * 
+	 * @param scope
+	 *            the scope
+	 */
+	void clear(Scope scope);
+}
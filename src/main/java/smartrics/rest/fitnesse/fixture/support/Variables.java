@@ -20,17 +20,25 @@
  */
 package smartrics.rest.fitnesse.fixture.support;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.regex.Matcher;
+import java.io.Reader;
 import java.util.regex.Pattern;
 
 import fit.Fixture;
-import fitnesse.slim.VariableStore;
 
 /**
- * Facade to FitNesse global symbols map.
+ * Facade to the variables (labels) store.
+ * 
+ * Variables are kept in a {@link VariableStore} and set in the scope
+ * configured with {@code restfixture.variables.scope} (TABLE or SUITE, default
+ * SUITE). If {@code restfixture.variables.mirror.fit.symbols}
+ * is true (the default) suite variables are set as FitNesse symbols, and
+ * symbols set by other fixtures are visible as variables: in this mode the
+ * suite scope is the FitNesse symbols map itself, which is not thread safe.
+ * Narrower scoped variables are never mirrored. Pages setting suite variables
+ * can run concurrently in the same JVM only with mirroring disabled.
+ * 
+ * Values set with {@link #putValue(String, Object)} are kept as
+ * {@link TypedValue}s and rendered as text only when needed.
  * 
  * @author smartrics
  */
@@ -41,7 +49,19 @@ public class Variables {
 	public static final Pattern VARIABLES_PATTERN = Pattern.compile("\\%([a-zA-Z0-9_]+)\\%");
 	private static final String FIT_NULL_VALUE = fitSymbolForNull();
 	private String nullValue = "null";
-	private VariableStore variableStore;
+	private final VariableStore variableStore;
+	private VariableStore.Scope scope = VariableStore.Scope.SUITE;
+	private boolean mirrorFitSymbols = true;
+	private final Template.Resolver resolver = new Template.Resolver() {
+		@Override
+		public String resolve(String name) {
+			String value = get(name);
+			if (FIT_NULL_VALUE.equals(value)) {
+				value = nullValue;
+			}
+			return value;
+		}
+	};
 
 	/**
 	 * initialises variables with default config. See @link
@@ -59,8 +79,23 @@ public class Variables {
 	 * @param c
 	 */
 	public Variables(Config c) {
+		this(c, new ConcurrentVariableStore());
+	}
+
+	/**
+	 * initialises the variables on a given store. Reads
+	 * {@code restfixture.variables.scope} and
+	 * {@code restfixture.variables.mirror.fit.symbols} too.
+	 * 
+	 * @param c
+	 * @param store
+	 */
+	public Variables(Config c, VariableStore store) {
+		this.variableStore = store;
 		if (c != null) {
 			this.nullValue = c.get("restfixture.null.value.representation", "null");
+			this.scope = VariableStore.Scope.parse(c.get("restfixture.variables.scope"), scope);
+			this.mirrorFitSymbols = c.getAsBoolean("restfixture.variables.mirror.fit.symbols", mirrorFitSymbols);
 		}
 	}
 
@@ -71,31 +106,88 @@ public class Variables {
 	 * @param val
 	 */
 	public void put(String label, String val) {
-		Fixture.setSymbol(label, val);
+		store(label, val);
+	}
+
+	/**
+	 * puts a value in its original form, e.g. a JavaScript object or a byte
+	 * array. The value is rendered as text only when read with
+	 * {@link #get(String)} or interpolated by {@link #substitute(String)},
+	 * see {@link TypedValue}.
+	 * 
+	 * @param label
+	 * @param val
+	 */
+	public void putValue(String label, Object val) {
+		if (val == null || val instanceof String || val instanceof TypedValue) {
+			store(label, val);
+		} else {
+			store(label, new TypedValue(val));
+		}
+	}
+
+	private void store(String label, Object val) {
+		if (mirrorFitSymbols && scope == VariableStore.Scope.SUITE) {
+			Fixture.setSymbol(label, val);
+			return;
+		}
+		variableStore.put(scope, label, val == null ? FIT_NULL_VALUE : val);
 	}
 
 	/**
 	 * gets a value.
 	 * 
 	 * @param label
-	 * @return the value.
+	 * @return the value, rendered as text.
 	 */
 	public String get(String label) {
-		if (Fixture.hasSymbol(label)) {
-			return Fixture.getSymbol(label).toString();
+		Object value = lookup(label);
+		if (value == null) {
+			return null;
 		}
-		return null;
+		return value.toString();
+	}
+
+	/**
+	 * gets a value in its original form: values set via
+	 * {@link #putValue(String, Object)} are returned without being rendered
+	 * as text.
+	 * 
+	 * @param label
+	 * @return the value.
+	 */
+	public Object getValue(String label) {
+		Object value = lookup(label);
+		if (value instanceof TypedValue) {
+			return ((TypedValue) value).get();
+		}
+		return value;
+	}
+
+	private Object lookup(String label) {
+		Object value = variableStore.get(label);
+		if (value == null && mirrorFitSymbols && Fixture.hasSymbol(label)) {
+			value = Fixture.getSymbol(label);
+		}
+		return value;
 	}
 
 	/**
 	 * crears all variables
 	 */
 	public void clearAll() {
-		Fixture.ClearSymbols();
+		for (VariableStore.Scope s : VariableStore.Scope.values()) {
+			variableStore.clear(s);
+		}
+		if (mirrorFitSymbols) {
+			Fixture.ClearSymbols();
+		}
 	}
 
 	/**
-	 * replaces a text with variable values.
+	 * replaces a text with variable values, in a single pass over the text
+	 * (see {@link Template}). Values are inserted literally and are not
+	 * substituted in turn.
 	 * @param text
 	 * @return the substituted text.
 	 */
@@ -103,29 +195,17 @@ public class Variables {
 		if (text == null) {
 			return null;
 		}
-		Matcher m = VARIABLES_PATTERN.matcher(text);
-		Map<String, String> replacements = new HashMap<String, String>();
-		while (m.find()) {
-			int gc = m.groupCount();
-			if (gc == 1) {
-				String g0 = m.group(0);
-				String g1 = m.group(1);
-				String value = get(g1);
-				if (FIT_NULL_VALUE.equals(value)) {
-					value = nullValue;
-				}
-				replacements.put(g0, value);
-			}
-		}
-		String newText = text;
-		for (Entry<String, String> en : replacements.entrySet()) {
-			String k = en.getKey();
-			String replacement = replacements.get(k);
-			if (replacement != null) {
-				newText = newText.replaceAll(k, replacement);
-			}
-		}
-		return newText;
+		return Template.parse(text).render(resolver);
+	}
+
+	/**
+	 * replaces variable values in a text as it is read, without reading the
+	 * whole text in memory (see {@link TemplateReader}).
+	 * @param text
+	 * @return the reader of the substituted text.
+	 */
+	public Reader substitute(Reader text) {
+		return new TemplateReader(text, resolver);
 	}
 
 	private static String fitSymbolForNull() {
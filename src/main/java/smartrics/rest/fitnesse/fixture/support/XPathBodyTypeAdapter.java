@@ -22,19 +22,61 @@ package smartrics.rest.fitnesse.fixture.support;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.xml.xpath.XPathConstants;
 
+import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
 /**
  * Type adapter for body cells with XML content.
  * 
+ * Expectations in the body cell are evaluated one after the other unless the
+ * number of evaluation threads is set to a value greater than 1 (see
+ * {@link XPathBodyTypeAdapter#setEvaluationThreads(int)}). In that case the
+ * actual body is parsed once per evaluation running at the same time - a DOM
+ * isn't safe for concurrent reads - and the expectations are evaluated
+ * concurrently on a shared, bounded pool of threads, one per number of
+ * threads.
+ * 
  * @author smartrics
  * 
  */
 public class XPathBodyTypeAdapter extends BodyTypeAdapter {
 
+	// pools are never shut down: an adapter may be submitting to one whilst
+	// another adapter asks for a pool of a different size
+	private static final ConcurrentMap<Integer, ExecutorService> EVALUATION_POOLS = new ConcurrentHashMap<Integer, ExecutorService>();
+
+	private int evaluationThreads = 1;
+
+	/**
+	 * @param threads
+	 *            the max number of threads used to evaluate the expectations
+	 *            in the body cell. Values lower or equal than 1 mean that
+	 *            expectations are evaluated sequentially.
+	 */
+	public void setEvaluationThreads(int threads) {
+		this.evaluationThreads = threads;
+	}
+
+	/**
+	 * @return the max number of threads used to evaluate the expectations.
+	 */
+	public int getEvaluationThreads() {
+		return evaluationThreads;
+	}
+
 	/**
 	 * Equality check for bodies.
 	 * 
@@ -67,6 +109,9 @@ public class XPathBodyTypeAdapter extends BodyTypeAdapter {
 		// r2 is the actual. it needs to be parsed as XML and the XPaths in r1
 		// must be verified
 		List<String> expressions = (List<String>) expected;
+		if (evaluationThreads > 1 && expressions.size() > 1) {
+			return evalInParallel(expressions, actual.toString());
+		}
 		for (String expr : expressions) {
 			try {
 				boolean b = eval(expr, actual.toString());
@@ -95,6 +140,121 @@ public class XPathBodyTypeAdapter extends BodyTypeAdapter {
 		return b;
 	}
 
+	/**
+	 * Prepares the actual content for a concurrent evaluation of the
+	 * expectations. It may be invoked more than once for the same content,
+	 * each returned object is used by one evaluation at a time and is reused
+	 * by the evaluations that follow.
+	 * 
+	 * @param content
+	 *            the actual body
+	 * @return the content parsed as a DOM
+	 */
+	protected Object prepareForEvaluation(String content) {
+		return Tools.parseDocument(content, getCharset());
+	}
+
+	/**
+	 * Evaluates an expression on content prepared by
+	 * {@link #prepareForEvaluation(String)}. It may be invoked concurrently,
+	 * but never on the same prepared object.
+	 * 
+	 * @param expr
+	 *            the expression
+	 * @param prepared
+	 *            the prepared content
+	 * @return the result of the evaluation
+	 */
+	protected boolean evalPrepared(String expr, Object prepared) {
+		Document doc = (Document) prepared;
+		try {
+			NodeList ret = (NodeList) Tools.extractXPath(getContext(), expr,
+					doc, XPathConstants.NODESET);
+			return !(ret == null || ret.getLength() == 0);
+		} catch (IllegalArgumentException e) {
+			// may be evaluated as BOOLEAN
+			return (Boolean) Tools.extractXPath(getContext(), expr, doc,
+					XPathConstants.BOOLEAN);
+		}
+	}
+
+	private boolean evalInParallel(List<String> expressions, final String content) {
+		final Object prepared;
+		try {
+			prepared = prepareForEvaluation(content);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Cannot evaluate '"
+					+ expressions.get(0) + "' in " + content, e);
+		}
+		// the evaluations running at the same time each take their own copy
+		// of the prepared content, so there are at most as many as threads
+		final Queue<Object> copies = new ConcurrentLinkedQueue<Object>();
+		copies.add(prepared);
+		ExecutorService pool = getEvaluationPool(evaluationThreads);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (final String expr : expressions) {
+			results.add(pool.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					Object copy = copies.poll();
+					if (copy == null) {
+						copy = prepareForEvaluation(content);
+					}
+					try {
+						return evalPrepared(expr, copy);
+					} finally {
+						copies.add(copy);
+					}
+				}
+			}));
+		}
+		// errors are collected in the order the expectations are in the cell
+		for (int i = 0; i < expressions.size(); i++) {
+			String expr = expressions.get(i);
+			try {
+				boolean b = results.get(i).get();
+				if (!b) {
+					addError("not found: '" + expr + "'");
+				}
+			} catch (ExecutionException e) {
+				cancel(results);
+				throw new IllegalArgumentException("Cannot evaluate '" + expr
+						+ "' in " + content, e.getCause());
+			} catch (InterruptedException e) {
+				cancel(results);
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(
+						"Interrupted whilst evaluating '" + expr + "'", e);
+			}
+		}
+		return getErrors().size() == 0;
+	}
+
+	private void cancel(List<Future<Boolean>> results) {
+		for (Future<Boolean> f : results) {
+			f.cancel(true);
+		}
+	}
+
+	private static synchronized ExecutorService getEvaluationPool(final int size) {
+		ExecutorService pool = EVALUATION_POOLS.get(size);
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(size, new ThreadFactory() {
+				private int count = 0;
+
+				@Override
+				public synchronized Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "restfixture-body-evaluator-"
+							+ size + "-" + count++);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			EVALUATION_POOLS.put(size, pool);
+		}
+		return pool;
+	}
+
 	/**
 	 * Parses the expected body in the current test.
 	 * 
@@ -0,0 +1,126 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+
+import org.apache.commons.httpclient.HttpClient;
+
+import smartrics.rest.client.RestClient;
+import smartrics.rest.client.RestClientImpl;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+
+/**
+ * Decorates a rest client to record the exchanges to a
+ * {@link TrafficArchive}, or replaces it to answer from the archive without
+ * network. Replayed responses carry the {@link RequestTiming} of the replay,
+ * which only has a {@code total}, as the responses served by the http cache.
+ */
+public class ArchivingRestClient extends RestClientImpl {
+
+	private final RestClient delegate;
+
+	private final TrafficArchive archive;
+
+	private String baseUrl;
+
+	private ArchivingRestClient(RestClient delegate, TrafficArchive archive) {
+		// the commons client is not used; it's only there to be returned by
+		// getClient()
+		super(new HttpClient());
+		this.delegate = delegate;
+		this.archive = archive;
+	}
+
+	/**
+	 * @param delegate
+	 *            the client executing the requests
+	 * @param archive
+	 *            the archive the exchanges are recorded to
+	 * @return the recording client.
+	 */
+	public static ArchivingRestClient recording(RestClient delegate, TrafficArchive archive) {
+		return new ArchivingRestClient(delegate, archive);
+	}
+
+	/**
+	 * @param archive
+	 *            the archive the responses are replayed from
+	 * @return the replaying client.
+	 */
+	public static ArchivingRestClient replaying(TrafficArchive archive) {
+		return new ArchivingRestClient(null, archive);
+	}
+
+	@Override
+	public void setBaseUrl(String baseUrl) {
+		this.baseUrl = baseUrl;
+		super.setBaseUrl(baseUrl);
+		if (delegate != null) {
+			delegate.setBaseUrl(baseUrl);
+		}
+	}
+
+	@Override
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	@Override
+	public RestResponse execute(RestRequest request) {
+		return execute(getBaseUrl(), request);
+	}
+
+	@Override
+	public RestResponse execute(String hostAddr, RestRequest request) {
+		if (request == null || !request.isValid()) {
+			throw new IllegalArgumentException("Invalid request " + request);
+		}
+		try {
+			if (delegate == null) {
+				return replay(hostAddr, request);
+			}
+			RestResponse response = delegate.execute(hostAddr, request);
+			archive.record(hostAddr, request, response);
+			return response;
+		} catch (IOException e) {
+			throw new IllegalStateException("Error accessing the archive " + archive.getFile() + ": "
+					+ e.getMessage(), e);
+		}
+	}
+
+	private RestResponse replay(String hostAddr, RestRequest request) throws IOException {
+		RequestTiming timing = RequestTiming.start();
+		RestResponse response;
+		try {
+			response = archive.replay(hostAddr, request);
+		} finally {
+			if (timing != null) {
+				timing.finish();
+			}
+		}
+		if (timing != null && response instanceof StreamedRestResponse) {
+			((StreamedRestResponse) response).setTiming(timing);
+		}
+		return response;
+	}
+}
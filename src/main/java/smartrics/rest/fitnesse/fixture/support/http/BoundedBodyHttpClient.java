@@ -0,0 +1,106 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpState;
+
+/**
+ * A commons-httpclient client reading the response bodies into a
+ * {@link ResponseBody} as soon as the methods are executed, so that they're
+ * held in memory up to a limit, spilled to a temporary file above it and
+ * truncated at a max size, as the jdk engine does. Left to the methods, the
+ * bodies would be read whole into a byte array.
+ * 
+ * The methods' own bodies are then empty: the body of the last method executed
+ * by a thread is taken with {@link #takeBody()}.
+ * 
+ * Unlike the jdk engine, the rest of a truncated body is still received and
+ * discarded, as closing the body stream of a method reads it to its end.
+ */
+public class BoundedBodyHttpClient extends HttpClient {
+
+	private final ThreadLocal<ResponseBody> lastBody = new ThreadLocal<ResponseBody>();
+
+	private final long memoryLimit;
+
+	private final long sizeLimit;
+
+	private final boolean decompress;
+
+	/**
+	 * @param configured
+	 *            the client whose params, connection manager, host
+	 *            configuration and state are used
+	 * @param memoryLimit
+	 *            the max number of bytes of a body held in memory, negative
+	 *            for no limit
+	 * @param sizeLimit
+	 *            the max number of bytes of a body read, negative for no limit
+	 * @param decompress
+	 *            if true bodies received in a supported {@link ContentCoding}
+	 *            are decoded
+	 */
+	public BoundedBodyHttpClient(HttpClient configured, long memoryLimit, long sizeLimit, boolean decompress) {
+		super(configured.getParams(), configured.getHttpConnectionManager());
+		setHostConfiguration(configured.getHostConfiguration());
+		setState(configured.getState());
+		this.memoryLimit = memoryLimit;
+		this.sizeLimit = sizeLimit;
+		this.decompress = decompress;
+	}
+
+	@Override
+	public int executeMethod(HostConfiguration hostconfig, HttpMethod method, HttpState state) throws IOException {
+		ResponseBody untaken = lastBody.get();
+		if (untaken != null) {
+			lastBody.remove();
+			untaken.discard();
+		}
+		int status = super.executeMethod(hostconfig, method, state);
+		InputStream in = method.getResponseBodyAsStream();
+		if (in != null) {
+			String coding = null;
+			Header contentEncoding = method.getResponseHeader("Content-Encoding");
+			if (decompress && contentEncoding != null) {
+				coding = ContentCoding.supported(contentEncoding.getValue());
+			}
+			lastBody.set(ResponseBody.read(coding, in, memoryLimit, sizeLimit));
+		}
+		return status;
+	}
+
+	/**
+	 * @return the body of the last method executed by this thread, null if it
+	 *         had none or if it has already been taken.
+	 */
+	public ResponseBody takeBody() {
+		ResponseBody body = lastBody.get();
+		lastBody.remove();
+		return body;
+	}
+}
@@ -0,0 +1,85 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import smartrics.rest.client.RestResponse;
+
+/**
+ * A response served by the {@link HttpCache}, either straight from it or
+ * after a successful revalidation.
+ */
+public class CachedRestResponse extends StreamedRestResponse {
+
+	/**
+	 * served from the cache, being fresh.
+	 */
+	public static final String HIT = "hit";
+
+	/**
+	 * served from the cache, after the server answered 304 to a conditional
+	 * request.
+	 */
+	public static final String REVALIDATED = "revalidated";
+
+	/**
+	 * not served by the cache; see {@link #cacheStatusOf(RestResponse)}.
+	 */
+	public static final String MISS = "miss";
+
+	private final String cacheStatus;
+
+	private final long age;
+
+	/**
+	 * @param cacheStatus
+	 *            {@link #HIT} or {@link #REVALIDATED}
+	 * @param age
+	 *            the age of the response in seconds
+	 */
+	public CachedRestResponse(String cacheStatus, long age) {
+		this.cacheStatus = cacheStatus;
+		this.age = age;
+	}
+
+	/**
+	 * @return {@link #HIT} or {@link #REVALIDATED}.
+	 */
+	public String getCacheStatus() {
+		return cacheStatus;
+	}
+
+	/**
+	 * @return the age of the response in seconds.
+	 */
+	public long getAge() {
+		return age;
+	}
+
+	/**
+	 * @param response
+	 *            a response
+	 * @return the cache status of the response, {@link #MISS} if it wasn't
+	 *         served by the cache.
+	 */
+	public static String cacheStatusOf(RestResponse response) {
+		return response instanceof CachedRestResponse ? ((CachedRestResponse) response).getCacheStatus() : MISS;
+	}
+}
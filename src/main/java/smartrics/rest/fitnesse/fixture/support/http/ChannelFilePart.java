@@ -0,0 +1,55 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.httpclient.methods.multipart.FilePart;
+
+/**
+ * A multipart file part whose content is written as by
+ * {@link FileChannelRequestEntity}.
+ */
+public class ChannelFilePart extends FilePart {
+
+	private final File file;
+
+	/**
+	 * @param name
+	 *            the name of the form parameter
+	 * @param file
+	 *            the file to upload
+	 * @throws FileNotFoundException
+	 *             if the file doesn't exist
+	 */
+	public ChannelFilePart(String name, File file) throws FileNotFoundException {
+		super(name, file);
+		this.file = file;
+	}
+
+	@Override
+	protected void sendData(OutputStream out) throws IOException {
+		FileChannelRequestEntity.transfer(file.toPath(), out);
+	}
+}
@@ -0,0 +1,86 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+/**
+ * A request entity compressed, as it's written, with a {@link ContentCoding}.
+ * Its length isn't known upfront, so it's sent chunked.
+ */
+public class CompressedRequestEntity implements RequestEntity {
+
+	private final RequestEntity entity;
+
+	private final String coding;
+
+	/**
+	 * @param entity
+	 *            the entity to compress
+	 * @param coding
+	 *            the coding
+	 */
+	public CompressedRequestEntity(RequestEntity entity, String coding) {
+		this.entity = entity;
+		this.coding = coding;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return entity.isRepeatable();
+	}
+
+	@Override
+	public void writeRequest(OutputStream out) throws IOException {
+		// the connection stream is owned by the client, so it's not closed
+		DeflaterOutputStream encoded = ContentCoding.encode(coding, new FilterOutputStream(out) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		});
+		try {
+			entity.writeRequest(encoded);
+		} finally {
+			encoded.close();
+		}
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public String getContentType() {
+		return entity.getContentType();
+	}
+}
@@ -0,0 +1,164 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import smartrics.rest.fitnesse.fixture.support.Config;
+
+/**
+ * The http content codings supported by the rest clients: {@code gzip} and
+ * {@code deflate}.
+ * 
+ * The relevant config keys are
+ * <ul>
+ * <li/>{@code http.client.accept.encoding}: value of the
+ * {@code Accept-Encoding} header sent with the requests not specifying one,
+ * not sent by default
+ * <li/>{@code http.client.response.decompress}: whether response bodies in a
+ * supported coding are decoded, true by default
+ * <li/>{@code http.client.request.compression}: the coding request bodies are
+ * compressed with, {@code none} by default
+ * <li/>{@code http.client.request.compression.threshold}: bodies of less
+ * bytes are sent as they are, 1024 by default
+ * </ul>
+ */
+public final class ContentCoding {
+
+	public static final String GZIP = "gzip";
+
+	public static final String DEFLATE = "deflate";
+
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private ContentCoding() {
+	}
+
+	/**
+	 * @param contentEncoding
+	 *            the value of a {@code Content-Encoding} header, may be null
+	 * @return the coding if supported, null otherwise, including for
+	 *         {@code identity}.
+	 */
+	public static String supported(String contentEncoding) {
+		if (contentEncoding == null) {
+			return null;
+		}
+		String coding = contentEncoding.trim().toLowerCase(Locale.ENGLISH);
+		if ("x-gzip".equals(coding)) {
+			return GZIP;
+		}
+		return GZIP.equals(coding) || DEFLATE.equals(coding) ? coding : null;
+	}
+
+	/**
+	 * @param config
+	 *            the config, may be null
+	 * @return the coding request bodies are compressed with, null if they're
+	 *         not compressed.
+	 */
+	public static String requestCoding(Config config) {
+		String value = config == null ? null : config.get("http.client.request.compression");
+		if (value == null || value.trim().isEmpty() || "none".equalsIgnoreCase(value.trim())) {
+			return null;
+		}
+		String coding = supported(value);
+		if (coding == null) {
+			throw new IllegalArgumentException("Unsupported request compression " + value + ", use gzip, deflate or none");
+		}
+		return coding;
+	}
+
+	/**
+	 * @param coding
+	 *            a supported coding
+	 * @param out
+	 *            the stream to write the encoded bytes to
+	 * @return the stream encoding what's written to it; closing it or calling
+	 *         {@link DeflaterOutputStream#finish()} completes the encoding.
+	 * @throws IOException
+	 *             if the coding header can't be written.
+	 */
+	public static DeflaterOutputStream encode(String coding, OutputStream out) throws IOException {
+		if (GZIP.equals(coding)) {
+			return new GZIPOutputStream(out, BUFFER_SIZE);
+		}
+		if (DEFLATE.equals(coding)) {
+			return new DeflaterOutputStream(out);
+		}
+		throw new IllegalArgumentException("Unsupported content coding " + coding);
+	}
+
+	/**
+	 * @param coding
+	 *            a supported coding
+	 * @param in
+	 *            the encoded stream
+	 * @return the decoded stream; an empty encoded stream decodes to an empty
+	 *         stream.
+	 * @throws IOException
+	 *             if the encoded stream is invalid.
+	 */
+	public static InputStream decode(String coding, InputStream in) throws IOException {
+		PushbackInputStream pushback = new PushbackInputStream(in, 2);
+		byte[] header = new byte[2];
+		int read = 0;
+		int n;
+		while (read < 2 && (n = pushback.read(header, read, 2 - read)) != -1) {
+			read += n;
+		}
+		if (read == 0) {
+			return pushback;
+		}
+		pushback.unread(header, 0, read);
+		if (GZIP.equals(coding)) {
+			return new GZIPInputStream(pushback, BUFFER_SIZE);
+		}
+		if (DEFLATE.equals(coding)) {
+			// deflate is meant to be zlib wrapped, yet some servers send it raw
+			boolean zlib = read == 2 && (header[0] & 0x0f) == 8
+					&& (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+			final Inflater inflater = new Inflater(!zlib);
+			return new InflaterInputStream(pushback, inflater, BUFFER_SIZE) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						inflater.end();
+					}
+				}
+			};
+		}
+		throw new IllegalArgumentException("Unsupported content coding " + coding);
+	}
+}
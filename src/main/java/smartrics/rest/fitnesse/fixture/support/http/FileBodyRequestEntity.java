@@ -0,0 +1,99 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import smartrics.rest.fitnesse.fixture.support.Variables;
+
+/**
+ * Request entity streaming the content of a file, with variables substituted
+ * as the file is read (see {@link Variables#substitute(Reader)}).
+ *
+ * The length of the substituted content isn't known until it's all written,
+ * hence the entity is sent with chunked transfer encoding. The file is read
+ * again each time the entity is written, e.g. when a request is retried.
+ */
+public class FileBodyRequestEntity implements RequestEntity {
+
+	private final Path file;
+
+	private final Variables variables;
+
+	private final Charset charset;
+
+	private final String contentType;
+
+	/**
+	 * @param file
+	 *            the file with the body
+	 * @param variables
+	 *            the variables to substitute
+	 * @param charset
+	 *            the charset of both the file and the request body
+	 * @param contentType
+	 *            the content type of the body, may be null
+	 */
+	public FileBodyRequestEntity(Path file, Variables variables, Charset charset, String contentType) {
+		this.file = file;
+		this.variables = variables;
+		this.charset = charset;
+		this.contentType = contentType;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public void writeRequest(OutputStream out) throws IOException {
+		try (Reader reader = variables.substitute(Files.newBufferedReader(file, charset))) {
+			// not closed: out belongs to the connection
+			Writer writer = new OutputStreamWriter(out, charset);
+			char[] buffer = new char[8192];
+			int n;
+			while ((n = reader.read(buffer)) >= 0) {
+				writer.write(buffer, 0, n);
+			}
+			writer.flush();
+		}
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+}
@@ -0,0 +1,64 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import smartrics.rest.fitnesse.fixture.support.Variables;
+
+/**
+ * A request whose body is streamed from a file rather than held in memory, see
+ * {@link FileBodyRequestEntity}.
+ */
+public class FileBodyRestRequest extends StreamingRestRequest {
+
+	private final Path bodyFile;
+
+	private final Variables variables;
+
+	/**
+	 * @param bodyFile
+	 *            the file with the body
+	 * @param variables
+	 *            the variables to substitute in the body
+	 */
+	public FileBodyRestRequest(Path bodyFile, Variables variables) {
+		this.bodyFile = bodyFile;
+		this.variables = variables;
+		// the actual body is only read when the request entity is written
+		setBody("");
+	}
+
+	/**
+	 * @return the file with the body
+	 */
+	public Path getBodyFile() {
+		return bodyFile;
+	}
+
+	@Override
+	public RequestEntity createRequestEntity() {
+		return new FileBodyRequestEntity(bodyFile, variables, Charset.forName(getCharset()), getContentType());
+	}
+}
@@ -0,0 +1,104 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+/**
+ * Request entity uploading a file as it is, with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}: the JDK
+ * copies it straight to the target where the target allows, or through a
+ * small direct buffer otherwise, so that the size of the file doesn't matter
+ * to the heap.
+ */
+public class FileChannelRequestEntity implements RequestEntity {
+
+	private final Path file;
+
+	private final String contentType;
+
+	/**
+	 * @param file
+	 *            the file to upload
+	 * @param contentType
+	 *            the content type of the body, may be null
+	 */
+	public FileChannelRequestEntity(Path file, String contentType) {
+		this.file = file;
+		this.contentType = contentType;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public void writeRequest(OutputStream out) throws IOException {
+		transfer(file, out);
+	}
+
+	/**
+	 * Writes a file to a stream, which is not closed.
+	 * 
+	 * @param file
+	 *            the file
+	 * @param out
+	 *            the stream
+	 * @throws IOException
+	 *             if the file can't be read or the stream written
+	 */
+	static void transfer(Path file, OutputStream out) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// not closed: closing it would close out
+			WritableByteChannel target = Channels.newChannel(out);
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				position += channel.transferTo(position, size - position, target);
+			}
+		}
+		out.flush();
+	}
+
+	@Override
+	public long getContentLength() {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read the size of " + file + ": " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+}
@@ -0,0 +1,68 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.nio.charset.Charset;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+/**
+ * A request whose body is generated as it's sent, see
+ * {@link GeneratedRequestEntity}.
+ */
+public class GeneratedBodyRestRequest extends StreamingRestRequest {
+
+	private final String text;
+
+	private final long length;
+
+	/**
+	 * @param text
+	 *            the text to repeat
+	 * @param length
+	 *            the number of bytes to generate, -1 to send the text once
+	 */
+	public GeneratedBodyRestRequest(String text, long length) {
+		this.text = text;
+		this.length = length;
+		// the actual body is only generated when the request entity is written
+		setBody("");
+	}
+
+	/**
+	 * @return the text repeated in the body
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the number of bytes of the body, -1 if the text is sent once
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	@Override
+	public RequestEntity createRequestEntity() {
+		return new GeneratedRequestEntity(text, length, Charset.forName(getCharset()), getContentType());
+	}
+}
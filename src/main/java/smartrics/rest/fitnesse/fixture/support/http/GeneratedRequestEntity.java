@@ -0,0 +1,143 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+/**
+ * Request entity generating its content as it's written: a text repeated up
+ * to a number of bytes, the last repetition cut at the length; or the text
+ * once, encoded as it's written rather than upfront. The entity is sent with
+ * chunked transfer encoding.
+ */
+public class GeneratedRequestEntity implements RequestEntity {
+
+	private static final Pattern LENGTH = Pattern.compile("(\\d+)\\s*([kKmMgG]?[bB]?)");
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String text;
+
+	private final long length;
+
+	private final Charset charset;
+
+	private final String contentType;
+
+	/**
+	 * @param text
+	 *            the text to repeat, not empty if length is positive
+	 * @param length
+	 *            the number of bytes to generate, -1 to write the text once
+	 * @param charset
+	 *            the charset of the text
+	 * @param contentType
+	 *            the content type of the body, may be null
+	 */
+	public GeneratedRequestEntity(String text, long length, Charset charset, String contentType) {
+		if (length > 0 && text.isEmpty()) {
+			throw new IllegalArgumentException("Can't generate " + length + " bytes from an empty text");
+		}
+		this.text = text;
+		this.length = length;
+		this.charset = charset;
+		this.contentType = contentType;
+	}
+
+	/**
+	 * @param value
+	 *            a length in bytes, optionally in {@code KB}, {@code MB} or
+	 *            {@code GB}, e.g. {@code 2GB}
+	 * @return the length in bytes
+	 */
+	public static long parseLength(String value) {
+		Matcher m = LENGTH.matcher(value.trim());
+		if (!m.matches()) {
+			throw new IllegalArgumentException("Invalid length '" + value + "', expected bytes, KB, MB or GB");
+		}
+		long n = Long.parseLong(m.group(1));
+		String unit = m.group(2).toUpperCase(Locale.ENGLISH);
+		if (unit.startsWith("K")) {
+			return n * 1024;
+		}
+		if (unit.startsWith("M")) {
+			return n * 1024 * 1024;
+		}
+		if (unit.startsWith("G")) {
+			return n * 1024 * 1024 * 1024;
+		}
+		return n;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public void writeRequest(OutputStream out) throws IOException {
+		if (length < 0) {
+			// not closed: out belongs to the connection
+			Writer writer = new OutputStreamWriter(out, charset);
+			for (int i = 0; i < text.length(); i += BUFFER_SIZE) {
+				writer.write(text, i, Math.min(BUFFER_SIZE, text.length() - i));
+			}
+			writer.flush();
+			return;
+		}
+		if (length == 0) {
+			// the text may be empty, there's nothing to repeat
+			out.flush();
+			return;
+		}
+		byte[] pattern = text.getBytes(charset);
+		byte[] buffer = new byte[Math.max(pattern.length, BUFFER_SIZE / pattern.length * pattern.length)];
+		for (int i = 0; i < buffer.length; i += pattern.length) {
+			System.arraycopy(pattern, 0, buffer, i, pattern.length);
+		}
+		long remaining = length;
+		while (remaining > 0) {
+			int n = (int) Math.min(buffer.length, remaining);
+			out.write(buffer, 0, n);
+			remaining -= n;
+		}
+		out.flush();
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+}
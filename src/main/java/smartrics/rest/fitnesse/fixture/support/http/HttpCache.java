@@ -0,0 +1,503 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import smartrics.rest.client.RestData.Header;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.Config;
+
+/**
+ * A private HTTP cache (RFC 9111) for GET responses, shared by the clients
+ * built with the same {@link Config}.
+ * 
+ * Responses are stored if cacheable and fresh for {@code max-age} seconds,
+ * until {@code Expires} or, lacking both, for a tenth of the time since they
+ * were last modified. Stale responses, and those stored with
+ * {@code no-cache}, are revalidated with {@code If-None-Match} and
+ * {@code If-Modified-Since}; a {@code 304} refreshes the stored response.
+ * {@code Vary} is honoured; requests with {@code no-store} bypass the cache
+ * and {@code no-cache} forces a revalidation. Successful unsafe requests
+ * invalidate the response stored for their uri.
+ * 
+ * The cache is enabled with {@code http.client.cache} and bounded by
+ * {@code http.client.cache.max.entries} and
+ * {@code http.client.cache.max.bytes}; the least recently used responses are
+ * evicted first. Bodies spilled to disk or truncated are not stored.
+ */
+public final class HttpCache {
+
+	/**
+	 * Executes a request on the wire.
+	 */
+	public interface Transport {
+		/**
+		 * @param hostAddr
+		 *            the host address
+		 * @param request
+		 *            the request, to which {@link HttpCache#conditionalHeaders()}
+		 *            must be added
+		 * @return the response
+		 */
+		RestResponse execute(String hostAddr, RestRequest request);
+	}
+
+	/**
+	 * default max number of stored responses: 1000.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	/**
+	 * default max size of the stored responses: 64MB.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	private static final ConcurrentMap<String, HttpCache> CACHES = new ConcurrentHashMap<String, HttpCache>();
+
+	// the conditional headers are passed to the transport out of band, as the
+	// request may be shared by concurrent rows and can't be modified
+	private static final ThreadLocal<List<Header>> CONDITIONAL_HEADERS = new ThreadLocal<List<Header>>();
+
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	private volatile int maxEntries;
+
+	private volatile long maxBytes;
+
+	private long bytes;
+
+	HttpCache(int maxEntries, long maxBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @param config
+	 *            the config, may be null
+	 * @return the cache shared by the clients built with the config, or null
+	 *         if {@code http.client.cache} is not true.
+	 */
+	public static HttpCache getCache(Config config) {
+		if (config == null || !config.getAsBoolean("http.client.cache", false)) {
+			return null;
+		}
+		int maxEntries = config.getAsInteger("http.client.cache.max.entries", DEFAULT_MAX_ENTRIES);
+		long maxBytes = config.getAsLong("http.client.cache.max.bytes", DEFAULT_MAX_BYTES);
+		HttpCache cache = CACHES.get(config.getName());
+		if (cache == null) {
+			HttpCache newCache = new HttpCache(maxEntries, maxBytes);
+			cache = CACHES.putIfAbsent(config.getName(), newCache);
+			if (cache == null) {
+				cache = newCache;
+			}
+		}
+		cache.maxEntries = maxEntries;
+		cache.maxBytes = maxBytes;
+		return cache;
+	}
+
+	/**
+	 * empties all the caches.
+	 */
+	public static void clearAll() {
+		for (HttpCache cache : CACHES.values()) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the conditional headers to add to the request being executed by
+	 *         this thread's {@link Transport}, empty if it's not a
+	 *         revalidation.
+	 */
+	public static List<Header> conditionalHeaders() {
+		List<Header> headers = CONDITIONAL_HEADERS.get();
+		return headers == null ? Collections.<Header> emptyList() : headers;
+	}
+
+	/**
+	 * Executes the request, serving it from the cache if possible.
+	 * 
+	 * @param hostAddr
+	 *            the host address
+	 * @param request
+	 *            the request
+	 * @param transport
+	 *            executes the request if not served from the cache
+	 * @return the response; a {@link CachedRestResponse} if it was served from
+	 *         the cache or revalidated.
+	 */
+	public RestResponse execute(String hostAddr, RestRequest request, Transport transport) {
+		String key = key(hostAddr, request);
+		String method = request.getMethod().name();
+		if (!"Get".equals(method)) {
+			RestResponse response = transport.execute(hostAddr, request);
+			if (!"Head".equals(method) && !"Options".equals(method) && !"Trace".equals(method)
+					&& response.getStatusCode() != null && response.getStatusCode() < 400) {
+				remove(key);
+			}
+			return response;
+		}
+		Directives requestDirectives = new Directives(header(request.getHeaders(), "Cache-Control"));
+		if (requestDirectives.has("no-store")) {
+			return transport.execute(hostAddr, request);
+		}
+		long now = System.currentTimeMillis();
+		Entry entry = get(key);
+		if (entry != null && !entry.varyMatches(request)) {
+			entry = null;
+		}
+		if (entry != null && !requestDirectives.has("no-cache") && entry.isFresh(now)) {
+			return entry.toResponse(request, CachedRestResponse.HIT, now);
+		}
+		List<Header> conditional = entry == null ? null : entry.conditionalHeaders();
+		RestResponse response;
+		long requestTime = System.currentTimeMillis();
+		CONDITIONAL_HEADERS.set(conditional);
+		try {
+			response = transport.execute(hostAddr, request);
+		} finally {
+			CONDITIONAL_HEADERS.remove();
+		}
+		long responseTime = System.currentTimeMillis();
+		if (conditional != null && !conditional.isEmpty() && Integer.valueOf(304).equals(response.getStatusCode())) {
+			Entry refreshed = entry.refresh(response.getHeaders(), requestTime, responseTime);
+			put(key, refreshed);
+			return refreshed.toResponse(request, CachedRestResponse.REVALIDATED, responseTime);
+		}
+		Entry stored = Entry.of(request, response, requestTime, responseTime);
+		if (stored == null) {
+			remove(key);
+		} else {
+			put(key, stored);
+		}
+		return response;
+	}
+
+	/**
+	 * @return the number of stored responses.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the approximate number of bytes of the stored responses.
+	 */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * removes all the stored responses.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	private synchronized Entry get(String key) {
+		return entries.get(key);
+	}
+
+	private synchronized void remove(String key) {
+		Entry removed = entries.remove(key);
+		if (removed != null) {
+			bytes -= removed.size;
+		}
+	}
+
+	private synchronized void put(String key, Entry entry) {
+		remove(key);
+		if (entry.size > maxBytes) {
+			return;
+		}
+		entries.put(key, entry);
+		bytes += entry.size;
+		Iterator<Entry> lru = entries.values().iterator();
+		while ((entries.size() > maxEntries || bytes > maxBytes) && lru.hasNext()) {
+			bytes -= lru.next().size;
+			lru.remove();
+		}
+	}
+
+	private static String key(String hostAddr, RestRequest request) {
+		StringBuilder key = new StringBuilder(hostAddr).append(request.getResource());
+		String query = request.getQuery();
+		if (query != null && !query.isEmpty()) {
+			key.append('?').append(query);
+		}
+		return key.toString();
+	}
+
+	static String header(List<Header> headers, String name) {
+		for (Header h : headers) {
+			if (name.equalsIgnoreCase(h.getName())) {
+				return h.getValue();
+			}
+		}
+		return null;
+	}
+
+	static long parseDate(String value) {
+		if (value == null) {
+			return -1;
+		}
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		try {
+			return format.parse(value.trim()).getTime();
+		} catch (ParseException e) {
+			return -1;
+		}
+	}
+
+	static String formatDate(long millis) {
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(new Date(millis));
+	}
+
+	// the Cache-Control directives
+	static final class Directives {
+
+		private final Map<String, String> directives = new HashMap<String, String>();
+
+		Directives(String cacheControl) {
+			if (cacheControl == null) {
+				return;
+			}
+			for (String directive : cacheControl.split(",")) {
+				int eq = directive.indexOf('=');
+				String name = (eq < 0 ? directive : directive.substring(0, eq)).trim().toLowerCase(Locale.ENGLISH);
+				String value = eq < 0 ? null : directive.substring(eq + 1).trim().replace("\"", "");
+				if (!name.isEmpty()) {
+					directives.put(name, value);
+				}
+			}
+		}
+
+		boolean has(String name) {
+			return directives.containsKey(name);
+		}
+
+		// in seconds, -1 if missing or invalid
+		long seconds(String name) {
+			String value = directives.get(name);
+			if (value == null) {
+				return -1;
+			}
+			try {
+				return Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+	}
+
+	private static final class Entry {
+
+		private static final List<Integer> CACHEABLE_BY_DEFAULT = Arrays.asList(200, 203, 204, 300, 301,
+				404, 405, 410, 414, 501);
+
+		private final Integer statusCode;
+
+		private final String statusText;
+
+		private final List<Header> headers;
+
+		private final String body;
+
+		private final Map<String, String> vary;
+
+		// all in ms
+		private final long freshnessLifetime;
+
+		private final long initialAge;
+
+		private final long responseTime;
+
+		private final long size;
+
+		private Entry(Integer statusCode, String statusText, List<Header> headers, String body,
+				Map<String, String> vary, long requestTime, long responseTime) {
+			this.statusCode = statusCode;
+			this.statusText = statusText;
+			this.headers = headers;
+			this.body = body;
+			this.vary = vary;
+			this.responseTime = responseTime;
+			long date = parseDate(header(headers, "Date"));
+			long apparentAge = date < 0 ? 0 : Math.max(0, responseTime - date);
+			long ageValue = 0;
+			try {
+				String age = header(headers, "Age");
+				ageValue = age == null ? 0 : Long.parseLong(age.trim()) * 1000;
+			} catch (NumberFormatException e) {
+				ageValue = 0;
+			}
+			this.initialAge = Math.max(apparentAge, ageValue + (responseTime - requestTime));
+			this.freshnessLifetime = freshnessLifetime(headers, date < 0 ? responseTime : date);
+			long size = body == null ? 0 : 2L * body.length();
+			for (Header h : headers) {
+				size += 2L * (h.getName().length() + h.getValue().length());
+			}
+			this.size = size;
+		}
+
+		// null if the response can't be stored
+		static Entry of(RestRequest request, RestResponse response, long requestTime, long responseTime) {
+			if (response.getStatusCode() == null || !CACHEABLE_BY_DEFAULT.contains(response.getStatusCode())) {
+				return null;
+			}
+			if (response instanceof StreamedRestResponse
+					&& (((StreamedRestResponse) response).isBodySpilled() || ((StreamedRestResponse) response)
+							.isBodyTruncated())) {
+				return null;
+			}
+			List<Header> headers = new ArrayList<Header>(response.getHeaders());
+			Directives directives = new Directives(header(headers, "Cache-Control"));
+			if (directives.has("no-store")) {
+				return null;
+			}
+			Map<String, String> vary = new HashMap<String, String>();
+			String varyHeader = header(headers, "Vary");
+			if (varyHeader != null) {
+				for (String name : varyHeader.split(",")) {
+					String n = name.trim().toLowerCase(Locale.ENGLISH);
+					if ("*".equals(n)) {
+						return null;
+					}
+					if (!n.isEmpty()) {
+						vary.put(n, header(request.getHeaders(), n));
+					}
+				}
+			}
+			Entry entry = new Entry(response.getStatusCode(), response.getStatusText(), headers, response.getBody(),
+					vary, requestTime, responseTime);
+			if (entry.freshnessLifetime <= 0 && entry.conditionalHeaders().isEmpty()) {
+				return null;
+			}
+			return entry;
+		}
+
+		private static long freshnessLifetime(List<Header> headers, long date) {
+			Directives directives = new Directives(header(headers, "Cache-Control"));
+			if (directives.has("no-cache")) {
+				return 0;
+			}
+			long maxAge = directives.seconds("max-age");
+			if (maxAge >= 0) {
+				return maxAge * 1000;
+			}
+			String expiresHeader = header(headers, "Expires");
+			if (expiresHeader != null) {
+				long expires = parseDate(expiresHeader);
+				return expires < 0 ? 0 : Math.max(0, expires - date);
+			}
+			long lastModified = parseDate(header(headers, "Last-Modified"));
+			if (lastModified >= 0 && lastModified < date) {
+				return (date - lastModified) / 10;
+			}
+			return 0;
+		}
+
+		boolean isFresh(long now) {
+			return freshnessLifetime > currentAge(now);
+		}
+
+		long currentAge(long now) {
+			return initialAge + Math.max(0, now - responseTime);
+		}
+
+		boolean varyMatches(RestRequest request) {
+			for (Map.Entry<String, String> e : vary.entrySet()) {
+				String value = header(request.getHeaders(), e.getKey());
+				if (value == null ? e.getValue() != null : !value.equals(e.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		List<Header> conditionalHeaders() {
+			List<Header> conditional = new ArrayList<Header>(2);
+			String etag = header(headers, "ETag");
+			if (etag != null) {
+				conditional.add(new Header("If-None-Match", etag));
+			}
+			String lastModified = header(headers, "Last-Modified");
+			if (lastModified != null) {
+				conditional.add(new Header("If-Modified-Since", lastModified));
+			}
+			return conditional;
+		}
+
+		// the headers of a 304 replace the stored ones
+		Entry refresh(List<Header> notModifiedHeaders, long requestTime, long responseTime) {
+			List<Header> updated = new ArrayList<Header>();
+			for (Header h : headers) {
+				if (header(notModifiedHeaders, h.getName()) == null) {
+					updated.add(h);
+				}
+			}
+			for (Header h : notModifiedHeaders) {
+				if (!"Content-Length".equalsIgnoreCase(h.getName())) {
+					updated.add(h);
+				}
+			}
+			return new Entry(statusCode, statusText, updated, body, vary, requestTime, responseTime);
+		}
+
+		CachedRestResponse toResponse(RestRequest request, String cacheStatus, long now) {
+			long age = currentAge(now) / 1000;
+			CachedRestResponse response = new CachedRestResponse(cacheStatus, age);
+			response.setStatusCode(statusCode);
+			response.setStatusText(statusText);
+			for (Header h : headers) {
+				if (!"Age".equalsIgnoreCase(h.getName())) {
+					response.addHeader(h.getName(), h.getValue());
+				}
+			}
+			response.addHeader("Age", Long.toString(age));
+			response.setBody(body);
+			response.setResource(request.getResource());
+			response.setTransactionId(request.getTransactionId());
+			return response;
+		}
+	}
+}
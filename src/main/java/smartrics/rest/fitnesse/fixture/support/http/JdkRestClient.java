@@ -0,0 +1,390 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.methods.multipart.MultipartRequestEntity;
+
+import smartrics.rest.client.RestClientImpl;
+import smartrics.rest.client.RestData.Header;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.Config;
+import smartrics.rest.fitnesse.fixture.support.HttpClientBuilder;
+import smartrics.rest.fitnesse.fixture.support.TlsContexts;
+
+/**
+ * A rest client executing the requests on the JDK
+ * {@link HttpURLConnection}, which keeps connections alive and pools them per
+ * host (see the {@code http.keepAlive} and {@code http.maxConnections} system
+ * properties).
+ * 
+ * It honours the same config as the commons-httpclient engine:
+ * {@code http.client.connection.timeout}, {@code http.proxy.host},
+ * {@code http.proxy.port} and the basic authentication credentials, that are
+ * sent preemptively. Https connections are opened with the TLS context of
+ * the config, see {@link TlsContexts}. Files, multipart files and generated
+ * bodies are streamed, see
+ * {@link StreamingRestRequest#uploadEntityOf(RestRequest)}.
+ * 
+ * HttpURLConnection only speaks HTTP/1.x; the version the response was
+ * received with is available from the returned {@link StreamedRestResponse}.
+ * 
+ * Response bodies are held in memory up to
+ * {@code http.client.response.body.memory.limit} bytes and spilled to a
+ * temporary file above it; they're truncated at
+ * {@code http.client.response.body.size.limit} bytes, if set.
+ * 
+ * Compressed responses are decoded and request bodies compressed as
+ * configured, see {@link ContentCoding}. GET responses are cached if
+ * {@code http.client.cache} is true, see {@link HttpCache}. Responses carry
+ * the {@link RequestTiming} of the request.
+ * 
+ * Requests can also be executed asynchronously, see
+ * {@link #executeAsync(String, RestRequest)}.
+ */
+public class JdkRestClient extends RestClientImpl {
+
+	/**
+	 * bodies larger than this are spilled to disk, unless configured otherwise.
+	 */
+	public static final long DEFAULT_BODY_MEMORY_LIMIT = 8L * 1024 * 1024;
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "restfixture-jdk-client-" + count.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final int timeout;
+
+	private final Proxy proxy;
+
+	private final String authorization;
+
+	private final long bodyMemoryLimit;
+
+	private final long bodySizeLimit;
+
+	private final String acceptEncoding;
+
+	private final boolean decompress;
+
+	private final String requestCoding;
+
+	private final long compressionThreshold;
+
+	private final HttpCache cache;
+
+	private final SSLSocketFactory sslSocketFactory;
+
+	/**
+	 * @param config
+	 *            the config, may be null in which case the defaults apply.
+	 */
+	public JdkRestClient(Config config) {
+		// the commons client is not used; it's only there to be returned by
+		// getClient()
+		super(new HttpClient());
+		if (config == null) {
+			timeout = HttpClientBuilder.DEFAULT_SO_TO;
+			proxy = Proxy.NO_PROXY;
+			authorization = null;
+			bodyMemoryLimit = DEFAULT_BODY_MEMORY_LIMIT;
+			bodySizeLimit = -1;
+			acceptEncoding = null;
+			decompress = true;
+			requestCoding = null;
+			compressionThreshold = ContentCoding.DEFAULT_COMPRESSION_THRESHOLD;
+			cache = null;
+			sslSocketFactory = null;
+			return;
+		}
+		timeout = config.getAsInteger("http.client.connection.timeout", HttpClientBuilder.DEFAULT_SO_TO);
+		String proxyHost = config.get("http.proxy.host");
+		if (proxyHost == null) {
+			proxy = Proxy.NO_PROXY;
+		} else {
+			int proxyPort = config.getAsInteger("http.proxy.port", HttpClientBuilder.DEFAULT_PROXY_PORT);
+			proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyHost, proxyPort));
+		}
+		String username = config.get("http.basicauth.username");
+		String password = config.get("http.basicauth.password");
+		if (username != null && password != null) {
+			byte[] credentials = (username + ":" + password).getBytes(Charset.forName("ISO-8859-1"));
+			authorization = "Basic " + new String(Base64.encodeBase64(credentials), Charset.forName("US-ASCII"));
+		} else {
+			authorization = null;
+		}
+		bodyMemoryLimit = config.getAsLong("http.client.response.body.memory.limit", DEFAULT_BODY_MEMORY_LIMIT);
+		bodySizeLimit = config.getAsLong("http.client.response.body.size.limit", -1L);
+		acceptEncoding = config.get("http.client.accept.encoding");
+		decompress = config.getAsBoolean("http.client.response.decompress", true);
+		requestCoding = ContentCoding.requestCoding(config);
+		compressionThreshold = config.getAsLong("http.client.request.compression.threshold",
+				(long) ContentCoding.DEFAULT_COMPRESSION_THRESHOLD);
+		cache = HttpCache.getCache(config);
+		sslSocketFactory = TlsContexts.getSocketFactory(config);
+	}
+
+	@Override
+	public RestResponse execute(String hostAddr, RestRequest request) {
+		if (request == null || !request.isValid()) {
+			throw new IllegalArgumentException("Invalid request " + request);
+		}
+		if (request.getTransactionId() == null) {
+			request.setTransactionId(Long.valueOf(System.currentTimeMillis()));
+		}
+		RequestTiming timing = RequestTiming.start();
+		RestResponse response;
+		try {
+			if (cache == null) {
+				response = executeOnConnection(hostAddr, request);
+			} else {
+				response = cache.execute(hostAddr, request, new HttpCache.Transport() {
+					@Override
+					public RestResponse execute(String hostAddr, RestRequest request) {
+						return executeOnConnection(hostAddr, request);
+					}
+				});
+			}
+		} finally {
+			if (timing != null) {
+				timing.finish();
+			}
+		}
+		if (timing != null && response instanceof StreamedRestResponse) {
+			((StreamedRestResponse) response).setTiming(timing);
+		}
+		return response;
+	}
+
+	private RestResponse executeOnConnection(String hostAddr, RestRequest request) {
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) createUrl(hostAddr, request).openConnection(proxy);
+			if (sslSocketFactory != null && connection instanceof HttpsURLConnection) {
+				((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+			}
+			connection.setConnectTimeout(timeout);
+			connection.setReadTimeout(timeout);
+			connection.setInstanceFollowRedirects(request.isFollowRedirect());
+			connection.setRequestMethod(request.getMethod().name().toUpperCase(Locale.ENGLISH));
+			for (Header h : request.getHeaders()) {
+				connection.addRequestProperty(h.getName(), h.getValue());
+			}
+			for (Header h : HttpCache.conditionalHeaders()) {
+				connection.setRequestProperty(h.getName(), h.getValue());
+			}
+			if (authorization != null && connection.getRequestProperty("Authorization") == null) {
+				connection.setRequestProperty("Authorization", authorization);
+			}
+			if (acceptEncoding != null && connection.getRequestProperty("Accept-Encoding") == null) {
+				connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+			}
+			writeBody(connection, request);
+			return readResponse(connection, request);
+		} catch (IOException e) {
+			if (connection != null) {
+				connection.disconnect();
+			}
+			throw new IllegalStateException("Error executing " + request.getMethod() + " "
+					+ request.getResource() + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Executes the request in a background thread, against the current base
+	 * url.
+	 * 
+	 * @param request
+	 *            the request
+	 * @return the future response.
+	 */
+	public Future<RestResponse> executeAsync(RestRequest request) {
+		return executeAsync(getBaseUrl(), request);
+	}
+
+	/**
+	 * Executes the request in a background thread.
+	 * 
+	 * @param hostAddr
+	 *            the host address
+	 * @param request
+	 *            the request
+	 * @return the future response.
+	 */
+	public Future<RestResponse> executeAsync(final String hostAddr, final RestRequest request) {
+		return EXECUTOR.submit(new Callable<RestResponse>() {
+			@Override
+			public RestResponse call() {
+				return execute(hostAddr, request);
+			}
+		});
+	}
+
+	private URL createUrl(String hostAddr, RestRequest request) throws IOException {
+		String resource = request.getResource();
+		if (!request.isResourceUriEscaped()) {
+			try {
+				resource = new URI(null, null, resource, null).toASCIIString();
+			} catch (URISyntaxException e) {
+				throw new IllegalArgumentException("Invalid resource " + resource, e);
+			}
+		}
+		StringBuilder url = new StringBuilder(hostAddr).append(resource);
+		String query = request.getQuery();
+		if (query != null && !query.isEmpty()) {
+			url.append('?').append(query);
+		}
+		return new URL(url.toString());
+	}
+
+	private void writeBody(HttpURLConnection connection, RestRequest request) throws IOException {
+		RequestEntity entity = StreamingRestRequest.uploadEntityOf(request);
+		if (entity != null) {
+			if (entity instanceof MultipartRequestEntity) {
+				// the boundary is only known to the entity
+				connection.setRequestProperty("Content-Type", entity.getContentType());
+			} else {
+				setContentTypeIfMissing(connection, entity.getContentType());
+			}
+			try (OutputStream out = openBodyStream(connection, entity.getContentLength())) {
+				new MeteredRequestEntity(entity).writeRequest(out);
+			}
+		} else if (request.getBody() != null && !request.getBody().isEmpty()) {
+			byte[] body = request.getBody().getBytes(Charset.forName(request.getCharset()));
+			setContentTypeIfMissing(connection, request.getContentType() + "; charset=" + request.getCharset());
+			try (OutputStream out = openBodyStream(connection, body.length)) {
+				out.write(body);
+			}
+		} else {
+			long start = System.nanoTime();
+			connection.connect();
+			RequestTiming.record("connect", System.nanoTime() - start);
+		}
+	}
+
+	// compresses bodies of unknown length or at least as long as the
+	// threshold, unless the request sets its own Content-Encoding
+	private OutputStream openBodyStream(HttpURLConnection connection, long length) throws IOException {
+		connection.setDoOutput(true);
+		if (requestCoding != null && connection.getRequestProperty("Content-Encoding") == null
+				&& (length < 0 || length >= compressionThreshold)) {
+			connection.setRequestProperty("Content-Encoding", requestCoding);
+			connection.setChunkedStreamingMode(0);
+			return ContentCoding.encode(requestCoding, connect(connection));
+		}
+		if (length < 0) {
+			connection.setChunkedStreamingMode(0);
+		} else {
+			connection.setFixedLengthStreamingMode(length);
+		}
+		return connect(connection);
+	}
+
+	// the streaming mode must be set before connecting, so bodies connect
+	// when opening the output stream
+	private OutputStream connect(HttpURLConnection connection) throws IOException {
+		long start = System.nanoTime();
+		OutputStream out = connection.getOutputStream();
+		RequestTiming.record("connect", System.nanoTime() - start);
+		return out;
+	}
+
+	private void setContentTypeIfMissing(HttpURLConnection connection, String contentType) {
+		if (contentType != null && connection.getRequestProperty("Content-Type") == null) {
+			connection.setRequestProperty("Content-Type", contentType);
+		}
+	}
+
+	private RestResponse readResponse(HttpURLConnection connection, RestRequest request) throws IOException {
+		StreamedRestResponse response = new StreamedRestResponse();
+		response.setStatusCode(connection.getResponseCode());
+		RequestTiming.record("ttfb", RequestTiming.elapsed());
+		response.setProtocolVersion(protocolVersion(connection.getHeaderField(0)));
+		response.setStatusText(connection.getResponseMessage());
+		for (Map.Entry<String, List<String>> e : connection.getHeaderFields().entrySet()) {
+			// the null key is the status line
+			if (e.getKey() != null) {
+				for (String value : e.getValue()) {
+					response.addHeader(e.getKey(), value);
+				}
+			}
+		}
+		long downloadStart = System.nanoTime();
+		response.setContent(readBody(connection));
+		RequestTiming.record("download", System.nanoTime() - downloadStart);
+		response.setResource(request.getResource());
+		response.setTransactionId(request.getTransactionId());
+		return response;
+	}
+
+	private static String protocolVersion(String statusLine) {
+		if (statusLine == null || !statusLine.startsWith("HTTP/")) {
+			return null;
+		}
+		int space = statusLine.indexOf(' ');
+		return space < 0 ? statusLine : statusLine.substring(0, space);
+	}
+
+	// reads the stream to the end and closes it, so that the connection goes
+	// back to the keep-alive cache; a truncated read closes it early instead
+	private ResponseBody readBody(HttpURLConnection connection) throws IOException {
+		InputStream in = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection
+				.getInputStream();
+		if (in == null) {
+			return ResponseBody.of(new byte[0]);
+		}
+		String coding = decompress ? ContentCoding.supported(connection.getContentEncoding()) : null;
+		return ResponseBody.read(coding, in, bodyMemoryLimit, bodySizeLimit);
+	}
+}
@@ -0,0 +1,85 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+/**
+ * A request entity counting the bytes it writes and timing the writing, that
+ * are recorded as the {@code upload} of the {@link RequestTiming} of the
+ * request.
+ */
+public class MeteredRequestEntity implements RequestEntity {
+
+	private final RequestEntity entity;
+
+	/**
+	 * @param entity
+	 *            the entity to meter
+	 */
+	public MeteredRequestEntity(RequestEntity entity) {
+		this.entity = entity;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return entity.isRepeatable();
+	}
+
+	@Override
+	public void writeRequest(OutputStream out) throws IOException {
+		final long[] count = new long[1];
+		long start = System.nanoTime();
+		entity.writeRequest(new FilterOutputStream(out) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				count[0]++;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				count[0] += len;
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		});
+		RequestTiming.recordUpload(count[0], System.nanoTime() - start);
+	}
+
+	@Override
+	public long getContentLength() {
+		return entity.getContentLength();
+	}
+
+	@Override
+	public String getContentType() {
+		return entity.getContentType();
+	}
+}
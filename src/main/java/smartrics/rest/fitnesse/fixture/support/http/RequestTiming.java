@@ -0,0 +1,223 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import smartrics.rest.fitnesse.fixture.support.Latencies;
+
+/**
+ * Where the time of a request went. The phases are
+ * <ul>
+ * <li/>{@code acquire}: taking a connection from the shared pool
+ * <li/>{@code connect}: opening the connection, including the TLS handshake
+ * for https; about 0 when a kept alive connection is reused
+ * <li/>{@code upload}: writing a streamed request body (files, multipart
+ * files, generated bodies), whose size is also kept
+ * <li/>{@code ttfb}: from the start of the request to the first byte of the
+ * response
+ * <li/>{@code download}: reading the body once the response headers are in
+ * <li/>{@code total}: the whole request, including the reading of the body
+ * </ul>
+ * Engines measure what their transport exposes: the commons-httpclient engine
+ * measures {@code upload} and {@code total}, and {@code acquire} when
+ * {@code http.client.connection.pool.shared} is true (see
+ * {@link smartrics.rest.fitnesse.fixture.support.HttpConnectionPools}); the
+ * jdk engine {@code connect}, {@code upload}, {@code ttfb}, {@code download}
+ * and {@code total}. Responses served by the http cache or replayed from a
+ * {@link TrafficArchive} only have a {@code total}.
+ * 
+ * The timing of the request being executed is bound to the executing thread,
+ * so that the layers of the transport can record their phases.
+ */
+public final class RequestTiming {
+
+	/**
+	 * the phases, in order.
+	 */
+	public static final List<String> PHASES = Collections.unmodifiableList(Arrays.asList("acquire", "connect",
+			"upload", "ttfb", "download", "total"));
+
+	private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<RequestTiming>();
+
+	private final Map<String, Long> nanos = new LinkedHashMap<String, Long>();
+
+	private final long start;
+
+	private long uploadedBytes = -1;
+
+	private RequestTiming() {
+		start = System.nanoTime();
+	}
+
+	/**
+	 * Starts timing a request on this thread; requests nested in a timed
+	 * one, e.g. cache revalidations, add to the outer timing.
+	 * 
+	 * @return the timing, to be {@link #finish()}ed.
+	 */
+	public static RequestTiming start() {
+		RequestTiming timing = CURRENT.get();
+		if (timing != null) {
+			return null;
+		}
+		timing = new RequestTiming();
+		CURRENT.set(timing);
+		return timing;
+	}
+
+	/**
+	 * Records a phase of the request being timed on this thread, if any.
+	 * 
+	 * @param phase
+	 *            one of {@link #PHASES}
+	 * @param nanos
+	 *            the duration
+	 */
+	public static void record(String phase, long nanos) {
+		RequestTiming timing = CURRENT.get();
+		if (timing != null) {
+			timing.nanos.put(phase, nanos);
+		}
+	}
+
+	/**
+	 * Records the upload of the body of the request being timed on this
+	 * thread, if any.
+	 * 
+	 * @param bytes
+	 *            the bytes written
+	 * @param nanos
+	 *            the duration
+	 */
+	public static void recordUpload(long bytes, long nanos) {
+		RequestTiming timing = CURRENT.get();
+		if (timing != null) {
+			timing.nanos.put("upload", nanos);
+			timing.uploadedBytes = bytes;
+		}
+	}
+
+	/**
+	 * @return the nanos elapsed since the request being timed on this thread
+	 *         started, -1 if none is.
+	 */
+	public static long elapsed() {
+		RequestTiming timing = CURRENT.get();
+		return timing == null ? -1 : System.nanoTime() - timing.start;
+	}
+
+	/**
+	 * Records the total and stops timing.
+	 * 
+	 * @return this timing.
+	 */
+	public RequestTiming finish() {
+		nanos.put("total", System.nanoTime() - start);
+		CURRENT.remove();
+		return this;
+	}
+
+	/**
+	 * @param phase
+	 *            one of {@link #PHASES}
+	 * @return the duration of the phase in ms, null if not measured.
+	 */
+	public Double getMillis(String phase) {
+		if (!PHASES.contains(phase)) {
+			throw new IllegalArgumentException("Unknown timing phase '" + phase + "', use one of " + PHASES);
+		}
+		Long n = nanos.get(phase);
+		return n == null ? null : n / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * @return the bytes of the streamed body, -1 if none was.
+	 */
+	public long getUploadedBytes() {
+		return uploadedBytes;
+	}
+
+	/**
+	 * @return the size, duration and rate of the upload, e.g.
+	 *         {@code uploaded 2.0GB in 12.3s (166.5MB/s)}; null if no
+	 *         streamed body was uploaded.
+	 */
+	public String describeUpload() {
+		Long n = nanos.get("upload");
+		if (n == null || uploadedBytes < 0) {
+			return null;
+		}
+		double seconds = n / (double) TimeUnit.SECONDS.toNanos(1);
+		String duration = seconds >= 1 ? String.format(Locale.ENGLISH, "%.1fs", seconds) : Latencies.toMillis(n);
+		String rate = seconds == 0 ? "-" : toUnits((long) (uploadedBytes / seconds)) + "/s";
+		return "uploaded " + toUnits(uploadedBytes) + " in " + duration + " (" + rate + ")";
+	}
+
+	private static String toUnits(long bytes) {
+		if (bytes < 1024) {
+			return bytes + "B";
+		}
+		String[] units = { "KB", "MB", "GB", "TB" };
+		double value = bytes;
+		int unit = -1;
+		while (value >= 1024 && unit < units.length - 1) {
+			value /= 1024;
+			unit++;
+		}
+		return String.format(Locale.ENGLISH, "%.1f%s", value, units[unit]);
+	}
+
+	/**
+	 * @return the durations in ms of the measured phases, in order.
+	 */
+	public Map<String, Double> toMillis() {
+		Map<String, Double> millis = new LinkedHashMap<String, Double>();
+		for (String phase : PHASES) {
+			Double ms = getMillis(phase);
+			if (ms != null) {
+				millis.put(phase, ms);
+			}
+		}
+		return millis;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (String phase : PHASES) {
+			Long n = nanos.get(phase);
+			if (n != null) {
+				if (sb.length() > 0) {
+					sb.append(", ");
+				}
+				sb.append(phase).append('=').append(Latencies.toMillis(n));
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,292 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The body of a response, read with bounds: held in memory up to a limit and
+ * spilled to a temporary file above it, and truncated at a hard cap. Bodies
+ * received in a {@link ContentCoding} are held decoded; the limits apply to
+ * the decoded bytes.
+ * 
+ * Spilled bodies should be {@link #discard()}ed when no longer needed; the
+ * files of those that aren't are deleted when the JVM exits.
+ */
+public final class ResponseBody {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Set<Path> SPILLED = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("restfixture-spilled-bodies-cleaner") {
+			@Override
+			public void run() {
+				for (Path file : SPILLED) {
+					delete(file);
+				}
+			}
+		});
+	}
+
+	private final byte[] bytes;
+
+	private final Path file;
+
+	private final long length;
+
+	private final boolean truncated;
+
+	private String coding;
+
+	private long encodedLength;
+
+	private ResponseBody(byte[] bytes, Path file, long length, boolean truncated) {
+		this.bytes = bytes;
+		this.file = file;
+		this.length = length;
+		this.truncated = truncated;
+		this.encodedLength = length;
+	}
+
+	/**
+	 * Reads and decodes the stream, and closes it.
+	 * 
+	 * @param coding
+	 *            the content coding of the stream, see
+	 *            {@link ContentCoding#supported(String)}; null if not encoded
+	 * @param in
+	 *            the stream
+	 * @param memoryLimit
+	 *            the max number of decoded bytes held in memory, negative for
+	 *            no limit
+	 * @param sizeLimit
+	 *            the max number of decoded bytes read, negative for no limit
+	 * @return the body
+	 * @throws IOException
+	 *             if the stream can't be read or decoded.
+	 */
+	public static ResponseBody read(String coding, InputStream in, long memoryLimit, long sizeLimit)
+			throws IOException {
+		if (coding == null) {
+			return read(in, memoryLimit, sizeLimit);
+		}
+		CountingInputStream encoded = new CountingInputStream(in);
+		ResponseBody body;
+		try {
+			body = read(ContentCoding.decode(coding, encoded), memoryLimit, sizeLimit);
+		} finally {
+			encoded.close();
+		}
+		body.coding = coding;
+		body.encodedLength = encoded.count;
+		return body;
+	}
+
+	/**
+	 * Reads the stream, and closes it.
+	 * 
+	 * @param in
+	 *            the stream
+	 * @param memoryLimit
+	 *            the max number of bytes held in memory, negative for no limit
+	 * @param sizeLimit
+	 *            the max number of bytes read, negative for no limit; the
+	 *            reading is aborted when it's reached
+	 * @return the body
+	 * @throws IOException
+	 *             if the stream can't be read or the temporary file written.
+	 */
+	public static ResponseBody read(InputStream in, long memoryLimit, long sizeLimit) throws IOException {
+		ByteArrayOutputStream memory = new ByteArrayOutputStream(BUFFER_SIZE);
+		OutputStream out = memory;
+		Path file = null;
+		long length = 0;
+		boolean truncated = false;
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while (!truncated && (read = in.read(buffer)) != -1) {
+				if (sizeLimit >= 0 && length + read > sizeLimit) {
+					read = (int) (sizeLimit - length);
+					truncated = true;
+				}
+				if (file == null && memoryLimit >= 0 && length + read > memoryLimit) {
+					file = Files.createTempFile("restfixture-body-", ".tmp");
+					SPILLED.add(file);
+					out = Files.newOutputStream(file);
+					memory.writeTo(out);
+					memory = null;
+				}
+				out.write(buffer, 0, read);
+				length += read;
+			}
+		} finally {
+			try {
+				in.close();
+			} finally {
+				out.close();
+			}
+		}
+		if (file == null) {
+			return new ResponseBody(memory.toByteArray(), null, length, truncated);
+		}
+		return new ResponseBody(null, file, length, truncated);
+	}
+
+	/**
+	 * @param bytes
+	 *            the body
+	 * @return a body held in memory.
+	 */
+	public static ResponseBody of(byte[] bytes) {
+		return new ResponseBody(bytes, null, bytes.length, false);
+	}
+
+	/**
+	 * @return the number of bytes of the body, after truncation.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the content coding the body was received in, null if it wasn't
+	 *         encoded.
+	 */
+	public String getCoding() {
+		return coding;
+	}
+
+	/**
+	 * @return the number of bytes received, before decoding; the same as
+	 *         {@link #getLength()} if the body wasn't encoded.
+	 */
+	public long getEncodedLength() {
+		return encodedLength;
+	}
+
+	/**
+	 * @return true if the body was longer than the size limit and has been
+	 *         truncated.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return the file the body has been spilled to, null if it's held in
+	 *         memory.
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * deletes the file the body has been spilled to, if any. The body can't be
+	 * read afterwards.
+	 */
+	public void discard() {
+		if (file != null && SPILLED.remove(file)) {
+			delete(file);
+		}
+	}
+
+	private static void delete(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			file.toFile().deleteOnExit();
+		}
+	}
+
+	/**
+	 * @return a new stream on the body.
+	 * @throws IOException
+	 *             if the spilled body can't be read.
+	 */
+	public InputStream openStream() throws IOException {
+		if (file == null) {
+			return new ByteArrayInputStream(bytes);
+		}
+		return Files.newInputStream(file);
+	}
+
+	/**
+	 * @param charset
+	 *            the charset of the body
+	 * @return the body as a string.
+	 * @throws IOException
+	 *             if the spilled body can't be read.
+	 */
+	public String asString(Charset charset) throws IOException {
+		if (file == null) {
+			return new String(bytes, charset);
+		}
+		return new String(Files.readAllBytes(file), charset);
+	}
+
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
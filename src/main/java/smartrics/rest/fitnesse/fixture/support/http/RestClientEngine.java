@@ -0,0 +1,47 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import smartrics.rest.client.RestClient;
+import smartrics.rest.fitnesse.fixture.support.Config;
+
+/**
+ * Builds the {@link RestClient} executing the requests of a RestFixture: the
+ * HTTP transport.
+ * 
+ * The engine is selected with {@code restfixture.http.engine}: {@code commons}
+ * (default) for commons-httpclient, {@code jdk} for {@link JdkRestClientEngine},
+ * or the fully qualified name of a class implementing this interface with a
+ * public no-args constructor.
+ * 
+ * Both built-in engines speak HTTP/1.1 only; a transport for other protocol
+ * versions, such as HTTP/2, plugs in as an engine and should return
+ * {@link VersionedRestResponse}s so that the version can be checked.
+ */
+public interface RestClientEngine {
+
+	/**
+	 * @param config
+	 *            the config of the fixture
+	 * @return a rest client configured as per the config.
+	 */
+	RestClient createRestClient(Config config);
+}
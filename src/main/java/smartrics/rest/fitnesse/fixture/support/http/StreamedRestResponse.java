@@ -0,0 +1,232 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import smartrics.rest.client.RestData.Header;
+import smartrics.rest.client.RestResponse;
+
+/**
+ * A response whose body is a {@link ResponseBody}: it's only decoded into a
+ * string when {@link #getBody()} is first called, and can be streamed with
+ * {@link #openBodyStream()} without loading it in memory.
+ * 
+ * Bodies received compressed are held decoded; the content coding and the
+ * number of bytes received and decoded are kept for assertions, as is the
+ * {@link RequestTiming} of the request.
+ */
+public class StreamedRestResponse extends VersionedRestResponse {
+
+	private static final Charset DEFAULT_CHARSET = Charset.forName("ISO-8859-1");
+
+	private ResponseBody content;
+
+	private RequestTiming timing;
+
+	/**
+	 * @param content
+	 *            the body
+	 */
+	public void setContent(ResponseBody content) {
+		this.content = content;
+		super.setBody(null);
+	}
+
+	/**
+	 * @return the body, null if set as a string.
+	 */
+	public ResponseBody getContent() {
+		return content;
+	}
+
+	@Override
+	public void setBody(String body) {
+		content = null;
+		super.setBody(body);
+	}
+
+	@Override
+	public String getBody() {
+		if (content != null && super.getBody() == null) {
+			String charset = getCharset();
+			try {
+				super.setBody(content.asString(charset == null ? DEFAULT_CHARSET : Charset.forName(charset)));
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to read the response body: " + e.getMessage(), e);
+			}
+		}
+		return super.getBody();
+	}
+
+	/**
+	 * @return a new stream on the raw body.
+	 * @throws IOException
+	 *             if the body can't be read.
+	 */
+	public InputStream openBodyStream() throws IOException {
+		if (content == null) {
+			String body = super.getBody();
+			return ResponseBody.of(body == null ? new byte[0] : body.getBytes(Charset.forName("UTF-8"))).openStream();
+		}
+		return content.openStream();
+	}
+
+	/**
+	 * @return true if the body has been spilled to a temporary file, being
+	 *         larger than the configured memory limit.
+	 */
+	public boolean isBodySpilled() {
+		return content != null && content.getFile() != null;
+	}
+
+	/**
+	 * deletes the file the body has been spilled to, if any.
+	 */
+	public void discardContent() {
+		if (content != null) {
+			content.discard();
+		}
+	}
+
+	/**
+	 * A spilled body is only ever streamed: checks that need the body as a
+	 * whole, in a string or a tree, report it with this description rather
+	 * than loading it.
+	 * 
+	 * @param response
+	 *            a response
+	 * @return a description of the body if spilled to disk, null otherwise.
+	 */
+	public static String describeSpilledBody(RestResponse response) {
+		if (!(response instanceof StreamedRestResponse) || !((StreamedRestResponse) response).isBodySpilled()) {
+			return null;
+		}
+		return "body of " + ((StreamedRestResponse) response).getDecodedLength()
+				+ " bytes spilled to disk, above http.client.response.body.memory.limit; not loaded";
+	}
+
+	/**
+	 * @return the content coding the body was received in, null if it wasn't
+	 *         encoded.
+	 */
+	public String getContentCoding() {
+		return content == null ? null : content.getCoding();
+	}
+
+	/**
+	 * @return the number of bytes of the body as received.
+	 */
+	public long getEncodedLength() {
+		return content == null ? getDecodedLength() : content.getEncodedLength();
+	}
+
+	/**
+	 * @return the number of bytes of the body once decoded.
+	 */
+	public long getDecodedLength() {
+		if (content != null) {
+			return content.getLength();
+		}
+		String body = super.getBody();
+		return body == null ? 0 : body.getBytes(Charset.forName("UTF-8")).length;
+	}
+
+	/**
+	 * @return the decoded length divided by the encoded length: 4.0 means that
+	 *         the body was received in a quarter of its size; 1.0 for bodies
+	 *         not encoded or empty.
+	 */
+	public double getCompressionRatio() {
+		long encoded = getEncodedLength();
+		return encoded == 0 ? 1.0 : (double) getDecodedLength() / encoded;
+	}
+
+	/**
+	 * @return the timing of the request, null if it wasn't timed.
+	 */
+	public RequestTiming getTiming() {
+		return timing;
+	}
+
+	/**
+	 * @param timing
+	 *            the timing of the request
+	 */
+	public void setTiming(RequestTiming timing) {
+		this.timing = timing;
+	}
+
+	/**
+	 * @return true if the body was truncated as longer than the configured
+	 *         size limit.
+	 */
+	public boolean isBodyTruncated() {
+		return content != null && content.isTruncated();
+	}
+
+	/**
+	 * @param response
+	 *            a response whose body hasn't been read
+	 * @param content
+	 *            the body of the response
+	 * @return a streamed copy of the response, with the given body.
+	 */
+	public static StreamedRestResponse withContent(RestResponse response, ResponseBody content) {
+		StreamedRestResponse copy = copyOf(response);
+		copy.setContent(content);
+		return copy;
+	}
+
+	/**
+	 * @param response
+	 *            a response
+	 * @return the response itself if streamed, a streamed copy of it
+	 *         otherwise.
+	 */
+	public static StreamedRestResponse wrap(RestResponse response) {
+		if (response instanceof StreamedRestResponse) {
+			return (StreamedRestResponse) response;
+		}
+		StreamedRestResponse wrapped = copyOf(response);
+		if (response.getRawBody() != null) {
+			wrapped.setContent(ResponseBody.of(response.getRawBody()));
+		} else {
+			wrapped.setBody(response.getBody());
+		}
+		return wrapped;
+	}
+
+	// all but the body
+	private static StreamedRestResponse copyOf(RestResponse response) {
+		StreamedRestResponse copy = new StreamedRestResponse();
+		copy.setStatusCode(response.getStatusCode());
+		copy.setStatusText(response.getStatusText());
+		for (Header h : response.getHeaders()) {
+			copy.addHeader(h.getName(), h.getValue());
+		}
+		copy.setResource(response.getResource());
+		copy.setTransactionId(response.getTransactionId());
+		return copy;
+	}
+}
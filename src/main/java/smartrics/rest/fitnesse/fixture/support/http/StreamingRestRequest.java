@@ -0,0 +1,69 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.Paths;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.methods.multipart.MultipartRequestEntity;
+import org.apache.commons.httpclient.methods.multipart.Part;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+
+import smartrics.rest.client.RestRequest;
+
+/**
+ * A request whose body is streamed by a {@link RequestEntity} rather than
+ * held in memory.
+ */
+public abstract class StreamingRestRequest extends RestRequest {
+
+	/**
+	 * @return the entity streaming the body, in the charset of the request
+	 *         content type.
+	 */
+	public abstract RequestEntity createRequestEntity();
+
+	/**
+	 * @param request
+	 *            a request
+	 * @return the entity uploading the body of a streaming request, of the
+	 *         file or of the multipart file of the request; null if the body
+	 *         is a string.
+	 * @throws FileNotFoundException
+	 *             if the multipart file doesn't exist
+	 */
+	public static RequestEntity uploadEntityOf(RestRequest request) throws FileNotFoundException {
+		if (request instanceof StreamingRestRequest) {
+			return ((StreamingRestRequest) request).createRequestEntity();
+		}
+		if (request.getMultipartFileName() != null) {
+			Part[] parts = { new ChannelFilePart(request.getMultipartFileParameterName(), new File(
+					request.getMultipartFileName())) };
+			return new MultipartRequestEntity(parts, new HttpMethodParams());
+		}
+		if (request.getFileName() != null) {
+			return new FileChannelRequestEntity(Paths.get(request.getFileName()), null);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,521 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import smartrics.rest.client.RestData.Header;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+
+/**
+ * An archive of http exchanges, recorded by an {@link ArchivingRestClient}
+ * during a run and replayed from in later runs without network.
+ * 
+ * Each record holds the request fingerprint, method, url, normalized headers
+ * and body hash, and the response status, headers and body. Strings are
+ * written as their length and UTF-8 bytes, so they have no length limit. The fingerprint
+ * is the SHA-256 of the method, url, normalized headers and body hash; the
+ * normalized headers are the request headers with lower case names, sorted,
+ * without the ignored ones (e.g. {@code Authorization}, which is never
+ * written to the archive).
+ * 
+ * When replaying, the archive is indexed once by fingerprint, so that each
+ * lookup is a hash map access and a seek. Requests recorded more than once
+ * are answered with their responses in the recorded order, the last one
+ * being repeated once they're exhausted.
+ * 
+ * Archives are shared by all the clients of the JVM; the first recording
+ * client overwrites the file.
+ */
+public final class TrafficArchive {
+
+	/**
+	 * headers ignored by default when fingerprinting requests.
+	 */
+	public static final String DEFAULT_IGNORED_HEADERS = "Authorization, Cookie, Date, User-Agent";
+
+	private static final String MAGIC = "RESTFIXTURE-ARCHIVE-2";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final ConcurrentMap<Path, TrafficArchive> ARCHIVES = new ConcurrentHashMap<Path, TrafficArchive>();
+
+	private final Path file;
+
+	private final boolean replay;
+
+	private final Set<String> ignoredHeaders;
+
+	private DataOutputStream out;
+
+	private RandomAccessFile in;
+
+	private final Map<String, List<Long>> index = new HashMap<String, List<Long>>();
+
+	private final Map<String, Integer> replayed = new HashMap<String, Integer>();
+
+	private TrafficArchive(Path file, boolean replay, String ignoredHeaders) {
+		this.file = file;
+		this.replay = replay;
+		Set<String> ignored = new HashSet<String>();
+		for (String h : ignoredHeaders.split(",")) {
+			if (!h.trim().isEmpty()) {
+				ignored.add(h.trim().toLowerCase(Locale.ENGLISH));
+			}
+		}
+		this.ignoredHeaders = Collections.unmodifiableSet(ignored);
+	}
+
+	/**
+	 * @param file
+	 *            the archive file
+	 * @param replay
+	 *            true to replay from the archive, false to record to it
+	 * @param ignoredHeaders
+	 *            comma separated names of the request headers not
+	 *            fingerprinted nor recorded
+	 * @return the archive, opened by the first call for the file.
+	 * @throws IOException
+	 *             if the archive can't be created or indexed.
+	 */
+	public static TrafficArchive open(Path file, boolean replay, String ignoredHeaders) throws IOException {
+		Path key = file.toAbsolutePath().normalize();
+		TrafficArchive archive = ARCHIVES.get(key);
+		if (archive == null) {
+			synchronized (ARCHIVES) {
+				archive = ARCHIVES.get(key);
+				if (archive == null) {
+					archive = new TrafficArchive(key, replay, ignoredHeaders);
+					if (replay) {
+						archive.index();
+					} else {
+						archive.create();
+					}
+					ARCHIVES.put(key, archive);
+				}
+			}
+		}
+		if (archive.replay != replay) {
+			throw new IllegalStateException("Archive " + key + " is already open for "
+					+ (archive.replay ? "replaying" : "recording"));
+		}
+		return archive;
+	}
+
+	/**
+	 * closes all the archives.
+	 */
+	public static void closeAll() {
+		synchronized (ARCHIVES) {
+			for (TrafficArchive archive : ARCHIVES.values()) {
+				archive.close();
+			}
+			ARCHIVES.clear();
+		}
+	}
+
+	/**
+	 * @return the archive file.
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the number of distinct requests in a replayed archive.
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Appends an exchange to the archive.
+	 * 
+	 * @param hostAddr
+	 *            the host address
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             if the archive can't be written
+	 */
+	public void record(String hostAddr, RestRequest request, RestResponse response) throws IOException {
+		String url = url(hostAddr, request);
+		String headers = normalizedHeaders(request);
+		String bodyHash = bodyHash(request);
+		String fingerprint = fingerprint(request.getMethod().name(), url, headers, bodyHash);
+		synchronized (this) {
+			if (out == null) {
+				throw new IllegalStateException("Archive " + file + " is closed");
+			}
+			writeString(out, fingerprint);
+			writeString(out, request.getMethod().name());
+			writeString(out, url);
+			writeString(out, headers);
+			writeString(out, bodyHash);
+			out.writeInt(response.getStatusCode() == null ? 0 : response.getStatusCode());
+			writeString(out, response.getStatusText() == null ? "" : response.getStatusText());
+			out.writeInt(response.getHeaders().size());
+			for (Header h : response.getHeaders()) {
+				writeString(out, h.getName());
+				writeString(out, h.getValue());
+			}
+			writeBody(response);
+			out.flush();
+		}
+	}
+
+	/**
+	 * @param hostAddr
+	 *            the host address
+	 * @param request
+	 *            the request
+	 * @return the recorded response to the request.
+	 * @throws IOException
+	 *             if the archive can't be read
+	 * @throws IllegalStateException
+	 *             if the request was not recorded.
+	 */
+	public RestResponse replay(String hostAddr, RestRequest request) throws IOException {
+		String url = url(hostAddr, request);
+		String fingerprint = fingerprint(request.getMethod().name(), url, normalizedHeaders(request),
+				bodyHash(request));
+		StreamedRestResponse response = new StreamedRestResponse();
+		synchronized (this) {
+			List<Long> offsets = index.get(fingerprint);
+			if (offsets == null) {
+				throw new IllegalStateException("No response recorded for " + request.getMethod() + " " + url
+						+ " in " + file);
+			}
+			Integer count = replayed.get(fingerprint);
+			int n = count == null ? 0 : count;
+			replayed.put(fingerprint, n + 1);
+			in.seek(offsets.get(Math.min(n, offsets.size() - 1)));
+			for (int i = 0; i < 5; i++) {
+				skipString(in);
+			}
+			response.setStatusCode(in.readInt());
+			response.setStatusText(readString(in));
+			int headers = in.readInt();
+			for (int i = 0; i < headers; i++) {
+				response.addHeader(readString(in), readString(in));
+			}
+			final long length = in.readLong();
+			// large bodies are spilled to disk as when they were received
+			response.setContent(ResponseBody.read(new InputStream() {
+				private long remaining = length;
+
+				@Override
+				public int read() throws IOException {
+					byte[] b = new byte[1];
+					return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					if (remaining == 0) {
+						return -1;
+					}
+					int read = in.read(b, off, (int) Math.min(len, remaining));
+					if (read == -1) {
+						throw new EOFException("Truncated record in " + file);
+					}
+					remaining -= read;
+					return read;
+				}
+			}, JdkRestClient.DEFAULT_BODY_MEMORY_LIMIT, -1));
+		}
+		response.setResource(request.getResource());
+		response.setTransactionId(request.getTransactionId());
+		return response;
+	}
+
+	private void create() throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+		out.writeUTF(MAGIC);
+		out.flush();
+	}
+
+	private void index() throws IOException {
+		CountingInputStream counting = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+		DataInputStream data = new DataInputStream(counting);
+		try {
+			if (!MAGIC.equals(data.readUTF())) {
+				throw new IOException(file + " is not a traffic archive of this version, record it again");
+			}
+			while (true) {
+				long offset = counting.count;
+				String fingerprint;
+				try {
+					fingerprint = readString(data);
+				} catch (EOFException e) {
+					break;
+				}
+				for (int i = 0; i < 4; i++) {
+					skipString(data);
+				}
+				data.readInt();
+				skipString(data);
+				int headers = data.readInt();
+				for (int i = 0; i < headers * 2; i++) {
+					skipString(data);
+				}
+				long length = data.readLong();
+				while (length > 0) {
+					long skipped = data.skip(length);
+					if (skipped <= 0) {
+						if (data.read() == -1) {
+							throw new EOFException("Truncated record in " + file);
+						}
+						skipped = 1;
+					}
+					length -= skipped;
+				}
+				List<Long> offsets = index.get(fingerprint);
+				if (offsets == null) {
+					offsets = new ArrayList<Long>(1);
+					index.put(fingerprint, offsets);
+				}
+				offsets.add(offset);
+			}
+		} finally {
+			data.close();
+		}
+		in = new RandomAccessFile(file.toFile(), "r");
+	}
+
+	private synchronized void close() {
+		try {
+			if (out != null) {
+				out.close();
+			}
+			if (in != null) {
+				in.close();
+			}
+		} catch (IOException e) {
+			// nothing to do
+		}
+		out = null;
+		in = null;
+	}
+
+	private static String url(String hostAddr, RestRequest request) {
+		StringBuilder url = new StringBuilder(hostAddr == null ? "" : hostAddr).append(request.getResource());
+		String query = request.getQuery();
+		if (query != null && !query.isEmpty()) {
+			url.append('?').append(query);
+		}
+		return url.toString();
+	}
+
+	String normalizedHeaders(RestRequest request) {
+		Map<String, String> sorted = new TreeMap<String, String>();
+		for (Header h : request.getHeaders()) {
+			String name = h.getName().trim().toLowerCase(Locale.ENGLISH);
+			if (!ignoredHeaders.contains(name)) {
+				String value = h.getValue() == null ? "" : h.getValue().trim();
+				String previous = sorted.get(name);
+				sorted.put(name, previous == null ? value : previous + "," + value);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> e : sorted.entrySet()) {
+			sb.append(e.getKey()).append(':').append(e.getValue()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	static String bodyHash(RestRequest request) throws IOException {
+		MessageDigest digest = sha256();
+		DigestOutputStream out = new DigestOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}, digest);
+		if (request instanceof StreamingRestRequest) {
+			((StreamingRestRequest) request).createRequestEntity().writeRequest(out);
+		} else if (request.getMultipartFileName() != null) {
+			FileChannelRequestEntity.transfer(Paths.get(request.getMultipartFileName()), out);
+		} else if (request.getFileName() != null) {
+			FileChannelRequestEntity.transfer(Paths.get(request.getFileName()), out);
+		} else if (request.getBody() != null) {
+			digest.update(request.getBody().getBytes(UTF8));
+		}
+		return hex(digest.digest());
+	}
+
+	private static String fingerprint(String method, String url, String headers, String bodyHash) {
+		MessageDigest digest = sha256();
+		digest.update((method + "\n" + url + "\n" + headers + "\n" + bodyHash).getBytes(UTF8));
+		return hex(digest.digest());
+	}
+
+	// the body is streamed from where the response holds it, in memory or
+	// spilled to disk, rather than copied in memory first
+	private void writeBody(RestResponse response) throws IOException {
+		ResponseBody content = content(response);
+		long length = content.getLength();
+		out.writeLong(length);
+		InputStream body = content.openStream();
+		try {
+			byte[] buffer = new byte[8192];
+			long remaining = length;
+			while (remaining > 0) {
+				int read = body.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read == -1) {
+					throw new EOFException("The body is shorter than its length of " + length + " bytes");
+				}
+				out.write(buffer, 0, read);
+				remaining -= read;
+			}
+		} finally {
+			body.close();
+		}
+	}
+
+	private static ResponseBody content(RestResponse response) {
+		if (response instanceof StreamedRestResponse) {
+			StreamedRestResponse streamed = (StreamedRestResponse) response;
+			if (streamed.getContent() != null) {
+				return streamed.getContent();
+			}
+			String body = streamed.getBody();
+			return ResponseBody.of(body == null ? new byte[0] : body.getBytes(UTF8));
+		}
+		if (response.getRawBody() != null) {
+			return ResponseBody.of(response.getRawBody());
+		}
+		String body = response.getBody();
+		return ResponseBody.of(body == null ? new byte[0] : body.getBytes(Charset.forName(response.getCharset())));
+	}
+
+	private static void writeString(DataOutput out, String s) throws IOException {
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[stringLength(in)];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void skipString(DataInput in) throws IOException {
+		int length = stringLength(in);
+		if (in.skipBytes(length) != length) {
+			throw new EOFException("Truncated record");
+		}
+	}
+
+	private static int stringLength(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Corrupted record");
+		}
+		return length;
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,627 @@
+package smartrics.rest.fitnesse.fixture.support.tools;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A compiled JSON Schema, validating Jackson trees.
+ * <p/>
+ *
+ * The schema document is compiled once into a tree of constraints: regular expressions are compiled, numeric limits
+ * converted and <code>$ref</code>s resolved, so that validating a document is a single walk over its tree. A compiled
+ * schema is immutable and can be shared between threads.
+ * <p/>
+ *
+ * The validation keywords of draft 04 are supported: <code>type, enum, multipleOf, maximum, exclusiveMaximum,
+ * minimum, exclusiveMinimum, maxLength, minLength, pattern, items, additionalItems, maxItems, minItems, uniqueItems,
+ * maxProperties, minProperties, required, properties, patternProperties, additionalProperties, dependencies, allOf,
+ * anyOf, oneOf, not</code> and <code>$ref</code> to a JSON pointer within the same document (e.g.
+ * <code>#/definitions/item</code>). Other keywords, as <code>format</code>, are ignored.
+ */
+public final class JsonSchema {
+
+    /**
+     * Max number of validation errors reported for a single document.
+     */
+    public static final int MAX_REPORTED_ERRORS = 20;
+
+    private final List<Constraint> constraints = new ArrayList<Constraint>();
+
+    private JsonSchema() {
+    }
+
+    /**
+     * Compile a schema document.
+     *
+     * @param schema the schema document as a Jackson tree.
+     * @return the compiled schema.
+     * @throws IllegalArgumentException if the schema is not valid.
+     */
+    public static JsonSchema compile(JsonNode schema) {
+        return new Compiler(schema).compile(schema, "#");
+    }
+
+    /**
+     * Validate a document.
+     *
+     * @param document the document to validate as a Jackson tree.
+     * @return a list of errors, each prefixed by the path of the offending value (e.g. <code>$.items[2].id</code>), or
+     *         an empty list if the document is valid. At most {@link #MAX_REPORTED_ERRORS} errors are returned.
+     */
+    public List<String> validate(JsonNode document) {
+        List<String> errors = new ArrayList<String>();
+        validate(document, "$", errors);
+        return errors;
+    }
+
+    private boolean validate(JsonNode node, String path, List<String> errors) {
+        boolean valid = true;
+        for (Constraint constraint : constraints) {
+            if (errors.size() >= MAX_REPORTED_ERRORS) {
+                return false;
+            }
+            valid &= constraint.check(node, path, errors);
+        }
+        return valid;
+    }
+
+    private boolean isValid(JsonNode node) {
+        return validate(node, "$", new ArrayList<String>());
+    }
+
+    private static boolean error(List<String> errors, String path, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(path + ": " + message);
+        }
+        return false;
+    }
+
+    private static String typeOf(JsonNode node) {
+        if (node.isObject()) {
+            return "object";
+        } else if (node.isArray()) {
+            return "array";
+        } else if (node.isTextual()) {
+            return "string";
+        } else if (node.isIntegralNumber() || (node.isNumber() && isIntegral(node.decimalValue()))) {
+            return "integer";
+        } else if (node.isNumber()) {
+            return "number";
+        } else if (node.isBoolean()) {
+            return "boolean";
+        } else if (node.isNull()) {
+            return "null";
+        }
+        return node.getNodeType().toString().toLowerCase();
+    }
+
+    private static boolean isIntegral(BigDecimal value) {
+        return value.signum() == 0 || value.scale() <= 0 || value.stripTrailingZeros().scale() <= 0;
+    }
+
+    private static boolean jsonEquals(JsonNode a, JsonNode b) {
+        if (a.isNumber() && b.isNumber()) {
+            return a.decimalValue().compareTo(b.decimalValue()) == 0;
+        }
+        return a.equals(b);
+    }
+
+    private static String child(String path, String field) {
+        return path + "." + field;
+    }
+
+    private static String child(String path, int index) {
+        return path + "[" + index + "]";
+    }
+
+    /**
+     * A single compiled validation keyword.
+     */
+    private interface Constraint {
+        boolean check(JsonNode node, String path, List<String> errors);
+    }
+
+    /**
+     * Compiles a schema document, sharing the compiled sub schemas referenced by <code>$ref</code>.
+     */
+    private static final class Compiler {
+        private final JsonNode root;
+        private final Map<String, JsonSchema> compiled = new HashMap<String, JsonSchema>();
+
+        private Compiler(JsonNode root) {
+            this.root = root;
+        }
+
+        private JsonSchema compile(JsonNode node, String pointer) {
+            JsonSchema existing = compiled.get(pointer);
+            if (existing != null) {
+                return existing;
+            }
+            if (!node.isObject()) {
+                throw new IllegalArgumentException("Schema at " + pointer + " must be an object");
+            }
+            JsonSchema schema = new JsonSchema();
+            // registered before its keywords are compiled so that recursive $refs resolve to it.
+            compiled.put(pointer, schema);
+            JsonNode ref = node.get("$ref");
+            if (ref != null) {
+                final JsonSchema target = resolve(ref.asText(), pointer);
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        return target.validate(n, path, errors);
+                    }
+                });
+                return schema;
+            }
+            addTypeConstraints(schema, node, pointer);
+            addNumberConstraints(schema, node, pointer);
+            addStringConstraints(schema, node, pointer);
+            addArrayConstraints(schema, node, pointer);
+            addObjectConstraints(schema, node, pointer);
+            addCombiningConstraints(schema, node, pointer);
+            return schema;
+        }
+
+        private JsonSchema resolve(String ref, String pointer) {
+            if (!ref.startsWith("#")) {
+                throw new IllegalArgumentException("Schema at " + pointer + ": only $ref within the same document are supported, found '" + ref + "'");
+            }
+            JsonNode target = root;
+            for (String token : ref.substring(1).split("/")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                String name = token.replace("~1", "/").replace("~0", "~");
+                target = target.isArray() ? target.get(Integer.parseInt(name)) : target.get(name);
+                if (target == null) {
+                    throw new IllegalArgumentException("Schema at " + pointer + ": unresolvable $ref '" + ref + "'");
+                }
+            }
+            String normalized = ref.length() == 1 || ref.endsWith("/") ? "#" : ref;
+            return compile(target, normalized);
+        }
+
+        private void addTypeConstraints(JsonSchema schema, JsonNode node, String pointer) {
+            JsonNode type = node.get("type");
+            if (type != null) {
+                final Set<String> types = new LinkedHashSet<String>();
+                if (type.isArray()) {
+                    for (JsonNode t : type) {
+                        types.add(t.asText());
+                    }
+                } else {
+                    types.add(type.asText());
+                }
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        String actual = typeOf(n);
+                        if (types.contains(actual) || ("integer".equals(actual) && types.contains("number"))) {
+                            return true;
+                        }
+                        return error(errors, path, "expected type " + join(types) + " but was " + actual);
+                    }
+                });
+            }
+            final JsonNode values = node.get("enum");
+            if (values != null) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        for (JsonNode value : values) {
+                            if (jsonEquals(value, n)) {
+                                return true;
+                            }
+                        }
+                        return error(errors, path, "value " + n + " is not one of " + values);
+                    }
+                });
+            }
+        }
+
+        private void addNumberConstraints(JsonSchema schema, JsonNode node, String pointer) {
+            final BigDecimal multipleOf = decimal(node, "multipleOf", pointer);
+            if (multipleOf != null) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isNumber() || n.decimalValue().remainder(multipleOf).signum() == 0) {
+                            return true;
+                        }
+                        return error(errors, path, n + " is not a multiple of " + multipleOf);
+                    }
+                });
+            }
+            addLimit(schema, decimal(node, "maximum", pointer), node.path("exclusiveMaximum").asBoolean(), true);
+            addLimit(schema, decimal(node, "minimum", pointer), node.path("exclusiveMinimum").asBoolean(), false);
+        }
+
+        private void addLimit(JsonSchema schema, final BigDecimal limit, final boolean exclusive, final boolean maximum) {
+            if (limit == null) {
+                return;
+            }
+            final String description = (maximum ? "less than " : "greater than ") + (exclusive ? "" : "or equal to ") + limit;
+            schema.constraints.add(new Constraint() {
+                @Override
+                public boolean check(JsonNode n, String path, List<String> errors) {
+                    if (!n.isNumber()) {
+                        return true;
+                    }
+                    int c = n.decimalValue().compareTo(limit);
+                    if (maximum) {
+                        c = -c;
+                    }
+                    if (c > 0 || (c == 0 && !exclusive)) {
+                        return true;
+                    }
+                    return error(errors, path, n + " is not " + description);
+                }
+            });
+        }
+
+        private void addStringConstraints(JsonSchema schema, JsonNode node, String pointer) {
+            final int maxLength = count(node, "maxLength", pointer);
+            final int minLength = count(node, "minLength", pointer);
+            if (maxLength >= 0 || minLength >= 0) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isTextual()) {
+                            return true;
+                        }
+                        String s = n.textValue();
+                        int length = s.codePointCount(0, s.length());
+                        if (maxLength >= 0 && length > maxLength) {
+                            return error(errors, path, "string length " + length + " is greater than " + maxLength);
+                        }
+                        if (minLength >= 0 && length < minLength) {
+                            return error(errors, path, "string length " + length + " is less than " + minLength);
+                        }
+                        return true;
+                    }
+                });
+            }
+            JsonNode pattern = node.get("pattern");
+            if (pattern != null) {
+                final Pattern regex = pattern(pattern.asText(), pointer);
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isTextual() || regex.matcher(n.textValue()).find()) {
+                            return true;
+                        }
+                        return error(errors, path, "string " + n + " does not match pattern " + regex.pattern());
+                    }
+                });
+            }
+        }
+
+        private void addArrayConstraints(JsonSchema schema, JsonNode node, final String pointer) {
+            JsonNode items = node.get("items");
+            if (items != null && items.isObject()) {
+                final JsonSchema itemSchema = compile(items, pointer + "/items");
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isArray()) {
+                            return true;
+                        }
+                        boolean valid = true;
+                        for (int i = 0; i < n.size(); i++) {
+                            valid &= itemSchema.validate(n.get(i), child(path, i), errors);
+                        }
+                        return valid;
+                    }
+                });
+            } else if (items != null && items.isArray()) {
+                final List<JsonSchema> tuple = new ArrayList<JsonSchema>();
+                for (int i = 0; i < items.size(); i++) {
+                    tuple.add(compile(items.get(i), pointer + "/items/" + i));
+                }
+                JsonNode additional = node.get("additionalItems");
+                final JsonSchema additionalSchema = additional != null && additional.isObject() ? compile(additional, pointer + "/additionalItems") : null;
+                final boolean additionalAllowed = additional == null || additional.isObject() || additional.asBoolean();
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isArray()) {
+                            return true;
+                        }
+                        boolean valid = true;
+                        for (int i = 0; i < n.size(); i++) {
+                            if (i < tuple.size()) {
+                                valid &= tuple.get(i).validate(n.get(i), child(path, i), errors);
+                            } else if (additionalSchema != null) {
+                                valid &= additionalSchema.validate(n.get(i), child(path, i), errors);
+                            } else if (!additionalAllowed) {
+                                return error(errors, path, "array has " + n.size() + " items but at most " + tuple.size() + " are allowed");
+                            }
+                        }
+                        return valid;
+                    }
+                });
+            }
+            final int maxItems = count(node, "maxItems", pointer);
+            final int minItems = count(node, "minItems", pointer);
+            final boolean uniqueItems = node.path("uniqueItems").asBoolean();
+            if (maxItems >= 0 || minItems >= 0 || uniqueItems) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isArray()) {
+                            return true;
+                        }
+                        if (maxItems >= 0 && n.size() > maxItems) {
+                            return error(errors, path, "array has " + n.size() + " items, more than " + maxItems);
+                        }
+                        if (minItems >= 0 && n.size() < minItems) {
+                            return error(errors, path, "array has " + n.size() + " items, less than " + minItems);
+                        }
+                        if (uniqueItems) {
+                            for (int i = 0; i < n.size(); i++) {
+                                for (int j = i + 1; j < n.size(); j++) {
+                                    if (jsonEquals(n.get(i), n.get(j))) {
+                                        return error(errors, path, "items " + i + " and " + j + " are equal");
+                                    }
+                                }
+                            }
+                        }
+                        return true;
+                    }
+                });
+            }
+        }
+
+        private void addObjectConstraints(JsonSchema schema, JsonNode node, String pointer) {
+            final int maxProperties = count(node, "maxProperties", pointer);
+            final int minProperties = count(node, "minProperties", pointer);
+            final List<String> required = new ArrayList<String>();
+            for (JsonNode r : node.path("required")) {
+                required.add(r.asText());
+            }
+            if (maxProperties >= 0 || minProperties >= 0 || !required.isEmpty()) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isObject()) {
+                            return true;
+                        }
+                        boolean valid = true;
+                        if (maxProperties >= 0 && n.size() > maxProperties) {
+                            valid = error(errors, path, "object has " + n.size() + " properties, more than " + maxProperties);
+                        }
+                        if (minProperties >= 0 && n.size() < minProperties) {
+                            valid = error(errors, path, "object has " + n.size() + " properties, less than " + minProperties);
+                        }
+                        for (String name : required) {
+                            if (!n.has(name)) {
+                                valid = error(errors, path, "missing required property '" + name + "'");
+                            }
+                        }
+                        return valid;
+                    }
+                });
+            }
+            final Map<String, JsonSchema> properties = new LinkedHashMap<String, JsonSchema>();
+            Iterator<Map.Entry<String, JsonNode>> it = node.path("properties").fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> e = it.next();
+                properties.put(e.getKey(), compile(e.getValue(), pointer + "/properties/" + escape(e.getKey())));
+            }
+            final Map<Pattern, JsonSchema> patternProperties = new LinkedHashMap<Pattern, JsonSchema>();
+            it = node.path("patternProperties").fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> e = it.next();
+                patternProperties.put(pattern(e.getKey(), pointer), compile(e.getValue(), pointer + "/patternProperties/" + escape(e.getKey())));
+            }
+            JsonNode additional = node.get("additionalProperties");
+            final JsonSchema additionalSchema = additional != null && additional.isObject() ? compile(additional, pointer + "/additionalProperties") : null;
+            final boolean additionalAllowed = additional == null || additional.isObject() || additional.asBoolean();
+            if (!properties.isEmpty() || !patternProperties.isEmpty() || !additionalAllowed || additionalSchema != null) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isObject()) {
+                            return true;
+                        }
+                        boolean valid = true;
+                        Iterator<Map.Entry<String, JsonNode>> fields = n.fields();
+                        while (fields.hasNext()) {
+                            Map.Entry<String, JsonNode> field = fields.next();
+                            String name = field.getKey();
+                            String fieldPath = child(path, name);
+                            boolean matched = false;
+                            JsonSchema propertySchema = properties.get(name);
+                            if (propertySchema != null) {
+                                matched = true;
+                                valid &= propertySchema.validate(field.getValue(), fieldPath, errors);
+                            }
+                            for (Map.Entry<Pattern, JsonSchema> p : patternProperties.entrySet()) {
+                                if (p.getKey().matcher(name).find()) {
+                                    matched = true;
+                                    valid &= p.getValue().validate(field.getValue(), fieldPath, errors);
+                                }
+                            }
+                            if (!matched) {
+                                if (additionalSchema != null) {
+                                    valid &= additionalSchema.validate(field.getValue(), fieldPath, errors);
+                                } else if (!additionalAllowed) {
+                                    valid = error(errors, path, "property '" + name + "' is not allowed");
+                                }
+                            }
+                        }
+                        return valid;
+                    }
+                });
+            }
+            final Map<String, Object> dependencies = new LinkedHashMap<String, Object>();
+            it = node.path("dependencies").fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> e = it.next();
+                if (e.getValue().isArray()) {
+                    List<String> names = new ArrayList<String>();
+                    for (JsonNode d : e.getValue()) {
+                        names.add(d.asText());
+                    }
+                    dependencies.put(e.getKey(), names);
+                } else {
+                    dependencies.put(e.getKey(), compile(e.getValue(), pointer + "/dependencies/" + escape(e.getKey())));
+                }
+            }
+            if (!dependencies.isEmpty()) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!n.isObject()) {
+                            return true;
+                        }
+                        boolean valid = true;
+                        for (Map.Entry<String, Object> d : dependencies.entrySet()) {
+                            if (!n.has(d.getKey())) {
+                                continue;
+                            }
+                            if (d.getValue() instanceof JsonSchema) {
+                                valid &= ((JsonSchema) d.getValue()).validate(n, path, errors);
+                            } else {
+                                for (String name : (List<String>) d.getValue()) {
+                                    if (!n.has(name)) {
+                                        valid = error(errors, path, "property '" + d.getKey() + "' requires property '" + name + "'");
+                                    }
+                                }
+                            }
+                        }
+                        return valid;
+                    }
+                });
+            }
+        }
+
+        private void addCombiningConstraints(JsonSchema schema, JsonNode node, String pointer) {
+            final List<JsonSchema> allOf = compileAll(node, "allOf", pointer);
+            if (!allOf.isEmpty()) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        boolean valid = true;
+                        for (JsonSchema s : allOf) {
+                            valid &= s.validate(n, path, errors);
+                        }
+                        return valid;
+                    }
+                });
+            }
+            final List<JsonSchema> anyOf = compileAll(node, "anyOf", pointer);
+            if (!anyOf.isEmpty()) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        for (JsonSchema s : anyOf) {
+                            if (s.isValid(n)) {
+                                return true;
+                            }
+                        }
+                        return error(errors, path, "value does not match any of the schemas in anyOf");
+                    }
+                });
+            }
+            final List<JsonSchema> oneOf = compileAll(node, "oneOf", pointer);
+            if (!oneOf.isEmpty()) {
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        int matches = 0;
+                        for (JsonSchema s : oneOf) {
+                            if (s.isValid(n)) {
+                                matches++;
+                            }
+                        }
+                        if (matches == 1) {
+                            return true;
+                        }
+                        return error(errors, path, "value matches " + matches + " of the schemas in oneOf, exactly one expected");
+                    }
+                });
+            }
+            JsonNode not = node.get("not");
+            if (not != null) {
+                final JsonSchema notSchema = compile(not, pointer + "/not");
+                schema.constraints.add(new Constraint() {
+                    @Override
+                    public boolean check(JsonNode n, String path, List<String> errors) {
+                        if (!notSchema.isValid(n)) {
+                            return true;
+                        }
+                        return error(errors, path, "value must not match the schema in not");
+                    }
+                });
+            }
+        }
+
+        private List<JsonSchema> compileAll(JsonNode node, String keyword, String pointer) {
+            List<JsonSchema> schemas = new ArrayList<JsonSchema>();
+            JsonNode array = node.path(keyword);
+            for (int i = 0; i < array.size(); i++) {
+                schemas.add(compile(array.get(i), pointer + "/" + keyword + "/" + i));
+            }
+            return schemas;
+        }
+
+        private BigDecimal decimal(JsonNode node, String keyword, String pointer) {
+            JsonNode value = node.get(keyword);
+            if (value == null) {
+                return null;
+            }
+            if (!value.isNumber()) {
+                throw new IllegalArgumentException("Schema at " + pointer + ": " + keyword + " must be a number");
+            }
+            return value.decimalValue();
+        }
+
+        private int count(JsonNode node, String keyword, String pointer) {
+            JsonNode value = node.get(keyword);
+            if (value == null) {
+                return -1;
+            }
+            if (!value.canConvertToInt() || value.asInt() < 0) {
+                throw new IllegalArgumentException("Schema at " + pointer + ": " + keyword + " must be a non negative integer");
+            }
+            return value.asInt();
+        }
+
+        private String escape(String name) {
+            return name.replace("~", "~0").replace("/", "~1");
+        }
+
+        private Pattern pattern(String regex, String pointer) {
+            try {
+                return Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Schema at " + pointer + ": invalid pattern '" + regex + "'");
+            }
+        }
+    }
+
+    private static String join(Set<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0) {
+                sb.append(" or ");
+            }
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+}
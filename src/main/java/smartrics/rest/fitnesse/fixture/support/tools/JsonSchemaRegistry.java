@@ -0,0 +1,81 @@
+package smartrics.rest.fitnesse.fixture.support.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide registry of compiled JSON schemas.
+ * <p/>
+ *
+ * Schema files are compiled once and the compiled {@link JsonSchema} is shared by all the fixtures running in the same
+ * JVM. Entries are keyed by the absolute path of the schema file and are recompiled when the last modification time
+ * or the size of the file changes.
+ */
+public final class JsonSchemaRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(JsonSchemaRegistry.class);
+
+    private static final ConcurrentMap<Path, CompiledSchema> SCHEMAS = new ConcurrentHashMap<Path, CompiledSchema>();
+
+    private JsonSchemaRegistry() {
+    }
+
+    /**
+     * Returns the compiled schema for the given file, compiling it if it is not yet in the registry or if the file
+     * changed since it was compiled.
+     *
+     * @param schemaFile file with the JSON schema.
+     * @return the compiled schema.
+     * @throws IOException the file can't be read or is not valid JSON.
+     * @throws IllegalArgumentException the file is not a valid schema.
+     */
+    public static JsonSchema getSchema(Path schemaFile) throws IOException {
+        Path key = schemaFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        CompiledSchema compiled = SCHEMAS.get(key);
+        if (compiled == null || !compiled.isCompiledFrom(lastModified, size)) {
+            LOG.debug("Compiling JSON schema " + key);
+            compiled = new CompiledSchema(JsonSchema.compile(JsonTools.readTree(JsonTools.readFileContent(key))), lastModified, size);
+            SCHEMAS.put(key, compiled);
+        }
+        return compiled.schema;
+    }
+
+    /**
+     * Removes all the compiled schemas from the registry.
+     */
+    public static void clear() {
+        SCHEMAS.clear();
+    }
+
+    /**
+     * @return the number of compiled schemas in the registry.
+     */
+    public static int size() {
+        return SCHEMAS.size();
+    }
+
+    private static final class CompiledSchema {
+        private final JsonSchema schema;
+        private final long lastModified;
+        private final long size;
+
+        private CompiledSchema(JsonSchema schema, long lastModified, long size) {
+            this.schema = schema;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        private boolean isCompiledFrom(long lastModified, long size) {
+            return this.lastModified == lastModified && this.size == size;
+        }
+    }
+}
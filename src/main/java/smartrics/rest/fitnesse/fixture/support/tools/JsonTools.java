@@ -1,6 +1,8 @@
 package smartrics.rest.fitnesse.fixture.support.tools;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -12,11 +14,14 @@ import org.skyscreamer.jsonassert.JSONCompareResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
@@ -30,6 +35,11 @@ public class JsonTools {
 
     private static final Logger LOG = LoggerFactory.getLogger(JsonTools.class);
 
+    /**
+     * Shared mapper used to read JSON trees, an ObjectMapper is thread safe once configured.
+     */
+    private static final ObjectMapper TREE_MAPPER = new ObjectMapper();
+
     /**
      * Format JSON data string to a human readable format, i.e. include indentations
      * and linefeeds in the returned string.
@@ -56,6 +66,26 @@ public class JsonTools {
         }
     }
 
+    /**
+     * Format JSON data read from a stream to a human readable format, token by token, so that the document is
+     * never held in memory.
+     *
+     * @param in stream with JSON content, not closed.
+     * @param out stream the formatted content is written to, not closed.
+     * @throws IOException reading, parsing or writing failed.
+     */
+    public static void prettyPrint(final InputStream in, final OutputStream out) throws IOException {
+        JsonFactory factory = TREE_MAPPER.getFactory();
+        JsonParser parser = factory.createParser(in);
+        JsonGenerator generator = factory.createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.useDefaultPrettyPrinter();
+        while (parser.nextToken() != null) {
+            generator.copyCurrentEvent(parser);
+        }
+        generator.close();
+    }
+
     /**
      * Compare two JSON objects in either a strict or non-strict mode.
      * </p>
@@ -167,6 +197,24 @@ public class JsonTools {
         return new String(readBytes);
     }
 
+    /**
+     * Parse a JSON string into a Jackson tree.
+     *
+     * @param jsonString string with JSON content.
+     * @return the root node of the tree.
+     * @throws IOException the string is empty or not valid JSON.
+     */
+    public static JsonNode readTree(final String jsonString) throws IOException {
+        if (null == jsonString || "".equals(jsonString.trim())) {
+            throw new IOException("No JSON content found.");
+        }
+        try {
+            return TREE_MAPPER.readTree(jsonString);
+        } catch (JsonProcessingException e) {
+            throw new IOException("JsonProcessingException:" + e.getMessage());
+        }
+    }
+
     /**
      * Convert a JSON data object (org.mozzila.javascript.*, not a {@link java.util.String}) to a java.lang.String.
      *
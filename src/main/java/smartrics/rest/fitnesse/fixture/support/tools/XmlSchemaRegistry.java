@@ -0,0 +1,158 @@
+package smartrics.rest.fitnesse.fixture.support.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Process-wide registry of compiled XML schemas.
+ * <p/>
+ * Compiling a XSD is far more expensive than validating a document against it,
+ * and a compiled {@link Schema} is immutable and thread safe. Schemas are
+ * therefore compiled once and shared by all the fixtures running in the same
+ * JVM. Entries are keyed by the absolute path of the schema file and are
+ * recompiled when the last modification time or the size of the file changes,
+ * so editing a schema while FitNesse is running is picked up by the next test.
+ * Schemas may include or import other schemas from files or jars; external
+ * DTDs are not loaded.
+ */
+public final class XmlSchemaRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(XmlSchemaRegistry.class);
+
+    /**
+     * Max number of validation errors collected for a single document.
+     */
+    public static final int MAX_REPORTED_ERRORS = 20;
+
+    private static final ConcurrentMap<Path, CompiledSchema> SCHEMAS = new ConcurrentHashMap<Path, CompiledSchema>();
+
+    private XmlSchemaRegistry() {
+    }
+
+    /**
+     * Returns the compiled schema for the given XSD file, compiling it if it
+     * is not yet in the registry or if the file changed since it was compiled.
+     *
+     * @param schemaFile the XSD file.
+     * @return the compiled schema.
+     * @throws IOException if the file can't be read.
+     * @throws SAXException if the file is not a valid schema.
+     */
+    public static Schema getSchema(Path schemaFile) throws IOException, SAXException {
+        Path key = schemaFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        CompiledSchema compiled = SCHEMAS.get(key);
+        if (compiled == null || !compiled.isCompiledFrom(lastModified, size)) {
+            LOG.debug("Compiling schema " + key);
+            compiled = new CompiledSchema(compile(key), lastModified, size);
+            SCHEMAS.put(key, compiled);
+        }
+        return compiled.schema;
+    }
+
+    /**
+     * Validates a document against a schema. The document is streamed through
+     * the validator, no DOM is built.
+     *
+     * @param schema the compiled schema.
+     * @param document the document to validate.
+     * @return the validation errors, each prefixed by its line and column, or
+     *         an empty list if the document is valid. At most
+     *         {@link #MAX_REPORTED_ERRORS} errors are returned.
+     * @throws IOException if the document can't be read.
+     * @throws SAXException if the document is not well formed.
+     */
+    public static List<String> validate(Schema schema, Source document) throws IOException, SAXException {
+        Validator validator = schema.newValidator();
+        CollectingErrorHandler errorHandler = new CollectingErrorHandler();
+        validator.setErrorHandler(errorHandler);
+        validator.validate(document);
+        return errorHandler.errors;
+    }
+
+    /**
+     * Removes all the compiled schemas from the registry.
+     */
+    public static void clear() {
+        SCHEMAS.clear();
+    }
+
+    /**
+     * @return the number of compiled schemas in the registry.
+     */
+    public static int size() {
+        return SCHEMAS.size();
+    }
+
+    private static Schema compile(Path schemaFile) throws SAXException {
+        // factories are not thread safe, and are only needed on a cache miss.
+        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        // secure processing also forbids the external schemas, so xs:include
+        // and xs:import of local files are let through; DTDs stay forbidden.
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "file,jar");
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        return factory.newSchema(new StreamSource(schemaFile.toUri().toString()));
+    }
+
+    private static final class CompiledSchema {
+        private final Schema schema;
+        private final long lastModified;
+        private final long size;
+
+        private CompiledSchema(Schema schema, long lastModified, long size) {
+            this.schema = schema;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        private boolean isCompiledFrom(long lastModified, long size) {
+            return this.lastModified == lastModified && this.size == size;
+        }
+    }
+
+    private static final class CollectingErrorHandler implements ErrorHandler {
+        private final List<String> errors = new ArrayList<String>();
+
+        @Override
+        public void warning(SAXParseException e) {
+            LOG.debug("Validation warning: " + format(e));
+        }
+
+        @Override
+        public void error(SAXParseException e) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(format(e));
+            }
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+
+        private String format(SAXParseException e) {
+            return "line " + e.getLineNumber() + ", column " + e.getColumnNumber() + ": " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package smartrics.rest.fitnesse.fixture.support.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Collection of XML data related functions. Documents are read with a StAX
+ * parser so that no DOM is ever built: large documents are compared in a
+ * single streaming pass with a memory footprint that depends on the depth of
+ * the documents rather than on their size.
+ *
+ * Documents are canonicalized before being compared:
+ * <ul>
+ * <li>element and attribute names are compared by namespace URI and local
+ * name, prefixes are ignored.
+ * <li>attributes are compared regardless of their order, namespace
+ * declarations are ignored.
+ * <li>comments and processing instructions are ignored, CDATA sections are
+ * compared as text.
+ * </ul>
+ */
+public class XmlTools {
+
+    /**
+     * Comparison modes for {@link XmlTools#compare(StreamSource, StreamSource, CompareMode)}.
+     */
+    public enum CompareMode {
+        /**
+         * order of the elements and whitespace are significant.
+         */
+        STRICT(false, false),
+        /**
+         * order of the elements is significant, whitespace only text is
+         * ignored and text is trimmed and whitespace collapsed.
+         */
+        IGNORE_WHITESPACE(true, false),
+        /**
+         * order of the sibling elements is not significant.
+         */
+        IGNORE_ORDER(false, true),
+        /**
+         * order of the elements and whitespace are not significant.
+         */
+        LENIENT(true, true);
+
+        private final boolean ignoreWhitespace;
+        private final boolean ignoreOrder;
+
+        private CompareMode(boolean ignoreWhitespace, boolean ignoreOrder) {
+            this.ignoreWhitespace = ignoreWhitespace;
+            this.ignoreOrder = ignoreOrder;
+        }
+
+        /**
+         * @return true if whitespace is not significant in this mode.
+         */
+        public boolean isIgnoreWhitespace() {
+            return ignoreWhitespace;
+        }
+
+        /**
+         * @return true if the order of sibling elements is not significant in
+         *         this mode.
+         */
+        public boolean isIgnoreOrder() {
+            return ignoreOrder;
+        }
+    }
+
+    /**
+     * the max number of differences reported when comparing ignoring the
+     * order of the elements.
+     */
+    public static final int MAX_REPORTED_DIFFERENCES = 20;
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * Compare two XML documents.
+     *
+     * When the order of the elements is significant the two documents are
+     * read in lockstep and the first difference found is reported. Otherwise
+     * each document is reduced to a digest of its canonical form, children
+     * digests being sorted before being combined in their parent's; the
+     * children of the root element that don't have a match in the other
+     * document are reported.
+     *
+     * @param expected the expected XML document.
+     * @param actual the actual XML document.
+     * @param mode the comparison mode.
+     * @return Empty string if the two documents are equal otherwise return the
+     *         deviation as a string.
+     * @throws IOException if any of the documents can't be read or parsed.
+     */
+    public static String compare(StreamSource expected, StreamSource actual, CompareMode mode) throws IOException {
+        if (null == expected || null == actual) {
+            throw new IllegalArgumentException("Expected and actual XML must not be null.");
+        }
+        if (null == mode) {
+            throw new IllegalArgumentException("Compare mode must not be null.");
+        }
+        CanonicalReader expectedReader = null;
+        CanonicalReader actualReader = null;
+        try {
+            expectedReader = new CanonicalReader(createReader(expected), mode.isIgnoreWhitespace());
+            actualReader = new CanonicalReader(createReader(actual), mode.isIgnoreWhitespace());
+            if (mode.isIgnoreOrder()) {
+                return compareIgnoringOrder(expectedReader, actualReader);
+            }
+            return compareInOrder(expectedReader, actualReader);
+        } catch (XMLStreamException e) {
+            throw new IOException("XMLStreamException:" + e.getMessage(), e);
+        } finally {
+            close(expectedReader);
+            close(actualReader);
+        }
+    }
+
+    /**
+     * Parse a string, extract the CompareMode enum or throw a readable
+     * exception if the value does not parse.
+     *
+     * @param compareModeStr string to parse.
+     * @return CompareMode enum value or throws IllegalArgumentException.
+     */
+    public static CompareMode parseCompareMode(String compareModeStr) {
+        if (null != compareModeStr) {
+            try {
+                return CompareMode.valueOf(compareModeStr.trim().toUpperCase());
+            } catch (IllegalArgumentException iae) {
+                // not a CompareMode, report the allowed values.
+            }
+        }
+        StringBuffer errMsg = new StringBuffer("xmlCompareMode parameter must be one of:");
+        for (CompareMode mode : CompareMode.values()) {
+            errMsg.append(" " + mode.name());
+        }
+        errMsg.append(".");
+        throw new IllegalArgumentException(errMsg.toString());
+    }
+
+    /**
+     * Simple XML string indicator: the first non blank character is a '&lt;'.
+     *
+     * @param xmlStr string that is possibly a XML document.
+     * @return true if the string looks like XML.
+     */
+    public static boolean isXml(final String xmlStr) {
+        return null != xmlStr && xmlStr.trim().startsWith("<");
+    }
+
+    private static String compareInOrder(CanonicalReader expected, CanonicalReader actual) throws XMLStreamException {
+        while (true) {
+            Token e = expected.next();
+            Token a = actual.next();
+            if (null == e && null == a) {
+                return "";
+            }
+            if (null == e) {
+                return String.format("Unexpected %s at %s", a, a.path);
+            }
+            if (null == a) {
+                return String.format("Expected %s at %s but got end of document", e, e.path);
+            }
+            if (!e.equals(a)) {
+                return String.format("Expected %s at %s but got %s", e, e.path, a);
+            }
+        }
+    }
+
+    private static String compareIgnoringOrder(CanonicalReader expected, CanonicalReader actual) throws XMLStreamException {
+        DigestedDocument e = digest(expected);
+        DigestedDocument a = digest(actual);
+        if (e.digest.equals(a.digest)) {
+            return "";
+        }
+        if (!e.root.equals(a.root)) {
+            return String.format("Expected root %s but got %s", e.root, a.root);
+        }
+        List<DigestedNode> missing = unmatched(e.children, a.children);
+        List<DigestedNode> unexpected = unmatched(a.children, e.children);
+        StringBuffer sb = new StringBuffer();
+        report(sb, "Expected but not found", missing);
+        report(sb, "Unexpected", unexpected);
+        return sb.toString().trim();
+    }
+
+    private static List<DigestedNode> unmatched(List<DigestedNode> nodes, List<DigestedNode> others) {
+        Map<String, Integer> available = new HashMap<String, Integer>();
+        for (DigestedNode n : others) {
+            Integer c = available.get(n.digest);
+            available.put(n.digest, null == c ? 1 : c + 1);
+        }
+        List<DigestedNode> unmatched = new ArrayList<DigestedNode>();
+        for (DigestedNode n : nodes) {
+            Integer c = available.get(n.digest);
+            if (null == c || c == 0) {
+                unmatched.add(n);
+            } else {
+                available.put(n.digest, c - 1);
+            }
+        }
+        return unmatched;
+    }
+
+    private static void report(StringBuffer sb, String message, List<DigestedNode> nodes) {
+        int count = 0;
+        for (DigestedNode n : nodes) {
+            if (count == MAX_REPORTED_DIFFERENCES) {
+                sb.append(String.format("... and %d more%n", nodes.size() - count));
+                break;
+            }
+            sb.append(String.format("%s: %s%n", message, n.description));
+            count++;
+        }
+    }
+
+    private static DigestedDocument digest(CanonicalReader reader) throws XMLStreamException {
+        LinkedList<DigestFrame> stack = new LinkedList<DigestFrame>();
+        DigestedDocument doc = new DigestedDocument();
+        Token t;
+        while ((t = reader.next()) != null) {
+            if (Token.START == t.type) {
+                DigestFrame frame = new DigestFrame(t);
+                if (stack.isEmpty()) {
+                    doc.root = t;
+                }
+                stack.push(frame);
+            } else if (Token.TEXT == t.type) {
+                addChild(stack, doc, sha1(t.toString()), "text " + t + " in " + t.path);
+            } else {
+                DigestFrame frame = stack.pop();
+                String digest = frame.digest();
+                if (stack.isEmpty()) {
+                    doc.digest = digest;
+                } else {
+                    addChild(stack, doc, digest, frame.start.path);
+                }
+            }
+        }
+        if (null == doc.digest) {
+            throw new XMLStreamException("Document has no root element");
+        }
+        return doc;
+    }
+
+    private static void addChild(LinkedList<DigestFrame> stack, DigestedDocument doc, String digest, String description) {
+        DigestFrame parent = stack.peek();
+        parent.children.add(digest);
+        if (stack.size() == 1) {
+            // only the children of the root retain a description for reporting
+            doc.children.add(new DigestedNode(digest, description));
+        }
+    }
+
+    private static String sha1(String s) {
+        MessageDigest md = newMessageDigest();
+        return toHex(md.digest(s.getBytes(Charset.forName("UTF-8"))));
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static XMLStreamReader createReader(StreamSource source) throws XMLStreamException {
+        if (null != source.getReader()) {
+            return INPUT_FACTORY.createXMLStreamReader(source.getReader());
+        }
+        if (null != source.getInputStream()) {
+            return INPUT_FACTORY.createXMLStreamReader(source.getInputStream());
+        }
+        throw new IllegalArgumentException("Source has neither a reader nor an input stream: " + source.getSystemId());
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    private static void close(CanonicalReader reader) {
+        if (null != reader) {
+            reader.close();
+        }
+    }
+
+    /**
+     * Closes the reader or input stream held by a source, ignoring errors.
+     *
+     * @param source the source to close.
+     */
+    public static void closeQuietly(StreamSource source) {
+        if (null == source) {
+            return;
+        }
+        closeQuietly(source.getReader());
+        closeQuietly(source.getInputStream());
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (null != c) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * A canonical XML event: start of element, end of element or text.
+     */
+    private static final class Token {
+        static final int START = 0;
+        static final int END = 1;
+        static final int TEXT = 2;
+
+        private final int type;
+        private final String value;
+        private final String path;
+
+        private Token(int type, String value, String path) {
+            this.type = type;
+            this.value = value;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Token)) {
+                return false;
+            }
+            Token other = (Token) o;
+            return type == other.type && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type + value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            if (START == type) {
+                return "<" + value + ">";
+            }
+            if (END == type) {
+                return "</" + value + ">";
+            }
+            return "'" + value + "'";
+        }
+    }
+
+    /**
+     * Reads a document as a sequence of canonical {@link Token}s, keeping
+     * track of the path of the current element.
+     */
+    private static final class CanonicalReader {
+        private final XMLStreamReader reader;
+        private final boolean ignoreWhitespace;
+        private final LinkedList<PathFrame> path = new LinkedList<PathFrame>();
+        private final StringBuilder text = new StringBuilder();
+        private Token pending;
+
+        private CanonicalReader(XMLStreamReader reader, boolean ignoreWhitespace) {
+            this.reader = reader;
+            this.ignoreWhitespace = ignoreWhitespace;
+        }
+
+        Token next() throws XMLStreamException {
+            if (null != pending) {
+                Token t = pending;
+                pending = null;
+                return t;
+            }
+            while (reader.hasNext()) {
+                int event = reader.next();
+                switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!path.isEmpty()) {
+                        text.append(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.START_ELEMENT: {
+                    Token textToken = flushText();
+                    Token start = startElement();
+                    if (null != textToken) {
+                        pending = start;
+                        return textToken;
+                    }
+                    return start;
+                }
+                case XMLStreamConstants.END_ELEMENT: {
+                    Token textToken = flushText();
+                    Token end = endElement();
+                    if (null != textToken) {
+                        pending = end;
+                        return textToken;
+                    }
+                    return end;
+                }
+                default:
+                    // comments, processing instructions and the like
+                    break;
+                }
+            }
+            return null;
+        }
+
+        private Token startElement() {
+            String name = qualifiedName(reader.getNamespaceURI(), reader.getLocalName());
+            Map<String, String> attributes = new TreeMap<String, String>();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                attributes.put(qualifiedName(reader.getAttributeNamespace(i), reader.getAttributeLocalName(i)),
+                        reader.getAttributeValue(i));
+            }
+            StringBuilder sb = new StringBuilder(name);
+            for (Map.Entry<String, String> a : attributes.entrySet()) {
+                sb.append(' ').append(a.getKey()).append("=\"").append(a.getValue()).append('"');
+            }
+            String step = reader.getLocalName();
+            if (!path.isEmpty()) {
+                step = step + "[" + path.peek().nextIndex(name) + "]";
+            }
+            String parentPath = path.isEmpty() ? "" : path.peek().path;
+            PathFrame frame = new PathFrame(parentPath + "/" + step);
+            path.push(frame);
+            return new Token(Token.START, sb.toString(), frame.path);
+        }
+
+        private Token endElement() {
+            String name = qualifiedName(reader.getNamespaceURI(), reader.getLocalName());
+            PathFrame frame = path.pop();
+            return new Token(Token.END, name, frame.path);
+        }
+
+        private Token flushText() {
+            if (text.length() == 0) {
+                return null;
+            }
+            String s = text.toString();
+            text.setLength(0);
+            if (ignoreWhitespace) {
+                s = s.trim().replaceAll("\\s+", " ");
+                if (s.length() == 0) {
+                    return null;
+                }
+            }
+            return new Token(Token.TEXT, s, path.peek().path);
+        }
+
+        private static String qualifiedName(String ns, String localName) {
+            if (null == ns || ns.length() == 0) {
+                return localName;
+            }
+            return "{" + ns + "}" + localName;
+        }
+
+        void close() {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static final class PathFrame {
+        private final String path;
+        private final Map<String, Integer> childCount = new HashMap<String, Integer>();
+
+        private PathFrame(String path) {
+            this.path = path;
+        }
+
+        int nextIndex(String name) {
+            Integer c = childCount.get(name);
+            int next = null == c ? 1 : c + 1;
+            childCount.put(name, next);
+            return next;
+        }
+    }
+
+    private static final class DigestFrame {
+        private final Token start;
+        private final List<String> children = new ArrayList<String>();
+
+        private DigestFrame(Token start) {
+            this.start = start;
+        }
+
+        String digest() {
+            Collections.sort(children);
+            MessageDigest md = newMessageDigest();
+            md.update(start.value.getBytes(Charset.forName("UTF-8")));
+            for (String c : children) {
+                md.update((byte) '|');
+                md.update(c.getBytes(Charset.forName("UTF-8")));
+            }
+            return toHex(md.digest());
+        }
+    }
+
+    private static final class DigestedNode {
+        private final String digest;
+        private final String description;
+
+        private DigestedNode(String digest, String description) {
+            this.digest = digest;
+            this.description = description;
+        }
+    }
+
+    private static final class DigestedDocument {
+        private Token root;
+        private String digest;
+        private final List<DigestedNode> children = new ArrayList<DigestedNode>();
+    }
+}
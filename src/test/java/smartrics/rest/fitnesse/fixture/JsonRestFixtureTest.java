@@ -5,6 +5,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
@@ -686,6 +687,112 @@ public class JsonRestFixtureTest {
         verify(row.getCell(4), times(1)).body(startsWith("pass:<div>null</div>"));
     }
 
+    /* ===================  xmlCompare  ======================== */
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustReportToTheUserIfXmlCompareCellsAreMissing() {
+        RowWrapper<?> row = helper.createTestRow("xmlCompare", "STRICT", "<a/>", "<a/>"); //missing parameters: result
+        fixture.processRow(row);
+        verify(mockCellFormatter).exception(isA(CellWrapper.class), eq("Not all cells found: | xmlCompare | xmlCompareMode | actual | expected | result |"));
+        verifyNoMoreInteractions(mockCellFormatter);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustReportToTheUserIfXmlCompareModeIsUnknown() {
+        RowWrapper<?> row = helper.createTestRow("xmlCompare", "FAULT", "<a/>", "<a/>", "");
+        fixture.processRow(row);
+        verify(mockCellFormatter).exception(isA(CellWrapper.class), eq("xmlCompareMode parameter must be one of: STRICT IGNORE_WHITESPACE IGNORE_ORDER LENIENT."));
+        verifyNoMoreInteractions(mockCellFormatter);
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void mustReportToTheUserIfXmlCompareActualIsNeitherXmlNorFile() {
+        when(mockCellFormatter.fromRaw(any(String.class))).then(returnsFirstArg());
+        RowWrapper<?> row = helper.createTestRow("xmlCompare", "STRICT", "noFile", "<a/>", "");
+        fixture.processRow(row);
+        ArgumentCaptor<CellWrapper> argument = ArgumentCaptor.forClass(CellWrapper.class);
+        verify(mockCellFormatter).wrong(argument.capture(), any(TextBodyTypeAdapter.class));
+        verify(argument.getValue()).body(eq("ActualContent neither XML String nor name of file with XML content."));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void xmlCompareHappyDay() throws IOException {
+        when(mockCellFormatter.fromRaw(any(String.class))).then(returnsFirstArg());
+        Path tmp = Files.createTempFile("xmlCompare", ".xml");
+        Files.write(tmp, "<a>\n  <c/>\n  <b x='1'>t</b>\n</a>".getBytes());
+        try {
+            RowWrapper<?> row = helper.createTestRow("xmlCompare", "LENIENT", tmp.toString(), "<a><b x='1'>t</b><c/></a>", "");
+            fixture.processRow(row);
+            verify(row.getCell(4), times(1)).body(startsWith("pass:<div>null</div>"));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void xmlCompareMustFailOnDeviations() {
+        when(mockCellFormatter.fromRaw(any(String.class))).then(returnsFirstArg());
+        RowWrapper<?> row = helper.createTestRow("xmlCompare", "STRICT", "<a><b>t</b></a>", "<a><b>u</b></a>", "");
+        fixture.processRow(row);
+        verify(row.getCell(4), times(1)).body(startsWith("fail:<div>Expected&nbsp;'u'&nbsp;at&nbsp;/a/b[1]"));
+    }
+
+    /* ===================  validateJson  ======================== */
+
+    private static final String ID_SCHEMA = "{\"type\":\"object\",\"required\":[\"id\"],\"properties\":{\"id\":{\"type\":\"integer\"}}}";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustReportToTheUserIfValidateJsonCellsAreMissing() {
+        RowWrapper<?> row = helper.createTestRow("validateJson", ID_SCHEMA); //missing parameters: result
+        fixture.processRow(row);
+        verify(mockCellFormatter).exception(isA(CellWrapper.class), eq("Not all cells found: | validateJson | schema | [document] | result |"));
+        verifyNoMoreInteractions(mockCellFormatter);
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void mustReportToTheUserIfValidateJsonSchemaIsNeitherJsonNorFile() {
+        RowWrapper<?> row = helper.createTestRow("validateJson", "noFile", "{\"id\":1}", "");
+        fixture.processRow(row);
+        ArgumentCaptor<CellWrapper> argument = ArgumentCaptor.forClass(CellWrapper.class);
+        verify(mockCellFormatter).wrong(argument.capture(), any(TextBodyTypeAdapter.class));
+        verify(argument.getValue()).body(eq("Schema neither JSON String nor name of file with JSON content."));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void validateJsonHappyDayWithSchemaFile() throws IOException {
+        Path tmp = Files.createTempFile("validateJson", ".json");
+        Files.write(tmp, ID_SCHEMA.getBytes());
+        try {
+            RowWrapper<?> row = helper.createTestRow("validateJson", tmp.toString(), "{\"id\":1}", "");
+            fixture.processRow(row);
+            verify(row.getCell(3), times(1)).body(startsWith("pass:<div>null</div>"));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void validateJsonMustValidateLastResponseBody() {
+        when(mockLastRequest.getQuery()).thenReturn("");
+        when(mockRestClient.getBaseUrl()).thenReturn(BASE_URL);
+        lastResponse.addHeader("Content-Type", "application/json");
+        lastResponse.setBody("{\"id\":\"one\"}");
+        RowWrapper<?> row = helper.createTestRow("GET", "/uri", "", "", "");
+        fixture.processRow(row);
+        row = helper.createTestRow("validateJson", ID_SCHEMA, "");
+        fixture.processRow(row);
+        verify(row.getCell(2), times(1)).body(startsWith("fail:<div>$.id:&nbsp;expected&nbsp;type&nbsp;integer&nbsp;but&nbsp;was&nbsp;string"));
+    }
+
     /* ===================  getJsonString  ======================== */
 
     @Test
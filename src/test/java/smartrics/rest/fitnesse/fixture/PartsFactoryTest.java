@@ -28,6 +28,8 @@ import org.junit.Test;
 import smartrics.rest.client.RestClient;
 import smartrics.rest.client.RestRequest;
 import smartrics.rest.fitnesse.fixture.support.Config;
+import smartrics.rest.fitnesse.fixture.support.http.JdkRestClient;
+import smartrics.rest.fitnesse.fixture.support.http.JdkRestClientEngine;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -114,6 +116,30 @@ public class PartsFactoryTest {
         assertThat(u.getQuery(), is(equalTo("something[data]=1")));
     }
 
+    @Test
+    public void buildsRestClientOnTheConfiguredEngine() throws Exception {
+        Config c = Config.getConfig();
+        try {
+            c.add("restfixture.http.engine", "jdk");
+            assertThat(f.buildRestClient(c), is(instanceOf(JdkRestClient.class)));
+            c.add("restfixture.http.engine", JdkRestClientEngine.class.getName());
+            assertThat(f.buildRestClient(c), is(instanceOf(JdkRestClient.class)));
+        } finally {
+            c.add("restfixture.http.engine", "commons");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotBuildRestClientOnAnUnknownEngine() throws Exception {
+        Config c = Config.getConfig();
+        try {
+            c.add("restfixture.http.engine", "no.such.Engine");
+            f.buildRestClient(c);
+        } finally {
+            c.add("restfixture.http.engine", "commons");
+        }
+    }
+
     @Test
     public void buildsRestClientWithDefaultURIFactory() throws Exception {
         Config c = Config.getConfig();
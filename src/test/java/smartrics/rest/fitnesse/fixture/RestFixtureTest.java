@@ -25,20 +25,29 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import smartrics.rest.client.RestClient;
 import smartrics.rest.client.RestRequest;
@@ -55,6 +64,7 @@ import smartrics.rest.fitnesse.fixture.support.JavascriptException;
 import smartrics.rest.fitnesse.fixture.support.RowWrapper;
 import smartrics.rest.fitnesse.fixture.support.StatusCodeTypeAdapter;
 import smartrics.rest.fitnesse.fixture.support.StringTypeAdapter;
+import smartrics.rest.fitnesse.fixture.support.TypedValue;
 import smartrics.rest.fitnesse.fixture.support.Variables;
 import fit.Fixture;
 
@@ -334,6 +344,39 @@ public class RestFixtureTest {
 
     }
 
+    @Test
+    public void mustSummarizeActualValuesOfEmptyCellsWhenVerbosityIsSummary() {
+        StringBuilder body = new StringBuilder("<body>");
+        while (body.length() < 300) {
+            body.append('x');
+        }
+        String actualBody = body.append("</body>").toString();
+        config.add("restfixture.display.verbosity", "summary");
+        fixture.initialize(Runner.OTHER);
+        when(mockBodyTypeAdapter.toString()).thenReturn(actualBody);
+        when(mockLastRequest.getQuery()).thenReturn("");
+        when(mockRestClient.getBaseUrl()).thenReturn(BASE_URL);
+        lastResponse.setBody(actualBody);
+
+        fixture.processRow(helper.createTestRow("GET", "/uri", "", "", ""));
+
+        verify(mockCellFormatter).gray("200");
+        verify(mockCellFormatter).gray(actualBody.substring(0, 100) + "... (" + actualBody.length() + " chars)");
+    }
+
+    @Test
+    public void mustNotRenderActualValuesOfEmptyCellsWhenVerbosityIsNone() {
+        config.add("restfixture.display.verbosity", "none");
+        fixture.initialize(Runner.OTHER);
+        when(mockLastRequest.getQuery()).thenReturn("");
+        when(mockRestClient.getBaseUrl()).thenReturn(BASE_URL);
+        lastResponse.setBody("<body />");
+
+        fixture.processRow(helper.createTestRow("GET", "/uri", "", "", ""));
+
+        verify(mockCellFormatter, never()).gray(anyString());
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void mustExecutePOSTWithFileUploadWhenFileParamNameIsDefault() throws Exception {
@@ -848,6 +891,17 @@ public class RestFixtureTest {
         verifyNoMoreInteractions(mockCellFormatter);
     }
 
+    @Test
+    public void mustNotRenderTypedLetValuesBeforeTheCellChecksThem() {
+        RowWrapper<?> row = helper.createTestRow("let", "less", "js", "3 < 4", "");
+        fixture.processRow(row);
+
+        ArgumentCaptor<StringTypeAdapter> adapter = ArgumentCaptor.forClass(StringTypeAdapter.class);
+        verify(mockCellFormatter).check(eq(row.getCell(4)), adapter.capture());
+        assertTrue(adapter.getValue().get() instanceof TypedValue);
+        assertEquals("true", adapter.getValue().get().toString());
+    }
+
     public void mustRenderCommentMessagesWithSubstitutedLabels() {
 
         RowWrapper<?> row = helper.createTestRow("let", "seven", "js", "3 + 4");
@@ -894,6 +948,67 @@ public class RestFixtureTest {
         verifyNoMoreInteractions(mockCellFormatter);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustReportToTheUserIfValidateXmlCellsAreMissing() {
+        RowWrapper<?> row = helper.createTestRow("validateXml", "schema.xsd");
+        fixture.processRow(row);
+        verify(mockCellFormatter).exception(isA(CellWrapper.class), eq("Not all cells found: | validateXml | schema | result |"));
+        verifyNoMoreInteractions(mockCellFormatter);
+    }
+
+    @Test
+    public void mustPassValidateXmlWhenLastResponseBodyIsValid() throws IOException {
+        Path xsd = createSchemaFile();
+        try {
+            getResponseWithBody("<a>1</a>");
+            RowWrapper<?> row = helper.createTestRow("validateXml", xsd.toString(), "");
+            fixture.processRow(row);
+            ArgumentCaptor<StringTypeAdapter> result = ArgumentCaptor.forClass(StringTypeAdapter.class);
+            verify(mockCellFormatter).right(eq(row.getCell(2)), result.capture());
+            assertEquals("[No deviations found.]", result.getValue().get());
+        } finally {
+            Files.delete(xsd);
+        }
+    }
+
+    @Test
+    public void mustFailValidateXmlWithErrorsWhenLastResponseBodyIsNotValid() throws IOException {
+        Path xsd = createSchemaFile();
+        try {
+            getResponseWithBody("<a>one</a>");
+            RowWrapper<?> row = helper.createTestRow("validateXml", xsd.toString(), "");
+            fixture.processRow(row);
+            ArgumentCaptor<StringTypeAdapter> result = ArgumentCaptor.forClass(StringTypeAdapter.class);
+            verify(mockCellFormatter).wrong(eq(row.getCell(2)), result.capture());
+            assertTrue(result.getValue().get().toString().startsWith("line 1, column "));
+        } finally {
+            Files.delete(xsd);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustReportToTheUserIfValidateXmlSchemaFileIsMissing() {
+        getResponseWithBody("<a>1</a>");
+        RowWrapper<?> row = helper.createTestRow("validateXml", "no-such-schema.xsd", "");
+        fixture.processRow(row);
+        verify(mockCellFormatter).exception(eq(row.getCell(1)), startsWith("Cannot read schema file 'no-such-schema.xsd'"));
+    }
+
+    private void getResponseWithBody(String body) {
+        when(mockLastRequest.getQuery()).thenReturn("");
+        when(mockRestClient.getBaseUrl()).thenReturn(BASE_URL);
+        lastResponse.setBody(body);
+        fixture.processRow(helper.createTestRow("GET", "/res", "", "", ""));
+    }
+
+    private Path createSchemaFile() throws IOException {
+        Path xsd = Files.createTempFile("restfixture", ".xsd");
+        Files.write(xsd, "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'><xs:element name='a' type='xs:int'/></xs:schema>".getBytes());
+        return xsd;
+    }
+
     private String clean(String s) {
     	if(s == null) {
     		return null;
@@ -1023,6 +1138,113 @@ public class RestFixtureTest {
         verify(mockLastRequest).setBody("<xml />");
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustExecuteRequestsInParallelAndReportTheOutcome() {
+        when(mockRestClient.execute(BASE_URL, mockLastRequest)).thenReturn(lastResponse);
+        RowWrapper<?> row = helper.createTestRow("parallel", "3", "GET", "/uri", "200", "", "");
+        fixture.processRow(row);
+        verify(mockRestClient, times(3)).execute(BASE_URL, mockLastRequest);
+        verify(mockLastRequest, times(3)).setMethod(Method.Get);
+        ArgumentCaptor<StringTypeAdapter> summary = ArgumentCaptor.forClass(StringTypeAdapter.class);
+        verify(mockCellFormatter).right(eq(row.getCell(1)), summary.capture());
+        assertTrue(summary.getValue().get().toString().startsWith("3 passed, 0 failed; latency min "));
+        verify(mockCellFormatter).right(eq(row.getCell(4)), isA(StatusCodeTypeAdapter.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustReportFailedParallelRequests() {
+        when(mockRestClient.execute(BASE_URL, mockLastRequest)).thenReturn(lastResponse);
+        RowWrapper<?> row = helper.createTestRow("parallel", "2", "PUT", "/uri", "409", "", "");
+        fixture.processRow(row);
+        ArgumentCaptor<StringTypeAdapter> summary = ArgumentCaptor.forClass(StringTypeAdapter.class);
+        verify(mockCellFormatter).wrong(eq(row.getCell(1)), summary.capture());
+        assertTrue(summary.getValue().get().toString().startsWith("0 passed, 2 failed; "));
+        verify(mockCellFormatter).wrong(eq(row.getCell(4)), isA(StatusCodeTypeAdapter.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustGenerateLoadAndCheckTheBudget() {
+        when(mockRestClient.execute(BASE_URL, mockLastRequest)).thenReturn(lastResponse);
+        RowWrapper<?> row = helper.createTestRow("load", "GET", "/uri", "rate=50/s", "duration=100ms", "p99<10s, errors<1%");
+        fixture.processRow(row);
+        verify(mockRestClient, times(5)).execute(BASE_URL, mockLastRequest);
+        ArgumentCaptor<StringTypeAdapter> summary = ArgumentCaptor.forClass(StringTypeAdapter.class);
+        verify(mockCellFormatter).right(eq(row.getCell(5)), summary.capture());
+        assertTrue(summary.getValue().get().toString().startsWith("5 requests, "));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustRejectLoadRowsWithAnInvalidRate() {
+        RowWrapper<?> row = helper.createTestRow("load", "GET", "/uri", "rate=fast", "duration=1s", "");
+        fixture.processRow(row);
+        verify(mockCellFormatter).exception(row.getCell(3), "Invalid rate 'rate=fast', expected e.g. rate=200/s");
+        verify(mockRestClient, never()).execute(anyString(), any(RestRequest.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustRejectParallelRowsWithoutAValidNumberOfRequests() {
+        RowWrapper<?> row = helper.createTestRow("parallel", "none", "GET", "/uri", "200", "", "");
+        fixture.processRow(row);
+        verify(mockCellFormatter).exception(row.getCell(1), "The number of requests must be a positive integer");
+        verify(mockRestClient, never()).execute(anyString(), any(RestRequest.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustKeepWaitingWhenARequestFails() {
+        when(mockRestClient.execute(mockLastRequest)).thenThrow(new IllegalStateException("Connection refused"))
+                .thenReturn(lastResponse);
+        RowWrapper<?> row = helper.createTestRow("waitFor", "GET", "/uri", "response.statusCode == 200", "interval=1ms");
+        fixture.processRow(row);
+        verify(mockRestClient, times(2)).execute(mockLastRequest);
+        ArgumentCaptor<StringTypeAdapter> summary = ArgumentCaptor.forClass(StringTypeAdapter.class);
+        verify(mockCellFormatter).right(eq(row.getCell(3)), summary.capture());
+        assertTrue(summary.getValue().get().toString().startsWith("satisfied after 2 attempts"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mustReportTheLastFailedRequestWhenWaitingTimesOut() {
+        when(mockRestClient.execute(mockLastRequest)).thenThrow(new IllegalStateException("Connection refused"));
+        RowWrapper<?> row = helper.createTestRow("waitFor", "GET", "/uri", "response.statusCode == 200", "timeout=20ms, interval=1ms");
+        fixture.processRow(row);
+        ArgumentCaptor<StringTypeAdapter> summary = ArgumentCaptor.forClass(StringTypeAdapter.class);
+        verify(mockCellFormatter).wrong(eq(row.getCell(3)), summary.capture());
+        assertTrue(summary.getValue().get().toString().endsWith("; request failed: Connection refused"));
+    }
+
+    @Test
+    public void mustStreamTheBodyFromFileForNextRequest() {
+        variables.put("dir", "/tmp");
+        when(mockPartsFactory.buildRestRequest(any(Path.class), any(Variables.class))).thenReturn(mockLastRequest);
+        RowWrapper<?> row = helper.createTestRow("setBodyFromFile", "%dir%/body.xml");
+        fixture.processRow(row);
+        assertEquals("/tmp/body.xml", fixture.getRequestBodyFile());
+        row = helper.createTestRow("PUT", "/uri", "", "", "");
+        fixture.processRow(row);
+        verify(mockPartsFactory).buildRestRequest(eq(Paths.get("/tmp/body.xml")), isA(Variables.class));
+        verify(mockLastRequest).setMethod(Method.Put);
+        verify(mockLastRequest, never()).setBody(anyString());
+    }
+
+    @Test
+    public void settingTheBodyMustStopStreamingItFromFile() {
+        RowWrapper<?> row = helper.createTestRow("setBodyFromFile", "/tmp/body.xml");
+        fixture.processRow(row);
+        when(mockCellFormatter.fromRaw("<xml />")).thenReturn("<xml />");
+        row = helper.createTestRow("setBody", "<xml />");
+        fixture.processRow(row);
+        assertThat(fixture.getRequestBodyFile(), is(nullValue()));
+        row = helper.createTestRow("POST", "/uri", "", "", "");
+        fixture.processRow(row);
+        verify(mockLastRequest).setBody("<xml />");
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void mustEvalJavascriptStringsWithEval() {
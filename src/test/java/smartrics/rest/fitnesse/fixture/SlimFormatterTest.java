@@ -21,13 +21,18 @@
 package smartrics.rest.fitnesse.fixture;
 
 import org.junit.Test;
+import smartrics.rest.fitnesse.fixture.support.LargeContentFiles;
 import smartrics.rest.fitnesse.fixture.support.StringTypeAdapter;
 import smartrics.rest.fitnesse.fixture.support.TextBodyTypeAdapter;
 import smartrics.rest.fitnesse.fixture.support.Tools;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -123,6 +128,20 @@ public class SlimFormatterTest {
         assertThat(c.body(), is(equalTo("pass:<div>" + Tools.toHtml("<xml />") + "</div>")));
     }
 
+    @Test
+    public void shouldLinkToFileWhenActualIsLargerThanConfigured() throws IOException {
+        Path root = Files.createTempDirectory("FitNesseRoot");
+        SlimCell c = new SlimCell("abc123");
+        SlimFormatter formatter = new SlimFormatter(new LargeContentFiles(3, root.toString()));
+        formatter.setDisplayActual(true);
+        StringTypeAdapter actual = new StringTypeAdapter();
+        actual.set("def345");
+        formatter.check(c, actual);
+
+        assertThat(c.body(), containsString("<a href='/files/restfixture/content-"));
+        assertThat(c.body(), containsString(">full content (6 chars)</a>"));
+    }
+
     @Test
     public void shouldRenderLinksAsGreyed() {
         SlimFormatter formatter = new SlimFormatter();
@@ -0,0 +1,97 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import smartrics.rest.fitnesse.fixture.support.VariableStore.Scope;
+
+public class ConcurrentVariableStoreTest {
+
+	private final ConcurrentVariableStore store = new ConcurrentVariableStore();
+
+	@After
+	public void tearDown() {
+		store.clear(Scope.SUITE);
+	}
+
+	@Test
+	public void narrowestScopeWins() {
+		store.put(Scope.SUITE, "a", "suite");
+		assertEquals("suite", store.get("a"));
+		store.put(Scope.TABLE, "a", "table");
+		assertEquals("table", store.get("a"));
+		assertEquals("suite", store.get(Scope.SUITE, "a"));
+	}
+
+	@Test
+	public void tableScopeIsPrivateToTheStore() {
+		store.put(Scope.TABLE, "a", "1");
+		store.put(Scope.SUITE, "b", "2");
+		ConcurrentVariableStore other = new ConcurrentVariableStore();
+		assertNull(other.get("a"));
+		assertEquals("2", other.get("b"));
+	}
+
+	@Test
+	public void suiteScopeIsSharedAcrossThreads() throws Exception {
+		store.put(Scope.TABLE, "a", "1");
+		store.put(Scope.SUITE, "b", "2");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Object[] seen = executor.submit(new Callable<Object[]>() {
+				@Override
+				public Object[] call() {
+					ConcurrentVariableStore s = new ConcurrentVariableStore();
+					return new Object[] { s.get("a"), s.get("b") };
+				}
+			}).get();
+			assertNull(seen[0]);
+			assertEquals("2", seen[1]);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullValuesAreRejected() {
+		store.put(Scope.TABLE, "a", null);
+	}
+
+	@Test
+	public void scopesAreParsedCaseInsensitively() {
+		assertEquals(Scope.TABLE, Scope.parse(" table ", Scope.SUITE));
+		assertEquals(Scope.SUITE, Scope.parse(null, Scope.SUITE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void thereIsNoPageScope() {
+		Scope.parse("page", Scope.SUITE);
+	}
+}
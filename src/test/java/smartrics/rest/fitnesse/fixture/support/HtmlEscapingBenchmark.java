@@ -0,0 +1,118 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+/**
+ * Compares {@link Tools#toHtml(String)} and {@link Tools#fromHtml(String)}
+ * with the chains of {@code replaceAll} they replaced, on a pretty printed
+ * XML body of about 500KB. Not run as part of the unit tests; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=smartrics.rest.fitnesse.fixture.support.HtmlEscapingBenchmark
+ * </pre>
+ */
+public class HtmlEscapingBenchmark {
+
+	private static final int BODY_SIZE = 500 * 1024;
+
+	private static final int WARMUP = 10;
+
+	private static final int RUNS = 20;
+
+	private interface Conversion {
+		String apply(String text);
+	}
+
+	public static void main(String[] args) {
+		StringBuilder sb = new StringBuilder(BODY_SIZE + 64);
+		sb.append("<orders>\n");
+		for (int i = 0; sb.length() < BODY_SIZE; i++) {
+			sb.append("\t<order id=\"").append(i).append("\">\n\t\t<note>a &amp; b -- c</note>\n\t</order>\n");
+		}
+		String body = sb.append("</orders>").toString();
+		String html = Tools.toHtml(body);
+		if (!legacyToHtml(body).equals(html) || !legacyFromHtml(html).equals(Tools.fromHtml(html))) {
+			throw new IllegalStateException("legacy and single pass conversions differ");
+		}
+		System.out.println(String.format("body: %d chars, html: %d chars", body.length(), html.length()));
+		report("toHtml, replaceAll chain  ", time(body, new Conversion() {
+			@Override
+			public String apply(String text) {
+				return legacyToHtml(text);
+			}
+		}));
+		report("toHtml, single pass       ", time(body, new Conversion() {
+			@Override
+			public String apply(String text) {
+				return Tools.toHtml(text);
+			}
+		}));
+		report("fromHtml, replaceAll chain", time(html, new Conversion() {
+			@Override
+			public String apply(String text) {
+				return legacyFromHtml(text);
+			}
+		}));
+		report("fromHtml, single pass     ", time(html, new Conversion() {
+			@Override
+			public String apply(String text) {
+				return Tools.fromHtml(text);
+			}
+		}));
+	}
+
+	private static void report(String name, long nanos) {
+		System.out.println(String.format("%s: %8.2f ms/op", name, nanos / 1e6));
+	}
+
+	private static long time(String text, Conversion conversion) {
+		long total = 0;
+		int length = 0;
+		for (int i = 0; i < WARMUP + RUNS; i++) {
+			long start = System.nanoTime();
+			String out = conversion.apply(text);
+			long elapsed = System.nanoTime() - start;
+			length += out.length();
+			if (i >= WARMUP) {
+				total += elapsed;
+			}
+		}
+		if (length == 0) {
+			throw new IllegalStateException();
+		}
+		return total / RUNS;
+	}
+
+	// the conversions as implemented before the single pass ones
+	private static String legacyToHtml(String text) {
+		return text.replaceAll("<pre>", "").replaceAll("</pre>", "").replaceAll("<", "&lt;").replaceAll(">", "&gt;")
+				.replaceAll("\n", "<br/>").replaceAll("\t", "    ").replaceAll(" ", "&nbsp;")
+				.replaceAll("-----", "<hr/>");
+	}
+
+	private static String legacyFromHtml(String text) {
+		String ls = "\n";
+		return text.replaceAll("<br[\\s]*/>", ls).replaceAll("<BR[\\s]*/>", ls).replaceAll("<span[^>]*>", "")
+				.replaceAll("</span>", "").replaceAll("<pre>", "").replaceAll("</pre>", "").replaceAll("&nbsp;", " ")
+				.replaceAll("&gt;", ">").replaceAll("&amp;", "&").replaceAll("&lt;", "<").replaceAll("&nbsp;", " ");
+	}
+}
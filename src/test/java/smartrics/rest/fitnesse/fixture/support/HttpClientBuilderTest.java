@@ -21,11 +21,15 @@
 package smartrics.rest.fitnesse.fixture.support;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 
+import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.protocol.Protocol;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -55,6 +59,7 @@ public class HttpClientBuilderTest {
 	public void removeConfig() {
 		config.clear();
 		incompleteConfig.clear();
+		TlsContexts.clear();
 	}
 
 	@Test
@@ -87,6 +92,28 @@ public class HttpClientBuilderTest {
 		assertNull(cli.getState().getProxyCredentials(AuthScope.ANY));
 	}
 	
+	@Test
+	public void mustUseTheTlsContextOfTheConfigForHttps() throws Exception {
+		config.add("http.client.ssl.protocols", "TLSv1.2");
+		HttpClientBuilder b = new HttpClientBuilder();
+		HostConfiguration host = (HostConfiguration) b.createHttpClient(config).getHostConfiguration().clone();
+		host.setHost(new URI("https://localhost/resource", false));
+		HostConfiguration other = (HostConfiguration) b.createHttpClient(config).getHostConfiguration().clone();
+		other.setHost(new URI("https://localhost:443/resource", false));
+		assertEquals(443, host.getPort());
+		assertEquals(host, other);
+		assertFalse(Protocol.getProtocol("https").equals(host.getProtocol()));
+	}
+
+	@Test
+	public void mustUseTheRegisteredHttpsProtocolWithoutTlsSettings() throws Exception {
+		HostConfiguration host = (HostConfiguration) new HttpClientBuilder().createHttpClient(config)
+				.getHostConfiguration().clone();
+		host.setHost(new URI("https://localhost/resource", false));
+		assertEquals(Protocol.getProtocol("https"), host.getProtocol());
+		assertNull(TlsContexts.getStats(config.getName()));
+	}
+
 	@Test
 	public void mustSetDefaultProxyPortIfNotSuppliedWithProxyHost() {
 		HttpClientBuilder b = new HttpClientBuilder();
@@ -0,0 +1,116 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpConnectionPoolsTest {
+
+	private Config config;
+
+	@Before
+	public void createConfig() {
+		config = Config.getConfig("pooled");
+		config.add("http.client.connection.pool.shared", "true");
+		config.add("http.client.max.connections.per.host", "5");
+		config.add("http.client.max.connections", "7");
+		config.add("http.client.tcp.nodelay", "false");
+	}
+
+	@After
+	public void removeConfig() {
+		config.clear();
+		HttpConnectionPools.shutdown();
+	}
+
+	@Test
+	public void clientsBuiltWithTheSameConfigShareThePool() {
+		HttpClientBuilder b = new HttpClientBuilder();
+		HttpClient c1 = b.createHttpClient(config);
+		HttpClient c2 = b.createHttpClient(config);
+		assertSame(c1.getHttpConnectionManager(), c2.getHttpConnectionManager());
+		assertNotSame(c1.getHttpConnectionManager(), b.createHttpClient(Config.getConfig()).getHttpConnectionManager());
+	}
+
+	@Test
+	public void poolIsConfiguredAsPerConfig() {
+		HttpConnectionManagerParams params = HttpConnectionPools.getConnectionManager(config).getParams();
+		assertEquals(5, params.getDefaultMaxConnectionsPerHost());
+		assertEquals(7, params.getMaxTotalConnections());
+		assertEquals(false, params.getTcpNoDelay());
+		config.add("http.client.max.connections", "9");
+		assertEquals(9, HttpConnectionPools.getConnectionManager(config).getParams().getMaxTotalConnections());
+	}
+
+	@Test
+	public void poolIsNotSharedByDefault() {
+		Config other = Config.getConfig("unpooled");
+		try {
+			new HttpClientBuilder().createHttpClient(other);
+			assertNull(HttpConnectionPools.getStats(other.getName()));
+		} finally {
+			other.clear();
+		}
+	}
+
+	@Test
+	public void poolIsNotSharedIfDisabled() {
+		config.add("http.client.connection.pool.shared", "false");
+		new HttpClientBuilder().createHttpClient(config);
+		assertNull(HttpConnectionPools.getStats(config.getName()));
+	}
+
+	@Test
+	public void clientsWithTheirOwnConnectionsDontUseThePool() {
+		HttpClient client = new HttpClientBuilder().createHttpClient(config, true);
+		assertNull(HttpConnectionPools.getStats(config.getName()));
+		assertTrue(!(client.getHttpConnectionManager() instanceof MultiThreadedHttpConnectionManager));
+	}
+
+	@Test
+	public void statsTrackLeasesAndReuse() throws Exception {
+		MultiThreadedHttpConnectionManager manager = HttpConnectionPools.getConnectionManager(config);
+		assertEquals(0, HttpConnectionPools.getStats(config.getName()).getLeases());
+		HostConfiguration host = new HostConfiguration();
+		HttpConnection conn = manager.getConnectionWithTimeout(host, 0);
+		assertEquals(1, HttpConnectionPools.getStats(config.getName()).getLeased());
+		manager.releaseConnection(conn);
+		manager.releaseConnection(manager.getConnectionWithTimeout(host, 0));
+		HttpConnectionPools.ConnectionPoolStats stats = HttpConnectionPools.getStats(config.getName());
+		assertEquals(0, stats.getLeased());
+		assertEquals(2, stats.getLeases());
+		assertEquals(0.5, stats.getReuseRatio(), 0.001);
+		assertTrue(stats.toString().contains("reuse ratio=0.50"));
+	}
+}
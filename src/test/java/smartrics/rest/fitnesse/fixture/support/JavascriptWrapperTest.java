@@ -28,6 +28,7 @@ import static org.junit.Assert.fail;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mozilla.javascript.Scriptable;
 
 import smartrics.rest.client.RestResponse;
 
@@ -56,6 +57,24 @@ public class JavascriptWrapperTest {
         assertThat(res.toString(), is(equalTo("my sym is: 98")));
     }
 
+    @Test
+    public void shouldProvideTheGivenVariablesAsSymbols() {
+        Config c = Config.getConfig("tableScoped");
+        try {
+            c.add("restfixture.variables.scope", "table");
+            c.add("restfixture.variables.mirror.fit.symbols", "false");
+            Variables tableVariables = new Variables(c);
+            tableVariables.put("my_sym", "99");
+            JavascriptWrapper h = new JavascriptWrapper(tableVariables);
+            Object res = h.evaluateExpression(new RestResponse(), "symbols.get('my_sym')");
+            assertThat(res.toString(), is(equalTo("99")));
+            assertThat(new JavascriptWrapper().evaluateExpression(new RestResponse(), "symbols.get('my_sym')"),
+                    is(nullValue()));
+        } finally {
+            c.clear();
+        }
+    }
+
     @Test
     public void shouldProvideLastResponseBodyInJsContext() {
         RestResponse response = createResponse();
@@ -82,6 +101,15 @@ public class JavascriptWrapperTest {
         assertThat(res.toString(), is(equalTo("My friend Rokko is 30 years old.")));
     }
 
+    @Test
+    public void shouldEvaluateManyExpressionsOnJsonParsedOnce() {
+        JavascriptWrapper h = new JavascriptWrapper();
+        Scriptable json = h.parseJson("{ \"person\" : { \"name\" : \"Rokko\", \"age\" : \"30\" } }");
+        assertThat(h.evaluateExpression(json, "var n = jsonbody.person.name; n").toString(), is(equalTo("Rokko")));
+        assertThat(h.evaluateExpression(json, "jsonbody.person.age").toString(), is(equalTo("30")));
+        assertThat(h.evaluateExpression(json, "typeof n").toString(), is(equalTo("undefined")));
+    }
+
     @Test
     public void shouldNotProvideLastResponseBodyInJsContextIfResponseIsNull() {
         JavascriptWrapper h = new JavascriptWrapper();
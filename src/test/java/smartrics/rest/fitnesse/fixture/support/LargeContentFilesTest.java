@@ -0,0 +1,98 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class LargeContentFilesTest {
+
+	@Test
+	public void onlyContentsLongerThanTheMinLengthAreLarge() {
+		assertFalse(new LargeContentFiles(-1, "root").isLarge("some content"));
+		assertFalse(new LargeContentFiles(4, "root").isLarge("1234"));
+		assertTrue(new LargeContentFiles(4, "root").isLarge("12345"));
+	}
+
+	@Test
+	public void contentIsWrittenToFileAndPreviewedInTheCell() throws IOException {
+		Path root = Files.createTempDirectory("FitNesseRoot");
+		StringBuilder sb = new StringBuilder("<a>");
+		while (sb.length() < 2 * LargeContentFiles.PREVIEW_LENGTH) {
+			sb.append('x');
+		}
+		String content = sb.append("</a>").toString();
+
+		String html = new LargeContentFiles(10, root.toString()).toHtml(content);
+
+		Matcher m = Pattern.compile("<a href='/files/restfixture/([^']+)'>full content \\((\\d+) chars\\)</a>$").matcher(html);
+		assertTrue(html, m.find());
+		assertEquals(Integer.toString(content.length()), m.group(2));
+		assertTrue(html.startsWith(Tools.toHtml(content.substring(0, LargeContentFiles.PREVIEW_LENGTH) + "...\n")));
+		Path file = root.resolve("files").resolve(LargeContentFiles.FILES_DIR).resolve(m.group(1));
+		assertEquals(content, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void onlyTheMostRecentFilesAreKept() throws IOException {
+		Path root = Files.createTempDirectory("FitNesseRoot");
+		Path dir = root.resolve("files").resolve(LargeContentFiles.FILES_DIR);
+		Files.createDirectories(dir);
+		Path old = Files.write(dir.resolve("content-1-1.txt"), "old".getBytes(StandardCharsets.UTF_8));
+		Path other = Files.write(dir.resolve("notes.txt"), "notes".getBytes(StandardCharsets.UTF_8));
+		LargeContentFiles files = new LargeContentFiles(1, root.toString(), 2);
+		files.toHtml("first");
+		assertTrue(Files.exists(old));
+		files.toHtml("second");
+		files.toHtml("third");
+		assertFalse(Files.exists(old));
+		assertTrue(Files.exists(other));
+		int count = 0;
+		StringBuilder contents = new StringBuilder();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "content-*.txt")) {
+			for (Path p : stream) {
+				count++;
+				contents.append(new String(Files.readAllBytes(p), StandardCharsets.UTF_8));
+			}
+		}
+		assertEquals(2, count);
+		assertFalse(contents.toString().contains("first"));
+	}
+
+	@Test
+	public void nullIsReturnedIfTheFileCannotBeWritten() throws IOException {
+		File root = File.createTempFile("FitNesseRoot", "");
+		assertNull(new LargeContentFiles(1, root.getPath()).toHtml("content"));
+	}
+}
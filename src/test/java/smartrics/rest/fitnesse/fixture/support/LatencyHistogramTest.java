@@ -0,0 +1,82 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void emptyHistogramReportsZero() {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getPercentile(99));
+	}
+
+	@Test
+	public void smallValuesAreRecordedExactly() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			h.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+		assertEquals(100, h.getCount());
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(50), h.getPercentile(50));
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(99), h.getPercentile(99));
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(100), h.getPercentile(100));
+	}
+
+	@Test
+	public void percentilesAreWithinTwoPercentOfTheActualValues() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 100000; i++) {
+			h.record(TimeUnit.MICROSECONDS.toNanos(i * 37L));
+		}
+		assertClose(50000 * 37L, h.getPercentile(50));
+		assertClose(99000 * 37L, h.getPercentile(99));
+		assertClose(99900 * 37L, h.getPercentile(99.9));
+		assertEquals(TimeUnit.MICROSECONDS.toNanos(100000 * 37L), h.getMax());
+	}
+
+	@Test
+	public void bucketsCoverTheirValues() {
+		for (long v = 0; v < 1L << 20; v += 7) {
+			int index = LatencyHistogram.index(v);
+			assertTrue(v + " above its bucket", v <= LatencyHistogram.highestValue(index));
+			assertTrue(v + " below its bucket", index == 0 || v > LatencyHistogram.highestValue(index - 1));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void percentilesAboveHundredAreRejected() {
+		new LatencyHistogram().getPercentile(101);
+	}
+
+	private static void assertClose(long expectedMicros, long actualNanos) {
+		double actual = actualNanos / 1000.0;
+		assertTrue("expected ~" + expectedMicros + "us but was " + actual,
+				Math.abs(actual - expectedMicros) <= expectedMicros * 0.02);
+	}
+}
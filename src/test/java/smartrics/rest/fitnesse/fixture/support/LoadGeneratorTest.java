@@ -0,0 +1,165 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import smartrics.rest.client.RestClient;
+import smartrics.rest.client.RestClientImpl;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.ResponseBody;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+
+public class LoadGeneratorTest {
+
+	@Test
+	public void parsesRatesAndDurations() {
+		assertEquals(200.0, LoadGenerator.parseRate("rate=200/s"), 0);
+		assertEquals(10.0, LoadGenerator.parseRate("600/m"), 0);
+		assertEquals(5.0, LoadGenerator.parseRate("5"), 0);
+		assertEquals(TimeUnit.SECONDS.toNanos(60), LoadGenerator.parseDuration("duration=60s"));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(500), LoadGenerator.parseDuration("500ms"));
+		assertEquals(TimeUnit.MINUTES.toNanos(2), LoadGenerator.parseDuration("2m"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidRates() {
+		LoadGenerator.parseRate("rate=fast");
+	}
+
+	@Test
+	public void sendsRequestsAtTheGivenRateAndCountsErrors() {
+		LoadGenerator.Result result = new LoadGenerator(clients(0, 200, 503), 4).run("http://localhost",
+				requests(), 100, TimeUnit.MILLISECONDS.toNanos(300));
+		assertEquals(30, result.getHistogram().getCount());
+		assertEquals(15, result.getErrors());
+		assertEquals(Collections.singletonMap("503", 15), result.getErrorsByCause());
+		assertTrue(result.toString(), result.toString().startsWith("30 requests, "));
+	}
+
+	@Test
+	public void latenciesIncludeTheTimeRequestsWaitedToBeSent() {
+		// one worker, each request takes 20ms but they are due every 10ms:
+		// the last ones wait about 100ms to be sent
+		LoadGenerator.Result result = new LoadGenerator(clients(20, 200), 1).run("http://localhost", requests(), 100,
+				TimeUnit.MILLISECONDS.toNanos(100));
+		assertTrue(Latencies.toMillis(result.getHistogram().getMax()),
+				result.getHistogram().getMax() >= TimeUnit.MILLISECONDS.toNanos(100));
+	}
+
+	@Test
+	public void budgetsAreCheckedAgainstPercentilesAndErrors() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			h.record(TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		assertTrue(PerformanceBudget.parse("p50<51ms, errors<5%").check(h, 4).isEmpty());
+		assertEquals(Arrays.asList("p99<50ms (was 99.3ms)", "errors<1% (was 2.0%)"),
+				PerformanceBudget.parse("p99<50ms, p50 < 1s, errors<1%").check(h, 2));
+		assertTrue(PerformanceBudget.parse("").isEmpty());
+	}
+
+	@Test
+	public void spilledBodiesAreDeletedOnceTheirLatencyIsRecorded() {
+		final List<Path> spilled = Collections.synchronizedList(new ArrayList<Path>());
+		ParallelRequests.ClientFactory clients = new ParallelRequests.ClientFactory() {
+			@Override
+			public RestClient create() {
+				return new RestClientImpl(new org.apache.commons.httpclient.HttpClient()) {
+					@Override
+					public RestResponse execute(String hostAddr, RestRequest request) {
+						StreamedRestResponse response = new StreamedRestResponse();
+						response.setStatusCode(200);
+						try {
+							response.setContent(ResponseBody.read(new ByteArrayInputStream(new byte[64]), 16, -1));
+						} catch (IOException e) {
+							throw new IllegalStateException(e);
+						}
+						spilled.add(response.getContent().getFile());
+						return response;
+					}
+				};
+			}
+		};
+		LoadGenerator.Result result = new LoadGenerator(clients, 2).run("http://localhost", requests(), 100,
+				TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(10, spilled.size());
+		assertEquals(0, result.getErrors());
+		for (Path file : spilled) {
+			assertFalse(file.toString(), Files.exists(file));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidBudgets() {
+		PerformanceBudget.parse("p99 fast");
+	}
+
+	private static LoadGenerator.RequestFactory requests() {
+		return new LoadGenerator.RequestFactory() {
+			@Override
+			public RestRequest create() {
+				return new RestRequest();
+			}
+		};
+	}
+
+	// clients answering after the given time, with each status in turn
+	private static ParallelRequests.ClientFactory clients(final long millis, final int... statuses) {
+		return new ParallelRequests.ClientFactory() {
+			private int next;
+
+			@Override
+			public RestClient create() {
+				return new RestClientImpl(new org.apache.commons.httpclient.HttpClient()) {
+					@Override
+					public RestResponse execute(String hostAddr, RestRequest request) {
+						try {
+							Thread.sleep(millis);
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+						RestResponse response = new RestResponse();
+						synchronized (statuses) {
+							response.setStatusCode(statuses[next++ % statuses.length]);
+						}
+						return response;
+					}
+				};
+			}
+		};
+	}
+}
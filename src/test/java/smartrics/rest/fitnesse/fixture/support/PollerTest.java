@@ -0,0 +1,84 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PollerTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void delaysGrowExponentiallyWithJitterUpToTheMax() {
+		Poller poller = new Poller(100 * MS, 1000 * MS, new Random(42));
+		for (int i = 0; i < 100; i++) {
+			assertBetween(50 * MS, 100 * MS, poller.delay(0));
+			assertBetween(200 * MS, 400 * MS, poller.delay(2));
+			assertBetween(500 * MS, 1000 * MS, poller.delay(4));
+			assertBetween(500 * MS, 1000 * MS, poller.delay(100));
+		}
+	}
+
+	@Test
+	public void stopsAsSoonAsTheAttemptSucceeds() {
+		final int[] calls = new int[1];
+		Poller.Result result = new Poller(MS, 2 * MS, new Random()).poll(new Poller.Attempt() {
+			@Override
+			public boolean run() {
+				return ++calls[0] == 3;
+			}
+		}, TimeUnit.SECONDS.toNanos(10));
+		assertTrue(result.isSatisfied());
+		assertEquals(3, result.getAttempts());
+		assertEquals(3, calls[0]);
+		assertTrue(result.toString(), result.toString().startsWith("satisfied after 3 attempts in "));
+	}
+
+	@Test
+	public void givesUpAtTheTimeout() {
+		Poller.Result result = new Poller(10 * MS, 10 * MS, new Random()).poll(new Poller.Attempt() {
+			@Override
+			public boolean run() {
+				return false;
+			}
+		}, 50 * MS);
+		assertFalse(result.isSatisfied());
+		assertTrue(result.getAttempts() > 1);
+		assertTrue(result.getElapsed() >= 50 * MS);
+		assertTrue(result.getElapsed() < 1000 * MS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAMaxDelayShorterThanTheInitial() {
+		new Poller(10 * MS, MS, new Random());
+	}
+
+	private static void assertBetween(long min, long max, long value) {
+		assertTrue(value + " not in [" + min + ", " + max + "]", value >= min && value <= max);
+	}
+}
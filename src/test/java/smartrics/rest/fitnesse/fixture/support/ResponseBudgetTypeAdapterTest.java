@@ -0,0 +1,80 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.http.ResponseBody;
+import smartrics.rest.fitnesse.fixture.support.http.StreamedRestResponse;
+
+public class ResponseBudgetTypeAdapterTest {
+
+	private ResponseBudgetTypeAdapter adapter = new ResponseBudgetTypeAdapter();
+
+	@Test
+	public void sizeAndHeadersWithinBudgetShouldPass() {
+		assertTrue(adapter.equals("size<2KB; headers<3", response(2047, 2)));
+		assertTrue(adapter.getErrors().isEmpty());
+	}
+
+	@Test
+	public void exceededLimitsShouldBeReportedWithTheActualValue() {
+		assertFalse(adapter.equals(adapter.parse("size<1KB; headers < 2"), response(1024, 2)));
+		assertEquals(Arrays.asList("size<1KB (was 1024B)", "headers < 2 (was 2)"), adapter.getErrors());
+	}
+
+	@Test
+	public void timesNotMeasuredShouldFail() {
+		assertFalse(adapter.equals("time<150ms", response(10, 0)));
+		assertEquals(Arrays.asList("time<150ms (not measured)"), adapter.getErrors());
+	}
+
+	@Test
+	public void shouldRenderTheActualSizeAndHeaders() {
+		assertEquals("size=10B; headers=1", adapter.toString(response(10, 1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownLimitsShouldBeRejected() {
+		adapter.parse("time<150ms; latency<10ms");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidUnitsShouldBeRejected() {
+		adapter.parse("size<10ms");
+	}
+
+	private static RestResponse response(int size, int headers) {
+		StreamedRestResponse response = new StreamedRestResponse();
+		response.setContent(ResponseBody.of(new byte[size]));
+		for (int i = 0; i < headers; i++) {
+			response.addHeader("X-" + i, "v");
+		}
+		return response;
+	}
+}
@@ -0,0 +1,106 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+
+/**
+ * Compares {@link Template} with the regex based substitution it replaced, on
+ * a body of about 1MB referencing 100 variables. Not run as part of the unit
+ * tests; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=smartrics.rest.fitnesse.fixture.support.TemplateBenchmark
+ * </pre>
+ */
+public class TemplateBenchmark {
+
+	private static final int BODY_SIZE = 1024 * 1024;
+
+	private static final int VARIABLES = 100;
+
+	private static final int WARMUP = 5;
+
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) {
+		final Map<String, String> values = new HashMap<String, String>();
+		StringBuilder sb = new StringBuilder(BODY_SIZE + 64);
+		for (int i = 0; sb.length() < BODY_SIZE; i++) {
+			String name = "var" + (i % VARIABLES);
+			values.put(name, "value-" + i % VARIABLES);
+			sb.append("{\"field").append(i).append("\":\"%").append(name).append("%\"},\n");
+		}
+		String body = sb.toString();
+		Template.Resolver resolver = new Template.Resolver() {
+			@Override
+			public String resolve(String name) {
+				return values.get(name);
+			}
+		};
+		if (!legacySubstitute(body, values).equals(Template.parse(body).render(resolver))) {
+			throw new IllegalStateException("legacy and template substitution differ");
+		}
+		System.out.println(String.format("body: %d chars, %d variables", body.length(), VARIABLES));
+		long legacy = time(body, values, null);
+		long template = time(body, values, resolver);
+		System.out.println(String.format("regex replaceAll per variable: %8.2f ms/op", legacy / 1e6));
+		System.out.println(String.format("single pass template         : %8.2f ms/op", template / 1e6));
+	}
+
+	private static long time(String body, Map<String, String> values, Template.Resolver resolver) {
+		long total = 0;
+		int length = 0;
+		for (int i = 0; i < WARMUP + RUNS; i++) {
+			long start = System.nanoTime();
+			String out = resolver == null ? legacySubstitute(body, values) : Template.parse(body).render(resolver);
+			long elapsed = System.nanoTime() - start;
+			length += out.length();
+			if (i >= WARMUP) {
+				total += elapsed;
+			}
+		}
+		if (length == 0) {
+			throw new IllegalStateException();
+		}
+		return total / RUNS;
+	}
+
+	// the substitution as implemented before Template
+	private static String legacySubstitute(String text, Map<String, String> values) {
+		Matcher m = Variables.VARIABLES_PATTERN.matcher(text);
+		Map<String, String> replacements = new HashMap<String, String>();
+		while (m.find()) {
+			replacements.put(m.group(0), values.get(m.group(1)));
+		}
+		String newText = text;
+		for (Entry<String, String> en : replacements.entrySet()) {
+			if (en.getValue() != null) {
+				newText = newText.replaceAll(en.getKey(), en.getValue());
+			}
+		}
+		return newText;
+	}
+}
@@ -0,0 +1,91 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TemplateReaderTest {
+
+	private final Map<String, String> values = new HashMap<String, String>();
+
+	private final Template.Resolver resolver = new Template.Resolver() {
+		@Override
+		public String resolve(String name) {
+			return values.get(name);
+		}
+	};
+
+	@Before
+	public void setUp() {
+		values.put("a", "1");
+		values.put("b", "%a%");
+	}
+
+	@Test
+	public void textIsSubstitutedAsByTemplate() throws IOException {
+		String[] texts = { "", "no variables", "%a%", "x%a%y%b%z", "%%a%%", "%c%a%", "%a", "100% of %a%", "%a b%", "%%%", "%a%%" };
+		for (String text : texts) {
+			assertEquals(text, Template.parse(text).render(resolver), readAll(new TemplateReader(new StringReader(text), resolver), 1));
+			assertEquals(text, Template.parse(text).render(resolver), readAll(new TemplateReader(new StringReader(text), resolver), 64));
+		}
+	}
+
+	@Test
+	public void referencesAcrossBufferBoundariesAreSubstituted() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 3 * 8192) {
+			sb.append("%a%.%b%-");
+		}
+		String text = sb.toString();
+		assertEquals(Template.parse(text).render(resolver), readAll(new TemplateReader(new StringReader(text), resolver), 1000));
+	}
+
+	@Test
+	public void tooLongNamesAreLeftAsTheyAre() throws IOException {
+		StringBuilder sb = new StringBuilder("%");
+		for (int i = 0; i <= TemplateReader.MAX_NAME_LENGTH; i++) {
+			sb.append('n');
+		}
+		String text = sb.append("% %a%").toString();
+		values.put(text.substring(1, text.length() - 5), "long");
+		assertEquals(text.substring(0, text.length() - 3) + "1", readAll(new TemplateReader(new StringReader(text), resolver), 64));
+	}
+
+	private static String readAll(Reader r, int chunk) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[chunk];
+		int n;
+		while ((n = r.read(buf)) >= 0) {
+			sb.append(buf, 0, n);
+		}
+		r.close();
+		return sb.toString();
+	}
+}
@@ -0,0 +1,103 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TemplateTest {
+
+	private final Map<String, String> values = new HashMap<String, String>();
+
+	private final Template.Resolver resolver = new Template.Resolver() {
+		@Override
+		public String resolve(String name) {
+			return values.get(name);
+		}
+	};
+
+	@Before
+	public void setUp() {
+		Template.clearCache();
+		values.put("a", "1");
+		values.put("b", "2");
+	}
+
+	@Test
+	public void textWithoutVariablesIsRenderedAsIs() {
+		Template t = Template.parse("no variables here, 100%");
+		assertFalse(t.hasVariables());
+		assertEquals("no variables here, 100%", t.render(resolver));
+	}
+
+	@Test
+	public void variablesAreReplacedInOnePass() {
+		Template t = Template.parse("%a%-%b%-%a%%b%");
+		assertTrue(t.hasVariables());
+		assertEquals("1-2-12", t.render(resolver));
+	}
+
+	@Test
+	public void undefinedVariablesAreLeftAsTheyAre() {
+		assertEquals("%c% and 1", Template.parse("%c% and %a%").render(resolver));
+	}
+
+	@Test
+	public void valuesAreInsertedLiterally() {
+		values.put("a", "$1 \\ %b%");
+		assertEquals("x $1 \\ %b% y", Template.parse("x %a% y").render(resolver));
+	}
+
+	@Test
+	public void shortTextsAreCached() {
+		Template t = Template.parse("/resource/%a%");
+		assertSame(t, Template.parse(new String("/resource/%a%")));
+		assertEquals(1, Template.cacheSize());
+	}
+
+	@Test
+	public void longTextsAreNotCached() {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() <= Template.MAX_CACHED_TEXT_LENGTH) {
+			sb.append("%a%");
+		}
+		String text = sb.toString();
+		assertNotSame(Template.parse(text), Template.parse(text));
+		assertEquals(0, Template.cacheSize());
+	}
+
+	@Test
+	public void cacheIsBounded() {
+		for (int i = 0; i < Template.MAX_CACHED_TEMPLATES + 10; i++) {
+			Template.parse("/resource/" + i + "/%a%");
+		}
+		assertEquals(Template.MAX_CACHED_TEMPLATES, Template.cacheSize());
+	}
+}
@@ -0,0 +1,95 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TlsContextsTest {
+
+	private Config config;
+
+	@Before
+	public void createConfig() {
+		config = Config.getConfig("tls");
+	}
+
+	@After
+	public void removeConfig() {
+		config.clear();
+		TlsContexts.clear();
+	}
+
+	@Test
+	public void factoryIsSharedUntilTheSettingsChange() {
+		SSLSocketFactory factory = TlsContexts.getSocketFactory(config);
+		assertSame(factory, TlsContexts.getSocketFactory(config));
+		config.add("restfixture.display.timing", "true");
+		assertSame(factory, TlsContexts.getSocketFactory(config));
+		config.add("http.client.ssl.session.timeout", "60");
+		assertNotSame(factory, TlsContexts.getSocketFactory(config));
+		assertNotSame(TlsContexts.getSocketFactory(config), TlsContexts.getSocketFactory(Config.getConfig()));
+	}
+
+	@Test
+	public void protocolsAndCiphersAreEnabledOnTheSockets() throws IOException {
+		config.add("http.client.ssl.protocols", "TLSv1.2");
+		config.add("http.client.ssl.ciphers", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256, TLS_RSA_WITH_AES_128_CBC_SHA");
+		SSLSocket socket = (SSLSocket) TlsContexts.getSocketFactory(config).createSocket();
+		try {
+			assertEquals(Arrays.asList("TLSv1.2"), Arrays.asList(socket.getEnabledProtocols()));
+			assertEquals(Arrays.asList("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_RSA_WITH_AES_128_CBC_SHA"),
+					Arrays.asList(socket.getEnabledCipherSuites()));
+		} finally {
+			socket.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unreadableKeystoresAreReported() {
+		config.add("http.client.ssl.truststore", "/does/not/exist.p12");
+		TlsContexts.getSocketFactory(config);
+	}
+
+	@Test
+	public void statsAreKeptPerConfig() {
+		assertNull(TlsContexts.getStats(config.getName()));
+		TlsContexts.getSocketFactory(config);
+		TlsContexts.TlsStats stats = TlsContexts.getStats(config.getName());
+		assertEquals(0, stats.getHandshakes());
+		assertEquals(0, stats.getResumptionRatio(), 0.001);
+		assertTrue(stats.toString().contains("resumption ratio=0.00"));
+		assertEquals(0, TlsContexts.getStats().getFull());
+	}
+}
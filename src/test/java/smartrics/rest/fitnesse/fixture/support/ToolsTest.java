@@ -27,6 +27,7 @@ import javax.xml.xpath.XPathConstants;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,6 +61,58 @@ public class ToolsTest {
         assertEquals(stuff, Tools.fromHtml(Tools.toHtml(stuff)));
     }
 
+    @Test
+    public void toHtmlEscapesMarkupAndWhitespace() {
+        assertEquals("&lt;a&gt;&nbsp;x<br/>&nbsp;&nbsp;&nbsp;&nbsp;y&lt;/a&gt;", Tools.toHtml("<pre><a> x\n\ty</a></pre>"));
+        assertEquals("<hr/>--&nbsp;<hr/>", Tools.toHtml("--<pre>-----</pre> -----"));
+        assertEquals("plain", Tools.toHtml("plain"));
+    }
+
+    @Test
+    public void fromHtmlStripsTagsAndUnescapesEntities() {
+        assertEquals("a\nb\nc d<e>", Tools.fromHtml("<span class='x'>a<br />b<BR/>c</span>&nbsp;d&lt;e&gt;"));
+        assertEquals("&gt; < &amp;  ", Tools.fromHtml("&amp;gt; &amp;lt; &amp;amp; &amp;nbsp;"));
+    }
+
+    @Test
+    public void ignoredCellsRenderActualAsPerVerbosity() {
+        StringTypeAdapter actual = new StringTypeAdapter();
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 150) {
+            sb.append("0123456789");
+        }
+        actual.set(sb.toString());
+        assertEquals(sb.toString(), Tools.makeContentForIgnoredCell(actual, DisplayVerbosity.FULL));
+        assertEquals(sb.substring(0, 100) + "... (150 chars)", Tools.makeContentForIgnoredCell(actual, DisplayVerbosity.SUMMARY));
+        assertNull(Tools.makeContentForIgnoredCell(actual, DisplayVerbosity.NONE));
+        HeadersTypeAdapter noHeaders = new HeadersTypeAdapter();
+        noHeaders.set(Collections.emptyList());
+        assertNull(Tools.makeContentForIgnoredCell(noHeaders, DisplayVerbosity.FULL));
+    }
+
+    @Test
+    public void actualIsNotStringifiedForRightCellsIfNotDisplayed() {
+        final int[] calls = new int[1];
+        StringTypeAdapter actual = new StringTypeAdapter() {
+            @Override
+            public String toString() {
+                calls[0]++;
+                return super.toString();
+            }
+        };
+        actual.set("actual");
+        CellFormatter<?> formatter = mock(CellFormatter.class);
+        assertEquals("expected", Tools.makeContentForRightCell("expected", actual, formatter, -1));
+        assertEquals(0, calls[0]);
+    }
+
+    @Test
+    public void fromHtmlRemovesTagsOneKindAfterTheOther() {
+        assertEquals("\n", Tools.fromHtml("<BR<br/>/>"));
+        assertEquals("<span>", Tools.fromHtml("<spa<pre>n>"));
+        assertEquals("", Tools.fromHtml("<span <br/>x>"));
+    }
+
     @Test
     public void shouldReadAnInputStreamToAString() {
         InputStream is = new ByteArrayInputStream("a string".getBytes());
@@ -0,0 +1,73 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+public class TypedValueTest {
+
+	@Test
+	public void javascriptObjectsAreRenderedAsJson() {
+		Context cx = Context.enter();
+		try {
+			Scriptable scope = cx.initStandardObjects();
+			Object o = cx.evaluateString(scope, "({a: 1, b: ['x']})", null, 1, null);
+			TypedValue v = new TypedValue(o);
+			assertSame(o, v.get());
+			assertEquals("{\"a\":1,\"b\":[\"x\"]}", v.toString());
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void bytesAreRenderedAsUtf8() {
+		assertEquals("\u00e9", new TypedValue("\u00e9".getBytes(StandardCharsets.UTF_8)).toString());
+	}
+
+	@Test
+	public void textIsRenderedOnce() {
+		final int[] calls = new int[1];
+		TypedValue v = new TypedValue(new Object() {
+			@Override
+			public String toString() {
+				calls[0]++;
+				return "rendered";
+			}
+		});
+		assertEquals(0, calls[0]);
+		assertEquals("rendered", v.toString());
+		assertSame(v.toString(), v.toString());
+		assertEquals(1, calls[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullValuesAreRejected() {
+		new TypedValue(null);
+	}
+}
@@ -21,11 +21,17 @@
 package smartrics.rest.fitnesse.fixture.support;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import fit.Fixture;
+
 
 public class VariablesTest {
 
@@ -98,4 +104,62 @@ public class VariablesTest {
         assertEquals("null is ''", newText);
     }
 
+    @Test
+    public void variablesAreScopedAndNotMirroredWhenConfigured() {
+        Config c = Config.getConfig("scoped");
+        try {
+            c.add("restfixture.variables.scope", "table");
+            c.add("restfixture.variables.mirror.fit.symbols", "false");
+            Variables v1 = new Variables(c);
+            Variables v2 = new Variables(c);
+            v1.put("ID", "100");
+            assertEquals("100", v1.get("ID"));
+            assertNull(v2.get("ID"));
+            assertNull(new Variables().get("ID"));
+        } finally {
+            c.clear();
+        }
+    }
+
+    @Test
+    public void onlySuiteVariablesAreMirrored() {
+        Config c = Config.getConfig("tableScopedMirrored");
+        try {
+            c.add("restfixture.variables.scope", "table");
+            new Variables(c).put("TABLE_ID", "100");
+            assertFalse(Fixture.hasSymbol("TABLE_ID"));
+            new Variables().put("SUITE_ID", "200");
+            assertEquals("200", Fixture.getSymbol("SUITE_ID"));
+        } finally {
+            c.clear();
+        }
+    }
+
+    @Test
+    public void fitSymbolsAreVisibleWhenMirrored() {
+        Fixture.setSymbol("ID", "100");
+        assertEquals("100", new Variables().get("ID"));
+    }
+
+    @Test
+    public void variablesValuesAreSubstitutedLiterally() {
+        Variables v1 = new Variables();
+        v1.put("PRICE", "$10 \\ %ID%");
+        v1.put("ID", "100");
+        String newText = v1.substitute("price %PRICE%, id %ID%");
+        assertEquals("price $10 \\ %ID%, id 100", newText);
+    }
+
+    @Test
+    public void typedValuesAreKeptAsTheyAreAndRenderedWhenSubstituted() {
+        Variables v1 = new Variables();
+        byte[] bytes = "caf\u00e9".getBytes(StandardCharsets.UTF_8);
+        v1.putValue("BYTES", bytes);
+        v1.putValue("ID", "100");
+        assertSame(bytes, v1.getValue("BYTES"));
+        assertEquals("100", v1.getValue("ID"));
+        assertEquals("caf\u00e9", v1.get("BYTES"));
+        assertEquals("caf\u00e9/100", v1.substitute("%BYTES%/%ID%"));
+    }
+
 }
@@ -27,10 +27,15 @@ import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -73,6 +78,96 @@ public class XPathBodyTypeAdapterTest {
         adapter.equals(Arrays.asList("invalid xpath", "/a/c[text()='XY']"), xml0);
     }
 
+    @Test
+    public void shouldStoreNotFoundMessagesInCellOrderWhenEvaluatingInParallel() {
+        adapter.setEvaluationThreads(4);
+        assertFalse(adapter.equals(Arrays.asList("/a/b[text()='zzz']", "count(/a/b)=2", "/a/d[text()='next']", "/a/c[text()='XY']"), xml0));
+        assertEquals(2, adapter.getErrors().size());
+        assertEquals("not found: '/a/b[text()='zzz']'", adapter.getErrors().get(0));
+        assertEquals("not found: '/a/d[text()='next']'", adapter.getErrors().get(1));
+    }
+
+    @Test
+    public void shouldIdentifyAsEqualsWhenEvaluatingInParallel() {
+        adapter.setEvaluationThreads(2);
+        assertTrue(adapter.equals(Arrays.asList("count(/a/b)=2", "count(/a/c)=1", "/a/b[text()='12']", "/a/c[text()='XY']"), xml0));
+        assertEquals(0, adapter.getErrors().size());
+    }
+
+    @Test
+    public void shouldEvaluateConcurrentlyWithDifferentNumbersOfThreads() throws Exception {
+        final List<String> expressions = Arrays.asList("count(/a/b)=2", "count(/a/c)=1", "/a/b[text()='12']", "/a/c[text()='XY']");
+        final List<Throwable> failures = new Vector<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final int size = 2 + i % 3;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 50; j++) {
+                            XPathBodyTypeAdapter a = new XPathBodyTypeAdapter();
+                            a.setEvaluationThreads(size);
+                            assertTrue(a.equals(expressions, xml0));
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), failures);
+    }
+
+    @Test
+    public void shouldNeverEvaluateConcurrentlyOnTheSameDocument() {
+        final Set<Object> inUse = Collections.synchronizedSet(new HashSet<Object>());
+        final AtomicBoolean shared = new AtomicBoolean();
+        final AtomicInteger parsed = new AtomicInteger();
+        XPathBodyTypeAdapter a = new XPathBodyTypeAdapter() {
+            @Override
+            protected Object prepareForEvaluation(String content) {
+                parsed.incrementAndGet();
+                return super.prepareForEvaluation(content);
+            }
+
+            @Override
+            protected boolean evalPrepared(String expr, Object prepared) {
+                if (!inUse.add(prepared)) {
+                    shared.set(true);
+                }
+                try {
+                    Thread.sleep(5);
+                    return super.evalPrepared(expr, prepared);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    inUse.remove(prepared);
+                }
+            }
+        };
+        a.setEvaluationThreads(3);
+        List<String> expressions = new ArrayList<String>();
+        for (int i = 0; i < 12; i++) {
+            expressions.add("count(/a/b)=2");
+        }
+        assertTrue(a.equals(expressions, xml0));
+        assertFalse(shared.get());
+        assertTrue(parsed.get() <= 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailEqualityCheckIfAnyExpressionIsInvalidWhenEvaluatingInParallel() {
+        adapter.setEvaluationThreads(2);
+        adapter.equals(Arrays.asList("invalid xpath", "/a/c[text()='XY']"), xml0);
+    }
+
     @Test
     public void shouldReturnItsStringRepresentationAsPrintableHTML() {
         assertEquals(xml1, adapter.toString(xml1));
@@ -0,0 +1,131 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class BoundedBodyHttpClientTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String TEXT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+	private HttpServer server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		// answers TEXT, gzipped under /gzip
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] response = TEXT.getBytes(UTF8);
+				if (exchange.getRequestURI().getPath().startsWith("/gzip")) {
+					ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+					try (OutputStream out = new GZIPOutputStream(compressed)) {
+						out.write(response);
+					}
+					response = compressed.toByteArray();
+					exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				}
+				exchange.sendResponseHeaders(200, response.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(response);
+				}
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void bodiesBelowTheMemoryLimitAreHeldInMemory() throws IOException {
+		BoundedBodyHttpClient client = new BoundedBodyHttpClient(new HttpClient(), 1024, -1, true);
+		ResponseBody body = execute(client, "/small");
+		assertNull(body.getFile());
+		assertEquals(TEXT, body.asString(UTF8));
+		assertNull(client.takeBody());
+	}
+
+	@Test
+	public void bodiesAboveTheMemoryLimitAreSpilledAndTruncatedAtTheSizeLimit() throws IOException {
+		BoundedBodyHttpClient client = new BoundedBodyHttpClient(new HttpClient(), 8, 16, true);
+		ResponseBody body = execute(client, "/big");
+		Path file = body.getFile();
+		try {
+			assertTrue(body.isTruncated());
+			assertEquals(16, body.getLength());
+			assertEquals(TEXT.substring(0, 16), body.asString(UTF8));
+		} finally {
+			body.discard();
+		}
+		assertFalse(Files.exists(file));
+		// the rest of the body has been read, the connection can be reused
+		assertEquals(16, execute(client, "/next").getLength());
+	}
+
+	@Test
+	public void bodiesAreDecodedUnlessDisabled() throws IOException {
+		ResponseBody decoded = execute(new BoundedBodyHttpClient(new HttpClient(), 1024, -1, true), "/gzip");
+		assertEquals("gzip", decoded.getCoding());
+		assertEquals(TEXT, decoded.asString(UTF8));
+		ResponseBody raw = execute(new BoundedBodyHttpClient(new HttpClient(), 1024, -1, false), "/gzip");
+		assertNull(raw.getCoding());
+		assertEquals(decoded.getEncodedLength(), raw.getLength());
+	}
+
+	private ResponseBody execute(BoundedBodyHttpClient client, String path) throws IOException {
+		GetMethod method = new GetMethod("http://localhost:" + server.getAddress().getPort() + path);
+		try {
+			assertEquals(200, client.executeMethod(method));
+			assertNull(method.getResponseBody());
+		} finally {
+			method.releaseConnection();
+		}
+		return client.takeBody();
+	}
+}
@@ -0,0 +1,133 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.Test;
+
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.Config;
+
+public class ContentCodingTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String TEXT = "the quick brown fox jumps over the lazy dog, the quick brown fox";
+
+	@Test
+	public void onlyGzipAndDeflateAreSupported() {
+		assertEquals("gzip", ContentCoding.supported(" GZIP "));
+		assertEquals("gzip", ContentCoding.supported("x-gzip"));
+		assertEquals("deflate", ContentCoding.supported("deflate"));
+		assertNull(ContentCoding.supported("identity"));
+		assertNull(ContentCoding.supported("br"));
+		assertNull(ContentCoding.supported(null));
+	}
+
+	@Test
+	public void encodedBodiesAreDecoded() throws IOException {
+		for (String coding : new String[] { "gzip", "deflate" }) {
+			assertEquals(TEXT, decode(coding, encode(coding, TEXT.getBytes(UTF8))));
+		}
+	}
+
+	@Test
+	public void rawDeflateBodiesAreDecoded() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream raw = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+		raw.write(TEXT.getBytes(UTF8));
+		raw.close();
+		assertEquals(TEXT, decode("deflate", out.toByteArray()));
+	}
+
+	@Test
+	public void emptyBodiesDecodeToEmptyBodies() throws IOException {
+		assertEquals("", decode("gzip", new byte[0]));
+	}
+
+	@Test
+	public void encodedLengthIsKeptWithTheDecodedBody() throws IOException {
+		byte[] encoded = encode("gzip", TEXT.getBytes(UTF8));
+		ResponseBody body = ResponseBody.read("gzip", new ByteArrayInputStream(encoded), -1, -1);
+		assertEquals("gzip", body.getCoding());
+		assertEquals(encoded.length, body.getEncodedLength());
+		assertEquals(TEXT.length(), body.getLength());
+	}
+
+	@Test
+	public void responsesCarryTheBodyDecodedAsItWasRead() throws IOException {
+		RestResponse response = new RestResponse();
+		response.setStatusCode(200);
+		response.addHeader("Content-Encoding", "gzip");
+		response.addHeader("Content-Type", "text/plain; charset=UTF-8");
+		ResponseBody body = ResponseBody.read("gzip", new ByteArrayInputStream(encode("gzip", TEXT.getBytes(UTF8))), -1, -1);
+		StreamedRestResponse decoded = StreamedRestResponse.withContent(response, body);
+		assertEquals(TEXT, decoded.getBody());
+		assertEquals("gzip", decoded.getContentCoding());
+		assertEquals(Integer.valueOf(200), decoded.getStatusCode());
+		assertEquals(2, decoded.getHeaders().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unsupportedRequestCompressionIsRejected() {
+		Config config = Config.getConfig("coding");
+		try {
+			config.add("http.client.request.compression", "br");
+			ContentCoding.requestCoding(config);
+		} finally {
+			config.clear();
+		}
+	}
+
+	private static byte[] encode(String coding, byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OutputStream encoded = ContentCoding.encode(coding, out);
+		encoded.write(bytes);
+		encoded.close();
+		return out.toByteArray();
+	}
+
+	private static String decode(String coding, byte[] bytes) throws IOException {
+		InputStream in = ContentCoding.decode(coding, new ByteArrayInputStream(bytes));
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), UTF8);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class GeneratedRequestEntityTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void parsesLengthsInBytesAndUnits() {
+		assertEquals(10, GeneratedRequestEntity.parseLength(" 10 "));
+		assertEquals(64 * 1024, GeneratedRequestEntity.parseLength("64KB"));
+		assertEquals(2L * 1024 * 1024 * 1024, GeneratedRequestEntity.parseLength("2gb"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidLengths() {
+		GeneratedRequestEntity.parseLength("10ms");
+	}
+
+	@Test
+	public void repeatsTheTextUpToTheLength() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new GeneratedRequestEntity("abc", 7, UTF8, null).writeRequest(out);
+		assertEquals("abcabca", new String(out.toByteArray(), UTF8));
+	}
+
+	@Test
+	public void writesNothingForAZeroLengthEvenWithoutAText() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new GeneratedRequestEntity("", 0, UTF8, null).writeRequest(out);
+		new GeneratedRequestEntity("abc", 0, UTF8, null).writeRequest(out);
+		assertEquals(0, out.size());
+	}
+
+	@Test
+	public void writesTheTextOnceWithoutALength() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new GeneratedRequestEntity("caf\u00e9", -1, UTF8, null).writeRequest(out);
+		assertEquals("caf\u00e9", new String(out.toByteArray(), UTF8));
+	}
+
+	@Test
+	public void generatesLargeBodiesWithoutHoldingThem() throws IOException {
+		final long[] count = new long[1];
+		new GeneratedRequestEntity("0123456789", 3L * 1024 * 1024 * 1024, UTF8, null).writeRequest(new OutputStream() {
+			@Override
+			public void write(int b) {
+				count[0]++;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				count[0] += len;
+			}
+		});
+		assertEquals(3L * 1024 * 1024 * 1024, count[0]);
+	}
+}
@@ -0,0 +1,182 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import smartrics.rest.client.RestData.Header;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+
+public class HttpCacheTest {
+
+	private static final String HOST = "http://localhost:9090";
+
+	private final HttpCache cache = new HttpCache(10, 1024 * 1024);
+
+	private final FakeTransport transport = new FakeTransport();
+
+	@Test
+	public void freshResponsesAreServedFromTheCache() {
+		transport.respond(200, "countries", "Cache-Control", "max-age=60");
+		RestResponse first = cache.execute(HOST, get("/countries"), transport);
+		RestResponse second = cache.execute(HOST, get("/countries"), transport);
+		assertEquals(CachedRestResponse.MISS, CachedRestResponse.cacheStatusOf(first));
+		assertEquals(CachedRestResponse.HIT, CachedRestResponse.cacheStatusOf(second));
+		assertEquals("countries", second.getBody());
+		assertEquals("0", HttpCache.header(second.getHeaders(), "Age"));
+		assertEquals(1, transport.requests);
+	}
+
+	@Test
+	public void staleResponsesAreRevalidated() {
+		transport.respond(200, "countries", "Cache-Control", "no-cache", "ETag", "\"v1\"");
+		cache.execute(HOST, get("/countries"), transport);
+		transport.respond(304, null, "ETag", "\"v1\"", "X-Refreshed", "yes");
+		RestResponse revalidated = cache.execute(HOST, get("/countries"), transport);
+		assertEquals("\"v1\"", HttpCache.header(transport.lastConditionalHeaders, "If-None-Match"));
+		assertEquals(CachedRestResponse.REVALIDATED, CachedRestResponse.cacheStatusOf(revalidated));
+		assertEquals(Integer.valueOf(200), revalidated.getStatusCode());
+		assertEquals("countries", revalidated.getBody());
+		assertEquals("yes", HttpCache.header(revalidated.getHeaders(), "X-Refreshed"));
+	}
+
+	@Test
+	public void changedResponsesReplaceTheStoredOnes() {
+		transport.respond(200, "v1", "Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT", "Cache-Control", "max-age=0");
+		cache.execute(HOST, get("/countries"), transport);
+		transport.respond(200, "v2", "Cache-Control", "max-age=60");
+		RestResponse fetched = cache.execute(HOST, get("/countries"), transport);
+		assertEquals("Mon, 01 Jan 2024 00:00:00 GMT",
+				HttpCache.header(transport.lastConditionalHeaders, "If-Modified-Since"));
+		assertEquals(CachedRestResponse.MISS, CachedRestResponse.cacheStatusOf(fetched));
+		assertEquals("v2", cache.execute(HOST, get("/countries"), transport).getBody());
+	}
+
+	@Test
+	public void noStoreResponsesAndRequestsBypassTheCache() {
+		transport.respond(200, "secret", "Cache-Control", "no-store, max-age=60");
+		cache.execute(HOST, get("/secret"), transport);
+		assertEquals(0, cache.size());
+		transport.respond(200, "countries", "Cache-Control", "max-age=60");
+		cache.execute(HOST, get("/countries"), transport);
+		RestRequest noStore = get("/countries");
+		noStore.addHeader("Cache-Control", "no-store");
+		assertEquals(CachedRestResponse.MISS, CachedRestResponse.cacheStatusOf(cache.execute(HOST, noStore, transport)));
+	}
+
+	@Test
+	public void requestsWithNoCacheAreRevalidated() {
+		transport.respond(200, "countries", "Cache-Control", "max-age=60", "ETag", "\"v1\"");
+		cache.execute(HOST, get("/countries"), transport);
+		transport.respond(304, null);
+		RestRequest noCache = get("/countries");
+		noCache.addHeader("Cache-Control", "no-cache");
+		assertEquals(CachedRestResponse.REVALIDATED,
+				CachedRestResponse.cacheStatusOf(cache.execute(HOST, noCache, transport)));
+	}
+
+	@Test
+	public void unsafeRequestsInvalidateTheStoredResponse() {
+		transport.respond(200, "countries", "Cache-Control", "max-age=60");
+		cache.execute(HOST, get("/countries"), transport);
+		transport.respond(204, null);
+		RestRequest put = get("/countries");
+		put.setMethod(RestRequest.Method.Put);
+		cache.execute(HOST, put, transport);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void responsesAreSelectedOnTheirVaryingHeaders() {
+		transport.respond(200, "en", "Cache-Control", "max-age=60", "Vary", "Accept-Language");
+		RestRequest en = get("/countries");
+		en.addHeader("Accept-Language", "en");
+		cache.execute(HOST, en, transport);
+		RestRequest fr = get("/countries");
+		fr.addHeader("Accept-Language", "fr");
+		assertEquals(CachedRestResponse.MISS, CachedRestResponse.cacheStatusOf(cache.execute(HOST, fr, transport)));
+	}
+
+	@Test
+	public void leastRecentlyUsedResponsesAreEvicted() {
+		HttpCache small = new HttpCache(2, 1024 * 1024);
+		transport.respond(200, "x", "Cache-Control", "max-age=60");
+		small.execute(HOST, get("/1"), transport);
+		small.execute(HOST, get("/2"), transport);
+		small.execute(HOST, get("/1"), transport);
+		small.execute(HOST, get("/3"), transport);
+		assertEquals(2, small.size());
+		assertTrue(CachedRestResponse.cacheStatusOf(small.execute(HOST, get("/1"), transport)).equals(
+				CachedRestResponse.HIT));
+		assertFalse(CachedRestResponse.cacheStatusOf(small.execute(HOST, get("/2"), transport)).equals(
+				CachedRestResponse.HIT));
+	}
+
+	@Test
+	public void heuristicFreshnessIsATenthOfTheTimeSinceLastModified() {
+		long now = System.currentTimeMillis();
+		transport.respond(200, "x", "Date", HttpCache.formatDate(now), "Last-Modified",
+				HttpCache.formatDate(now - 3600 * 1000L));
+		cache.execute(HOST, get("/countries"), transport);
+		assertEquals(CachedRestResponse.HIT,
+				CachedRestResponse.cacheStatusOf(cache.execute(HOST, get("/countries"), transport)));
+	}
+
+	private static RestRequest get(String resource) {
+		RestRequest request = new RestRequest();
+		request.setMethod(RestRequest.Method.Get);
+		request.setResource(resource);
+		return request;
+	}
+
+	private static class FakeTransport implements HttpCache.Transport {
+
+		private RestResponse response;
+
+		private int requests;
+
+		private List<Header> lastConditionalHeaders;
+
+		void respond(int status, String body, String... headers) {
+			response = new RestResponse();
+			response.setStatusCode(status);
+			for (int i = 0; i < headers.length; i += 2) {
+				response.addHeader(headers[i], headers[i + 1]);
+			}
+			response.setBody(body);
+		}
+
+		@Override
+		public RestResponse execute(String hostAddr, RestRequest request) {
+			requests++;
+			lastConditionalHeaders = new ArrayList<Header>(HttpCache.conditionalHeaders());
+			return response;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import smartrics.rest.client.RestData.Header;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.Config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class JdkRestClientTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private HttpServer server;
+
+	private JdkRestClient client;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		// echoes method, uri, Authorization and body; gzip request bodies
+		// are decoded and responses gzipped if accepted
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				boolean gzipped = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+				String body = read(gzipped ? new GZIPInputStream(exchange.getRequestBody()) : exchange
+						.getRequestBody());
+				String echo = exchange.getRequestMethod() + " " + exchange.getRequestURI() + " "
+						+ exchange.getRequestHeaders().getFirst("Authorization") + " " + body;
+				byte[] response = echo.getBytes(UTF8);
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+					ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+					try (OutputStream out = new GZIPOutputStream(compressed)) {
+						out.write(response);
+					}
+					response = compressed.toByteArray();
+					exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				}
+				exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+				exchange.getResponseHeaders().add("X-Echo", "1");
+				int status = exchange.getRequestURI().getPath().startsWith("/missing") ? 404 : 200;
+				exchange.sendResponseHeaders(status, response.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(response);
+				}
+			}
+		});
+		server.start();
+		Config config = Config.getConfig("jdk");
+		config.add("http.basicauth.username", "user");
+		config.add("http.basicauth.password", "pass");
+		client = new JdkRestClient(config);
+		client.setBaseUrl("http://localhost:" + server.getAddress().getPort());
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+		Config.getConfig("jdk").clear();
+	}
+
+	@Test
+	public void mapsRequestAndResponse() {
+		RestRequest request = request(RestRequest.Method.Post, "/res/a b");
+		request.setQuery("x=1");
+		request.setBody("caf\u00e9");
+		request.addHeader("Content-Type", "text/plain; charset=UTF-8");
+		RestResponse response = client.execute(request);
+		assertEquals(Integer.valueOf(200), response.getStatusCode());
+		assertEquals("POST /res/a%20b?x=1 Basic dXNlcjpwYXNz caf\u00e9", response.getBody());
+		assertEquals("1", header(response, "X-Echo"));
+		assertEquals("/res/a b", response.getResource());
+		assertEquals(request.getTransactionId(), response.getTransactionId());
+		assertEquals("HTTP/1.1", ((VersionedRestResponse) response).getProtocolVersion());
+	}
+
+	@Test
+	public void readsTheBodyOfErrorResponses() {
+		RestResponse response = client.execute(request(RestRequest.Method.Get, "/missing"));
+		assertEquals(Integer.valueOf(404), response.getStatusCode());
+		assertEquals("GET /missing Basic dXNlcjpwYXNz ", response.getBody());
+	}
+
+	@Test
+	public void timesTheRequestPhases() {
+		RequestTiming timing = ((StreamedRestResponse) client.execute(request(RestRequest.Method.Post, "/t"))).getTiming();
+		for (String phase : new String[] { "connect", "ttfb", "download", "total" }) {
+			assertTrue(phase, timing.getMillis(phase) >= 0);
+		}
+		assertNull(timing.getMillis("acquire"));
+		assertTrue(timing.getMillis("ttfb") <= timing.getMillis("total"));
+		assertTrue(timing.toString().startsWith("connect="));
+	}
+
+	@Test
+	public void executesRequestsAsynchronously() throws Exception {
+		Future<RestResponse> first = client.executeAsync(request(RestRequest.Method.Get, "/1"));
+		Future<RestResponse> second = client.executeAsync(request(RestRequest.Method.Get, "/2"));
+		assertEquals("GET /1 Basic dXNlcjpwYXNz ", first.get().getBody());
+		assertEquals("GET /2 Basic dXNlcjpwYXNz ", second.get().getBody());
+	}
+
+	@Test
+	public void spillsAndTruncatesLargeBodiesAsConfigured() {
+		Config config = Config.getConfig("jdk");
+		config.add("http.client.response.body.memory.limit", "8");
+		config.add("http.client.response.body.size.limit", "16");
+		JdkRestClient limited = new JdkRestClient(config);
+		limited.setBaseUrl(client.getBaseUrl());
+		StreamedRestResponse response = (StreamedRestResponse) limited.execute(request(RestRequest.Method.Get, "/big"));
+		assertTrue(response.isBodySpilled());
+		assertTrue(response.isBodyTruncated());
+		assertEquals("GET /big Basic d", response.getBody());
+	}
+
+	@Test
+	public void compressesRequestsAndDecodesResponsesAsConfigured() {
+		Config config = Config.getConfig("jdk");
+		config.add("http.client.accept.encoding", "gzip, deflate");
+		config.add("http.client.request.compression", "gzip");
+		config.add("http.client.request.compression.threshold", "100");
+		JdkRestClient compressing = new JdkRestClient(config);
+		compressing.setBaseUrl(client.getBaseUrl());
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			body.append("repeated ");
+		}
+		RestRequest request = request(RestRequest.Method.Put, "/c");
+		request.setBody(body.toString());
+		StreamedRestResponse response = (StreamedRestResponse) compressing.execute(request);
+		assertEquals("PUT /c Basic dXNlcjpwYXNz " + body, response.getBody());
+		assertEquals("gzip", response.getContentCoding());
+		assertEquals(response.getBody().length(), response.getDecodedLength());
+		assertTrue(response.getEncodedLength() < response.getDecodedLength() / 5);
+		assertTrue(response.getCompressionRatio() > 5);
+	}
+
+	@Test
+	public void streamsFilesAndMeasuresTheUpload() throws IOException {
+		Path file = Files.createTempFile("upload", ".txt");
+		try {
+			Files.write(file, "file content".getBytes(UTF8));
+			RestRequest request = request(RestRequest.Method.Put, "/f");
+			request.setFileName(file.toString());
+			StreamedRestResponse response = (StreamedRestResponse) client.execute(request);
+			assertEquals("PUT /f Basic dXNlcjpwYXNz file content", response.getBody());
+			assertEquals(12, response.getTiming().getUploadedBytes());
+			assertTrue(response.getTiming().describeUpload().startsWith("uploaded 12B in "));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void streamsMultipartFiles() throws IOException {
+		Path file = Files.createTempFile("upload", ".txt");
+		try {
+			Files.write(file, "part".getBytes(UTF8));
+			RestRequest request = request(RestRequest.Method.Post, "/m");
+			request.setMultipartFileName(file.toString());
+			request.setMultipartFileParameterName("file");
+			String body = client.execute(request).getBody();
+			assertTrue(body, body.contains("name=\"file\""));
+			assertTrue(body, body.contains("\r\n\r\npart\r\n"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void generatesBodiesAsTheyAreSent() {
+		RestRequest request = new GeneratedBodyRestRequest("ab", 5);
+		request.setMethod(RestRequest.Method.Post);
+		request.setResource("/g");
+		StreamedRestResponse response = (StreamedRestResponse) client.execute(request);
+		assertEquals("POST /g Basic dXNlcjpwYXNz ababa", response.getBody());
+		assertEquals(5, response.getTiming().getUploadedBytes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidRequests() {
+		client.execute(new RestRequest());
+	}
+
+	private static RestRequest request(RestRequest.Method method, String resource) {
+		RestRequest request = new RestRequest();
+		request.setMethod(method);
+		request.setResource(resource);
+		return request;
+	}
+
+	private static String header(RestResponse response, String name) {
+		for (Header h : response.getHeaders()) {
+			if (h.getName().equalsIgnoreCase(name)) {
+				return h.getValue();
+			}
+		}
+		return null;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), UTF8);
+	}
+}
@@ -0,0 +1,62 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RequestTimingTest {
+
+	@Test
+	public void recordsThePhasesOfTheRequestTimedOnTheThread() {
+		RequestTiming.record("connect", 1000000);
+		RequestTiming timing = RequestTiming.start();
+		RequestTiming.record("connect", 2000000);
+		RequestTiming.record("ttfb", 3500000);
+		timing.finish();
+		RequestTiming.record("download", 1000000);
+		assertEquals(Double.valueOf(2.0), timing.getMillis("connect"));
+		assertNull(timing.getMillis("download"));
+		assertEquals(Arrays.asList("connect", "ttfb", "total"), new ArrayList<String>(timing.toMillis().keySet()));
+		assertTrue(timing.toString(), timing.toString().startsWith("connect=2.0ms, ttfb=3.5ms, total="));
+	}
+
+	@Test
+	public void nestedRequestsAddToTheOuterTiming() {
+		RequestTiming outer = RequestTiming.start();
+		assertNull(RequestTiming.start());
+		RequestTiming.record("ttfb", 1000000);
+		outer.finish();
+		assertEquals(Double.valueOf(1.0), outer.getMillis("ttfb"));
+		assertEquals(-1, RequestTiming.elapsed());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownPhases() {
+		RequestTiming.start().finish().getMillis("tls");
+	}
+}
@@ -0,0 +1,140 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+public class ResponseBodyTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void smallBodiesAreHeldInMemory() throws IOException {
+		ResponseBody body = ResponseBody.read(stream("caf\u00e9"), 1024, -1);
+		assertNull(body.getFile());
+		assertFalse(body.isTruncated());
+		assertEquals(5, body.getLength());
+		assertEquals("caf\u00e9", body.asString(UTF8));
+	}
+
+	@Test
+	public void bodiesLargerThanTheMemoryLimitAreSpilledToDisk() throws IOException {
+		String text = repeat("0123456789", 2000);
+		ResponseBody body = ResponseBody.read(stream(text), 100, -1);
+		assertNotNull(body.getFile());
+		assertEquals(text.length(), Files.size(body.getFile()));
+		assertEquals(text, body.asString(UTF8));
+		assertEquals(text, read(body.openStream()));
+	}
+
+	@Test
+	public void bodiesLargerThanTheSizeLimitAreTruncated() throws IOException {
+		ResponseBody body = ResponseBody.read(stream(repeat("0123456789", 2000)), -1, 15);
+		assertTrue(body.isTruncated());
+		assertEquals(15, body.getLength());
+		assertEquals("012345678901234", body.asString(UTF8));
+	}
+
+	@Test
+	public void bodiesOfExactlyTheSizeLimitAreNotTruncated() throws IOException {
+		ResponseBody body = ResponseBody.read(stream("0123456789"), -1, 10);
+		assertFalse(body.isTruncated());
+		assertEquals("0123456789", body.asString(UTF8));
+	}
+
+	@Test
+	public void streamedResponsesDecodeTheBodyWithTheirCharset() {
+		StreamedRestResponse response = new StreamedRestResponse();
+		response.addHeader("Content-Type", "text/plain; charset=UTF-8");
+		response.setContent(ResponseBody.of("caf\u00e9".getBytes(UTF8)));
+		assertEquals("caf\u00e9", response.getBody());
+		response.setBody("other");
+		assertEquals("other", response.getBody());
+		assertFalse(response.isBodySpilled());
+	}
+
+	@Test
+	public void onlySpilledBodiesAreDescribedAsNotLoaded() throws IOException {
+		StreamedRestResponse response = new StreamedRestResponse();
+		response.setContent(ResponseBody.of("small".getBytes(UTF8)));
+		assertNull(StreamedRestResponse.describeSpilledBody(response));
+		response.setContent(ResponseBody.read(stream(repeat("0123456789", 20)), 100, -1));
+		assertEquals("body of 200 bytes spilled to disk, above http.client.response.body.memory.limit; not loaded",
+				StreamedRestResponse.describeSpilledBody(response));
+	}
+
+	@Test
+	public void discardingASpilledBodyDeletesItsFile() throws IOException {
+		StreamedRestResponse response = new StreamedRestResponse();
+		response.setContent(ResponseBody.read(stream(repeat("0123456789", 20)), 100, -1));
+		Path file = response.getContent().getFile();
+		assertTrue(Files.exists(file));
+		response.discardContent();
+		assertFalse(Files.exists(file));
+		response.discardContent();
+	}
+
+	@Test
+	public void discardingABodyHeldInMemoryIsANoOp() throws IOException {
+		ResponseBody body = ResponseBody.of("small".getBytes(UTF8));
+		body.discard();
+		assertEquals("small", body.asString(UTF8));
+	}
+
+	private static InputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(UTF8));
+	}
+
+	private static String repeat(String text, int times) {
+		StringBuilder sb = new StringBuilder(text.length() * times);
+		for (int i = 0; i < times; i++) {
+			sb.append(text);
+		}
+		return sb.toString();
+	}
+
+	private static String read(InputStream in) throws IOException {
+		try {
+			byte[] bytes = new byte[64 * 1024];
+			int length = 0;
+			int read;
+			while ((read = in.read(bytes, length, bytes.length - length)) > 0) {
+				length += read;
+			}
+			return new String(bytes, 0, length, UTF8);
+		} finally {
+			in.close();
+		}
+	}
+}
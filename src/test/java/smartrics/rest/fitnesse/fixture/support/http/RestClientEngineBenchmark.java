@@ -0,0 +1,105 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import smartrics.rest.client.RestClient;
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.fitnesse.fixture.PartsFactory;
+import smartrics.rest.fitnesse.fixture.support.Config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Compares the latency of the {@code commons} and {@code jdk} engines (see
+ * {@link RestClientEngine}) on sequential GETs of a 4KB body from a local
+ * server. Not run as part of the unit tests; run it with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=smartrics.rest.fitnesse.fixture.support.http.RestClientEngineBenchmark
+ * </pre>
+ */
+public class RestClientEngineBenchmark {
+
+	private static final int WARMUP = 1000;
+
+	private static final int RUNS = 5000;
+
+	public static void main(String[] args) throws IOException {
+		final byte[] body = new byte[4096];
+		Arrays.fill(body, (byte) 'x');
+		// otherwise the server's Nagle delay dominates the measures
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Content-Type", "text/plain");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+		});
+		server.start();
+		try {
+			String baseUrl = "http://localhost:" + server.getAddress().getPort();
+			for (String engine : new String[] { "commons", "jdk" }) {
+				Config config = Config.getConfig("benchmark-" + engine);
+				config.add("restfixture.http.engine", engine);
+				RestClient client = new PartsFactory().buildRestClient(config);
+				client.setBaseUrl(baseUrl);
+				long[] times = time(client);
+				System.out.println(String.format("%-8s: median %6.1f us, p99 %6.1f us", engine, times[RUNS / 2] / 1e3,
+						times[RUNS * 99 / 100] / 1e3));
+			}
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static long[] time(RestClient client) {
+		long[] times = new long[RUNS];
+		for (int i = 0; i < WARMUP + RUNS; i++) {
+			RestRequest request = new RestRequest();
+			request.setMethod(RestRequest.Method.Get);
+			request.setResource("/resource");
+			long start = System.nanoTime();
+			int length = client.execute(request).getBody().length();
+			long elapsed = System.nanoTime() - start;
+			if (length != 4096) {
+				throw new IllegalStateException("unexpected body length " + length);
+			}
+			if (i >= WARMUP) {
+				times[i - WARMUP] = elapsed;
+			}
+		}
+		Arrays.sort(times);
+		return times;
+	}
+}
@@ -0,0 +1,202 @@
+/*  Copyright 2008 Fabrizio Cannizzo
+ *
+ *  This file is part of RestFixture.
+ *
+ *  RestFixture (http://code.google.com/p/rest-fixture/) is free software:
+ *  you can redistribute it and/or modify it under the terms of the
+ *  GNU Lesser General Public License as published by the Free Software Foundation,
+ *  either version 3 of the License, or (at your option) any later version.
+ *
+ *  RestFixture is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with RestFixture.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  If you want to contact the author please leave a comment here
+ *  http://smartrics.blogspot.com/2008/08/get-fitnesse-with-some-rest.html
+ */
+package smartrics.rest.fitnesse.fixture.support.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import smartrics.rest.client.RestRequest;
+import smartrics.rest.client.RestResponse;
+import smartrics.rest.fitnesse.fixture.support.ResponseBudgetTypeAdapter;
+
+public class TrafficArchiveTest {
+
+	private static final String HOST = "http://localhost:9090";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private Path file;
+
+	@Before
+	public void createFile() throws IOException {
+		file = Files.createTempFile("traffic", ".archive");
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		TrafficArchive.closeAll();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void recordedResponsesAreReplayed() throws IOException {
+		TrafficArchive recording = TrafficArchive.open(file, false, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		recording.record(HOST, request("/countries", "Accept", "application/json"), response(200, "[\"it\"]"));
+		recording.record(HOST, request("/products", "Accept", "application/json"), response(404, "none"));
+		TrafficArchive.closeAll();
+
+		TrafficArchive replaying = TrafficArchive.open(file, true, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		assertEquals(2, replaying.size());
+		RestResponse response = ArchivingRestClient.replaying(replaying).execute(HOST,
+				request("/countries", "accept", "application/json"));
+		assertEquals(Integer.valueOf(200), response.getStatusCode());
+		assertEquals("OK", response.getStatusText());
+		assertEquals("[\"it\"]", response.getBody());
+		assertEquals("application/json; charset=UTF-8", HttpCache.header(response.getHeaders(), "Content-Type"));
+		assertEquals("/countries", response.getResource());
+	}
+
+	@Test
+	public void replayedResponsesAreTimed() throws IOException {
+		TrafficArchive recording = TrafficArchive.open(file, false, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		recording.record(HOST, request("/timed"), response(200, "ok"));
+		TrafficArchive.closeAll();
+
+		TrafficArchive replaying = TrafficArchive.open(file, true, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		RestResponse response = ArchivingRestClient.replaying(replaying).execute(HOST, request("/timed"));
+		RequestTiming timing = ((StreamedRestResponse) response).getTiming();
+		assertTrue(timing.getMillis("total") >= 0);
+		assertNull(timing.getMillis("ttfb"));
+		ResponseBudgetTypeAdapter budget = new ResponseBudgetTypeAdapter();
+		assertTrue(budget.getErrors().toString(), budget.equals("time<10s", response));
+	}
+
+	@Test
+	public void repeatedRequestsAreReplayedInTheRecordedOrder() throws IOException {
+		TrafficArchive recording = TrafficArchive.open(file, false, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		recording.record(HOST, request("/counter"), response(200, "1"));
+		recording.record(HOST, request("/counter"), response(200, "2"));
+		TrafficArchive.closeAll();
+
+		TrafficArchive replaying = TrafficArchive.open(file, true, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		assertEquals("1", replaying.replay(HOST, request("/counter")).getBody());
+		assertEquals("2", replaying.replay(HOST, request("/counter")).getBody());
+		assertEquals("2", replaying.replay(HOST, request("/counter")).getBody());
+	}
+
+	@Test
+	public void ignoredHeadersAreNotFingerprintedNorRecorded() throws IOException {
+		TrafficArchive recording = TrafficArchive.open(file, false, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		recording.record(HOST, request("/secret", "Authorization", "Basic c2VjcmV0"), response(200, "ok"));
+		TrafficArchive.closeAll();
+		assertFalse(new String(Files.readAllBytes(file), Charset.forName("UTF-8")).contains("c2VjcmV0"));
+
+		TrafficArchive replaying = TrafficArchive.open(file, true, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		assertEquals("ok", replaying.replay(HOST, request("/secret", "Authorization", "Basic b3RoZXI=")).getBody());
+	}
+
+	@Test
+	public void requestsWithADifferentBodyAreNotReplayed() throws IOException {
+		RestRequest post = request("/orders");
+		post.setMethod(RestRequest.Method.Post);
+		post.setBody("{\"id\":1}");
+		TrafficArchive.open(file, false, TrafficArchive.DEFAULT_IGNORED_HEADERS).record(HOST, post, response(201, ""));
+		TrafficArchive.closeAll();
+
+		TrafficArchive replaying = TrafficArchive.open(file, true, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		assertEquals(Integer.valueOf(201), replaying.replay(HOST, post).getStatusCode());
+		post.setBody("{\"id\":2}");
+		try {
+			replaying.replay(HOST, post);
+			fail("the request was not recorded");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().startsWith("No response recorded for Post http://localhost:9090/orders"));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void anArchiveCantBeRecordedAndReplayedAtTheSameTime() throws IOException {
+		TrafficArchive.open(file, false, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		TrafficArchive.open(file, true, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+	}
+
+	@Test
+	public void stringsLongerThan64KBAreRecorded() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 70000) {
+			sb.append("caf\u00e9");
+		}
+		String value = sb.toString();
+		RestResponse recorded = response(200, "ok");
+		recorded.addHeader("Link", value);
+		TrafficArchive.open(file, false, TrafficArchive.DEFAULT_IGNORED_HEADERS).record(HOST,
+				request("/" + value, "X-Long", value), recorded);
+		TrafficArchive.closeAll();
+
+		TrafficArchive replaying = TrafficArchive.open(file, true, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		RestResponse response = replaying.replay(HOST, request("/" + value, "X-Long", value));
+		assertEquals(value, HttpCache.header(response.getHeaders(), "Link"));
+		assertEquals("ok", response.getBody());
+	}
+
+	@Test
+	public void spilledBodiesAreStreamedToTheArchiveAndBack() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 100000) {
+			sb.append("0123456789");
+		}
+		String body = sb.toString();
+		StreamedRestResponse recorded = new StreamedRestResponse();
+		recorded.setStatusCode(200);
+		recorded.setStatusText("OK");
+		recorded.setContent(ResponseBody.read(new ByteArrayInputStream(body.getBytes(UTF8)), 1024, -1));
+		assertTrue(recorded.isBodySpilled());
+		TrafficArchive.open(file, false, TrafficArchive.DEFAULT_IGNORED_HEADERS).record(HOST, request("/large"), recorded);
+		TrafficArchive.closeAll();
+
+		TrafficArchive replaying = TrafficArchive.open(file, true, TrafficArchive.DEFAULT_IGNORED_HEADERS);
+		StreamedRestResponse response = (StreamedRestResponse) replaying.replay(HOST, request("/large"));
+		assertEquals(body.length(), response.getContent().getLength());
+		assertEquals(body, response.getContent().asString(UTF8));
+	}
+
+	private static RestRequest request(String resource, String... headers) {
+		RestRequest request = new RestRequest();
+		request.setMethod(RestRequest.Method.Get);
+		request.setResource(resource);
+		for (int i = 0; i < headers.length; i += 2) {
+			request.addHeader(headers[i], headers[i + 1]);
+		}
+		return request;
+	}
+
+	private static RestResponse response(int status, String body) {
+		RestResponse response = new RestResponse();
+		response.setStatusCode(status);
+		response.setStatusText(status == 200 ? "OK" : "Other");
+		response.addHeader("Content-Type", "application/json; charset=UTF-8");
+		response.setBody(body);
+		return response;
+	}
+}
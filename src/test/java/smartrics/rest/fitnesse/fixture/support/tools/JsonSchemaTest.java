@@ -0,0 +1,105 @@
+package smartrics.rest.fitnesse.fixture.support.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class JsonSchemaTest {
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private static final String ORDER_SCHEMA = json("{'type':'object','required':['id','name'],"
+            + "'properties':{'id':{'type':'integer','minimum':1},"
+            + "'name':{'type':'string','minLength':2,'pattern':'^[A-Z]'},"
+            + "'tags':{'type':'array','items':{'$ref':'#/definitions/tag'},'maxItems':3},"
+            + "'kind':{'enum':['a','b',1]}},"
+            + "'additionalProperties':false,"
+            + "'definitions':{'tag':{'type':'string','maxLength':3}}}");
+
+    @Test
+    public void validDocumentMustHaveNoErrors() throws IOException {
+        assertEquals(Collections.emptyList(), validate(ORDER_SCHEMA, "{'id':1,'name':'Bob','tags':['x','y'],'kind':1.0}"));
+    }
+
+    @Test
+    public void allErrorsMustBeReportedWithTheirPath() throws IOException {
+        List<String> errors = validate(ORDER_SCHEMA, "{'id':0,'name':'b','tags':['x','abcd'],'kind':'c','extra':1}");
+        assertEquals(Arrays.asList(
+                "$.id: 0 is not greater than or equal to 1",
+                "$.name: string length 1 is less than 2",
+                "$.name: string \"b\" does not match pattern ^[A-Z]",
+                "$.tags[1]: string length 4 is greater than 3",
+                "$.kind: value \"c\" is not one of [\"a\",\"b\",1]",
+                "$: property 'extra' is not allowed"), errors);
+    }
+
+    @Test
+    public void missingRequiredPropertiesAndWrongTypesMustBeReported() throws IOException {
+        assertEquals(Arrays.asList("$: missing required property 'id'"), validate(ORDER_SCHEMA, "{'name':'Bo'}"));
+        assertEquals(Arrays.asList("$: expected type object but was array"), validate(ORDER_SCHEMA, "[1]"));
+    }
+
+    @Test
+    public void recursiveRefsMustBeResolved() throws IOException {
+        String schema = json("{'definitions':{'node':{'type':'object','properties':{"
+                + "'children':{'type':'array','items':{'$ref':'#/definitions/node'}},"
+                + "'v':{'type':['integer','null']}}}},'$ref':'#/definitions/node'}");
+        assertEquals(Arrays.asList("$.children[0].children[0].v: expected type integer or null but was string"),
+                validate(schema, "{'v':1,'children':[{'v':null,'children':[{'v':'x'}]}]}"));
+    }
+
+    @Test
+    public void combiningKeywordsMustBeSupported() throws IOException {
+        assertEquals(Arrays.asList("$: value matches 2 of the schemas in oneOf, exactly one expected"),
+                validate(json("{'oneOf':[{'type':'integer'},{'type':'number'}]}"), "1"));
+        assertTrue(validate(json("{'anyOf':[{'type':'string'},{'type':'boolean'}]}"), "true").isEmpty());
+        assertEquals(Arrays.asList("$: value must not match the schema in not"), validate(json("{'not':{'enum':[true]}}"), "true"));
+    }
+
+    @Test
+    public void numericLimitsMustBeSupported() throws IOException {
+        assertEquals(Arrays.asList("$: 10 is not less than 10"), validate(json("{'maximum':10,'exclusiveMaximum':true}"), "10"));
+        assertEquals(Arrays.asList("$: 1.25 is not a multiple of 0.5"), validate(json("{'multipleOf':0.5}"), "1.25"));
+    }
+
+    @Test
+    public void invalidRefsMustBeRejectedWhenCompiling() throws IOException {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Schema at #: unresolvable $ref '#/nope'");
+        JsonSchema.compile(JsonTools.readTree(json("{'$ref':'#/nope'}")));
+    }
+
+    @Test
+    public void registryMustRecompileOnlyWhenTheFileChanges() throws IOException {
+        Path tmp = Files.createTempFile("schema", ".json");
+        try {
+            Files.write(tmp, json("{'type':'integer'}").getBytes());
+            JsonSchema schema = JsonSchemaRegistry.getSchema(tmp);
+            assertSame(schema, JsonSchemaRegistry.getSchema(tmp));
+            Files.write(tmp, json("{'type':'string','minLength':1}").getBytes());
+            assertNotSame(schema, JsonSchemaRegistry.getSchema(tmp));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static List<String> validate(String schema, String document) throws IOException {
+        return JsonSchema.compile(JsonTools.readTree(schema)).validate(JsonTools.readTree(json(document)));
+    }
+
+    private static String json(String singleQuoted) {
+        return singleQuoted.replace('\'', '"');
+    }
+}
@@ -0,0 +1,116 @@
+package smartrics.rest.fitnesse.fixture.support.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class XmlSchemaRegistryTest {
+    private static final String XS = "xmlns:xs='http://www.w3.org/2001/XMLSchema'";
+
+    private Path dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("schemas");
+        XmlSchemaRegistry.clear();
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        XmlSchemaRegistry.clear();
+        for (Path p : Files.newDirectoryStream(dir)) {
+            Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void includedSchemasMustBeResolvedRelativeToTheSchemaFile() throws IOException, SAXException {
+        write("common.xsd", "<xs:schema " + XS + "><xs:simpleType name='code'>"
+                + "<xs:restriction base='xs:string'><xs:pattern value='[A-Z]{3}'/></xs:restriction>"
+                + "</xs:simpleType></xs:schema>");
+        Path main = write("order.xsd", "<xs:schema " + XS + "><xs:include schemaLocation='common.xsd'/>"
+                + "<xs:element name='order' type='code'/></xs:schema>");
+        Schema schema = XmlSchemaRegistry.getSchema(main);
+        assertEquals(Collections.emptyList(), validate(schema, "<order>ABC</order>"));
+        List<String> errors = validate(schema, "<order>abc</order>");
+        assertTrue(errors.toString(), errors.get(0).contains("cvc-pattern-valid"));
+    }
+
+    @Test
+    public void importedSchemasMustBeResolvedRelativeToTheSchemaFile() throws IOException, SAXException {
+        write("types.xsd", "<xs:schema " + XS + " targetNamespace='urn:types'>"
+                + "<xs:element name='id' type='xs:int'/></xs:schema>");
+        Path main = write("order.xsd", "<xs:schema " + XS + " xmlns:t='urn:types'>"
+                + "<xs:import namespace='urn:types' schemaLocation='types.xsd'/>"
+                + "<xs:element name='order'><xs:complexType><xs:sequence><xs:element ref='t:id'/>"
+                + "</xs:sequence></xs:complexType></xs:element></xs:schema>");
+        Schema schema = XmlSchemaRegistry.getSchema(main);
+        assertEquals(Collections.emptyList(), validate(schema, "<order><t:id xmlns:t='urn:types'>1</t:id></order>"));
+        List<String> errors = validate(schema, "<order><t:id xmlns:t='urn:types'>x</t:id></order>");
+        assertEquals(errors.toString(), 2, errors.size());
+        assertTrue(errors.get(0), errors.get(0).startsWith("line 1, column "));
+    }
+
+    @Test
+    public void schemaMustBeCompiledOnceWhileTheFileIsUnchanged() throws IOException, SAXException {
+        Path main = write("int.xsd", "<xs:schema " + XS + "><xs:element name='v' type='xs:int'/></xs:schema>");
+        Schema schema = XmlSchemaRegistry.getSchema(main);
+        assertSame(schema, XmlSchemaRegistry.getSchema(main));
+        assertEquals(1, XmlSchemaRegistry.size());
+    }
+
+    @Test
+    public void schemaMustBeRecompiledWhenTheModificationTimeChanges() throws IOException, SAXException {
+        Path main = write("int.xsd", "<xs:schema " + XS + "><xs:element name='v' type='xs:int'/></xs:schema>");
+        Schema schema = XmlSchemaRegistry.getSchema(main);
+        Files.setLastModifiedTime(main, FileTime.fromMillis(Files.getLastModifiedTime(main).toMillis() - 10000));
+        assertNotSame(schema, XmlSchemaRegistry.getSchema(main));
+    }
+
+    @Test
+    public void schemaMustBeRecompiledWhenTheSizeChanges() throws IOException, SAXException {
+        Path main = write("v.xsd", "<xs:schema " + XS + "><xs:element name='v' type='xs:int'/></xs:schema>");
+        FileTime lastModified = Files.getLastModifiedTime(main);
+        Schema schema = XmlSchemaRegistry.getSchema(main);
+        write("v.xsd", "<xs:schema " + XS + "><xs:element name='v' type='xs:string'/></xs:schema>");
+        Files.setLastModifiedTime(main, lastModified);
+        Schema recompiled = XmlSchemaRegistry.getSchema(main);
+        assertNotSame(schema, recompiled);
+        assertEquals(Collections.emptyList(), validate(recompiled, "<v>x</v>"));
+    }
+
+    @Test(expected = SAXException.class)
+    public void externalDtdsMustNotBeLoaded() throws IOException, SAXException {
+        write("evil.dtd", "<!ENTITY e 'x'>");
+        Path main = write("dtd.xsd", "<?xml version='1.0'?><!DOCTYPE xs:schema SYSTEM 'evil.dtd'>"
+                + "<xs:schema " + XS + "><xs:element name='v' type='xs:int'/></xs:schema>");
+        XmlSchemaRegistry.getSchema(main);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> validate(Schema schema, String document) throws IOException, SAXException {
+        return XmlSchemaRegistry.validate(schema, new StreamSource(new StringReader(document)));
+    }
+}
@@ -0,0 +1,92 @@
+package smartrics.rest.fitnesse.fixture.support.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import smartrics.rest.fitnesse.fixture.support.tools.XmlTools.CompareMode;
+
+public class XmlToolsTest {
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private static final String XML = "<a><b x='1' y='2'>t</b><c/></a>";
+
+    @Test
+    public void compareMustIgnoreAttributesOrderPrefixesAndComments() throws IOException {
+        assertEquals("", compare(XML, "<a><!-- comment --><b y='2' x='1'>t</b><c></c></a>", CompareMode.STRICT));
+        assertEquals("", compare("<n:a xmlns:n='urn:x'><n:b>t</n:b></n:a>", "<m:a xmlns:m='urn:x'><m:b><![CDATA[t]]></m:b></m:a>", CompareMode.STRICT));
+    }
+
+    @Test
+    public void compareMustReportWhitespaceInStrictMode() throws IOException {
+        assertTrue(compare(XML, "<a>\n<b x='1' y='2'>t</b><c/></a>", CompareMode.STRICT).startsWith("Expected <b x=\"1\" y=\"2\"> at /a/b[1] but got"));
+    }
+
+    @Test
+    public void compareMustIgnoreWhitespace() throws IOException {
+        assertEquals("", compare(XML, "<a>\n  <b x='1' y='2'>\n t </b>\n  <c/>\n</a>", CompareMode.IGNORE_WHITESPACE));
+    }
+
+    @Test
+    public void compareMustReportFirstDeviationWhenOrderIsSignificant() throws IOException {
+        assertEquals("Expected <b x=\"1\" y=\"2\"> at /a/b[1] but got <c>", compare(XML, "<a><c/><b x='1' y='2'>t</b></a>", CompareMode.IGNORE_WHITESPACE));
+        assertEquals("Expected </a> at /a but got <d>", compare(XML, "<a><b x='1' y='2'>t</b><c/><d/></a>", CompareMode.STRICT));
+    }
+
+    @Test
+    public void compareMustIgnoreOrderOfSiblings() throws IOException {
+        assertEquals("", compare(XML, "<a><c/><b y='2' x='1'>t</b></a>", CompareMode.IGNORE_ORDER));
+        assertEquals("", compare("<a><b><c>1</c><d>2</d></b></a>", "<a>\n<b>\n<d>2</d>\n<c>1</c>\n</b>\n</a>", CompareMode.LENIENT));
+    }
+
+    @Test
+    public void compareMustReportUnmatchedChildrenWhenOrderIsNotSignificant() throws IOException {
+        String diff = compare("<a><b>1</b><b>2</b><c/></a>", "<a><c/><b>1</b><b>3</b></a>", CompareMode.LENIENT);
+        assertEquals("Expected but not found: /a/b[2]" + String.format("%n") + "Unexpected: /a/b[2]", diff);
+    }
+
+    @Test
+    public void compareMustReportDifferentRoots() throws IOException {
+        assertEquals("Expected root <a> but got <z>", compare("<a/>", "<z/>", CompareMode.LENIENT));
+    }
+
+    @Test
+    public void compareMustFailOnInvalidXml() throws IOException {
+        exception.expect(IOException.class);
+        compare(XML, "<a><b x='1' y='2'>t</b><c></a>", CompareMode.STRICT);
+    }
+
+    @Test
+    public void parseCompareModeMustAcceptKnownModes() {
+        assertEquals(CompareMode.LENIENT, XmlTools.parseCompareMode(" lenient "));
+        assertEquals(CompareMode.IGNORE_ORDER, XmlTools.parseCompareMode("IGNORE_ORDER"));
+    }
+
+    @Test
+    public void parseCompareModeMustRejectUnknownModes() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("xmlCompareMode parameter must be one of: STRICT IGNORE_WHITESPACE IGNORE_ORDER LENIENT.");
+        XmlTools.parseCompareMode("FOO");
+    }
+
+    @Test
+    public void isXmlMustCheckFirstCharacter() {
+        assertTrue(XmlTools.isXml("  <a/>"));
+        assertFalse(XmlTools.isXml("./files/a.xml"));
+        assertFalse(XmlTools.isXml(null));
+    }
+
+    private String compare(String expected, String actual, CompareMode mode) throws IOException {
+        return XmlTools.compare(new StreamSource(new StringReader(expected)), new StreamSource(new StringReader(actual)), mode);
+    }
+}